@@ -1,20 +1,29 @@
 package org.yamcs.archive;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
+import org.rocksdb.RocksDBException;
 import org.yamcs.AbstractYamcsService;
 import org.yamcs.InitException;
 import org.yamcs.StreamConfig;
 import org.yamcs.StreamConfig.StreamConfigEntry;
 import org.yamcs.YConfiguration;
+import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.parser.ParseException;
+import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.protobuf.Db.Event;
+import org.yamcs.yarch.rocksdb.RdbStorageEngine;
+import org.yamcs.yarch.rocksdb.Tablespace;
 import org.yamcs.yarch.streamsql.StreamSqlException;
+import org.yamcs.yarch.streamsql.StreamSqlResult;
 
 /**
  * Sets up the archiving of the events coming on events_realtime and events_dump streams into the yarch table events.
+ * <p>
+ * Optionally maintains an {@link EventTextIndex} of the event messages, used to speed up the text searches.
  * 
  * @author nm
  *
@@ -24,11 +33,18 @@ public class EventRecorder extends AbstractYamcsService {
     public static final String TABLE_NAME = "events";
     public static final String REALTIME_EVENT_STREAM_NAME = "events_realtime";
 
+    private EventTextIndex textIndex;
+    private List<String> streamNames;
+
     @Override
     public void init(String yamcsInstance, String serviceName, YConfiguration config) throws InitException {
         super.init(yamcsInstance, serviceName, config);
 
         YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
+        StreamConfig sc = StreamConfig.getInstance(yamcsInstance);
+        streamNames = sc.getEntries(StreamConfig.StandardStreamType.EVENT).stream()
+                .map(sce -> sce.getName())
+                .collect(Collectors.toList());
 
         try {
             if (ydb.getTable(TABLE_NAME) == null) {
@@ -36,8 +52,35 @@ public class EventRecorder extends AbstractYamcsService {
                         + "(gentime timestamp, source enum, seqNum int, body PROTOBUF('"+Event.class.getName()+"'), primary key(gentime, source, seqNum)) histogram(source)"
                         + " table_format=compressed");
             }
+        } catch (ParseException | StreamSqlException e) {
+            throw new InitException(e);
+        }
+
+        if (ydb.getTable(TABLE_NAME).getStorageEngineName().equals(YarchDatabase.RDB_ENGINE_NAME)) {
+            Tablespace tablespace = RdbStorageEngine.getInstance().getTablespace(ydb);
+            try {
+                if (config.getBoolean("textIndex", false)) {
+                    long bucketSize = config.getLong("textIndexBucketSize", EventTextIndex.DEFAULT_BUCKET_SIZE / 1000)
+                            * 1000;
+                    textIndex = EventTextIndex.open(yamcsInstance, tablespace, getLastGenerationTime(ydb) + 1,
+                            bucketSize);
+                    // subscribe before the table starts recording such that all the events recorded after the start
+                    // of the index are also indexed
+                    for (String s : streamNames) {
+                        Stream stream = ydb.getStream(s);
+                        if (stream != null) {
+                            stream.addSubscriber(textIndex);
+                        }
+                    }
+                } else {
+                    EventTextIndex.remove(yamcsInstance, tablespace);
+                }
+            } catch (RocksDBException | ParseException | StreamSqlException e) {
+                throw new InitException("Failed to open the event text index", e);
+            }
+        }
 
-            StreamConfig sc = StreamConfig.getInstance(yamcsInstance);
+        try {
             for (StreamConfigEntry sce : sc.getEntries()) {
                 if (sce.getType() == StreamConfig.StandardStreamType.EVENT) {
                     ydb.execute("insert into " + TABLE_NAME + " select * from " + sce.getName());
@@ -48,17 +91,50 @@ public class EventRecorder extends AbstractYamcsService {
         }
     }
 
+    /**
+     * Returns the generation time of the last recorded event, such that the events generated after are known to be
+     * indexed.
+     */
+    private static long getLastGenerationTime(YarchDatabaseInstance ydb) throws ParseException, StreamSqlException {
+        StreamSqlResult res = ydb.execute("select gentime from " + TABLE_NAME + " order desc limit 1");
+        try {
+            if (res.hasNext()) {
+                return (Long) res.next().getColumn("gentime");
+            } else {
+                return TimeEncoding.MIN_INSTANT;
+            }
+        } finally {
+            res.close();
+        }
+    }
+
     @Override
     protected void doStart() {
         notifyStarted();
     }
 
+    /**
+     * @return the text index of the event messages or null if it is not enabled
+     */
+    public EventTextIndex getTextIndex() {
+        return textIndex;
+    }
+
     @Override
     protected void doStop() {
         YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
         StreamConfig sc = StreamConfig.getInstance(yamcsInstance);
 
         Utils.closeTableWriters(ydb, sc.getEntries().stream().map(sce -> sce.getName()).collect(Collectors.toList()));
+        // after the writers, such that all the events recorded are also indexed
+        if (textIndex != null) {
+            for (String s : streamNames) {
+                Stream stream = ydb.getStream(s);
+                if (stream != null) {
+                    stream.removeSubscriber(textIndex);
+                }
+            }
+        }
 
         notifyStopped();
     }
@@ -0,0 +1,501 @@
+package org.yamcs.archive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.parameter.SystemParametersProducer;
+import org.yamcs.utils.ByteArrayUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.protobuf.Db.Event;
+import org.yamcs.yarch.rocksdb.AscendingRangeIterator;
+import org.yamcs.yarch.rocksdb.DbIterator;
+import org.yamcs.yarch.rocksdb.Tablespace;
+import org.yamcs.yarch.rocksdb.YRDB;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TextIndexProperties;
+
+/**
+ * Inverted index of the words appearing in the event messages, used to find the time intervals where a text searched
+ * in the events may appear.
+ * <p>
+ * The time is divided in buckets of fixed size and for each word (lower case sequence of letters and digits) and
+ * bucket where the word appears in at least one event message, there is one record in the tablespace:
+ *
+ * <pre>
+ * key: tbsIndex[4 bytes], word[utf-8], 0[1 byte], bucket[8 bytes]
+ * value: empty
+ * </pre>
+ *
+ * In order to find the words containing a searched text, the suffixes of the words at least
+ * {@value #MIN_PREFIX_LENGTH} characters long are also recorded, in the same way but preceded by
+ * <code>~</code> (which cannot be part of a word).
+ * <p>
+ * The record with the key made of the tbsIndex only contains the number of (word, bucket) records.
+ * <p>
+ * The index only covers the events generated after its creation; the time intervals before are returned as they are
+ * by the search.
+ */
+public class EventTextIndex implements StreamSubscriber, SystemParametersProducer {
+    private static final Log log = new Log(EventTextIndex.class);
+
+    static final long DEFAULT_BUCKET_SIZE = 3600_000L;
+    // longer words are truncated
+    static final int MAX_WORD_LENGTH = 64;
+    // the words at the end of the searched text are possibly incomplete and they are looked up by prefix if long enough
+    static final int MIN_PREFIX_LENGTH = 3;
+    // marks the records of the word suffixes
+    static final char SUFFIX_MARK = '~';
+    // number of buckets for which the written words are remembered to avoid looking them up in the database
+    static final int MAX_CACHED_BUCKETS = 16;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    final String yamcsInstance;
+    final Tablespace tablespace;
+    final int tbsIndex;
+    final long bucketSize;
+    final long start;
+
+    private final Map<Long, Set<String>> writtenWords = new LinkedHashMap<Long, Set<String>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Set<String>> eldest) {
+            return size() > MAX_CACHED_BUCKETS;
+        }
+    };
+
+    private long numRecords;
+    private volatile boolean registered;
+    private String spNumRecords, spIndexedEvents, spNumQueries, spAvgQueryLatency, spMaxQueryLatency;
+
+    // statistics reset at each collection
+    private int indexedEvents;
+    private int numQueries;
+    private long totalQueryNanos;
+    private long maxQueryNanos;
+
+    private EventTextIndex(String yamcsInstance, Tablespace tablespace, TablespaceRecord tbr) throws RocksDBException {
+        this.yamcsInstance = yamcsInstance;
+        this.tablespace = tablespace;
+        this.tbsIndex = tbr.getTbsIndex();
+        this.bucketSize = tbr.getTextIndexProperties().getBucketSize();
+        this.start = tbr.getTextIndexProperties().getStart();
+
+        byte[] v = tablespace.getData(counterKey());
+        if (v != null) {
+            numRecords = ByteArrayUtils.decodeLong(v, 0);
+        }
+    }
+
+    /**
+     * Opens the text index of the instance, creating it if it does not exist.
+     *
+     * @param start
+     *            used when the index is created: the time after which all the events are indexed
+     * @param bucketSize
+     *            used when the index is created: the size in milliseconds of the time buckets. An existing index
+     *            keeps the bucket size it has been created with.
+     */
+    public static EventTextIndex open(String yamcsInstance, Tablespace tablespace, long start, long bucketSize)
+            throws RocksDBException {
+        List<TablespaceRecord> l = tablespace.filter(Type.EVENT_TEXT_INDEX, yamcsInstance, tr -> true);
+        TablespaceRecord tbr;
+        if (l.isEmpty()) {
+            TextIndexProperties props = TextIndexProperties.newBuilder()
+                    .setBucketSize(bucketSize)
+                    .setStart(start)
+                    .build();
+            tbr = tablespace.createMetadataRecord(yamcsInstance, TablespaceRecord.newBuilder()
+                    .setType(Type.EVENT_TEXT_INDEX)
+                    .setTextIndexProperties(props));
+            log.info("Created event text index starting at {}", TimeEncoding.toString(start));
+        } else {
+            tbr = l.get(0);
+            if (tbr.getTextIndexProperties().getBucketSize() != bucketSize) {
+                log.info("Event text index uses a bucket size of {} ms instead of the configured {} ms",
+                        tbr.getTextIndexProperties().getBucketSize(), bucketSize);
+            }
+        }
+        return new EventTextIndex(yamcsInstance, tablespace, tbr);
+    }
+
+    /**
+     * Removes the text index of the instance if it exists.
+     * <p>
+     * Called when the index is disabled: the events recorded in the meanwhile are not indexed so the index cannot be
+     * used anymore.
+     */
+    public static void remove(String yamcsInstance, Tablespace tablespace) throws RocksDBException {
+        for (TablespaceRecord tbr : tablespace.filter(Type.EVENT_TEXT_INDEX, yamcsInstance, tr -> true)) {
+            log.info("Removing event text index");
+            tablespace.removeTbsIndex(Type.EVENT_TEXT_INDEX, tbr.getTbsIndex());
+        }
+    }
+
+    @Override
+    public void onTuple(Stream stream, Tuple tuple) {
+        Event event = (Event) tuple.getColumn("body");
+        if (!event.hasMessage()) {
+            return;
+        }
+        try {
+            addEvent(event.getGenerationTime(), event.getMessage());
+        } catch (RocksDBException e) {
+            log.error("Failed to add event to the text index", e);
+        }
+    }
+
+    synchronized void addEvent(long gentime, String message) throws RocksDBException {
+        registerSystemParameters();
+        indexedEvents++;
+
+        long bucket = Math.floorDiv(gentime, bucketSize);
+        Set<String> words = writtenWords.computeIfAbsent(bucket, k -> new HashSet<>());
+        YRDB db = tablespace.getRdb();
+        int n = 0;
+        try (WriteBatch wb = new WriteBatch()) {
+            for (String word : tokenize(message)) {
+                if (!words.add(word)) {
+                    continue;
+                }
+                n += put(db, wb, truncate(word), bucket);
+                for (int i = 1; i <= word.length() - MIN_PREFIX_LENGTH; i++) {
+                    if (!Character.isLowSurrogate(word.charAt(i))) {
+                        n += put(db, wb, SUFFIX_MARK + truncate(word.substring(i)), bucket);
+                    }
+                }
+            }
+            if (n > 0) {
+                numRecords += n;
+                wb.put(counterKey(), ByteArrayUtils.encodeLong(numRecords));
+                try (WriteOptions wo = new WriteOptions()) {
+                    db.write(wo, wb);
+                }
+            }
+        }
+    }
+
+    private int put(YRDB db, WriteBatch wb, String word, long bucket) throws RocksDBException {
+        byte[] key = key(word, bucket);
+        if (db.get(key) == null) {
+            wb.put(key, EMPTY);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the time intervals where the events with a message containing the text may be found.
+     * <p>
+     * The text is interpreted like the pattern of the StreamSQL <code>like</code> operator (with <code>%</code>
+     * matching any sequence of characters and <code>?</code> any character) surrounded by <code>%</code>.
+     *
+     * @return the intervals in ascending order, covering only the parts of the interval which may contain matches, or
+     *         null if the index cannot be used for this text (for example if it does not contain full words).
+     */
+    public List<TimeInterval> search(String text, TimeInterval interval) throws RocksDBException {
+        if (interval.hasEnd() && interval.getEnd() <= start) {
+            return null;
+        }
+        List<SearchTerm> terms = parse(text);
+        if (terms == null || terms.isEmpty()) {
+            return null;
+        }
+        long t0 = System.nanoTime();
+
+        long indexedStart = interval.hasStart() ? Math.max(interval.getStart(), start) : start;
+        long firstBucket = Math.floorDiv(indexedStart, bucketSize);
+        long lastBucket = interval.hasEnd() ? Math.floorDiv(interval.getEnd() - 1, bucketSize) : Long.MAX_VALUE;
+
+        TreeSet<Long> buckets = null;
+        for (SearchTerm term : terms) {
+            TreeSet<Long> termBuckets = getBuckets(term, firstBucket, lastBucket);
+            if (buckets == null) {
+                buckets = termBuckets;
+            } else {
+                buckets.retainAll(termBuckets);
+            }
+            if (buckets.isEmpty()) {
+                break;
+            }
+        }
+
+        List<TimeInterval> result = new ArrayList<>();
+        if (start > TimeEncoding.MIN_INSTANT && (!interval.hasStart() || interval.getStart() < start)) {
+            // not covered by the index
+            TimeInterval notIndexed = interval.hasStart() ? new TimeInterval(interval.getStart(), start)
+                    : TimeInterval.openStart(start);
+            result.add(notIndexed);
+        }
+        TimeInterval current = null;
+        for (long bucket : buckets) {
+            // the multiplication may overflow for the first bucket if the index starts at MIN_INSTANT
+            long bstart = bucket == firstBucket ? indexedStart : bucket * bucketSize;
+            long bend = bucket * bucketSize + bucketSize;
+            if (interval.hasEnd() && bend > interval.getEnd()) {
+                bend = interval.getEnd();
+            }
+            if (current != null && current.getEnd() == bstart) {
+                current.setEnd(bend);
+            } else {
+                current = new TimeInterval(bstart, bend);
+                result.add(current);
+            }
+        }
+
+        addQueryLatency(System.nanoTime() - t0);
+        return result;
+    }
+
+    private TreeSet<Long> getBuckets(SearchTerm term, long firstBucket, long lastBucket) throws RocksDBException {
+        TreeSet<Long> buckets = new TreeSet<>();
+        addBuckets(term.word, term.prefix, firstBucket, lastBucket, buckets);
+        if (term.suffix) {
+            addBuckets(SUFFIX_MARK + term.word, term.prefix, firstBucket, lastBucket, buckets);
+        }
+        return buckets;
+    }
+
+    private void addBuckets(String word, boolean prefix, long firstBucket, long lastBucket, TreeSet<Long> buckets)
+            throws RocksDBException {
+        byte[] rangeStart, rangeEnd;
+        if (prefix) {
+            rangeStart = rangeEnd = wordPrefix(word);
+        } else {
+            rangeStart = key(word, firstBucket);
+            rangeEnd = key(word, lastBucket);
+        }
+        YRDB db = tablespace.getRdb();
+        try (DbIterator it = new AscendingRangeIterator(db.newIterator(), rangeStart, rangeEnd)) {
+            while (it.isValid()) {
+                byte[] key = it.key();
+                long bucket = decodeBucket(key);
+                if (bucket >= firstBucket && bucket <= lastBucket) {
+                    buckets.add(bucket);
+                }
+                it.next();
+            }
+        }
+    }
+
+    /**
+     * Splits the text in lower case words, separated by any character which is not a letter or a digit.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int wstart = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > wstart) {
+                words.add(text.substring(wstart, i).toLowerCase(Locale.ROOT));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Truncates the words (and suffixes) longer than {@link #MAX_WORD_LENGTH} before storing them in the index. The
+     * suffixes are computed on the whole word such that any part of it can be found.
+     */
+    private static String truncate(String word) {
+        return word.length() > MAX_WORD_LENGTH ? word.substring(0, MAX_WORD_LENGTH) : word;
+    }
+
+    /**
+     * Converts the searched text into the terms to look up in the index.
+     * <p>
+     * A word is looked up as it is if it is delimited on both sides by characters which are not letters, digits or
+     * wildcards. If it is not delimited on the right, it is looked up as the prefix of the indexed words and if it is
+     * not delimited on the left, as their suffix (if both, as any part of the indexed words). The words shorter than
+     * {@link #MIN_PREFIX_LENGTH} are ignored unless they are delimited on both sides.
+     *
+     * @return null if the text contains characters which are interpreted by the like operator in a way which is not
+     *         supported here
+     */
+    static List<SearchTerm> parse(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if ("\\[](){}*+^$|".indexOf(text.charAt(i)) >= 0) {
+                return null;
+            }
+        }
+        List<SearchTerm> terms = new ArrayList<>();
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int wstart = i;
+            while (i < n && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == wstart) {
+                break;
+            }
+            boolean leftDelimited = wstart > 0 && !isWildcard(text.charAt(wstart - 1));
+            boolean rightDelimited = i < n && !isWildcard(text.charAt(i));
+            int wend = i;
+            if (wend - wstart > MAX_WORD_LENGTH) {
+                // only the beginning of the words and suffixes is indexed
+                rightDelimited = false;
+                wend = wstart + MAX_WORD_LENGTH;
+            }
+            String word = text.substring(wstart, wend).toLowerCase(Locale.ROOT);
+            if ((leftDelimited && rightDelimited) || word.length() >= MIN_PREFIX_LENGTH) {
+                terms.add(new SearchTerm(word, !rightDelimited, !leftDelimited));
+            }
+        }
+        return terms;
+    }
+
+    private static boolean isWildcard(char c) {
+        return c == '%' || c == '?';
+    }
+
+    private byte[] counterKey() {
+        return ByteArrayUtils.encodeInt(tbsIndex);
+    }
+
+    private byte[] wordPrefix(String word) {
+        byte[] w = word.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[4 + w.length];
+        ByteArrayUtils.encodeInt(tbsIndex, key, 0);
+        System.arraycopy(w, 0, key, 4, w.length);
+        return key;
+    }
+
+    private byte[] key(String word, long bucket) {
+        byte[] w = word.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[4 + w.length + 9];
+        ByteArrayUtils.encodeInt(tbsIndex, key, 0);
+        System.arraycopy(w, 0, key, 4, w.length);
+        key[4 + w.length] = 0;
+        // flip the sign bit such that the negative buckets are sorted before the positive ones
+        ByteArrayUtils.encodeLong(bucket ^ Long.MIN_VALUE, key, 5 + w.length);
+        return key;
+    }
+
+    private static long decodeBucket(byte[] key) {
+        return ByteArrayUtils.decodeLong(key, key.length - 8) ^ Long.MIN_VALUE;
+    }
+
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * @return the time after which all the events are indexed
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the number of (word, bucket) records in the index
+     */
+    public synchronized long getNumRecords() {
+        return numRecords;
+    }
+
+    private synchronized void addQueryLatency(long nanos) {
+        registerSystemParameters();
+        numQueries++;
+        totalQueryNanos += nanos;
+        if (nanos > maxQueryNanos) {
+            maxQueryNanos = nanos;
+        }
+    }
+
+    /**
+     * Registers to the system parameters collector if not already done. The collector might not exist yet when the
+     * index is opened.
+     */
+    private void registerSystemParameters() {
+        if (registered) {
+            return;
+        }
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            String prefix = collector.getNamespace() + "/eventTextIndex/";
+            spNumRecords = prefix + "numRecords";
+            spIndexedEvents = prefix + "indexedEvents";
+            spNumQueries = prefix + "numQueries";
+            spAvgQueryLatency = prefix + "avgQueryLatencyMicros";
+            spMaxQueryLatency = prefix + "maxQueryLatencyMicros";
+            collector.registerProducer(this);
+            registered = true;
+        }
+    }
+
+    @Override
+    public synchronized Collection<ParameterValue> getSystemParameters() {
+        long time = TimeEncoding.getWallclockTime();
+        long avgLatency = numQueries == 0 ? 0 : totalQueryNanos / numQueries;
+
+        List<ParameterValue> pvlist = new ArrayList<>();
+        pvlist.add(SystemParametersCollector.getPV(spNumRecords, time, numRecords));
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spIndexedEvents, time, indexedEvents));
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spNumQueries, time, numQueries));
+        pvlist.add(SystemParametersCollector.getPV(spAvgQueryLatency, time, TimeUnit.NANOSECONDS.toMicros(avgLatency)));
+        pvlist.add(SystemParametersCollector.getPV(spMaxQueryLatency, time,
+                TimeUnit.NANOSECONDS.toMicros(maxQueryNanos)));
+
+        indexedEvents = 0;
+        numQueries = 0;
+        totalQueryNanos = 0;
+        maxQueryNanos = 0;
+        return pvlist;
+    }
+
+    @Override
+    public void streamClosed(Stream stream) {
+        // nothing to do
+    }
+
+    static class SearchTerm {
+        final String word;
+        // true if the word can be the prefix of a longer word
+        final boolean prefix;
+        // true if the word can be the suffix of a longer word (or any part of it, if prefix is also true)
+        final boolean suffix;
+
+        SearchTerm(String word, boolean prefix, boolean suffix) {
+            this.word = word;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public String toString() {
+            return (suffix ? "*" : "") + word + (prefix ? "*" : "");
+        }
+    }
+}
@@ -3,6 +3,10 @@ package org.yamcs.cfdp;
 import static org.yamcs.cfdp.CfdpService.*;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -32,6 +36,7 @@ import org.yamcs.protobuf.TransferState;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.yarch.Bucket;
 import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.YarchDatabase;
 
 public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
     private enum InTxState {
@@ -61,7 +66,7 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
     private Bucket incomingBucket = null;
     private String objectName;
 
-    private DataFile incomingDataFile;
+    private IncomingDataFile incomingDataFile;
     MetadataPacket metadataPacket;
     EofPacket eofPacket;
     final Timer finTimer;
@@ -149,7 +154,23 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
                 hdr.getSequenceNumber());
 
         needsFinish = acknowledged;
-        incomingDataFile = new DataFile(-1);
+        if (config.getBoolean("diskBackedReception", false)) {
+            Path dir;
+            if (config.containsKey("receptionDirectory")) {
+                dir = Paths.get(config.getString("receptionDirectory"));
+            } else {
+                dir = Paths.get(YarchDatabase.getInstance(yamcsInstance).getRoot(), "cfdp-reception");
+            }
+            try {
+                incomingDataFile = new DiskDataFile(dir, -1);
+            } catch (IOException e) {
+                log.error("TXID{} cannot create temporary file in {}, keeping the data in memory", cfdpTransactionId,
+                        dir, e);
+            }
+        }
+        if (incomingDataFile == null) {
+            incomingDataFile = new DataFile(-1);
+        }
     }
 
     @Override
@@ -338,16 +359,24 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
                 log.warn("TXID{} received data file whose end offset {} is larger than the file size {}",
                         cfdpTransactionId, dfs.getEndOffset(), fileSize);
                 handleFault(ConditionCode.FILE_SIZE_ERROR);
+                return;
             }
         } else {
             if (dfs.getEndOffset() > maxFileSize) {
                 log.warn("TXID{} received data file whose end offset {} is larger than the maximum file size {}",
                         cfdpTransactionId, dfs.getEndOffset(), maxFileSize);
                 handleFault(ConditionCode.FILESTORE_REJECTION);
+                return;
             }
         }
 
-        incomingDataFile.addSegment(dfs);
+        try {
+            incomingDataFile.addSegment(dfs);
+        } catch (UncheckedIOException e) {
+            log.error("TXID{} cannot store the received data", cfdpTransactionId, e);
+            handleFault(ConditionCode.FILESTORE_REJECTION);
+            return;
+        }
         monitor.stateChanged(this);
         checkFileComplete();
     }
@@ -357,20 +386,33 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
         long expectedChecksum = eofPacket.getFileChecksum();
         if (expectedChecksum == incomingDataFile.getChecksum()) {
             log.info("TXID{} file completed, checksum OK", cfdpTransactionId);
+            // saved before completing the transfer which releases the data
+            try {
+                saveFileInBucket(false, Collections.emptyList());
+            } catch (IOException e) {
+                log.error("TXID{} cannot save the received file in bucket {}", cfdpTransactionId,
+                        incomingBucket.getName(), e);
+                handleFault(ConditionCode.FILESTORE_REJECTION);
+                return;
+            }
             if (needsFinish) {
                 finish(ConditionCode.NO_ERROR);
             } else {
                 complete(ConditionCode.NO_ERROR);
             }
-            saveFileInBucket(false, Collections.emptyList());
             sendInfoEvent(ETYPE_TRANSFER_FINISHED,
                     " downlink finished and saved in " + incomingBucket.getName() + "/" + getObjectName());
         } else {
             log.warn("TXID{} file checksum failure; EOF packet indicates {} while data received has {}",
                     cfdpTransactionId, expectedChecksum, incomingDataFile.getChecksum());
-            saveFileInBucket(true, Collections.emptyList());
-            sendWarnEvent(ETYPE_TRANSFER_FINISHED,
-                    " checksum failure; corrupted file saved in " + incomingBucket.getName() + "/" + getObjectName());
+            try {
+                saveFileInBucket(true, Collections.emptyList());
+                sendWarnEvent(ETYPE_TRANSFER_FINISHED, " checksum failure; corrupted file saved in "
+                        + incomingBucket.getName() + "/" + getObjectName());
+            } catch (IOException e) {
+                log.error("TXID{} cannot save the corrupted file in bucket {}", cfdpTransactionId,
+                        incomingBucket.getName(), e);
+            }
             handleFault(ConditionCode.FILE_CHECKSUM_FAILURE);
         }
     }
@@ -414,6 +456,7 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
 
     private void complete(ConditionCode conditionCode, String failureReason) {
         inTxState = InTxState.COMPLETED;
+        incomingDataFile.close();
         if (!acknowledged) {
             checkTimer.cancel();
         }
@@ -431,6 +474,19 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
 
     }
 
+    /**
+     * Also removes the data received so far (called when the transfer is abandoned or the service is stopped)
+     */
+    @Override
+    protected void failTransfer(String failureReason) {
+        inTxState = InTxState.COMPLETED;
+        incomingDataFile.close();
+        if (!acknowledged) {
+            checkTimer.cancel();
+        }
+        super.failTransfer(failureReason);
+    }
+
     private void handleFault(ConditionCode conditionCode) {
         switch (inTxState) {
         case RECEIVING_DATA:
@@ -519,34 +575,32 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
         }
     }
 
-    private void saveFileInBucket(boolean checksumError, List<SegmentRequest> missingSegments) {
-        try {
-            Map<String, String> metadata = null;
-            if (!missingSegments.isEmpty()) {
+    private void saveFileInBucket(boolean checksumError, List<SegmentRequest> missingSegments) throws IOException {
+        Map<String, String> metadata = null;
+        if (!missingSegments.isEmpty()) {
+            metadata = new HashMap<>();
+            metadata.put("missingSegments", missingSegments.toString());
+        }
+        if (checksumError) {
+            if (metadata == null) {
                 metadata = new HashMap<>();
-                metadata.put("missingSegments", missingSegments.toString());
-            }
-            if (checksumError) {
-                if (metadata == null) {
-                    metadata = new HashMap<>();
-                }
-                metadata.put("checksumError", "true");
             }
-            objectName = getFileName(objectName);
-            incomingBucket.putObject(objectName, null, metadata, incomingDataFile.getData());
-        } catch (IOException e) {
-            throw new RuntimeException("cannot save incoming file in bucket " + incomingBucket.getName(), e);
+            metadata.put("checksumError", "true");
+        }
+        objectName = getFileName(objectName);
+        try (InputStream in = incomingDataFile.newInputStream()) {
+            incomingBucket.putObject(objectName, null, metadata, in);
         }
     }
 
     private String getFileName(String name) throws IOException {
         name = name.replace("/", "_");
-        if (incomingBucket.getObject(name) == null) {
+        if (incomingBucket.findObject(name) == null) {
             return name;
         }
         for (int i = 1; i < 10000; i++) {
             String namei = name + "(" + i + ")";
-            if (incomingBucket.getObject(namei) == null) {
+            if (incomingBucket.findObject(namei) == null) {
                 return namei;
             }
         }
@@ -2,16 +2,12 @@ package org.yamcs.cfdp;
 
 import static org.yamcs.cfdp.CfdpService.*;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import org.yamcs.YConfiguration;
 import org.yamcs.cfdp.pdu.AckPacket;
@@ -36,8 +32,21 @@ import org.yamcs.protobuf.TransferDirection;
 import org.yamcs.protobuf.TransferState;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.yarch.Stream;
-
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties;
+
+/**
+ * Sends a file from a bucket to a remote entity.
+ * <p>
+ * The PDUs are not sent on a timer of their own; the transfer is registered with the {@link PduScheduler} of the
+ * destination which calls {@link #sendNextPdu()} whenever the uplink rate allows sending a new PDU.
+ * <p>
+ * The file is read from the bucket in windows of about {@value #READ_WINDOW_SIZE} bytes and the file data PDUs are
+ * not kept after having been sent: the segments requested by the NAKs are read again from the bucket. The checksum is
+ * computed while the data is sent the first time. Like this the memory used by one transfer does not depend on the
+ * file size.
+ */
 public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
+    static final int READ_WINDOW_SIZE = 64 * 1024;
 
     private enum OutTxState {
         /**
@@ -68,22 +77,26 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
     private final int entityIdLength;
     private final int seqNrSize;
     private final int maxDataSize;
-    private final int sleepBetweenPdus;
     private final boolean closureRequested;
-    private final List<FileDataPacket> sentFileDataPackets = new ArrayList<>();
-    private Queue<FileDataPacket> toResend;
+    private final PduScheduler pduScheduler;
+    // segments requested by the last NAK, not yet resent
+    private final ArrayDeque<SegmentRequest> toResend = new ArrayDeque<>();
+
+    // part of the file read from the bucket
+    private byte[] window;
+    private long windowOffset;
+    // checksum of the data sent the first time (i.e. up to offset)
+    private long checksum;
 
     private OutTxState outTxState;
     private long transferred;
 
     private long offset = 0;
-    private long end = 0;
 
     private boolean suspended = false;
     private final byte checksumType = 0;
 
     private PutRequest request;
-    private ScheduledFuture<?> pduSendingSchedule;
     FinishedPacket finishedPacket;
 
     boolean resendMetadata = false;
@@ -96,11 +109,12 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
 
     public CfdpOutgoingTransfer(String yamcsInstance, long id, ScheduledThreadPoolExecutor executor, PutRequest request,
             Stream cfdpOut, YConfiguration config, EventProducer eventProducer, TransferMonitor monitor,
-            Map<ConditionCode, FaultHandlingAction> faultHandlerActions) {
+            Map<ConditionCode, FaultHandlingAction> faultHandlerActions, PduScheduler pduScheduler) {
         super(yamcsInstance, id, executor, config, makeTransactionId(request.getSourceId(), config, id),
                 request.getDestinationId(), cfdpOut,
                 eventProducer, monitor, faultHandlerActions);
         this.request = request;
+        this.pduScheduler = pduScheduler;
         entityIdLength = config.getInt("entityIdLength");
         seqNrSize = config.getInt("sequenceNrLength");
         int maxPduSize = config.getInt("maxPduSize", 512);
@@ -112,7 +126,6 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
         acknowledged = request.isAcknowledged();
 
         outTxState = OutTxState.START;
-        this.sleepBetweenPdus = config.getInt("sleepBetweenPdus", 500);
         this.closureRequested = request.isClosureRequested();
 
         // create header for all file directive PDUs
@@ -148,54 +161,70 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
     }
 
     public void start() {
-        pduSendingSchedule = executor.scheduleAtFixedRate(() -> sendPDU(), 0, sleepBetweenPdus, TimeUnit.MILLISECONDS);
+        pduScheduler.schedule(this);
     }
 
-    private void sendPDU() {
+    /**
+     * Called by the {@link PduScheduler} when this transfer can send a PDU.
+     *
+     * @return the length of the PDU sent or -1 if there is nothing to send; in the latter case the transfer has to be
+     *         scheduled again when it has something to send.
+     */
+    int sendNextPdu() {
         if (suspended) {
-            return;
+            return -1;
         }
-
+        CfdpPacket packet;
         switch (outTxState) {
         case START:
             metadata = getMetadataPacket();
-            sendInfoEvent(ETYPE_TRANSFER_META, "Sending metadata: "+toEventMsg(metadata));
-            sendPacket(metadata);
+            sendInfoEvent(ETYPE_TRANSFER_META, "Sending metadata: " + toEventMsg(metadata));
+            packet = metadata;
             this.outTxState = OutTxState.SENDING_DATA;
             offset = 0; // first file data packet starts at the start of the data
-            end = Math.min(maxDataSize, request.getFileLength());
-            monitor.stateChanged(this);
             break;
         case SENDING_DATA:
             if (resendMetadata) {
-                sendPacket(metadata);
+                packet = metadata;
                 resendMetadata = false;
-            } else {
-                if (offset == request.getFileLength()) {
-                    if (toResend != null && !toResend.isEmpty()) {
-                        FileDataPacket fdp = toResend.poll();
-                        sendPacket(fdp);
-                    } else if (!eofSent) {
-                        sendEof(ConditionCode.NO_ERROR);
-                    }
-                } else {
-                    end = Math.min(offset + maxDataSize, request.getFileLength());
-                    FileDataPacket nextPacket = getNextFileDataPacket();
-                    sentFileDataPackets.add(nextPacket);
-                    sendPacket(nextPacket);
-                    transferred += (end - offset);
-                    offset = end;
+            } else if (offset < request.getFileLength()) {
+                long end = Math.min(offset + maxDataSize, request.getFileLength());
+                packet = getFileDataPacket(offset, end);
+                if (packet == null) {
+                    return -1;
+                }
+                checksum += ChecksumCalculator.calculateChecksum(((FileDataPacket) packet).getData(), offset,
+                        end - offset);
+                transferred += (end - offset);
+                offset = end;
+            } else if (!toResend.isEmpty()) {
+                SegmentRequest segment = toResend.poll();
+                long end = Math.min(segment.getSegmentStart() + maxDataSize, segment.getSegmentEnd());
+                if (end < segment.getSegmentEnd()) {
+                    toResend.addFirst(new SegmentRequest(end, segment.getSegmentEnd()));
+                }
+                packet = getFileDataPacket(segment.getSegmentStart(), end);
+                if (packet == null) {
+                    return -1;
                 }
+            } else if (!eofSent) {
+                sendEof(ConditionCode.NO_ERROR);
+                monitor.stateChanged(this);
+                return getPduLength(eofPacket);
+            } else {
+                return -1;
             }
-            monitor.stateChanged(this);
-            break;
-        case COMPLETED:
-            pduSendingSchedule.cancel(true);
-            cancelInactivityTimer();
             break;
         default:
-            throw new IllegalStateException("unknown/illegal state");
+            return -1;
         }
+        sendPacket(packet);
+        monitor.stateChanged(this);
+        return getPduLength(packet);
+    }
+
+    private static int getPduLength(CfdpPacket packet) {
+        return packet.getHeader().getLength() + packet.getDataFieldLength();
     }
 
     private void sendEof(ConditionCode code) {
@@ -242,21 +271,28 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
         } else if (packet instanceof FinishedPacket) {
             processFinishedPacket((FinishedPacket) packet);
         } else if (packet instanceof NakPacket) {
-            toResend = new LinkedList<>();
-            for (SegmentRequest segment : ((NakPacket) packet).getSegmentRequests()) {
-                if (segment.isMetadata()) {
-                    resendMetadata = true;
-                } else {
-                    toResend.addAll(sentFileDataPackets.stream()
-                            .filter(x -> segment.isInRange(x.getOffset()))
-                            .collect(Collectors.toList()));
-                }
-            }
+            processNakPacket((NakPacket) packet);
         } else {
             log.warn("TXID{} unexpected packet {} ", cfdpTransactionId, packet);
         }
     }
 
+    private void processNakPacket(NakPacket nakPacket) {
+        toResend.clear();
+        for (SegmentRequest segment : nakPacket.getSegmentRequests()) {
+            if (segment.isMetadata()) {
+                resendMetadata = true;
+            } else {
+                // only the data already sent can be resent, the rest will be sent anyway
+                long end = Math.min(segment.getSegmentEnd(), offset);
+                if (segment.getSegmentStart() < end) {
+                    toResend.add(new SegmentRequest(segment.getSegmentStart(), end));
+                }
+            }
+        }
+        pduScheduler.schedule(this);
+    }
+
     private void processAckPacket(AckPacket ackPacket) {
         if (ackPacket.getDirectiveCode() != FileDirectiveCode.EOF) {
             log.info("TXID{} received bogus non EOF ACK packet: {}", cfdpTransactionId, ackPacket);
@@ -317,7 +353,6 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
         log.info("TXID{} suspending transfer", cfdpTransactionId);
 
         eofTimer.cancel();
-        pduSendingSchedule.cancel(true);
         cancelInactivityTimer();
 
         suspended = true;
@@ -337,7 +372,7 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
         }
         log.info("TXID{} resuming transfer", cfdpTransactionId);
         sendInfoEvent(ETYPE_TRANSFER_RESUMED, "transfer resumed");
-        pduSendingSchedule = executor.scheduleAtFixedRate(() -> sendPDU(), 0, sleepBetweenPdus, TimeUnit.MILLISECONDS);
+        pduScheduler.schedule(this);
         if (expectingAck()) {
             sendEof();
         }
@@ -365,6 +400,8 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
             return;
         }
         outTxState = OutTxState.COMPLETED;
+        window = null;
+        cancelInactivityTimer();
 
         long duration = (System.currentTimeMillis() - wallclockStartTime) / 1000;
 
@@ -380,7 +417,7 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
                     "transfer finished with error in " + duration + " seconds: "
                             + request.getObjectName()
                             + " -> "
-                            + request.getTargetPath() + " error: " + finishedPacket.getConditionCode());
+                            + request.getTargetPath() + " error: " + conditionCode);
         }
     }
 
@@ -449,30 +486,25 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
     }
 
     private EofPacket getEofPacket(ConditionCode code) {
-        long checksum;
         long filesize;
         TLV tlv;
 
         if (code == ConditionCode.NO_ERROR) {
-            checksum = request.getChecksum();
             filesize = request.getFileLength();
             tlv = null;
-        } else if (code == ConditionCode.CANCEL_REQUEST_RECEIVED) {
+        } else {
+            // EOF (cancel) reporting the data sent so far
             filesize = getTransferredSize();
-            checksum = ChecksumCalculator.calculateChecksum(request.getFileData(), 0l, filesize);
             tlv = TLV.getEntityIdTLV(cfdpTransactionId.getInitiatorEntity(), entityIdLength);
-        } else {
-            throw new java.lang.UnsupportedOperationException(
-                    "CFDP ConditionCode " + code + " not supported for EOF packets");
         }
-
-        return new EofPacket(code, checksum, filesize, tlv, directiveHeader);
+        // the checksum is computed while sending, it covers the data up to the file size
+        return new EofPacket(code, checksum & 0xFFFFFFFFl, filesize, tlv, directiveHeader);
     }
 
     private MetadataPacket getMetadataPacket() {
         return new MetadataPacket(
                 closureRequested, checksumType,
-                request.getFileLength(),
+                (int) request.getFileLength(), // CfdpApi does not accept larger files
                 "", // no source file name, the data will come from a bucket
                 request.getTargetPath(),
                 new ArrayList<FileStoreRequest>(),
@@ -482,12 +514,48 @@ public class CfdpOutgoingTransfer extends OngoingCfdpTransfer {
                 directiveHeader);
     }
 
-    private FileDataPacket getNextFileDataPacket() {
-        FileDataPacket filedata = new FileDataPacket(
-                Arrays.copyOfRange(request.getFileData(), (int) offset, (int) end),
-                offset,
-                dataHeader);
-        return filedata;
+    /**
+     * Returns the file data packet for the segment [start, end) or null if the data cannot be read. In the latter case
+     * the fault has been handled.
+     */
+    private FileDataPacket getFileDataPacket(long start, long end) {
+        try {
+            return new FileDataPacket(readData(start, (int) (end - start)), start, dataHeader);
+        } catch (IOException e) {
+            log.error("TXID{} cannot read {} from bucket {}", cfdpTransactionId, request.getObjectName(),
+                    request.getBucket().getName(), e);
+            handleFault(ConditionCode.FILESTORE_REJECTION);
+            return null;
+        }
+    }
+
+    private byte[] readData(long start, int length) throws IOException {
+        if (request.getFileData() != null) {
+            return Arrays.copyOfRange(request.getFileData(), (int) start, (int) start + length);
+        }
+        if (window == null || start < windowOffset || start + length > windowOffset + window.length) {
+            // read a whole number of PDUs starting at the requested offset
+            int windowSize = Math.max(1, READ_WINDOW_SIZE / maxDataSize) * maxDataSize;
+            int n = (int) Math.min(windowSize, request.getFileLength() - start);
+            window = request.getBucket().getObject(request.getObjectName(), start, n);
+            windowOffset = start;
+            // checked after reading: an object replaced in the meanwhile has a different id or creation time
+            if (window == null || window.length != n || !isRequestedObject()) {
+                window = null;
+                throw new IOException("the object has been removed or modified during the transfer");
+            }
+        }
+        int pos = (int) (start - windowOffset);
+        return Arrays.copyOfRange(window, pos, pos + length);
+    }
+
+    private boolean isRequestedObject() throws IOException {
+        ObjectProperties requested = request.getObjectProperties();
+        ObjectProperties current = request.getBucket().findObject(request.getObjectName());
+        return current != null
+                && current.getObjectId() == requested.getObjectId()
+                && current.getCreated() == requested.getCreated()
+                && current.getSize() == requested.getSize();
     }
 
     private AckPacket getAckPacket(ConditionCode code) {
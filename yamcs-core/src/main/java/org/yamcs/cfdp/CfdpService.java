@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -69,6 +70,8 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
     static final String SEQUENCE_NAME = "cfdp";
 
     Map<CfdpTransactionId, OngoingCfdpTransfer> pendingTransfers = new HashMap<>();
+    // one scheduler for each destination entity with a configured uplink rate
+    Map<Long, PduScheduler> pduSchedulers = new ConcurrentHashMap<>();
     ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
     Map<ConditionCode, FaultHandlingAction> receiverFaultHandlers;
     Map<ConditionCode, FaultHandlingAction> senderFaultHandlers;
@@ -112,6 +115,7 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
         entitySpec.addOption("name", OptionType.STRING);
         entitySpec.addOption("id", OptionType.INTEGER);
         entitySpec.addOption("bucket", OptionType.STRING).withDefault(null);
+        entitySpec.addOption("maxUplinkRate", OptionType.INTEGER);
 
         Spec spec = new Spec();
         spec.addOption("inStream", OptionType.STRING).withDefault("cfdp_in");
@@ -129,12 +133,15 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
         spec.addOption("finAckTimeout", OptionType.INTEGER).withDefault(5000);
         spec.addOption("finAckLimit", OptionType.INTEGER).withDefault(5);
         spec.addOption("sleepBetweenPdus", OptionType.INTEGER).withDefault(500);
+        spec.addOption("maxUplinkRate", OptionType.INTEGER);
         spec.addOption("localEntities", OptionType.LIST).withElementType(OptionType.MAP).withSpec(entitySpec);
         spec.addOption("remoteEntities", OptionType.LIST).withElementType(OptionType.MAP).withSpec(entitySpec);
         spec.addOption("nakLimit", OptionType.INTEGER).withDefault(-1);
         spec.addOption("nakTimeout", OptionType.INTEGER).withDefault(5000);
         spec.addOption("immediateNak", OptionType.BOOLEAN).withDefault(true);
         spec.addOption("archiveRetrievalLimit", OptionType.INTEGER).withDefault(100);
+        spec.addOption("diskBackedReception", OptionType.BOOLEAN).withDefault(false);
+        spec.addOption("receptionDirectory", OptionType.STRING);
         spec.addOption("receiverFaultHandlers", OptionType.MAP).withSpec(Spec.ANY);
         spec.addOption("senderFaultHandlers", OptionType.MAP).withSpec(Spec.ANY);
 
@@ -235,7 +242,7 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
                 if (c.containsKey("bucket")) {
                     bucket = getBucket(c.getString("bucket"), c.getBoolean("global", true));
                 }
-                EntityConf ent = new EntityConf(id, name, bucket);
+                EntityConf ent = new EntityConf(id, name, bucket, c.getLong("maxUplinkRate", -1));
                 remoteEntities.put(name, ent);
             }
         }
@@ -347,7 +354,8 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
 
     private CfdpOutgoingTransfer processPutRequest(PutRequest request) {
         CfdpOutgoingTransfer transfer = new CfdpOutgoingTransfer(yamcsInstance, idSeq.next(), executor, request,
-                cfdpOut, config, eventProducer, this, senderFaultHandlers);
+                cfdpOut, config, eventProducer, this, senderFaultHandlers,
+                getPduScheduler(request.getDestinationId()));
 
         dbStream.emitTuple(CompletedTransfer.toInitialTuple(transfer));
 
@@ -362,6 +370,25 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
         return transfer;
     }
 
+    /**
+     * If the uplink rate is configured for the destination entity or for the service, the transfers towards the same
+     * destination share that rate. Otherwise each transfer sends one PDU of maximum size every sleepBetweenPdus
+     * milliseconds.
+     */
+    private PduScheduler getPduScheduler(long destinationId) {
+        int maxPduSize = config.getInt("maxPduSize", 512);
+        EntityConf remoteEntity = getRemoteEntity(destinationId);
+        if ((remoteEntity == null || remoteEntity.maxUplinkRate <= 0) && !config.containsKey("maxUplinkRate")) {
+            long rate = maxPduSize * 1000L / Math.max(1, config.getInt("sleepBetweenPdus", 500));
+            return new PduScheduler(executor, Math.max(1, rate), maxPduSize);
+        }
+        return pduSchedulers.computeIfAbsent(destinationId, id -> {
+            long rate = remoteEntity != null && remoteEntity.maxUplinkRate > 0 ? remoteEntity.maxUplinkRate
+                    : config.getLong("maxUplinkRate");
+            return new PduScheduler(executor, Math.max(1, rate), maxPduSize);
+        });
+    }
+
     private OngoingCfdpTransfer processPauseRequest(PauseRequest request) {
         OngoingCfdpTransfer transfer = request.getTransfer();
         transfer.pauseTransfer();
@@ -492,12 +519,23 @@ public class CfdpService extends AbstractYamcsService implements StreamSubscribe
 
     @Override
     protected void doStop() {
-        for (OngoingCfdpTransfer trsf : pendingTransfers.values()) {
-            if (trsf.state == TransferState.RUNNING || trsf.state == TransferState.PAUSED) {
-                trsf.failTransfer("service shutdown");
+        // the transfers are failed on the executor such that the incoming ones can safely close their data files
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor.execute(() -> {
+            for (OngoingCfdpTransfer trsf : pendingTransfers.values()) {
+                if (trsf.state == TransferState.RUNNING || trsf.state == TransferState.PAUSED) {
+                    trsf.failTransfer("service shutdown");
+                }
             }
-        }
+        });
         executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("CFDP transfers still running 10 seconds after stop");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         notifyStopped();
     }
 
@@ -19,23 +19,44 @@ public class ChecksumCalculator {
      * 
      */
     static long calculateChecksum(byte[] data, long fileOffset, long length) {
-        int k = (int) (fileOffset & 3);
+        return calculateChecksum(data, 0, fileOffset, (int) length);
+    }
+
+    /**
+     * Same as {@link #calculateChecksum(byte[], long, long)} for the data starting at dataOffset in the buffer.
+     * <p>
+     * The bytes are added four at a time once the position in the file is aligned.
+     */
+    static long calculateChecksum(byte[] data, int dataOffset, long fileOffset, int length) {
         long checksum = 0;
-        int i = 0;
+        int i = dataOffset;
+        int end = dataOffset + length;
+        int k = (int) (fileOffset & 3);
         long x = 0;
-        while (i < length) {
-            x = (x << 8) + (data[i] & 0xFF);
-            i++;
-            k++;
-            if (k == 4) {
-                checksum += x;
-                x = 0;
-                k = 0;
+        if (k != 0) {
+            while (k < 4 && i < end) {
+                x = (x << 8) + (data[i++] & 0xFF);
+                k++;
+            }
+            if (k < 4) { // the data ends before the first word boundary
+                return (x << ((4 - k) << 3)) & 0xFFFFFFFFl;
             }
+            checksum += x;
+            x = 0;
+            k = 0;
+        }
+        while (end - i >= 4) {
+            checksum += ((data[i] & 0xFFl) << 24) + ((data[i + 1] & 0xFF) << 16) + ((data[i + 2] & 0xFF) << 8)
+                    + (data[i + 3] & 0xFF);
+            i += 4;
+        }
+        while (i < end) {
+            x = (x << 8) + (data[i++] & 0xFF);
+            k++;
+        }
+        if (k > 0) {
+            checksum += x << ((4 - k) << 3);
         }
-
-        x = x << ((4 - k)<<3);
-        checksum += x;
 
         return checksum & 0xFFFFFFFFl;
     }
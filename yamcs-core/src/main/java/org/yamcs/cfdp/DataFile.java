@@ -1,5 +1,7 @@
 package org.yamcs.cfdp;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -8,10 +10,17 @@ import java.util.List;
 import org.yamcs.cfdp.pdu.SegmentRequest;
 import org.yamcs.utils.ByteArray;
 
-public class DataFile {
+/**
+ * Incoming file kept in memory as a list of non overlapping segments sorted by offset.
+ * <p>
+ * The received size and the checksum are updated as the segments are added.
+ */
+public class DataFile implements IncomingDataFile {
     private List<DataFileSegment> dataFileSegments = new ArrayList<DataFileSegment>();
     // -1 means size unknown or unbounded
     private long size = -1;
+    private long receivedSize;
+    private long checksum;
 
     public DataFile() {
         this.size = -1;
@@ -21,6 +30,7 @@ public class DataFile {
         this.size = size;
     }
 
+    @Override
     public void addSegment(DataFileSegment newseg) {
         if (size != -1 && newseg.getLength() + newseg.getOffset() > size) {
             throw new IllegalArgumentException("Segment falls beyond the end of the file");
@@ -37,14 +47,14 @@ public class DataFile {
                 // add one small segment with the delta
                 byte[] data = Arrays.copyOfRange(newseg.getData(), seg1.getLength(), newseg.getLength());
                 DataFileSegment seg3 = new DataFileSegment(seg1.getOffset() + seg1.getLength(), data);
-                dataFileSegments.add(idx + 1, seg3);
+                add(idx + 1, seg3);
             }
         } else { // the segment does not start at the same offset with an existing segment
                  // but it might still overlap with one
             idx = -(idx + 1);
             if (idx == dataFileSegments.size()) {
                 if (dataFileSegments.size() == 0) {
-                    dataFileSegments.add(newseg);
+                    add(0, newseg);
                 } else {
                     DataFileSegment prevseg = dataFileSegments.get(idx - 1);
                     if (prevseg.getOffset() + prevseg.getLength() > newseg.getOffset()) {
@@ -53,9 +63,9 @@ public class DataFile {
 
                         byte[] data = Arrays.copyOfRange(newseg.getData(), from, newseg.getLength());
                         DataFileSegment seg2 = new DataFileSegment(prevseg.getOffset() + prevseg.getLength(), data);
-                        dataFileSegments.add(seg2);
+                        add(idx, seg2);
                     } else {
-                        dataFileSegments.add(newseg);
+                        add(idx, newseg);
                     }
                 }
             } else {
@@ -65,9 +75,9 @@ public class DataFile {
                         int nl = (int) (nextseg.getOffset() - newseg.getOffset());
                         byte[] data = Arrays.copyOfRange(newseg.getData(), 0, nl);
                         DataFileSegment seg1 = new DataFileSegment(newseg.getOffset(), data);
-                        dataFileSegments.add(0, seg1);
+                        add(0, seg1);
                     } else {
-                        dataFileSegments.add(0, newseg);
+                        add(0, newseg);
                     }
                 } else {
                     DataFileSegment prevseg = dataFileSegments.get(idx - 1);
@@ -89,16 +99,22 @@ public class DataFile {
                     }
 
                     if (from == 0 && to == newseg.getLength()) {
-                        dataFileSegments.add(idx, newseg);
+                        add(idx, newseg);
                     } else {
                         byte[] data = Arrays.copyOfRange(newseg.getData(), from, to);
-                        dataFileSegments.add(idx, new DataFileSegment(offset, data));
+                        add(idx, new DataFileSegment(offset, data));
                     }
                 }
             }
         }
     }
 
+    private void add(int idx, DataFileSegment seg) {
+        dataFileSegments.add(idx, seg);
+        receivedSize += seg.getLength();
+        checksum += ChecksumCalculator.calculateChecksum(seg);
+    }
+
     public List<SegmentRequest> getMissingChunks() {
         return getMissingChunks(true);
     }
@@ -112,6 +128,7 @@ public class DataFile {
      * @param includeEnd
      * @return
      */
+    @Override
     public List<SegmentRequest> getMissingChunks(boolean includeEnd) {
         List<SegmentRequest> toReturn = new ArrayList<SegmentRequest>();
         long startOffset = 0;
@@ -134,8 +151,9 @@ public class DataFile {
 
     // returns the amount of bytes received of this Data Files.
     // Missing intermediate chunks are not yet received and are therefore not counted
+    @Override
     public long getReceivedSize() {
-        return this.dataFileSegments.stream().mapToLong(DataFileSegment::getLength).sum();
+        return receivedSize;
     }
 
     public byte[] getData() {
@@ -146,6 +164,16 @@ public class DataFile {
         return baos.toArray();
     }
 
+    @Override
+    public InputStream newInputStream() {
+        return new ByteArrayInputStream(getData());
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
     List<DataFileSegment> getSegments() {
         return dataFileSegments;
     }
@@ -154,6 +182,7 @@ public class DataFile {
      * 
      * @return true if all the data has been received. If size is not known return false.
      */
+    @Override
     public boolean isComplete() {
         if (size < 0) {
             return false;
@@ -171,11 +200,8 @@ public class DataFile {
         return true;
     }
 
+    @Override
     public long getChecksum() {
-        long checksum = 0;
-        for (DataFileSegment segment : this.dataFileSegments) {
-            checksum += ChecksumCalculator.calculateChecksum(segment);
-        }
         return checksum & 0xFFFFFFFFl;
     }
 
@@ -184,6 +210,7 @@ public class DataFile {
      *
      * @return
      */
+    @Override
     public long endOfFileOffset() {
         if (!dataFileSegments.isEmpty()) {
             DataFileSegment dfs = dataFileSegments.get(dataFileSegments.size() - 1);
@@ -193,6 +220,7 @@ public class DataFile {
         }
     }
 
+    @Override
     public void setSize(long size) {
         long eof = endOfFileOffset();
         if (size < 0 || size < eof) {
@@ -201,6 +229,7 @@ public class DataFile {
         this.size = size;
     }
 
+    @Override
     public long getSize() {
         return size;
     }
@@ -0,0 +1,205 @@
+package org.yamcs.cfdp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.yamcs.cfdp.pdu.SegmentRequest;
+import org.yamcs.logging.Log;
+
+/**
+ * Incoming file whose data is written to a temporary file as the segments are received, such that the memory used does
+ * not depend on the file size.
+ * <p>
+ * The received ranges are kept in a sorted map start offset -&gt; end offset of non overlapping and non adjacent
+ * intervals; only the parts of a new segment which fall in between the existing intervals are written. The checksum
+ * being a sum of 32 bit words, it is updated with each newly written part and is available without reading back the
+ * data when the EOF is received.
+ * <p>
+ * The segments received out of order are written at their offset in the file, leaving a hole which on most file systems
+ * does not take space until it is filled.
+ */
+public class DiskDataFile implements IncomingDataFile {
+    static final Log log = new Log(DiskDataFile.class);
+
+    private final Path path;
+    private final FileChannel channel;
+    // start offset -> end offset of the received data
+    private final TreeMap<Long, Long> ranges = new TreeMap<>();
+    // -1 means size unknown or unbounded
+    private long size;
+    private long receivedSize;
+    private long checksum;
+
+    /**
+     * Creates the temporary file in the given directory
+     *
+     * @param dir
+     *            - directory where the temporary file is created
+     * @param size
+     *            - the file size or -1 if not known
+     */
+    public DiskDataFile(Path dir, long size) throws IOException {
+        this.size = size;
+        Files.createDirectories(dir);
+        path = Files.createTempFile(dir, "cfdp-", ".part");
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException
+     *             if the data cannot be written to the temporary file
+     */
+    @Override
+    public void addSegment(DataFileSegment segment) {
+        long start = segment.getOffset();
+        long end = segment.getEndOffset();
+        if (size != -1 && end > size) {
+            throw new IllegalArgumentException("Segment falls beyond the end of the file");
+        }
+        if (start == end) {
+            return;
+        }
+        try {
+            // write the parts not yet received
+            long pos = start;
+            Map.Entry<Long, Long> prev = ranges.floorEntry(pos);
+            if (prev != null && prev.getValue() > pos) {
+                pos = prev.getValue();
+            }
+            while (pos < end) {
+                Map.Entry<Long, Long> next = ranges.ceilingEntry(pos);
+                long gapEnd = next == null ? end : Math.min(end, next.getKey());
+                if (gapEnd > pos) {
+                    write(segment, pos, gapEnd);
+                }
+                if (next == null) {
+                    break;
+                }
+                pos = next.getValue();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // merge the segment with the ranges it overlaps or touches
+        long mstart = start;
+        long mend = end;
+        Map.Entry<Long, Long> prev = ranges.floorEntry(start);
+        if (prev != null && prev.getValue() >= start) {
+            mstart = prev.getKey();
+            mend = Math.max(mend, prev.getValue());
+            ranges.remove(prev.getKey());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(mstart)) != null && next.getKey() <= mend) {
+            mend = Math.max(mend, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(mstart, mend);
+    }
+
+    private void write(DataFileSegment segment, long from, long to) throws IOException {
+        int dataOffset = (int) (from - segment.getOffset());
+        int length = (int) (to - from);
+        ByteBuffer buf = ByteBuffer.wrap(segment.getData(), dataOffset, length);
+        long pos = from;
+        while (buf.hasRemaining()) {
+            pos += channel.write(buf, pos);
+        }
+        receivedSize += length;
+        checksum += ChecksumCalculator.calculateChecksum(segment.getData(), dataOffset, from, length);
+    }
+
+    @Override
+    public List<SegmentRequest> getMissingChunks(boolean includeEnd) {
+        if (includeEnd && size < 0) {
+            throw new IllegalArgumentException("Size is not known, cannot pass includeEnd=true");
+        }
+        List<SegmentRequest> toReturn = new ArrayList<>();
+        long startOffset = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            if (range.getKey() != startOffset) {
+                toReturn.add(new SegmentRequest(startOffset, range.getKey()));
+            }
+            startOffset = range.getValue();
+        }
+        if (startOffset != size && includeEnd) {
+            toReturn.add(new SegmentRequest(startOffset, size));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public long getReceivedSize() {
+        return receivedSize;
+    }
+
+    @Override
+    public boolean isComplete() {
+        // the ranges are not overlapping and within the file
+        return size >= 0 && receivedSize == size;
+    }
+
+    @Override
+    public long getChecksum() {
+        return checksum & 0xFFFFFFFFl;
+    }
+
+    @Override
+    public long endOfFileOffset() {
+        return ranges.isEmpty() ? -1 : ranges.lastEntry().getValue();
+    }
+
+    @Override
+    public void setSize(long size) {
+        long eof = endOfFileOffset();
+        if (size < 0 || size < eof) {
+            throw new IllegalArgumentException("Invalid size");
+        }
+        this.size = size;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The missing segments (if any) are read as zeros.
+     */
+    @Override
+    public InputStream newInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    /**
+     * Closes and removes the temporary file
+     */
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to remove the temporary file {}", path, e);
+        }
+    }
+
+    Path getPath() {
+        return path;
+    }
+}
@@ -6,11 +6,18 @@ public class EntityConf {
     final long id;
     final Bucket bucket;
     final String name;
+    // bytes/second, -1 if not configured
+    final long maxUplinkRate;
 
     public EntityConf(long id, String name, Bucket bucket) {
+        this(id, name, bucket, -1);
+    }
+
+    public EntityConf(long id, String name, Bucket bucket, long maxUplinkRate) {
         this.id = id;
         this.name = name;
         this.bucket = bucket;
+        this.maxUplinkRate = maxUplinkRate;
     }
 
     public String toString() {
@@ -0,0 +1,73 @@
+package org.yamcs.cfdp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.yamcs.cfdp.pdu.SegmentRequest;
+
+/**
+ * The file being received by a {@link CfdpIncomingTransfer}: keeps track of the segments received, of the checksum and
+ * stores the data until the file is saved in the bucket.
+ * <p>
+ * The implementations are not thread safe.
+ */
+public interface IncomingDataFile {
+
+    /**
+     * Adds the segment to the file. The parts of the segment overlapping the data already received are ignored.
+     * 
+     * @throws IllegalArgumentException
+     *             if the segment falls beyond the end of the file
+     */
+    void addSegment(DataFileSegment segment);
+
+    /**
+     * Returns the missing data segments.
+     * <p>
+     * includeEnd = false is used when the file has been partially transfer to not return a segment covering the end of
+     * the file
+     */
+    List<SegmentRequest> getMissingChunks(boolean includeEnd);
+
+    /**
+     * 
+     * @return the number of bytes received; missing intermediate chunks are not counted
+     */
+    long getReceivedSize();
+
+    /**
+     * 
+     * @return true if all the data has been received. If size is not known return false.
+     */
+    boolean isComplete();
+
+    /**
+     * 
+     * @return the modular checksum of the data received
+     */
+    long getChecksum();
+
+    /**
+     * return end of the last segment or -1 if not known
+     */
+    long endOfFileOffset();
+
+    void setSize(long size);
+
+    /**
+     * 
+     * @return the file size or -1 if not known
+     */
+    long getSize();
+
+    /**
+     * Returns a stream for reading the data received. The caller has to close the stream.
+     */
+    InputStream newInputStream() throws IOException;
+
+    /**
+     * Releases the resources (e.g. the temporary file) used by the file; called when the transfer is finished.
+     */
+    void close();
+}
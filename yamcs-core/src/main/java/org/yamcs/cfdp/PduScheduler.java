@@ -0,0 +1,102 @@
+package org.yamcs.cfdp;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces the PDUs of the outgoing transfers towards one remote entity.
+ * <p>
+ * The uplink rate is limited with a token bucket: each PDU consumes as many tokens as its length in bytes and the
+ * tokens are refilled at the configured rate (bytes/second), up to {@value #BURST_MILLIS} milliseconds worth of data
+ * (but at least one PDU). The bucket may go into debt with the last PDU sent, the next one being sent only when the
+ * debt has been paid back. Like this the PDUs are sent in small bursts, which keeps the scheduling overhead low at high
+ * rates while not exceeding the rate on average.
+ * <p>
+ * The transfers having something to send are served in round robin, one PDU at a time, such that many concurrent
+ * transfers share the link fairly. A transfer leaves the round robin when it has nothing more to send and it is added
+ * back by calling {@link #schedule(CfdpOutgoingTransfer)}.
+ * <p>
+ * This class works with one thread executor; except {@link #schedule(CfdpOutgoingTransfer)}, all methods run on the
+ * executor thread.
+ */
+public class PduScheduler {
+    static final int BURST_MILLIS = 20;
+
+    final ScheduledThreadPoolExecutor executor;
+    // bytes per second
+    final long rate;
+    final long burst;
+
+    private final ArrayDeque<CfdpOutgoingTransfer> active = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefill;
+    private ScheduledFuture<?> future;
+
+    /**
+     *
+     * @param executor
+     *            - the executor on which the transfers run
+     * @param rate
+     *            - the maximum uplink rate in bytes/second
+     * @param maxPduSize
+     *            - the maximum size of the PDUs; the bucket can always hold at least one PDU
+     */
+    public PduScheduler(ScheduledThreadPoolExecutor executor, long rate, int maxPduSize) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Invalid rate " + rate);
+        }
+        this.executor = executor;
+        this.rate = rate;
+        this.burst = Math.max(maxPduSize, rate * BURST_MILLIS / 1000);
+        this.tokens = burst;
+        this.lastRefill = nanoTime();
+    }
+
+    /**
+     * Adds the transfer to the round robin if it is not already part of it. The transfer's
+     * {@link CfdpOutgoingTransfer#sendNextPdu()} will be called when its turn comes.
+     * <p>
+     * Can be called from any thread.
+     */
+    public void schedule(CfdpOutgoingTransfer transfer) {
+        executor.execute(() -> {
+            if (!active.contains(transfer)) {
+                active.add(transfer);
+            }
+            if (future == null) {
+                run();
+            }
+        });
+    }
+
+    private void run() {
+        future = null;
+        refill();
+        while (tokens > 0 && !active.isEmpty()) {
+            CfdpOutgoingTransfer transfer = active.poll();
+            int n = transfer.sendNextPdu();
+            if (n >= 0) {
+                tokens -= n;
+                active.add(transfer);
+            }
+        }
+        if (!active.isEmpty()) {
+            // wait until the debt is paid back
+            long delayNanos = (long) ((1 - tokens) * 1e9 / rate);
+            future = executor.schedule(this::run, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void refill() {
+        long now = nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * (rate / 1e9));
+        lastRefill = now;
+    }
+
+    // overridden in unit tests
+    long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -1,9 +1,12 @@
 package org.yamcs.cfdp;
 
 import org.yamcs.yarch.Bucket;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties;
 
 /**
  * A Put.request is a primitive that requests data delivery from a source to a destination
+ * <p>
+ * The data is either given in the request or read from the bucket while the file is being sent.
  * 
  * @author ddw
  *
@@ -14,16 +17,38 @@ public class PutRequest extends CfdpRequest {
     private long destinationId;
     private String targetPath;
     private byte[] fileData;
+    private long fileLength;
+    private ObjectProperties objectProperties;
     private String objectName;
     private Bucket bucket;
     private boolean overwrite;
     private boolean createpath;
-    private long checksum;
     private boolean acknowledged;
     private boolean closureRequested = false;
 
     public PutRequest(long sourceId, long destinationId, String objectName, String targetPath, boolean overwrite,
             boolean acknowledged, boolean closureRequested, boolean createpath, Bucket b, byte[] data) {
+        this(sourceId, destinationId, objectName, targetPath, overwrite, acknowledged, closureRequested, createpath, b);
+        this.fileData = data;
+        this.fileLength = data.length;
+    }
+
+    /**
+     * Creates a request for sending the object from the bucket without retrieving its data beforehand.
+     * 
+     * @param props
+     *            - the properties of the object when the request is made; the transfer fails if the object is replaced
+     *            while being sent
+     */
+    public PutRequest(long sourceId, long destinationId, String objectName, String targetPath, boolean overwrite,
+            boolean acknowledged, boolean closureRequested, boolean createpath, Bucket b, ObjectProperties props) {
+        this(sourceId, destinationId, objectName, targetPath, overwrite, acknowledged, closureRequested, createpath, b);
+        this.objectProperties = props;
+        this.fileLength = props.getSize();
+    }
+
+    private PutRequest(long sourceId, long destinationId, String objectName, String targetPath, boolean overwrite,
+            boolean acknowledged, boolean closureRequested, boolean createpath, Bucket b) {
         super(CfdpRequestType.PUT);
         this.sourceId = sourceId;
         this.destinationId = destinationId;
@@ -32,10 +57,8 @@ public class PutRequest extends CfdpRequest {
         this.overwrite = overwrite;
         this.createpath = createpath;
         this.bucket = b;
-        this.fileData = data;
         this.acknowledged = acknowledged;
         this.closureRequested = closureRequested;
-        this.checksum = ChecksumCalculator.calculateChecksum(data);
     }
 
     public long getSourceId() {
@@ -54,18 +77,26 @@ public class PutRequest extends CfdpRequest {
         return targetPath;
     }
 
-    public int getFileLength() {
-        return fileData.length;
-    }
-
-    public long getChecksum() {
-        return this.checksum;
+    public long getFileLength() {
+        return fileLength;
     }
 
+    /**
+     * 
+     * @return the data to be sent or null if the data has to be read from the bucket
+     */
     public byte[] getFileData() {
         return fileData;
     }
 
+    /**
+     * 
+     * @return the properties of the object to be read from the bucket or null if the data is given in the request
+     */
+    public ObjectProperties getObjectProperties() {
+        return objectProperties;
+    }
+
     public Bucket getBucket() {
         return bucket;
     }
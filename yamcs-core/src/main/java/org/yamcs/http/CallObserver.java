@@ -50,8 +50,10 @@ public class CallObserver implements Observer<Message> {
             completeRequest(httpResponse);
         } else if (message instanceof HttpBody) {
             HttpBody responseBody = (HttpBody) message;
-            ByteBuf buf = Unpooled.wrappedBuffer(responseBody.getData().toByteArray());
-            HttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, OK, buf);
+            // wraps the data without copying it
+            ByteBuf buf = Unpooled.wrappedBuffer(responseBody.getData().asReadOnlyByteBuffer());
+            HttpResponse httpResponse = new DefaultFullHttpResponse(HTTP_1_1, ctx.getResponseStatus(), buf);
+            httpResponse.headers().add(ctx.getResponseHeaders());
             httpResponse.headers().set(HttpHeaderNames.CONTENT_TYPE, responseBody.getContentType());
             httpResponse.headers().set(HttpHeaderNames.CONTENT_LENGTH, buf.readableBytes());
             if (responseBody.hasFilename()) {
@@ -126,6 +126,7 @@ public class HttpServer extends AbstractYamcsService {
     private ProtobufRegistry protobufRegistry = new ProtobufRegistry();
     private JsonFormat.Parser jsonParser;
     private JsonFormat.Printer jsonPrinter;
+    private SharedPayloads sharedPayloads;
 
     private TokenStore tokenStore = new TokenStore();
 
@@ -345,6 +346,7 @@ public class HttpServer extends AbstractYamcsService {
 
         jsonParser = JsonFormat.parser().usingTypeRegistry(typeRegistry);
         jsonPrinter = JsonFormat.printer().usingTypeRegistry(typeRegistry);
+        sharedPayloads = new SharedPayloads(jsonPrinter);
 
         // Sort in a way that increases chances of a good URI match
         Collections.sort(routes);
@@ -439,6 +441,10 @@ public class HttpServer extends AbstractYamcsService {
         return jsonPrinter;
     }
 
+    SharedPayloads getSharedPayloads() {
+        return sharedPayloads;
+    }
+
     public CorsConfig getCorsConfig() {
         return corsConfig;
     }
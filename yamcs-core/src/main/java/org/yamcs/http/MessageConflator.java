@@ -0,0 +1,30 @@
+package org.yamcs.http;
+
+import com.google.protobuf.Message;
+
+/**
+ * Merges the messages of a WebSocket call which cannot be sent because the channel is not writable.
+ * <p>
+ * When a call has a conflator, the messages are not dropped while the client is slow but merged into one message which
+ * is sent as soon as the channel becomes writable again. This is suitable for calls where only the latest state is of
+ * interest (for example the latest value of each subscribed parameter).
+ * <p>
+ * The methods are called under the lock of the observer so the implementations do not need to be thread safe.
+ */
+public interface MessageConflator {
+
+    /**
+     * Merges the message with the ones already pending.
+     */
+    void add(Message message);
+
+    /**
+     * @return true if there is no message pending
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns a message combining all the pending messages, and resets the conflator to empty.
+     */
+    Message drain();
+}
@@ -14,11 +14,23 @@ import com.google.protobuf.util.JsonFormat;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpChunkedInput;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
 
 public class RouteContext extends Context {
 
@@ -35,6 +47,10 @@ public class RouteContext extends Context {
 
     private int maxBodySize;
 
+    // used instead of 200 OK for the HttpBody responses
+    private HttpResponseStatus responseStatus = HttpResponseStatus.OK;
+    private final HttpHeaders responseHeaders = new DefaultHttpHeaders();
+
     RouteContext(HttpServer httpServer, ChannelHandlerContext nettyContext, User user, HttpRequest nettyRequest,
             Route route, Matcher regexMatch) {
         super(httpServer, nettyContext, user, route.getApi());
@@ -89,6 +105,63 @@ public class RouteContext extends Context {
         return maxBodySize;
     }
 
+    /**
+     * Sets the status of the response for the RPC calls returning an HttpBody. Like {@link #nettyRequest} this is only
+     * for HTTP-specific functionalities not covered by our RPC implementation (e.g. range requests).
+     */
+    public void setResponseStatus(HttpResponseStatus responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public HttpResponseStatus getResponseStatus() {
+        return responseStatus;
+    }
+
+    /**
+     * Headers added to the response for the RPC calls returning an HttpBody.
+     */
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * Sends the response of an RPC call returning an HttpBody whose data is read chunk by chunk from the input instead
+     * of being held in memory. The status and headers set on this context are used as for the other HttpBody
+     * responses.
+     * <p>
+     * The observer of the call has to be completed without passing it any message.
+     */
+    public void sendChunkedResponse(String contentType, long contentLength, ChunkedInput<ByteBuf> input) {
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, responseStatus);
+        response.headers().add(responseHeaders);
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        HttpUtil.setContentLength(response, contentLength);
+
+        // the writes of the routes start before this handler, the chunked writer has to be there as well
+        ChannelPipeline pipeline = nettyContext.pipeline();
+        if (pipeline.get(ChunkedWriteHandler.class) == null) {
+            pipeline.addBefore(nettyContext.name(), null, new ChunkedWriteHandler());
+        }
+        reportStatusCode(responseStatus.code());
+        nettyContext.write(response);
+        ChannelFuture cf = nettyContext.writeAndFlush(new HttpChunkedInput(input));
+        cf.addListener(l -> {
+            if (l.isSuccess()) {
+                addTransferredSize(contentLength);
+                requestFuture.complete(null);
+            } else {
+                log.error("Network error", l.cause());
+                requestFuture.completeExceptionally(l.cause());
+            }
+        });
+        if (!HttpUtil.isKeepAlive(nettyRequest)) {
+            cf.addListener(ChannelFutureListener.CLOSE);
+        } else {
+            // the client cannot know where the response ends if not all the data could be sent
+            cf.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+    }
+
     public String getURI() {
         return nettyRequest.uri();
     }
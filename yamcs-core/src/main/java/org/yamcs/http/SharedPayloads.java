@@ -0,0 +1,95 @@
+package org.yamcs.http;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.yamcs.protobuf.ServerMessage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.protobuf.Any;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+
+/**
+ * Keeps the encoded form of the messages sent to multiple WebSocket calls, such that each message is encoded only
+ * once, whatever the number of subscribers.
+ * <p>
+ * The messages are identified by their instance (the cache uses weak keys compared by identity) so the topics using
+ * this have to pass the same message instance to all the subscribers.
+ */
+class SharedPayloads {
+
+    private final Cache<Message, Payload> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(1000)
+            .build();
+    private final JsonFormat.Printer jsonPrinter;
+
+    SharedPayloads(JsonFormat.Printer jsonPrinter) {
+        this.jsonPrinter = jsonPrinter;
+    }
+
+    /**
+     * Returns the protobuf encoding of the <code>data</code> field of a {@link ServerMessage} containing the message,
+     * including the field tag and length.
+     */
+    byte[] getProtobufData(Message message) {
+        Payload payload = getPayload(message);
+        byte[] b = payload.protobuf;
+        if (b == null) {
+            Any any = payload.getAny(message);
+            b = new byte[CodedOutputStream.computeMessageSize(ServerMessage.DATA_FIELD_NUMBER, any)];
+            CodedOutputStream cos = CodedOutputStream.newInstance(b);
+            try {
+                cos.writeMessage(ServerMessage.DATA_FIELD_NUMBER, any);
+                cos.checkNoSpaceLeft();
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // cannot happen when writing to an array of the right size
+            }
+            payload.protobuf = b;
+        }
+        return b;
+    }
+
+    /**
+     * Returns the JSON representation of the message packed in an {@link Any}, as it appears in the
+     * <code>data</code> field of a {@link ServerMessage}.
+     */
+    String getJsonData(Message message) throws InvalidProtocolBufferException {
+        Payload payload = getPayload(message);
+        String json = payload.json;
+        if (json == null) {
+            json = jsonPrinter.print(payload.getAny(message));
+            payload.json = json;
+        }
+        return json;
+    }
+
+    private Payload getPayload(Message message) {
+        try {
+            return cache.get(message, Payload::new);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Does not reference the message, this would prevent the weak key from being collected
+    static class Payload {
+        private volatile Any any;
+        volatile byte[] protobuf;
+        volatile String json;
+
+        // computed more than once in case of concurrent access, which is harmless
+        Any getAny(Message message) {
+            Any a = any;
+            if (a == null) {
+                a = Any.pack(message, HttpServer.TYPE_URL_PREFIX);
+                any = a;
+            }
+            return a;
+        }
+    }
+}
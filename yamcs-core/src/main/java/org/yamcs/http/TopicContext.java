@@ -24,6 +24,9 @@ public class TopicContext extends Context {
 
     private Set<ContextListener> listeners = new HashSet<>();
 
+    private volatile MessageConflator conflator;
+    private volatile boolean sharedPayloads;
+
     TopicContext(HttpServer httpServer, ChannelHandlerContext nettyContext, User user, ClientMessage clientMessage,
             Topic topic) {
         super(httpServer, nettyContext, user, topic.getApi());
@@ -64,6 +67,30 @@ public class TopicContext extends Context {
         return topic;
     }
 
+    /**
+     * Sets a conflator used to merge the messages of this call while the WebSocket channel is not writable. Without a
+     * conflator, these messages are dropped.
+     */
+    public void setConflator(MessageConflator conflator) {
+        this.conflator = conflator;
+    }
+
+    public MessageConflator getConflator() {
+        return conflator;
+    }
+
+    /**
+     * Indicates that the messages of this call are also sent to other calls, as the same message instances. Their
+     * encoding is then done only once and shared between all the calls.
+     */
+    public void setSharedPayloads(boolean sharedPayloads) {
+        this.sharedPayloads = sharedPayloads;
+    }
+
+    public boolean hasSharedPayloads() {
+        return sharedPayloads;
+    }
+
     public void close() {
         cancel(null);
     }
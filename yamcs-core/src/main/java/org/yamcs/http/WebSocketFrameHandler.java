@@ -21,6 +21,7 @@ import org.yamcs.security.User;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.protobuf.Any;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
@@ -28,7 +29,10 @@ import com.google.protobuf.Message;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.WriteBufferWaterMark;
 import io.netty.handler.codec.http.HttpRequest;
@@ -55,8 +59,12 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
     private WriteBufferWaterMark writeBufferWaterMark;
 
     private List<TopicContext> contexts = new ArrayList<>();
+    private List<WebSocketObserver> observers = new ArrayList<>();
     private Map<Integer, Observer<Message>> clientObserversByCall = new HashMap<>();
 
+    // Only accessed from the event loop
+    private boolean flushScheduled;
+
     public WebSocketFrameHandler(HttpServer httpServer, HttpRequest req, User user, int maxDrops,
             WriteBufferWaterMark writeBufferWaterMark) {
         this.httpServer = httpServer;
@@ -222,6 +230,7 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
         });
 
         contexts.add(ctx);
+        observers.add(observer);
 
         if (ctx.isClientStreaming()) {
             Observer<Message> clientObserver = topic.callMethod(ctx, observer);
@@ -256,11 +265,90 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
             try (ByteBufOutputStream bufOut = new ByteBufOutputStream(buf)) {
                 serverMessage.writeTo(bufOut);
             }
-            nettyContext.channel().writeAndFlush(new BinaryWebSocketFrame(buf));
+            write(nettyContext.channel(), new BinaryWebSocketFrame(buf));
         } else {
             String json = httpServer.getJsonPrinter().print(serverMessage);
-            nettyContext.channel().writeAndFlush(new TextWebSocketFrame(json));
+            write(nettyContext.channel(), new TextWebSocketFrame(json));
+        }
+    }
+
+    /**
+     * Writes a {@link ServerMessage} whose data is shared with other calls. The encoding of the data is taken from
+     * {@link SharedPayloads}, only the envelope is encoded for this call.
+     */
+    void writeSharedMessage(ChannelHandlerContext nettyContext, String type, int call, int seq, Message data)
+            throws IOException {
+        SharedPayloads sharedPayloads = httpServer.getSharedPayloads();
+        if (protobuf) {
+            byte[] dataField = sharedPayloads.getProtobufData(data);
+            ByteBuf envelope = nettyContext.alloc().buffer();
+            try (ByteBufOutputStream bufOut = new ByteBufOutputStream(envelope)) {
+                CodedOutputStream out = CodedOutputStream.newInstance(bufOut);
+                // Same encoding as ServerMessage.writeTo, which skips the default values
+                if (!type.isEmpty()) {
+                    out.writeString(ServerMessage.TYPE_FIELD_NUMBER, type);
+                }
+                if (call != 0) {
+                    out.writeInt32(ServerMessage.CALL_FIELD_NUMBER, call);
+                }
+                if (seq != 0) {
+                    out.writeInt32(ServerMessage.SEQ_FIELD_NUMBER, seq);
+                }
+                out.flush();
+            }
+            ByteBuf buf = Unpooled.wrappedBuffer(envelope, Unpooled.wrappedBuffer(dataField));
+            write(nettyContext.channel(), new BinaryWebSocketFrame(buf));
+        } else {
+            StringBuilder json = new StringBuilder();
+            json.append("{\n  \"type\": \"").append(type).append("\"");
+            if (call != 0) {
+                json.append(",\n  \"call\": ").append(call);
+            }
+            if (seq != 0) {
+                json.append(",\n  \"seq\": ").append(seq);
+            }
+            json.append(",\n  \"data\": ").append(sharedPayloads.getJsonData(data)).append("\n}");
+            write(nettyContext.channel(), new TextWebSocketFrame(json.toString()));
+        }
+    }
+
+    /**
+     * Writes the frame without flushing it. A single flush is scheduled on the event loop after the frames written in
+     * the same event loop iteration, such that multiple frames can be sent with one system call.
+     */
+    private void write(Channel channel, WebSocketFrame frame) {
+        EventLoop eventLoop = channel.eventLoop();
+        if (eventLoop.inEventLoop()) {
+            channel.write(frame);
+            scheduleFlush(channel);
+        } else {
+            // The flush task has to be scheduled after the write, so both are done from the event loop
+            eventLoop.execute(() -> {
+                channel.write(frame);
+                scheduleFlush(channel);
+            });
+        }
+    }
+
+    private void scheduleFlush(Channel channel) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            channel.eventLoop().execute(() -> {
+                flushScheduled = false;
+                channel.flush();
+            });
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext nettyContext) throws Exception {
+        if (nettyContext.channel().isWritable()) {
+            observers.removeIf(WebSocketObserver::isCancelled);
+            for (WebSocketObserver observer : observers) {
+                observer.channelWritable();
+            }
         }
+        super.channelWritabilityChanged(nettyContext);
     }
 
     /**
@@ -277,6 +365,7 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
         log.info("Channel {} closed", remoteAddress);
         contexts.forEach(TopicContext::close);
         contexts.clear();
+        observers.clear();
     }
 
     private Topic matchTopic(String topicName) {
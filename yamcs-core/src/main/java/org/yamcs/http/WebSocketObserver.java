@@ -75,12 +75,55 @@ public class WebSocketObserver implements Observer<Message> {
             log.warn("Skipping frame because channel is not open");
             return;
         }
-        if (!ctx.nettyContext.channel().isWritable()) {
+
+        boolean writable = ctx.nettyContext.channel().isWritable();
+        MessageConflator conflator = ctx.getConflator();
+        if (conflator != null) {
+            synchronized (this) { // Keep the order between the conflated and the new messages
+                if (!writable || !conflator.isEmpty()) {
+                    conflator.add(message);
+                    if (!writable) {
+                        return; // Sent when the channel becomes writable
+                    }
+                    message = conflator.drain();
+                }
+                sendMessage(ctx.getTopic().getName(), message);
+            }
+            return;
+        }
+
+        if (!writable) {
             log.warn("Skipping frame because channel is not writable");
             return;
         }
 
-        sendMessage(ctx.getTopic().getName(), message);
+        if (ctx.hasSharedPayloads()) {
+            try {
+                frameHandler.writeSharedMessage(ctx.nettyContext, ctx.getTopic().getName(), ctx.getId(),
+                        messageCount, message);
+            } catch (IOException e) {
+                cancelCall(e.getMessage());
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            sendMessage(ctx.getTopic().getName(), message);
+        }
+    }
+
+    /**
+     * Called by the frame handler when the channel becomes writable again, to send the messages conflated in the
+     * meanwhile.
+     */
+    void channelWritable() {
+        MessageConflator conflator = ctx.getConflator();
+        if (conflator == null || cancelled) {
+            return;
+        }
+        synchronized (this) {
+            if (!conflator.isEmpty()) {
+                sendMessage(ctx.getTopic().getName(), conflator.drain());
+            }
+        }
     }
 
     private void sendMessage(String type, Message data) {
@@ -77,6 +77,9 @@ public class AlarmsApi extends AbstractAlarmsApi<Context> {
     private static final AlarmSeverity[] EVENT_ALARM_SEVERITY = new AlarmSeverity[8];
     public static Map<org.yamcs.alarms.AlarmNotificationType, AlarmNotificationType> protoNotificationType = new HashMap<>();
 
+    // The alarm notifications are converted once for all the subscribers
+    private MessageMemo<AlarmUpdate, AlarmData> alarmUpdates = new MessageMemo<>();
+
     static {
         PARAM_ALARM_SEVERITY[MonitoringResult.WATCH_VALUE] = AlarmSeverity.WATCH;
         PARAM_ALARM_SEVERITY[MonitoringResult.WARNING_VALUE] = AlarmSeverity.WARNING;
@@ -286,24 +289,26 @@ public class AlarmsApi extends AbstractAlarmsApi<Context> {
 
         boolean sendDetail = true;
 
+        MessageMemo.enableSharedPayloads(ctx);
         AlarmListener listener = new AlarmListener() {
 
             @Override
             public void notifyUpdate(org.yamcs.alarms.AlarmNotificationType notificationType, ActiveAlarm activeAlarm) {
                 AlarmNotificationType type = protoNotificationType.get(notificationType);
-                AlarmData alarmData = toAlarmData(type, activeAlarm, sendDetail);
+                AlarmData alarmData = toSharedAlarmData(type, activeAlarm, sendDetail);
                 observer.next(alarmData);
             }
 
             @Override
             public void notifySeverityIncrease(ActiveAlarm activeAlarm) {
-                AlarmData alarmData = toAlarmData(AlarmNotificationType.SEVERITY_INCREASED, activeAlarm, sendDetail);
+                AlarmData alarmData = toSharedAlarmData(AlarmNotificationType.SEVERITY_INCREASED, activeAlarm,
+                        sendDetail);
                 observer.next(alarmData);
             }
 
             @Override
             public void notifyValueUpdate(ActiveAlarm activeAlarm) {
-                AlarmData alarmData = toAlarmData(AlarmNotificationType.VALUE_UPDATED, activeAlarm, sendDetail);
+                AlarmData alarmData = toSharedAlarmData(AlarmNotificationType.VALUE_UPDATED, activeAlarm, sendDetail);
                 observer.next(alarmData);
             }
         };
@@ -313,7 +318,7 @@ public class AlarmsApi extends AbstractAlarmsApi<Context> {
         });
         for (AlarmServer<?, ?> alarmServer : alarmServers) {
             for (ActiveAlarm<?> activeAlarm : alarmServer.getActiveAlarms().values()) {
-                AlarmData alarmData = toAlarmData(AlarmNotificationType.ACTIVE, activeAlarm, sendDetail);
+                AlarmData alarmData = toSharedAlarmData(AlarmNotificationType.ACTIVE, activeAlarm, sendDetail);
                 observer.next(alarmData);
             }
             alarmServer.addAlarmListener(listener);
@@ -462,6 +467,12 @@ public class AlarmsApi extends AbstractAlarmsApi<Context> {
         return alarmb.build();
     }
 
+    private AlarmData toSharedAlarmData(AlarmNotificationType notificationType, ActiveAlarm<?> activeAlarm,
+            boolean detail) {
+        return alarmUpdates.get(new AlarmUpdate(notificationType, activeAlarm, detail),
+                () -> toAlarmData(notificationType, activeAlarm, detail));
+    }
+
     public static final <T> AlarmData toAlarmData(AlarmNotificationType notificationType,
             ActiveAlarm<T> activeAlarm, boolean detail) {
         AlarmData.Builder alarmb = AlarmData.newBuilder();
@@ -683,4 +694,53 @@ public class AlarmsApi extends AbstractAlarmsApi<Context> {
 
         alarmb.setShelveInfo(clib.build());
     }
+
+    /**
+     * Identifies a notification about an alarm in a given state, the active alarms being mutable.
+     */
+    private static class AlarmUpdate {
+        final AlarmNotificationType notificationType;
+        final ActiveAlarm<?> activeAlarm;
+        final boolean detail;
+        final Object currentValue;
+        final int valueCount;
+        final int violations;
+        final boolean acknowledged;
+        final boolean shelved;
+        final boolean processOK;
+
+        AlarmUpdate(AlarmNotificationType notificationType, ActiveAlarm<?> activeAlarm, boolean detail) {
+            this.notificationType = notificationType;
+            this.activeAlarm = activeAlarm;
+            this.detail = detail;
+            this.currentValue = activeAlarm.getCurrentValue();
+            this.valueCount = activeAlarm.getValueCount();
+            this.violations = activeAlarm.getViolations();
+            this.acknowledged = activeAlarm.isAcknowledged();
+            this.shelved = activeAlarm.isShelved();
+            this.processOK = activeAlarm.isProcessOK();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AlarmUpdate)) {
+                return false;
+            }
+            AlarmUpdate other = (AlarmUpdate) obj;
+            return notificationType == other.notificationType
+                    && activeAlarm == other.activeAlarm
+                    && detail == other.detail
+                    && currentValue == other.currentValue
+                    && valueCount == other.valueCount
+                    && violations == other.violations
+                    && acknowledged == other.acknowledged
+                    && shelved == other.shelved
+                    && processOK == other.processOK;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(activeAlarm) * 31 + valueCount;
+        }
+    }
 }
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.yamcs.api.HttpBody;
@@ -14,6 +15,8 @@ import org.yamcs.http.ForbiddenException;
 import org.yamcs.http.HttpException;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.http.NotFoundException;
+import org.yamcs.http.RangeNotSatisfiableException;
+import org.yamcs.http.RouteContext;
 import org.yamcs.logging.Log;
 import org.yamcs.protobuf.AbstractBucketsApi;
 import org.yamcs.protobuf.BucketInfo;
@@ -37,8 +40,17 @@ import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties;
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import com.google.protobuf.UnsafeByteOperations;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.stream.ChunkedInput;
 
 public class BucketsApi extends AbstractBucketsApi<Context> {
 
@@ -49,6 +61,13 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
 
     static final Pattern BUCKET_NAME_REGEXP = Pattern.compile("\\w+");
     static final Pattern OBJ_NAME_REGEXP = Pattern.compile("[ \\w\\s\\-\\./]+");
+    static final Pattern RANGE_REGEXP = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    // maximum size of the data sent in one response to a range request
+    static final int MAX_RANGE_SIZE = 64 * 1024 * 1024;
+
+    // the objects larger than this are not loaded in memory but sent chunk by chunk
+    static final int CHUNK_SIZE = 1024 * 1024;
 
     @Override
     public void listBuckets(Context ctx, ListBucketsRequest request, Observer<ListBucketsResponse> observer) {
@@ -122,12 +141,42 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
             if (props == null) {
                 throw new NotFoundException();
             }
-            byte[] objData = bucket.getObject(objName);
+            byte[] objData = null;
+            boolean partial = false;
+            if (ctx instanceof RouteContext) {
+                RouteContext routeCtx = (RouteContext) ctx;
+                routeCtx.getResponseHeaders().set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+                long[] range = parseRange(routeCtx.nettyRequest.headers().get(HttpHeaderNames.RANGE),
+                        props.getSize());
+                if (range != null) {
+                    long last = Math.min(range[1], range[0] + MAX_RANGE_SIZE - 1);
+                    objData = bucket.getObject(objName, range[0], (int) (last - range[0] + 1));
+                    routeCtx.setResponseStatus(HttpResponseStatus.PARTIAL_CONTENT);
+                    routeCtx.getResponseHeaders().set(HttpHeaderNames.CONTENT_RANGE,
+                            "bytes " + range[0] + "-" + last + "/" + props.getSize());
+                    // the Content-Range refers to the data as stored, it must not be compressed
+                    routeCtx.getResponseHeaders().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+                    partial = true;
+                }
+            }
             String contentType = props.hasContentType() ? props.getContentType() : "application/octet-stream";
+            if (!partial) {
+                if (ctx instanceof RouteContext && props.getSize() > CHUNK_SIZE
+                        && bucket.supportsPartialRetrieval(objName)) {
+                    ObjectChunkedInput input = new ObjectChunkedInput(bucket, objName, props.getSize());
+                    ((RouteContext) ctx).sendChunkedResponse(contentType, props.getSize(), input);
+                    observer.complete();
+                    return;
+                }
+                objData = bucket.getObject(objName);
+            }
+            if (objData == null) {
+                throw new NotFoundException(); // deleted in the meanwhile
+            }
 
             HttpBody body = HttpBody.newBuilder()
                     .setContentType(contentType)
-                    .setData(ByteString.copyFrom(objData))
+                    .setData(UnsafeByteOperations.unsafeWrap(objData))
                     .build();
 
             observer.complete(body);
@@ -136,6 +185,53 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
         }
     }
 
+    /**
+     * Parses a Range header with a single range of bytes.
+     * 
+     * @return the first and last position of the range or null if the range header is not specified or not supported
+     *         (in which case the full object is sent)
+     */
+    static long[] parseRange(String rangeHeader, long size) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        Matcher m = RANGE_REGEXP.matcher(rangeHeader.trim());
+        if (!m.matches()) {
+            return null;
+        }
+        long first, last;
+        try {
+            if (m.group(1).isEmpty()) { // suffix range: the last n bytes
+                if (m.group(2).isEmpty()) {
+                    return null;
+                }
+                long n = Long.parseLong(m.group(2));
+                if (n == 0) {
+                    throw new RangeNotSatisfiableException("Invalid range " + rangeHeader);
+                }
+                first = Math.max(0, size - n);
+                last = size - 1;
+            } else {
+                first = Long.parseLong(m.group(1));
+                last = size - 1;
+                if (!m.group(2).isEmpty()) {
+                    long l = Long.parseLong(m.group(2));
+                    if (l < first) {
+                        return null; // invalid range, ignored
+                    }
+                    last = Math.min(last, l);
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (first >= size) {
+            throw new RangeNotSatisfiableException("Range " + rangeHeader + " not satisfiable for object of size "
+                    + size);
+        }
+        return new long[] { first, last };
+    }
+
     @Override
     public void uploadObject(Context ctx, UploadObjectRequest request, Observer<Empty> observer) {
         String instance = request.getInstance();
@@ -156,9 +252,8 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
         verifyObjectName(objectName);
 
         String contentType = body.hasContentType() ? body.getContentType() : null;
-        byte[] objectData = body.getData().toByteArray();
         try {
-            bucket.putObject(objectName, contentType, body.getMetadataMap(), objectData);
+            bucket.putObject(objectName, contentType, body.getMetadataMap(), body.getData().newInput());
         } catch (IOException e) {
             throw new InternalServerErrorException("Error when uploading object to bucket: " + e.getMessage(), e);
         }
@@ -312,4 +407,60 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
             throw new BadRequestException("Invalid bucket name specified");
         }
     }
+
+    /**
+     * Reads the object from the bucket in windows of {@link #CHUNK_SIZE} bytes as they are written to the client.
+     */
+    static class ObjectChunkedInput implements ChunkedInput<ByteBuf> {
+        final Bucket bucket;
+        final String objName;
+        final long size;
+        long offset = 0;
+
+        ObjectChunkedInput(Bucket bucket, String objName, long size) {
+            this.bucket = bucket;
+            this.objName = objName;
+            this.size = size;
+        }
+
+        @Override
+        public boolean isEndOfInput() {
+            return offset >= size;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Deprecated
+        @Override
+        public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+            if (isEndOfInput()) {
+                return null;
+            }
+            int length = (int) Math.min(CHUNK_SIZE, size - offset);
+            byte[] data = bucket.getObject(objName, offset, length);
+            if (data == null || data.length != length) {
+                // the response headers are already sent, the connection will be closed
+                throw new IOException("Object " + objName + " has been modified while being sent");
+            }
+            offset += length;
+            return Unpooled.wrappedBuffer(data);
+        }
+
+        @Override
+        public long length() {
+            return size;
+        }
+
+        @Override
+        public long progress() {
+            return offset;
+        }
+    }
 }
@@ -102,8 +102,6 @@ public class CfdpApi extends AbstractCfdpApi<Context> {
             throw new BadRequestException("Direction not specified");
         }
 
-        byte[] objData;
-
         String bucketName = request.getBucket();
         BucketsApi.checkReadBucketPrivilege(bucketName, ctx.user);
 
@@ -121,12 +119,12 @@ public class CfdpApi extends AbstractCfdpApi<Context> {
             throw new BadRequestException("No bucket by name '" + bucketName + "'");
         }
 
+        ObjectProperties props;
         try {
-            ObjectProperties props = bucket.findObject(objectName);
+            props = bucket.findObject(objectName);
             if (props == null) {
                 throw new NotFoundException();
             }
-            objData = bucket.getObject(objectName);
         } catch (IOException e) {
             log.error("Error when retrieving object {} from bucket {}", objectName, bucketName, e);
             throw new InternalServerErrorException("Error when retrieving object: " + e.getMessage());
@@ -177,8 +175,28 @@ public class CfdpApi extends AbstractCfdpApi<Context> {
                 destinationId = cfdpService.getDefaultRemoteEntityId();
             }
 
-            PutRequest req = new PutRequest(sourceId, destinationId, objectName, target, overwrite, reliable,
-                    closureRequested, createPath, bucket, objData);
+            if (props.getSize() > Integer.MAX_VALUE) {
+                throw new BadRequestException("Files larger than " + Integer.MAX_VALUE + " bytes are not supported");
+            }
+            PutRequest req;
+            try {
+                if (bucket.supportsPartialRetrieval(objectName)) {
+                    // the data is read from the bucket while the file is sent
+                    req = new PutRequest(sourceId, destinationId, objectName, target, overwrite, reliable,
+                            closureRequested, createPath, bucket, props);
+                } else {
+                    // reading it in parts would retrieve each time the whole object
+                    byte[] data = bucket.getObject(objectName);
+                    if (data == null) {
+                        throw new NotFoundException(); // deleted in the meanwhile
+                    }
+                    req = new PutRequest(sourceId, destinationId, objectName, target, overwrite, reliable,
+                            closureRequested, createPath, bucket, data);
+                }
+            } catch (IOException e) {
+                log.error("Error when retrieving object {} from bucket {}", objectName, bucketName, e);
+                throw new InternalServerErrorException("Error when retrieving object: " + e.getMessage());
+            }
             OngoingCfdpTransfer transfer = cfdpService.processRequest(req);
             observer.complete(toTransferInfo(transfer));
         } else if (request.getDirection() == TransferDirection.DOWNLOAD) {
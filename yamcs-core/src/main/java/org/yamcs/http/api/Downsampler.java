@@ -10,6 +10,7 @@ import java.util.function.Consumer;
 import org.yamcs.logging.Log;
 import org.yamcs.parameter.ValueArray;
 import org.yamcs.parameterarchive.ParameterValueArray;
+import org.yamcs.parameterarchive.RollupRetrieval.RollupConsumer;
 import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.utils.UnsignedLong;
 
@@ -20,7 +21,7 @@ import org.yamcs.utils.UnsignedLong;
  * The output is not a bunch of parameter values, but instead a range of values limited to n, which should be fit for
  * inclusion in plots.
  */
-public class Downsampler implements Consumer<ParameterValueArray> {
+public class Downsampler implements Consumer<ParameterValueArray>, RollupConsumer {
 
     private static final Log log = new Log(Downsampler.class);
     private static final int DEFAULT_SAMPLE_COUNT = 500;
@@ -72,6 +73,32 @@ public class Downsampler implements Consumer<ParameterValueArray> {
         }
     }
 
+    /**
+     * Process a pre-aggregated bucket of values. The bucket is assigned entirely to the interval containing its start.
+     * <p>
+     * A bucket starting before the start of the requested range but ending after it is clipped to the range, i.e. it is
+     * assigned to the first interval. Its values cannot be split so they are all counted, even those before the start.
+     */
+    @Override
+    public void acceptBucket(long bucketStart, long resolution, int count, double min, double max, double sum,
+            double first, double last) {
+        if (bucketStart > stop || bucketStart + resolution <= start || count == 0) {
+            return;
+        }
+        Entry<Long, Sample> entry = samplesByTime.floorEntry(Math.max(start, bucketStart));
+        if (entry == null) {
+            return;
+        }
+
+        lastSampleTime = entry.getKey();
+        Sample sample = entry.getValue();
+        if (sample == null) {
+            samplesByTime.put(entry.getKey(), new Sample(entry.getKey(), count, min, max, sum / count));
+        } else {
+            sample.process(count, min, max, sum / count);
+        }
+    }
+
     public List<Sample> collect() {
         if (samplesByTime == null) {
             return Collections.emptyList();
@@ -202,6 +229,27 @@ public class Downsampler implements Consumer<ParameterValueArray> {
             n = 1;
         }
 
+        // sample with aggregated values
+        Sample(long t, int n, double min, double max, double avg) {
+            this.t = t;
+            this.n = n;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+        }
+
+        // merge n values having the given min, max and avg
+        void process(int count, double min, double max, double avg) {
+            if (min < this.min) {
+                this.min = min;
+            }
+            if (max > this.max) {
+                this.max = max;
+            }
+            n += count;
+            this.avg += (avg - this.avg) * count / n;
+        }
+
         public void process(double value) {
             if (value < min) {
                 min = value;
@@ -6,16 +6,19 @@ import static org.yamcs.StandardTupleDefinitions.SOURCE_COLUMN;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.rocksdb.RocksDBException;
 import org.yamcs.YamcsServer;
 import org.yamcs.api.HttpBody;
 import org.yamcs.api.Observer;
@@ -41,6 +44,7 @@ import org.yamcs.protobuf.Yamcs.Event;
 import org.yamcs.protobuf.Yamcs.Event.EventSeverity;
 import org.yamcs.security.SystemPrivilege;
 import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.TableDefinition;
@@ -54,6 +58,7 @@ import com.google.common.collect.BiMap;
 import com.google.gson.Gson;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.ExtensionRegistry.ExtensionInfo;
+import com.google.protobuf.Timestamp;
 
 public class EventsApi extends AbstractEventsApi<Context> {
 
@@ -63,6 +68,9 @@ public class EventsApi extends AbstractEventsApi<Context> {
     private ConcurrentMap<String, EventProducer> eventProducerMap = new ConcurrentHashMap<>();
     private AtomicInteger eventSequenceNumber = new AtomicInteger();
 
+    // The realtime events are converted once for all the subscribers
+    private MessageMemo<Db.Event, Event> realtimeEvents = new MessageMemo<>();
+
     @Override
     public void listEvents(Context ctx, ListEventsRequest request, Observer<ListEventsResponse> observer) {
         String instance = ManagementApi.verifyInstance(request.getInstance());
@@ -129,10 +137,15 @@ public class EventsApi extends AbstractEventsApi<Context> {
         }
 
         sqlb.descend(desc);
-        sqlb.limit(pos, limit + 1l); // one more to detect hasMore
+
+        List<TimeInterval> intervals = null;
+        if (request.hasQ()) {
+            intervals = searchTextIndex(instance, request.getQ(), request.hasStart() ? request.getStart() : null,
+                    request.hasStop() ? request.getStop() : null);
+        }
 
         ListEventsResponse.Builder responseb = ListEventsResponse.newBuilder();
-        StreamFactory.stream(instance, sqlb.toString(), sqlb.getQueryArguments(), new StreamSubscriber() {
+        StreamSubscriber subscriber = new StreamSubscriber() {
 
             Db.Event last;
             int count;
@@ -155,7 +168,14 @@ public class EventsApi extends AbstractEventsApi<Context> {
                 }
                 observer.complete(responseb.build());
             }
-        });
+        };
+
+        if (intervals == null) {
+            sqlb.limit(pos, limit + 1l); // one more to detect hasMore
+            StreamFactory.stream(instance, sqlb.toString(), sqlb.getQueryArguments(), subscriber);
+        } else {
+            new IntervalStreamer(instance, sqlb, intervals, desc, pos, limit + 1l, subscriber).start();
+        }
     }
 
     @Override
@@ -254,11 +274,12 @@ public class EventsApi extends AbstractEventsApi<Context> {
             return; // No error, just don't send data
         }
 
+        MessageMemo.enableSharedPayloads(ctx);
         StreamSubscriber listener = new StreamSubscriber() {
             @Override
             public void onTuple(Stream stream, Tuple tuple) {
                 Db.Event event = (Db.Event) tuple.getColumn("body");
-                observer.next(fromDbEvent(event));
+                observer.next(realtimeEvents.get(event, () -> fromDbEvent(event)));
             }
 
             @Override
@@ -311,11 +332,14 @@ public class EventsApi extends AbstractEventsApi<Context> {
             sqlb.whereColIn("body.severity = ?", Arrays.asList(severity));
         }
 
+        List<TimeInterval> intervals = null;
         if (request.hasQ()) {
             sqlb.where("body.message like ?", "%" + request.getQ() + "%");
+            intervals = searchTextIndex(instance, request.getQ(), request.hasStart() ? request.getStart() : null,
+                    request.hasStop() ? request.getStop() : null);
         }
 
-        StreamFactory.stream(instance, sqlb.toString(), sqlb.getQueryArguments(), new StreamSubscriber() {
+        StreamSubscriber subscriber = new StreamSubscriber() {
 
             @Override
             public void onTuple(Stream stream, Tuple tuple) {
@@ -328,7 +352,12 @@ public class EventsApi extends AbstractEventsApi<Context> {
             public void streamClosed(Stream stream) {
                 observer.complete();
             }
-        });
+        };
+        if (intervals == null) {
+            StreamFactory.stream(instance, sqlb.toString(), sqlb.getQueryArguments(), subscriber);
+        } else {
+            new IntervalStreamer(instance, sqlb, intervals, false, 0, Long.MAX_VALUE, subscriber).start();
+        }
     }
 
     @Override
@@ -376,13 +405,45 @@ public class EventsApi extends AbstractEventsApi<Context> {
         default:
             sqlb.whereColIn("body.severity = ?", Arrays.asList(severity));
         }
+        List<TimeInterval> intervals = null;
         if (request.hasQ()) {
             sqlb.where("body.message like ?", "%" + request.getQ() + "%");
+            intervals = searchTextIndex(instance, request.getQ(), request.hasStart() ? request.getStart() : null,
+                    request.hasStop() ? request.getStop() : null);
         }
 
-        String sql = sqlb.toString();
+        if (intervals == null) {
+            String sql = sqlb.toString();
+            StreamFactory.stream(instance, sql, sqlb.getQueryArguments(), new CsvEventStreamer(observer));
+        } else {
+            new IntervalStreamer(instance, sqlb, intervals, false, 0, Long.MAX_VALUE, new CsvEventStreamer(observer))
+                    .start();
+        }
+    }
 
-        StreamFactory.stream(instance, sql, sqlb.getQueryArguments(), new CsvEventStreamer(observer));
+    /**
+     * Looks up the text in the event text index, if enabled.
+     *
+     * @return the time intervals where the text may be found, or null if the index cannot be used
+     */
+    private static List<TimeInterval> searchTextIndex(String instance, String q, Timestamp start, Timestamp stop) {
+        List<EventRecorder> recorders = YamcsServer.getServer().getServices(instance, EventRecorder.class);
+        if (recorders.isEmpty() || recorders.get(0).getTextIndex() == null) {
+            return null;
+        }
+        TimeInterval interval = new TimeInterval();
+        if (start != null) {
+            interval.setStart(TimeEncoding.fromProtobufTimestamp(start));
+        }
+        if (stop != null) {
+            interval.setEnd(TimeEncoding.fromProtobufTimestamp(stop));
+        }
+        try {
+            return recorders.get(0).getTextIndex().search(q, interval);
+        } catch (RocksDBException e) {
+            log.warn("Failed to search the event text index, falling back to a full scan", e);
+            return null;
+        }
     }
 
     /**
@@ -435,6 +496,90 @@ public class EventsApi extends AbstractEventsApi<Context> {
         }
     }
 
+    /**
+     * Executes the query successively on each time interval and passes the results to a subscriber as if they came
+     * from a single query. Used to restrict the text searches to the intervals found in the text index.
+     */
+    private static class IntervalStreamer implements StreamSubscriber {
+        final String instance;
+        final SqlBuilder sqlb;
+        final Deque<TimeInterval> intervals;
+        final boolean desc;
+        final long offset;
+        final long limit;
+        final StreamSubscriber subscriber;
+
+        long skipped;
+        long count;
+        // set when the stream is closed before the end of the interval, because of the limit or by the subscriber
+        boolean stopped;
+        boolean delivering;
+
+        IntervalStreamer(String instance, SqlBuilder sqlb, List<TimeInterval> intervals, boolean desc, long offset,
+                long limit, StreamSubscriber subscriber) {
+            this.instance = instance;
+            this.sqlb = sqlb;
+            this.intervals = new ArrayDeque<>(intervals);
+            this.desc = desc;
+            this.offset = offset;
+            this.limit = limit;
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            if (intervals.isEmpty()) {
+                subscriber.streamClosed(null);
+            } else {
+                streamNextInterval();
+            }
+        }
+
+        private void streamNextInterval() {
+            TimeInterval interval = desc ? intervals.pollLast() : intervals.pollFirst();
+            SqlBuilder isqlb = sqlb.copy();
+            if (interval.hasStart()) {
+                isqlb.where(GENTIME_COLUMN + " >= " + interval.getStart());
+            }
+            if (interval.hasEnd()) {
+                isqlb.where(GENTIME_COLUMN + " < " + interval.getEnd());
+            }
+            StreamFactory.stream(instance, isqlb.toString(), isqlb.getQueryArguments(), this);
+        }
+
+        @Override
+        public void onTuple(Stream stream, Tuple tuple) {
+            if (stopped) {
+                return;
+            }
+            if (skipped < offset) {
+                skipped++;
+                return;
+            }
+            delivering = true;
+            try {
+                subscriber.onTuple(stream, tuple);
+            } finally {
+                delivering = false;
+            }
+            if (!stopped && ++count >= limit) {
+                stopped = true;
+                stream.close();
+            }
+        }
+
+        @Override
+        public void streamClosed(Stream stream) {
+            if (delivering) {
+                stopped = true; // closed by the subscriber
+            }
+            if (stopped || intervals.isEmpty()) {
+                subscriber.streamClosed(stream);
+            } else {
+                streamNextInterval();
+            }
+        }
+    }
+
     private static class CsvEventStreamer implements StreamSubscriber {
 
         Observer<HttpBody> observer;
@@ -92,6 +92,10 @@ public class ManagementApi extends AbstractManagementApi<Context> {
 
     private static final Log log = new Log(ManagementApi.class);
 
+    // The link events are created once for all the subscribers
+    private MessageMemo<LinkInfo, LinkEvent> registeredLinks = new MessageMemo<>();
+    private MessageMemo<LinkInfo, LinkEvent> updatedLinks = new MessageMemo<>();
+
     public static final Pattern ALLOWED_INSTANCE_NAMES = Pattern.compile("\\w[\\w\\.-]*");
 
     @Override
@@ -495,13 +499,14 @@ public class ManagementApi extends AbstractManagementApi<Context> {
         String instance = verifyInstance(request.getInstance());
         YamcsServerInstance ysi = verifyInstanceObj(instance);
 
+        MessageMemo.enableSharedPayloads(ctx);
         LinkManager linkManager = ysi.getLinkManager();
         for (LinkInfo linkInfo : linkManager.getLinkInfo()) {
             if (instance.equals(linkInfo.getInstance())) {
-                observer.next(LinkEvent.newBuilder()
+                observer.next(registeredLinks.get(linkInfo, () -> LinkEvent.newBuilder()
                         .setType(LinkEvent.Type.REGISTERED)
                         .setLinkInfo(linkInfo)
-                        .build());
+                        .build()));
             }
         }
 
@@ -509,10 +514,10 @@ public class ManagementApi extends AbstractManagementApi<Context> {
             @Override
             public void linkRegistered(LinkInfo linkInfo) {
                 if (instance.equals(linkInfo.getInstance())) {
-                    observer.next(LinkEvent.newBuilder()
+                    observer.next(registeredLinks.get(linkInfo, () -> LinkEvent.newBuilder()
                             .setType(LinkEvent.Type.REGISTERED)
                             .setLinkInfo(linkInfo)
-                            .build());
+                            .build()));
                 }
             }
 
@@ -524,10 +529,10 @@ public class ManagementApi extends AbstractManagementApi<Context> {
             @Override
             public void linkChanged(LinkInfo linkInfo) {
                 if (instance.equals(linkInfo.getInstance())) {
-                    observer.next(LinkEvent.newBuilder()
+                    observer.next(updatedLinks.get(linkInfo, () -> LinkEvent.newBuilder()
                             .setType(LinkEvent.Type.UPDATED)
                             .setLinkInfo(linkInfo)
-                            .build());
+                            .build()));
                 }
             }
         };
@@ -0,0 +1,48 @@
+package org.yamcs.http.api;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import org.yamcs.http.Context;
+import org.yamcs.http.TopicContext;
+
+import com.google.protobuf.Message;
+
+/**
+ * Remembers the last message created for a key, such that the listeners of all the subscribers notified about the
+ * same update obtain the same message instance. The WebSocket layer can then encode the message only once for all
+ * the subscribers (see {@link org.yamcs.http.TopicContext#setSharedPayloads(boolean)}).
+ */
+class MessageMemo<K, M extends Message> {
+
+    private volatile Entry<K, M> last;
+
+    /**
+     * Marks the WebSocket call as receiving messages shared with other calls. Has no effect for other contexts.
+     */
+    static void enableSharedPayloads(Context ctx) {
+        if (ctx instanceof TopicContext) {
+            ((TopicContext) ctx).setSharedPayloads(true);
+        }
+    }
+
+    M get(K key, Supplier<M> supplier) {
+        Entry<K, M> e = last;
+        if (e != null && Objects.equals(e.key, key)) {
+            return e.message;
+        }
+        M message = supplier.get();
+        last = new Entry<>(key, message);
+        return message;
+    }
+
+    private static class Entry<K, M> {
+        final K key;
+        final M message;
+
+        Entry(K key, M message) {
+            this.key = key;
+            this.message = message;
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.yamcs.parameterarchive.ParameterId;
 import org.yamcs.parameterarchive.ParameterIdDb;
 import org.yamcs.parameterarchive.ParameterIdValueList;
 import org.yamcs.parameterarchive.ParameterRequest;
+import org.yamcs.parameterarchive.RollupRetrieval;
 import org.yamcs.protobuf.AbstractParameterArchiveApi;
 import org.yamcs.protobuf.Archive.GetParameterSamplesRequest;
 import org.yamcs.protobuf.Archive.ListParameterHistoryRequest;
@@ -189,8 +190,17 @@ public class ParameterArchiveApi extends AbstractParameterArchiveApi<Context> {
 
         ParameterRequest pr = new ParameterRequest(start, stop, true, true, false, false);
         SingleParameterRetriever spdr = new SingleParameterRetriever(parchive, pcache, pid, pr);
+        // use the coarsest pre-aggregated data which still provides the requested resolution
+        int rollupLevel = -1;
+        if (parchive.isRollupsEnabled() && pid.getPath() == null && sampleCount > 0) {
+            rollupLevel = RollupRetrieval.getLevel((stop - start) / sampleCount);
+        }
         try {
-            spdr.retrieve(sampler);
+            if (rollupLevel >= 0) {
+                spdr.retrieveRollups(rollupLevel, sampler, sampler);
+            } else {
+                spdr.retrieve(sampler);
+            }
         } catch (IOException e) {
             log.warn("Received exception during parameter retrieval", e);
             throw new InternalServerErrorException(e.getMessage());
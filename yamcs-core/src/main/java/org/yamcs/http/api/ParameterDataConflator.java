@@ -0,0 +1,53 @@
+package org.yamcs.http.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.http.MessageConflator;
+import org.yamcs.protobuf.Pvalue.ParameterValue;
+import org.yamcs.protobuf.SubscribeParametersData;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+import com.google.protobuf.Message;
+
+/**
+ * Conflates the {@link SubscribeParametersData} messages of a parameter subscription: only the latest value of each
+ * parameter is kept, the mappings and the invalid identifiers are accumulated.
+ */
+class ParameterDataConflator implements MessageConflator {
+    private final Map<Integer, NamedObjectId> mapping = new HashMap<>();
+    private final List<NamedObjectId> invalid = new ArrayList<>();
+    // ordered by the first arrival of each parameter
+    private final Map<Integer, ParameterValue> values = new LinkedHashMap<>();
+
+    @Override
+    public void add(Message message) {
+        SubscribeParametersData data = (SubscribeParametersData) message;
+        mapping.putAll(data.getMappingMap());
+        invalid.addAll(data.getInvalidList());
+        for (ParameterValue pv : data.getValuesList()) {
+            values.put(pv.getNumericId(), pv);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mapping.isEmpty() && invalid.isEmpty() && values.isEmpty();
+    }
+
+    @Override
+    public Message drain() {
+        SubscribeParametersData data = SubscribeParametersData.newBuilder()
+                .putAllMapping(mapping)
+                .addAllInvalid(invalid)
+                .addAllValues(values.values())
+                .build();
+        mapping.clear();
+        invalid.clear();
+        values.clear();
+        return data;
+    }
+}
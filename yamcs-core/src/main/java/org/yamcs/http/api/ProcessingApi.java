@@ -29,6 +29,7 @@ import org.yamcs.http.ForbiddenException;
 import org.yamcs.http.HttpException;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.http.NotFoundException;
+import org.yamcs.http.TopicContext;
 import org.yamcs.management.ManagementGpbHelper;
 import org.yamcs.management.ManagementListener;
 import org.yamcs.management.ManagementService;
@@ -281,6 +282,10 @@ public class ProcessingApi extends AbstractProcessingApi<Context> {
     @Override
     public Observer<SubscribeParametersRequest> subscribeParameters(Context ctx,
             Observer<SubscribeParametersData> observer) {
+        if (ctx instanceof TopicContext) {
+            // Slow clients get the latest value of each parameter rather than gaps
+            ((TopicContext) ctx).setConflator(new ParameterDataConflator());
+        }
         SubscribeParameterObserver clientObserver = new SubscribeParameterObserver(ctx.user, observer);
         observer.setCancelHandler(() -> clientObserver.complete());
         return clientObserver;
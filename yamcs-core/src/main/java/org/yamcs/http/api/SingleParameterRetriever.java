@@ -14,6 +14,8 @@ import org.yamcs.parameter.ValueArray;
 import org.yamcs.parameterarchive.ParameterArchive;
 import org.yamcs.parameterarchive.ParameterRequest;
 import org.yamcs.parameterarchive.ParameterValueArray;
+import org.yamcs.parameterarchive.RollupRetrieval;
+import org.yamcs.parameterarchive.RollupRetrieval.RollupConsumer;
 import org.yamcs.parameterarchive.SingleParameterArchiveRetrieval;
 import org.yamcs.protobuf.Pvalue.ParameterStatus;
 import org.yamcs.utils.AggregateUtil;
@@ -93,6 +95,41 @@ public class SingleParameterRetriever {
         }
     }
 
+    /**
+     * Retrieves pre-aggregated data from the parameter archive, completed with values from the cache for the most
+     * recent data.
+     * <p>
+     * The retrieval is ascending; the data is not necessarily sent in order.
+     * 
+     * @param level
+     *            - the rollup level
+     */
+    public void retrieveRollups(int level, RollupConsumer rollupConsumer, Consumer<ParameterValueArray> consumer)
+            throws IOException {
+        if (pid.getPath() != null) {
+            throw new IllegalStateException("Rollups are not available for aggregate members");
+        }
+        RollupRetrieval rr = new RollupRetrieval(parchive, pid.getQualifiedName(), level, spvr.getStart(),
+                spvr.getStop());
+        try {
+            rr.retrieve(rollupConsumer, consumer);
+        } catch (RocksDBException e) {
+            throw new IOException(e);
+        }
+
+        if (cache != null) {
+            long start = spvr.getStart();
+            if (rr.getLastTime() != Long.MIN_VALUE) {
+                start = rr.getLastTime();
+            }
+            List<ParameterValue> pvlist = cache.getAllValues(pid.getParameter(), start, spvr.getStop());
+            if (pvlist != null && !pvlist.isEmpty()) {
+                pvlist = Lists.reverse(pvlist);
+                splitAndSend(pvlist, consumer);
+            }
+        }
+    }
+
     private List<ParameterValue> extractMembers(List<ParameterValue> pvlist, PathElement[] path) {
         List<ParameterValue> l = new ArrayList<ParameterValue>(pvlist.size());
         for(ParameterValue pv: pvlist) {
@@ -23,6 +23,21 @@ public class SqlBuilder {
         this.table = table;
     }
 
+    /**
+     * Returns a builder with the same select expressions, conditions and arguments, which can be extended without
+     * affecting this one.
+     */
+    public SqlBuilder copy() {
+        SqlBuilder copy = new SqlBuilder(table);
+        copy.selectExpressions.addAll(selectExpressions);
+        copy.conditions.addAll(conditions);
+        copy.queryArgs.addAll(queryArgs);
+        copy.descend = descend;
+        copy.offset = offset;
+        copy.limit = limit;
+        return copy;
+    }
+
     /**
      * Additive! Calling multiple times will add extra select expressions to the already specified list.
      */
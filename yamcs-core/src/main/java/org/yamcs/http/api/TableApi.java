@@ -21,6 +21,7 @@ import org.yamcs.management.ManagementService;
 import org.yamcs.management.TableStreamListener;
 import org.yamcs.protobuf.AbstractTableApi;
 import org.yamcs.protobuf.StreamEvent;
+import org.yamcs.protobuf.Table.AsyncSubscriberInfo;
 import org.yamcs.protobuf.Table.ColumnData;
 import org.yamcs.protobuf.Table.ColumnInfo;
 import org.yamcs.protobuf.Table.EnumValue;
@@ -60,6 +61,7 @@ import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.TimeInterval;
 import org.yamcs.utils.ValueUtility;
 import org.yamcs.utils.parser.ParseException;
+import org.yamcs.yarch.AsyncStreamSubscriber;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.ColumnSerializer;
 import org.yamcs.yarch.ColumnSerializerFactory;
@@ -84,6 +86,13 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.MessageLite;
 
 public class TableApi extends AbstractTableApi<Context> {
+
+    /**
+     * maximum number of tuples waiting to be sent to a stream subscriber which asked to drop tuples if it is slower
+     * than the stream
+     */
+    public static final int STREAM_SUBSCRIBER_QUEUE_SIZE = 1024;
+
     private static final long MAX_NUM_ROWS = 2000;
 
     private static final Log log = new Log(TableApi.class);
@@ -183,7 +192,11 @@ public class TableApi extends AbstractTableApi<Context> {
             }
         };
         observer.setCancelHandler(() -> stream.removeSubscriber(listener));
-        stream.addSubscriber(listener);
+        if (request.getDropIfSlow()) {
+            stream.addSubscriber(listener, STREAM_SUBSCRIBER_QUEUE_SIZE, AsyncStreamSubscriber.OverflowPolicy.DROP);
+        } else {
+            stream.addSubscriber(listener);
+        }
     }
 
     @Override
@@ -641,6 +654,15 @@ public class TableApi extends AbstractTableApi<Context> {
         for (ColumnDefinition cdef : stream.getDefinition().getColumnDefinitions()) {
             infob.addColumn(toColumnInfo(cdef, null));
         }
+        for (AsyncStreamSubscriber async : stream.getAsyncSubscribers()) {
+            infob.addAsyncSubscriber(AsyncSubscriberInfo.newBuilder()
+                    .setName(async.getSubscriber().toString())
+                    .setQueueSize(async.getQueueSize())
+                    .setCapacity(async.getCapacity())
+                    .setHighWaterMark(async.getHighWaterMark())
+                    .setDeliveredCount(async.getDeliveredCount())
+                    .setDroppedCount(async.getDroppedCount()));
+        }
         return infob.build();
     }
 
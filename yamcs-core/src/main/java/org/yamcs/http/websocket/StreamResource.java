@@ -9,6 +9,7 @@ import org.yamcs.http.api.TableApi;
 import org.yamcs.protobuf.StreamSubscriptionRequest;
 import org.yamcs.protobuf.Table.StreamData;
 import org.yamcs.protobuf.Yamcs.ProtoDataType;
+import org.yamcs.yarch.AsyncStreamSubscriber;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.Tuple;
@@ -54,7 +55,12 @@ public class StreamResource implements StreamSubscriber, WebSocketResource {
         }
 
         if (!subscribedStreams.contains(stream)) {
-            stream.addSubscriber(this);
+            if (req.getDropIfSlow()) {
+                stream.addSubscriber(this, TableApi.STREAM_SUBSCRIBER_QUEUE_SIZE,
+                        AsyncStreamSubscriber.OverflowPolicy.DROP);
+            } else {
+                stream.addSubscriber(this);
+            }
             subscribedStreams.add(stream);
         }
 
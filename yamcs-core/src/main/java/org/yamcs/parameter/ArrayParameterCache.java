@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -25,9 +26,13 @@ import org.yamcs.xtce.Parameter;
  * {@link Value}).
  * <p>
  * It should consume less memory than {@link ParameterCacheImpl} in case of large number of parameter values.
+ * <p>
+ * If a memory budget is configured ({@link ParameterCacheConfig#maxMemory}), the size of each table is estimated from
+ * its capacity and column types and when the total exceeds the budget, the least recently requested tables are removed
+ * until the total is below 90% of the budget.
  *
  */
-public class ArrayParameterCache implements ParameterCache {
+public class ArrayParameterCache implements ParameterCache, SystemParametersProducer {
     SimpleParameterIdMap pidMap = new SimpleParameterIdMap();
     final Log log;
     long cacheStartTime = 0;
@@ -35,6 +40,15 @@ public class ArrayParameterCache implements ParameterCache {
     final ConcurrentHashMap<Parameter, Boolean> parametersToCache;
     final ParameterCacheConfig cacheConfig;
 
+    // logical clock used to find the least recently requested tables
+    final AtomicLong accessClock = new AtomicLong();
+    final AtomicLong usedBytes = new AtomicLong();
+    final AtomicLong hitCount = new AtomicLong();
+    final AtomicLong missCount = new AtomicLong();
+    final AtomicLong evictionCount = new AtomicLong();
+    // names of the system parameters, set when registering to the collector
+    String spUsedBytes, spNumTables, spHits, spMisses, spEvictions;
+
     ArrayParameterCache(String instance, ParameterCacheConfig cacheConfig) {
         log = new Log(this.getClass(), instance);
         this.cacheConfig = cacheConfig;
@@ -72,16 +86,46 @@ public class ArrayParameterCache implements ParameterCache {
 
     private void addToCache(long t, SortedParameterList pvList) {
         SortedIntArray sia = pvList.getParameterIdArray();
-        ParameterValueTable table = tables.get(sia);
-        if (table == null) {
-            table = new ParameterValueTable(sia, cacheConfig.maxDuration, cacheConfig.maxNumEntries);
-            ParameterValueTable table1 = tables.putIfAbsent(sia, table);
-            if (table1 != null) {
-                table = table1;
+        long delta;
+        do {
+            ParameterValueTable table = tables.get(sia);
+            if (table == null) {
+                table = new ParameterValueTable(sia, cacheConfig.maxDuration, cacheConfig.maxNumEntries);
+                table.lastAccess = accessClock.incrementAndGet();
+                ParameterValueTable table1 = tables.putIfAbsent(sia, table);
+                if (table1 != null) {
+                    table = table1;
+                }
             }
+            delta = table.add(t, pvList.getParameterValueList());
+            // if the table has just been evicted, try again with a new one
+        } while (delta < 0);
+
+        if (delta > 0 && usedBytes.addAndGet(delta) > cacheConfig.maxMemory && cacheConfig.maxMemory > 0) {
+            evict();
         }
+    }
 
-        table.add(t, pvList.getParameterValueList());
+    /**
+     * Removes the least recently requested tables until the used memory is below 90% of the budget
+     */
+    synchronized void evict() {
+        long target = cacheConfig.maxMemory / 10 * 9;
+        if (usedBytes.get() <= target) {
+            return;
+        }
+        List<Map.Entry<SortedIntArray, ParameterValueTable>> l = new ArrayList<>(tables.entrySet());
+        l.sort((e1, e2) -> Long.compare(e1.getValue().lastAccess, e2.getValue().lastAccess));
+        for (Map.Entry<SortedIntArray, ParameterValueTable> me : l) {
+            if (usedBytes.get() <= target) {
+                break;
+            }
+            if (tables.remove(me.getKey(), me.getValue())) {
+                usedBytes.addAndGet(-me.getValue().markEvicted());
+                evictionCount.incrementAndGet();
+            }
+        }
+        log.debug("Cache memory after eviction: {} bytes in {} tables", usedBytes.get(), tables.size());
     }
 
     @Override
@@ -96,6 +140,10 @@ public class ArrayParameterCache implements ParameterCache {
             }
 
             ParameterValueTable table = tables.get(sia);
+            if (table == null) { // evicted in the meanwhile
+                continue;
+            }
+            table.lastAccess = accessClock.incrementAndGet();
             long t = table.getLastTime();
             if (t < tmax) {
                 continue;
@@ -112,7 +160,7 @@ public class ArrayParameterCache implements ParameterCache {
 
             tmax = t;
         }
-
+        (result == null ? missCount : hitCount).incrementAndGet();
         return result;
 
     }
@@ -160,10 +208,11 @@ public class ArrayParameterCache implements ParameterCache {
             pidlist.set(i, null);
 
             SortedIntArray sai = findLatestTableContaining(p.id);
-            if (sai == null) {
+            ParameterValueTable table = sai == null ? null : tables.get(sai);
+            if (table == null) {
                 continue;
             }
-            ParameterValueTable table = tables.get(sai);
+            table.lastAccess = accessClock.incrementAndGet();
             List<ParameterId> sublist = new ArrayList<>();
             sublist.add(p);
             for (int j = i + 1; j < pidlist.size(); j++) {
@@ -179,6 +228,9 @@ public class ArrayParameterCache implements ParameterCache {
             table.retrieveLastValues(sublist, result);
         }
 
+        hitCount.addAndGet(result.size());
+        missCount.addAndGet(Math.max(0, plist.size() - result.size()));
+
         long now = TimeEncoding.getWallclockTime();
         // check expiration
         for (ParameterValue pv : result) {
@@ -219,6 +271,7 @@ public class ArrayParameterCache implements ParameterCache {
                 SortedIntArray sia = me.getKey();
                 if (sia.contains(p.id)) {
                     needsSorting = true;
+                    me.getValue().lastAccess = accessClock.incrementAndGet();
                     me.getValue().retrieveAll(p, start, stop, result);
                 }
             }
@@ -229,8 +282,10 @@ public class ArrayParameterCache implements ParameterCache {
             Collections.sort(result, (pv1, pv2) -> Long.compare(pv2.getGenerationTime(), pv1.getGenerationTime()));
         }
         if (result.isEmpty()) {
+            missCount.incrementAndGet();
             return null;
         }
+        hitCount.incrementAndGet();
         return result;
     }
 
@@ -399,6 +454,7 @@ public class ArrayParameterCache implements ParameterCache {
     static class ParameterValueTable {
         static final int MAX_NUM_ENTRIES = 1024;
         static final int INITIAL_CAPACITY = 16;
+        static final int OBJECT_SIZE_ESTIMATE = 48;
         long[] generationTimeColumn;
         final Object[] rawValueColumns;
         final Object[] engValueColumns;
@@ -410,6 +466,11 @@ public class ArrayParameterCache implements ParameterCache {
         int tail = head;
         int maxNumEntries = MAX_NUM_ENTRIES;
         final SortedIntArray pids;
+        // estimated size in bytes
+        long estimatedSize;
+        boolean evicted;
+        // value of the cache access clock when the table has been last requested
+        volatile long lastAccess;
 
         ReadWriteLock lock = new ReentrantReadWriteLock();
 
@@ -441,9 +502,17 @@ public class ArrayParameterCache implements ParameterCache {
             }
         }
 
-        public void add(long t, List<ParameterValue> sortedPvList) {
+        /**
+         * Adds a row to the table
+         *
+         * @return the increase of the estimated size of the table or -1 if the table has been evicted from the cache
+         */
+        public long add(long t, List<ParameterValue> sortedPvList) {
             lock.writeLock().lock();
             try {
+                if (evicted) {
+                    return -1;
+                }
                 if (numParams != sortedPvList.size()) {
                     throw new IllegalArgumentException("Invalid number of parameters, expected " + sortedPvList.size());
                 }
@@ -454,7 +523,7 @@ public class ArrayParameterCache implements ParameterCache {
                     long t0 = generationTimeColumn[_head];
                     if (t < t0) {
                         // parameter older than the last one in the queue -> ignore
-                        return;
+                        return 0;
                     }
                     boolean doubled = false;
                     if (t - t0 < timeToCache) {
@@ -471,11 +540,57 @@ public class ArrayParameterCache implements ParameterCache {
                     storeParameter(i, _head, sortedPvList.get(i));
                 }
                 head = (_head + 1) & (generationTimeColumn.length - 1);
+
+                long size = estimateSize();
+                long delta = size - estimatedSize;
+                estimatedSize = size;
+                return delta;
             } finally {
                 lock.writeLock().unlock();
             }
         }
 
+        /**
+         * Marks the table as evicted such that no more data is added to it
+         *
+         * @return the estimated size of the table
+         */
+        long markEvicted() {
+            lock.writeLock().lock();
+            try {
+                evicted = true;
+                return estimatedSize;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // estimates the memory used by the table based on its capacity and column types
+        private long estimateSize() {
+            int capacity = generationTimeColumn.length;
+            long size = 64 + 8L * capacity;
+            for (int i = 0; i < numParams; i++) {
+                size += columnSize(engValueColumns[i], capacity) + columnSize(rawValueColumns[i], capacity);
+                // status references (the status objects are mostly shared) and acquisition times
+                size += 16L * capacity;
+            }
+            return size;
+        }
+
+        private static long columnSize(Object o, int capacity) {
+            if (o == null) {
+                return 0;
+            } else if (o instanceof int[] || o instanceof float[]) {
+                return 4L * capacity;
+            } else if (o instanceof long[] || o instanceof double[]) {
+                return 8L * capacity;
+            } else if (o instanceof BitSet) {
+                return 32 + capacity / 8;
+            } else { // the reference and a rough estimate of the object size
+                return (8L + OBJECT_SIZE_ESTIMATE) * capacity;
+            }
+        }
+
         public void retrieveLastValues(List<ParameterId> sublist, List<ParameterValue> result) {
             lock.readLock().lock();
             try {
@@ -745,8 +860,59 @@ public class ArrayParameterCache implements ParameterCache {
         }
     }
 
+    /**
+     * Registers the cache statistics as system parameters
+     *
+     * @param collector
+     * @param processorName
+     *            - used in the name of the system parameters
+     */
+    void registerSystemParameters(SystemParametersCollector collector, String processorName) {
+        String prefix = collector.getNamespace() + "/" + processorName + "/parameterCache/";
+        spUsedBytes = prefix + "usedBytes";
+        spNumTables = prefix + "numTables";
+        spHits = prefix + "hits";
+        spMisses = prefix + "misses";
+        spEvictions = prefix + "evictions";
+        collector.registerProducer(this);
+    }
+
+    @Override
+    public Collection<ParameterValue> getSystemParameters() {
+        long time = TimeEncoding.getWallclockTime();
+        List<ParameterValue> pvlist = new ArrayList<>();
+        pvlist.add(SystemParametersCollector.getPV(spUsedBytes, time, usedBytes.get()));
+        pvlist.add(SystemParametersCollector.getPV(spNumTables, time, tables.size()));
+        pvlist.add(SystemParametersCollector.getPV(spHits, time, hitCount.get()));
+        pvlist.add(SystemParametersCollector.getPV(spMisses, time, missCount.get()));
+        pvlist.add(SystemParametersCollector.getPV(spEvictions, time, evictionCount.get()));
+        return pvlist;
+    }
+
+    /**
+     * @return the estimated memory used by the cache in bytes
+     */
+    public long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
     @Override
     public void clear() {
+        for (ParameterValueTable table : tables.values()) {
+            usedBytes.addAndGet(-table.markEvicted());
+        }
         tables.clear();
     }
 }
@@ -0,0 +1,158 @@
+package org.yamcs.parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Collects the parameter values to be delivered to each subscription during one update of the
+ * {@link ParameterRequestManager}.
+ * <p>
+ * The subscription ids are mapped to slots using an open addressing hash table of primitive ints and each slot keeps
+ * its value list from one update to the next, such that in the steady state building a delivery does not allocate
+ * anything except the lists handed over to the consumers (see {@link #copyList(int)}).
+ * <p>
+ * Not thread safe, the {@link ParameterRequestManager} uses one buffer per thread.
+ */
+class DeliveryBuffer {
+    static final int EMPTY = Integer.MIN_VALUE;
+
+    // hash table subscription id -> slot
+    private int[] keys;
+    private int[] slotOf;
+    private int mask;
+
+    // subscription id of each slot in use, in the order in which they have been added
+    private int[] ids = new int[16];
+    // position in the hash table of each slot in use (used to clear the table)
+    private int[] positions = new int[16];
+    private final ArrayList<ArrayList<ParameterValue>> lists = new ArrayList<>();
+    private int size;
+
+    // set while the buffer is used for an update, to detect the re-entrant calls
+    boolean inUse;
+
+    DeliveryBuffer() {
+        this(64);
+    }
+
+    DeliveryBuffer(int initialCapacity) {
+        int cap = Integer.highestOneBit(Math.max(4, initialCapacity - 1)) << 1;
+        keys = new int[cap];
+        Arrays.fill(keys, EMPTY);
+        slotOf = new int[cap];
+        mask = cap - 1;
+    }
+
+    /**
+     * Adds the value to the list of the subscription
+     */
+    void add(int subscriptionId, ParameterValue pv) {
+        getList(subscriptionId).add(pv);
+    }
+
+    /**
+     * Adds all the values to the list of the subscription
+     */
+    void addAll(int subscriptionId, Collection<ParameterValue> pvs) {
+        getList(subscriptionId).addAll(pvs);
+    }
+
+    /**
+     * @return the list of values collected for the subscription or null if there is no value for it.
+     */
+    ArrayList<ParameterValue> get(int subscriptionId) {
+        int pos = find(subscriptionId);
+        return keys[pos] == EMPTY ? null : lists.get(slotOf[pos]);
+    }
+
+    boolean contains(int subscriptionId) {
+        return keys[find(subscriptionId)] != EMPTY;
+    }
+
+    /**
+     * @return the number of subscriptions having values in this delivery
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the subscription id in the given slot; the slots are numbered in the order in which the subscriptions
+     *         have been added
+     */
+    int getSubscriptionId(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * Returns a copy of the list in the given slot. The copy can be kept by the consumer, the list in the buffer is
+     * reused for the next update.
+     */
+    ArrayList<ParameterValue> copyList(int slot) {
+        return new ArrayList<>(lists.get(slot));
+    }
+
+    /**
+     * Empties the buffer, keeping the allocated lists for the next update.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            keys[positions[i]] = EMPTY;
+            lists.get(i).clear();
+        }
+        size = 0;
+    }
+
+    private ArrayList<ParameterValue> getList(int subscriptionId) {
+        int pos = find(subscriptionId);
+        if (keys[pos] != EMPTY) {
+            return lists.get(slotOf[pos]);
+        }
+        if (2 * (size + 1) > keys.length) {
+            grow();
+            pos = find(subscriptionId);
+        }
+        int slot = size++;
+        if (slot == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * slot);
+            positions = Arrays.copyOf(positions, 2 * slot);
+        }
+        if (slot == lists.size()) {
+            lists.add(new ArrayList<>());
+        }
+        keys[pos] = subscriptionId;
+        slotOf[pos] = slot;
+        ids[slot] = subscriptionId;
+        positions[slot] = pos;
+        return lists.get(slot);
+    }
+
+    // returns the position of the key or of the empty position where it should be inserted
+    private int find(int subscriptionId) {
+        int pos = mix(subscriptionId) & mask;
+        while (keys[pos] != EMPTY && keys[pos] != subscriptionId) {
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    private void grow() {
+        int cap = keys.length * 2;
+        keys = new int[cap];
+        Arrays.fill(keys, EMPTY);
+        slotOf = new int[cap];
+        mask = cap - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int pos = find(ids[slot]);
+            keys[pos] = ids[slot];
+            slotOf[pos] = slot;
+            positions[slot] = pos;
+        }
+    }
+
+    private static int mix(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -13,12 +13,23 @@ public class ParameterCacheConfig {
     //maximum duration of the cache
     final long maxDuration;
     final int maxNumEntries;
-    
+    // maximum (estimated) memory used by the cache in bytes; 0 means no limit
+    final long maxMemory;
+    // if false, only the cached values are kept (with their delivery id) instead of the whole deliveries
+    final boolean keepDeliveries;
+
     public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries) {
+        this(enabled, cacheAll, duration, maxNumEntries, 0);
+    }
+
+    public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries,
+            long maxMemory) {
         this.enabled = enabled;
         this.cacheAll = cacheAll;
         this.maxDuration = duration;
         this.maxNumEntries = maxNumEntries;
+        this.maxMemory = maxMemory;
+        this.keepDeliveries = true;
     }
     
     public ParameterCacheConfig() {
@@ -26,6 +37,8 @@ public class ParameterCacheConfig {
         this.cacheAll = false;
         this.maxDuration = 0;
         this.maxNumEntries = 0;
+        this.maxMemory = 0;
+        this.keepDeliveries = true;
     }
 
     public ParameterCacheConfig(YConfiguration cacheConfig, Log log) {
@@ -43,11 +56,14 @@ public class ParameterCacheConfig {
         cacheAll = cacheConfig.getBoolean("cacheAll", false);
         maxDuration = 1000L * cacheConfig.getInt("duration", 300);
         maxNumEntries = cacheConfig.getInt("maxNumEntries", 512);
+        maxMemory = 1024L * 1024 * cacheConfig.getInt("maxMemoryMB", 0);
+        keepDeliveries = cacheConfig.getBoolean("keepDeliveries", true);
     }
 
     @Override
     public String toString() {
         return "ParameterCacheConfig [enabled=" + enabled + ", cacheAll=" + cacheAll + ", maxDuration=" + maxDuration
-                + ", maxNumEntries=" + maxNumEntries + "]";
+                + ", maxNumEntries=" + maxNumEntries + ", maxMemory=" + maxMemory + ", keepDeliveries=" + keepDeliveries
+                + "]";
     }
 }
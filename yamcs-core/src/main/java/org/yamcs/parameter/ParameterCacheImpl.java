@@ -5,6 +5,7 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -34,6 +35,12 @@ import org.yamcs.xtce.Parameter;
  * - obviously first time when the parameter is requested, no value will be returned.
  * - however this will greatly reduce the cache size since only a few parameters are monitored in the displays
  * 
+ * If keepDeliveries is disabled, instead of keeping the delivery lists, each parameter keeps its own values together
+ * with the id of the delivery they have been part of. The values acquired in the same delivery are found by their
+ * delivery id. This avoids retaining in memory a whole (possibly large) delivery as long as one of its parameters is in
+ * the cache. The difference is that the values of the parameters which were not cached at the moment of the delivery
+ * (if cacheAll is disabled) cannot be retrieved later.
+ * 
  * @author nm
  *
  */
@@ -46,11 +53,28 @@ public class ParameterCacheImpl implements ParameterCache {
     boolean cacheAll;
     final ParameterCacheConfig cacheConfig;
 
+    // used instead of the cache above if keepDeliveries is false
+    final ConcurrentHashMap<Parameter, ValueCacheEntry> valueCache = new ConcurrentHashMap<>();
+    final boolean keepDeliveries;
+    final AtomicLong deliveryCounter = new AtomicLong();
+
     public ParameterCacheImpl(ParameterCacheConfig cacheConfig) {
+        this(cacheConfig, cacheConfig.keepDeliveries);
+    }
+
+    /**
+     * 
+     * @param cacheConfig
+     * @param keepDeliveries
+     *            - if true, the cache keeps references to the delivery lists; if false, it keeps the individual values
+     *            together with a delivery id.
+     */
+    public ParameterCacheImpl(ParameterCacheConfig cacheConfig, boolean keepDeliveries) {
         this.timeToCache = cacheConfig.maxDuration;
         this.maxNumEntries = cacheConfig.maxNumEntries;
         this.cacheConfig = cacheConfig;
         this.cacheAll = cacheConfig.cacheAll;
+        this.keepDeliveries = keepDeliveries;
         parametersToCache = cacheAll ? null : new ConcurrentHashMap<>();
     }
 
@@ -61,6 +85,10 @@ public class ParameterCacheImpl implements ParameterCache {
      */
     @Override
     public void update(Collection<ParameterValue> pvs) {
+        if (!keepDeliveries) {
+            updateValues(pvs);
+            return;
+        }
         ParameterValueList pvlist = new ParameterValueList(pvs);
         for (ParameterValue pv : pvs) {
             Parameter p = pv.getParameter();
@@ -77,6 +105,23 @@ public class ParameterCacheImpl implements ParameterCache {
         }
     }
 
+    private void updateValues(Collection<ParameterValue> pvs) {
+        long deliveryId = deliveryCounter.incrementAndGet();
+        for (ParameterValue pv : pvs) {
+            Parameter p = pv.getParameter();
+            ValueCacheEntry ve = valueCache.get(p);
+            if (ve == null) {
+                if (cacheAll || parametersToCache.containsKey(p)) {
+                    ve = new ValueCacheEntry(timeToCache, maxNumEntries);
+                    ve.add(deliveryId, pv);
+                    valueCache.put(p, ve);
+                }
+            } else {
+                ve.add(deliveryId, pv);
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -84,6 +129,9 @@ public class ParameterCacheImpl implements ParameterCache {
      */
     @Override
     public List<ParameterValue> getValues(List<Parameter> plist) {
+        if (!keepDeliveries) {
+            return getValuesByDeliveryId(plist);
+        }
         long now = TimeEncoding.getWallclockTime();
 
         // use a bitset to clear out the parameters that have already been found
@@ -126,6 +174,43 @@ public class ParameterCacheImpl implements ParameterCache {
         return result;
     }
 
+    private List<ParameterValue> getValuesByDeliveryId(List<Parameter> plist) {
+        // use a bitset to clear out the parameters that have already been found
+        BitSet bs = new BitSet(plist.size());
+        List<ParameterValue> result = new ArrayList<>(plist.size());
+        bs.set(0, plist.size(), true);
+
+        for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) {
+            Parameter p = plist.get(i);
+            bs.clear(i);
+            ValueCacheEntry ve = valueCache.get(p);
+            if (ve == null) { // no value for this parameter
+                if (!cacheAll) {
+                    parametersToCache.put(p, Boolean.TRUE);
+                }
+                continue;
+            }
+            // last delivery where this parameter appears
+            long deliveryId = ve.getLast(result);
+
+            // find all the other parameters that are in this delivery
+            for (int j = bs.nextSetBit(i); j >= 0; j = bs.nextSetBit(j + 1)) {
+                ValueCacheEntry ve1 = valueCache.get(plist.get(j));
+                if (ve1 != null && ve1.get(deliveryId, result)) {
+                    bs.clear(j);
+                }
+            }
+        }
+
+        long now = TimeEncoding.getWallclockTime();
+        for (ParameterValue pv : result) {
+            if ((pv.getAcquisitionStatus() == AcquisitionStatus.ACQUIRED) && pv.isExpired(now)) {
+                pv.setAcquisitionStatus(AcquisitionStatus.EXPIRED);
+            }
+        }
+        return result;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -133,6 +218,16 @@ public class ParameterCacheImpl implements ParameterCache {
      */
     @Override
     public ParameterValue getLastValue(Parameter p) {
+        if (!keepDeliveries) {
+            ValueCacheEntry ve = valueCache.get(p);
+            if (ve == null) {
+                if (!cacheAll) {
+                    parametersToCache.put(p, Boolean.TRUE);
+                }
+                return null;
+            }
+            return ve.getLast();
+        }
         CacheEntry ce = cache.get(p);
         if (ce == null) {
             if (!cacheAll) {
@@ -156,6 +251,16 @@ public class ParameterCacheImpl implements ParameterCache {
 
     @Override
     public List<ParameterValue> getAllValues(Parameter p, long start, long stop) {
+        if (!keepDeliveries) {
+            ValueCacheEntry ve = valueCache.get(p);
+            if (ve == null) {
+                if (!cacheAll) {
+                    parametersToCache.put(p, Boolean.TRUE);
+                }
+                return null;
+            }
+            return ve.getAll(start, stop);
+        }
         CacheEntry ce = cache.get(p);
         if (ce == null) {
             if (!cacheAll) {
@@ -276,8 +381,152 @@ public class ParameterCacheImpl implements ParameterCache {
         }
     }
 
+    /**
+     * Stores a cache for one parameter as an array of values, each with the id of the delivery in which it has been
+     * received.
+     * <p>
+     * The capacity grows in the same way as for the {@link CacheEntry}.
+     */
+    static final class ValueCacheEntry {
+        private ParameterValue[] values;
+        private long[] deliveryIds;
+        int tail = 0;
+        final long timeToCache;
+        final int maxNumEntries;
+        ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        public ValueCacheEntry(long timeToCache, int maxNumEntries) {
+            this.timeToCache = timeToCache;
+            this.maxNumEntries = maxNumEntries;
+            int initialCapacity = Math.min(CacheEntry.INITIAL_CAPACITY, maxNumEntries);
+            if (initialCapacity > 1) { // make sure it's power of 2
+                initialCapacity = Integer.highestOneBit(initialCapacity - 1) << 1;
+            }
+            values = new ParameterValue[initialCapacity];
+            deliveryIds = new long[initialCapacity];
+        }
+
+        public void add(long deliveryId, ParameterValue pv) {
+            lock.writeLock().lock();
+            try {
+                ParameterValue oldpv = values[tail];
+                if (oldpv != null) {
+                    if (pv.getGenerationTime() < oldpv.getGenerationTime()) {
+                        // parameter older than the last one in the queue -> ignore
+                        return;
+                    }
+                    if (pv.getGenerationTime() - oldpv.getGenerationTime() < timeToCache) {
+                        doubleCapacity();
+                    }
+                }
+                values[tail] = pv;
+                deliveryIds[tail] = deliveryId;
+                tail = (tail + 1) & (values.length - 1);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        ParameterValue getLast() {
+            lock.readLock().lock();
+            try {
+                return values[(tail - 1) & (values.length - 1)];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Adds the last value to the result
+         * 
+         * @return the delivery id of the value
+         */
+        long getLast(List<ParameterValue> result) {
+            lock.readLock().lock();
+            try {
+                int k = (tail - 1) & (values.length - 1);
+                result.add(values[k]);
+                return deliveryIds[k];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Adds to the result the (last) value received in the given delivery
+         * 
+         * @return true if a value from the delivery has been found
+         */
+        boolean get(long deliveryId, List<ParameterValue> result) {
+            lock.readLock().lock();
+            try {
+                int n = values.length;
+                int k = tail;
+                do {
+                    k = (k - 1) & (n - 1);
+                    if (values[k] == null || deliveryIds[k] < deliveryId) {
+                        break;
+                    }
+                    if (deliveryIds[k] == deliveryId) {
+                        result.add(values[k]);
+                        return true;
+                    }
+                } while (k != tail);
+                return false;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public List<ParameterValue> getAll(long start, long stop) {
+            lock.readLock().lock();
+            try {
+                List<ParameterValue> plist = new ArrayList<>();
+                int n = values.length;
+                int k = tail;
+                do {
+                    k = (k - 1) & (n - 1);
+                    ParameterValue pv = values[k];
+                    if (pv == null) {
+                        break;
+                    }
+                    long time = pv.getGenerationTime();
+                    if (time > start && time <= stop) {
+                        plist.add(pv);
+                    }
+                } while (k != tail);
+                if (plist.isEmpty()) {
+                    return null;
+                }
+                return plist;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void doubleCapacity() {
+            int capacity = values.length;
+            if (capacity >= maxNumEntries) {
+                return;
+            }
+
+            int newCapacity = 2 * capacity;
+
+            ParameterValue[] newValues = new ParameterValue[newCapacity];
+            System.arraycopy(values, 0, newValues, 0, tail);
+            System.arraycopy(values, tail, newValues, tail + capacity, capacity - tail);
+            values = newValues;
+
+            long[] newDeliveryIds = new long[newCapacity];
+            System.arraycopy(deliveryIds, 0, newDeliveryIds, 0, tail);
+            System.arraycopy(deliveryIds, tail, newDeliveryIds, tail + capacity, capacity - tail);
+            deliveryIds = newDeliveryIds;
+        }
+    }
+
     @Override
     public void clear() {
         cache.clear();
+        valueCache.clear();
     }
 }
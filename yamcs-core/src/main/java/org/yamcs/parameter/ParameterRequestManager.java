@@ -3,10 +3,10 @@ package org.yamcs.parameter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -43,6 +43,9 @@ public class ParameterRequestManager extends AbstractService implements Paramete
     // Maps the parameters to the request(subscription id) in which they have been asked
     private ConcurrentHashMap<Parameter, SubscriptionArray> param2RequestMap = new ConcurrentHashMap<>();
 
+    // Maps the request (subscription id) to the parameters it contains; used to remove quickly a request
+    private ConcurrentHashMap<Integer, Set<Parameter>> request2ParamMap = new ConcurrentHashMap<>();
+
     // Maps the request (subscription id) to the consumer
     private Map<Integer, ParameterConsumer> request2ParameterConsumerMap = new ConcurrentHashMap<>();
 
@@ -69,6 +72,9 @@ public class ParameterRequestManager extends AbstractService implements Paramete
     ParameterCacheConfig cacheConfig;
     LastValueCache lastValueCache;
 
+    // the delivery is built in a buffer reused from one update to the next by the same thread
+    private final ThreadLocal<DeliveryBuffer> deliveryBuffer = ThreadLocal.withInitial(DeliveryBuffer::new);
+
     /**
      * Creates a new ParameterRequestManager, configured to listen to the specified XtceTmProcessor.
      */
@@ -93,7 +99,11 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
 
         if (cacheConfig.enabled) {
-            parameterCache = new ArrayParameterCache(yproc.getInstance(), cacheConfig);
+            if (cacheConfig.keepDeliveries) {
+                parameterCache = new ArrayParameterCache(yproc.getInstance(), cacheConfig);
+            } else {
+                parameterCache = new ParameterCacheImpl(cacheConfig, false);
+            }
         }
     }
 
@@ -311,6 +321,7 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         }
         SubscriptionArray al_req = param2RequestMap.get(para);
         al_req.add(id);
+        request2ParamMap.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(para);
     }
 
     private void removeItemFromRequest(int subscriptionId, Parameter para) {
@@ -318,6 +329,10 @@ public class ParameterRequestManager extends AbstractService implements Paramete
             SubscriptionArray al_req = param2RequestMap.get(para);
             // remove the subscription from the list of this parameter
             if (al_req.remove(subscriptionId)) {
+                Set<Parameter> params = request2ParamMap.get(subscriptionId);
+                if (params != null) {
+                    params.remove(para);
+                }
                 /*
                  * Don't remove the al_req from the map and
                  * don't ask provider to stop providing
@@ -341,23 +356,16 @@ public class ParameterRequestManager extends AbstractService implements Paramete
      */
     public List<Parameter> removeRequest(int subscriptionId) {
         log.debug("removing request for subscriptionId {}", subscriptionId);
-        // It's a bit annoying that we have to loop through all the parameters to find the ones that
-        // are relevant for this request. We could keep track of an additional map.
         ArrayList<Parameter> result = new ArrayList<>();
-        // loop through all the parameter definitions
-        // find all the subscriptions with the requested subscriptionId and add their corresponding
-        // itemId to the list.
-        Iterator<Map.Entry<Parameter, SubscriptionArray>> it = param2RequestMap.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<Parameter, SubscriptionArray> m = it.next();
-            Parameter param = m.getKey();
-            SubscriptionArray al_req = m.getValue();
-            if (al_req.remove(subscriptionId)) {
-                result.add(param);
-            }
-            if (al_req.isEmpty()) { // nobody wants this parameter anymore
+        Set<Parameter> params = request2ParamMap.remove(subscriptionId);
+        if (params != null) {
+            for (Parameter param : params) {
+                SubscriptionArray al_req = param2RequestMap.get(param);
+                if (al_req != null && al_req.remove(subscriptionId)) {
+                    result.add(param);
+                }
                 /*
-                 * if(!cacheAll) { commented out because not thread safe
+                 * if(al_req.isEmpty() && !cacheAll) { commented out because not thread safe
                  * getProvider(param).stopProviding(param);
                  * }
                  */
@@ -426,42 +434,50 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         log.trace("ParamRequestManager.updateItems with {} parameters", params.size());
 
         lastValueCache.update(params);
-        // maps subscription id to a list of (value,id) to be delivered for that subscription
-        HashMap<Integer, ArrayList<ParameterValue>> delivery = new HashMap<>();
-
-        // so first we add to the delivery the parameters just received
-        updateDelivery(delivery, params);
-
-        // then if the delivery updates some of the parameters required by the derived values
-        // compute the derived values
-        for (Map.Entry<Integer, DVParameterConsumer> entry : request2DVParameterConsumerMap.entrySet()) {
-            Integer subscriptionId = entry.getKey();
-            if (delivery.containsKey(subscriptionId)) {
-                List<ParameterValue> pvList = entry.getValue().updateParameters(subscriptionId,
-                        delivery.get(subscriptionId));
-                lastValueCache.update(pvList);
-                updateDelivery(delivery, pvList);
+        // collects for each subscription id the list of values to be delivered for that subscription
+        DeliveryBuffer delivery = deliveryBuffer.get();
+        if (delivery.inUse) {
+            // update called from one of the consumers of the current update
+            delivery = new DeliveryBuffer();
+        }
+        delivery.inUse = true;
+        try {
+            // so first we add to the delivery the parameters just received
+            updateDelivery(delivery, params);
+
+            // then if the delivery updates some of the parameters required by the derived values
+            // compute the derived values
+            for (Map.Entry<Integer, DVParameterConsumer> entry : request2DVParameterConsumerMap.entrySet()) {
+                int subscriptionId = entry.getKey();
+                ArrayList<ParameterValue> al = delivery.get(subscriptionId);
+                if (al != null) {
+                    List<ParameterValue> pvList = entry.getValue().updateParameters(subscriptionId, al);
+                    lastValueCache.update(pvList);
+                    updateDelivery(delivery, pvList);
+                }
             }
-        }
 
-        // and finally deliver the delivery :)
-        for (Map.Entry<Integer, ArrayList<ParameterValue>> entry : delivery.entrySet()) {
-            Integer subscriptionId = entry.getKey();
-            if (request2DVParameterConsumerMap.containsKey(subscriptionId)) {
-                continue;
-            }
-            if (alarmChecker != null && alarmChecker.getSubscriptionId() == subscriptionId) {
-                continue;
-            }
+            // and finally deliver the delivery :)
+            int alarmSubscriptionId = alarmChecker == null ? -1 : alarmChecker.getSubscriptionId();
+            for (int slot = 0; slot < delivery.size(); slot++) {
+                int subscriptionId = delivery.getSubscriptionId(slot);
+                if (subscriptionId == alarmSubscriptionId
+                        || request2DVParameterConsumerMap.containsKey(subscriptionId)) {
+                    continue;
+                }
 
-            ArrayList<ParameterValue> al = entry.getValue();
-            ParameterConsumer consumer = request2ParameterConsumerMap.get(subscriptionId);
-            if (consumer == null) {
-                log.warn("subscriptionId {} appears in the delivery list, but there is no consumer for it",
-                        subscriptionId);
-            } else {
-                consumer.updateItems(subscriptionId, al);
+                ParameterConsumer consumer = request2ParameterConsumerMap.get(subscriptionId);
+                if (consumer == null) {
+                    log.warn("subscriptionId {} appears in the delivery list, but there is no consumer for it",
+                            subscriptionId);
+                } else {
+                    // the consumers may keep the list so they get a copy
+                    consumer.updateItems(subscriptionId, delivery.copyList(slot));
+                }
             }
+        } finally {
+            delivery.clear();
+            delivery.inUse = false;
         }
     }
 
@@ -471,43 +487,26 @@ public class ParameterRequestManager extends AbstractService implements Paramete
      * @param delivery
      * @param params
      */
-    private void updateDelivery(HashMap<Integer, ArrayList<ParameterValue>> delivery,
-            Collection<ParameterValue> params) {
+    private void updateDelivery(DeliveryBuffer delivery, Collection<ParameterValue> params) {
         if (params == null) {
             return;
         }
 
-        for (Iterator<ParameterValue> it = params.iterator(); it.hasNext();) {
-            ParameterValue pv = it.next();
-            Parameter pDef = pv.getParameter();
-            SubscriptionArray cowal = param2RequestMap.get(pDef);
+        for (ParameterValue pv : params) {
+            SubscriptionArray cowal = param2RequestMap.get(pv.getParameter());
             // now walk through the requests and add this item to their delivery list
             if (cowal == null) {
                 continue;
             }
 
             for (int s : cowal.getArray()) {
-                ArrayList<ParameterValue> al = delivery.get(s);
-                if (al == null) {
-                    al = new ArrayList<>();
-                    delivery.put(s, al);
-                }
-                al.add(pv);
+                delivery.add(s, pv);
             }
         }
 
         // update the subscribeAll subscriptions
         for (int id : subscribeAll.getArray()) {
-            ArrayList<ParameterValue> al = delivery.get(id);
-
-            if (al == null) {
-                al = new ArrayList<>();
-                delivery.put(id, al);
-            }
-
-            for (ParameterValue pv : params) {
-                al.add(pv);
-            }
+            delivery.addAll(id, params);
         }
         if (alarmChecker != null) {
             try {
@@ -623,6 +622,12 @@ public class ParameterRequestManager extends AbstractService implements Paramete
             parameterAlarmServer.addAlarmListener(new ParameterAlarmStreamer(s));
             parameterAlarmServer.startAsync();
         }
+        if (parameterCache instanceof ArrayParameterCache) {
+            SystemParametersCollector collector = SystemParametersCollector.getInstance(processor.getInstance());
+            if (collector != null) {
+                ((ArrayParameterCache) parameterCache).registerSystemParameters(collector, processor.getName());
+            }
+        }
 
         notifyStarted();
     }
@@ -632,6 +637,12 @@ public class ParameterRequestManager extends AbstractService implements Paramete
         if (parameterAlarmServer != null) {
             parameterAlarmServer.stopAsync();
         }
+        if (parameterCache instanceof ArrayParameterCache) {
+            SystemParametersCollector collector = SystemParametersCollector.getInstance(processor.getInstance());
+            if (collector != null) {
+                collector.unregisterProducer((ArrayParameterCache) parameterCache);
+            }
+        }
         notifyStopped();
     }
 
@@ -1,7 +1,9 @@
 package org.yamcs.parameterarchive;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.rocksdb.RocksDBException;
@@ -73,10 +75,12 @@ public class ArchiveIntervalFiller {
                 TimeEncoding.toString(ParameterArchive.getIntervalEnd(intervalStart)),
                 pgSegments.size());
 
+        List<PGSegment> toWrite = new ArrayList<>(pgSegments.size());
         for (PGSegment pgs : pgSegments.values()) {
             if (pgs.size() > 0) {
-                parchive.writeToArchive(pgs);
+                toWrite.add(pgs);
             }
         }
+        parchive.writeToArchive(toWrite);
     }
 }
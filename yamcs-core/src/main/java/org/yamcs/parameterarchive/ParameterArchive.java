@@ -7,7 +7,12 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 
 import org.rocksdb.RocksDBException;
@@ -21,6 +26,7 @@ import org.yamcs.Spec;
 import org.yamcs.Spec.OptionType;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
+import org.yamcs.parameter.ValueArray;
 import org.yamcs.time.TimeService;
 import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.DatabaseCorruptionException;
@@ -82,6 +88,12 @@ public class ParameterArchive extends AbstractYamcsService {
     boolean realtimeFillerEnabled;
     boolean backFillerEnabled;
 
+    // if not null, used to encode in parallel the segments written in one batch
+    ForkJoinPool encodingPool;
+
+    // if true, store pre-aggregated values for the numeric parameters
+    boolean rollupsEnabled;
+
     @Override
     public Spec getSpec() {
         Spec spec = new Spec();
@@ -89,6 +101,8 @@ public class ParameterArchive extends AbstractYamcsService {
         spec.addOption("realtimeFiller", OptionType.ANY);
         spec.addOption("partitioningSchema", OptionType.STRING).withDefault("YYYY")
                 .withChoices("YYYY/DOY", "YYYY/MM", "YYYY", "none");
+        spec.addOption("encodingThreads", OptionType.INTEGER).withDefault(1);
+        spec.addOption("rollups", OptionType.BOOLEAN).withDefault(false);
 
         return spec;
     }
@@ -117,6 +131,16 @@ public class ParameterArchive extends AbstractYamcsService {
             partitioningSchema = TimePartitionSchema.getInstance(schema);
         }
 
+        int encodingThreads = config.getInt("encodingThreads");
+        if (encodingThreads < 1) {
+            throw new ConfigurationException("encodingThreads has to be at least 1");
+        }
+        if (encodingThreads > 1) {
+            encodingPool = new ForkJoinPool(encodingThreads);
+        }
+
+        rollupsEnabled = config.getBoolean("rollups");
+
         if (!config.containsKey("backFiller") && !config.containsKey("realtimeFiller")) {
             backFiller = new BackFiller(this, null);
         }
@@ -196,6 +220,14 @@ public class ParameterArchive extends AbstractYamcsService {
         return parameterIdMap;
     }
 
+    /**
+     * 
+     * @return true if the pre-aggregated values (rollups) are stored together with the segments
+     */
+    public boolean isRollupsEnabled() {
+        return rollupsEnabled;
+    }
+
     public ParameterGroupIdDb getParameterGroupIdDb() {
         return parameterGroupIdMap;
     }
@@ -204,36 +236,106 @@ public class ParameterArchive extends AbstractYamcsService {
         pgs.consolidate();
         Partition p = createAndGetPartition(pgs.getSegmentStart());
         try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
-            writeToBatch(writeBatch, p, pgs);
+            encodeSegment(pgs).addTo(writeBatch);
             tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
         }
     }
 
     public void writeToArchive(long segStart, Collection<PGSegment> pgList) throws RocksDBException, IOException {
         Partition p = createAndGetPartition(segStart);
+        for (PGSegment pgs : pgList) {
+            assert (segStart == pgs.getSegmentStart());
+        }
+        List<EncodedSegment> encodedList = consolidateAndEncode(pgList);
         try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+            for (EncodedSegment es : encodedList) {
+                es.addTo(writeBatch);
+            }
+            tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
+        }
+    }
+
+    /**
+     * Writes a collection of segments possibly having different start times.
+     * <p>
+     * The segments are consolidated and encoded (in parallel if the encodingThreads option is greater than 1) and then
+     * all the segments belonging to the same partition are written in one batch.
+     */
+    public void writeToArchive(Collection<PGSegment> pgList) throws RocksDBException, IOException {
+        Map<Partition, List<PGSegment>> byPartition = new LinkedHashMap<>();
+        for (PGSegment pgs : pgList) {
+            Partition p = createAndGetPartition(pgs.getSegmentStart());
+            byPartition.computeIfAbsent(p, k -> new ArrayList<>()).add(pgs);
+        }
+        for (Map.Entry<Partition, List<PGSegment>> me : byPartition.entrySet()) {
+            Partition p = me.getKey();
+            List<EncodedSegment> encodedList = consolidateAndEncode(me.getValue());
+            try (WriteBatch writeBatch = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+                for (EncodedSegment es : encodedList) {
+                    es.addTo(writeBatch);
+                }
+                tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
+            }
+        }
+    }
 
+    /**
+     * consolidates and encodes the segments, using the encoding pool if configured.
+     * <p>
+     * The returned list is in the same order as the input collection.
+     */
+    List<EncodedSegment> consolidateAndEncode(Collection<PGSegment> pgList) {
+        List<EncodedSegment> result = new ArrayList<>(pgList.size());
+        if (encodingPool == null || pgList.size() < 2) {
             for (PGSegment pgs : pgList) {
                 pgs.consolidate();
-                assert (segStart == pgs.getSegmentStart());
-                writeToBatch(writeBatch, p, pgs);
+                result.add(encodeSegment(pgs));
             }
-            tablespace.getRdb(p.partitionDir, false).getDb().write(wo, writeBatch);
+            return result;
         }
+
+        List<Callable<EncodedSegment>> tasks = new ArrayList<>(pgList.size());
+        for (PGSegment pgs : pgList) {
+            tasks.add(() -> {
+                pgs.consolidate();
+                return encodeSegment(pgs);
+            });
+        }
+        try {
+            for (Future<EncodedSegment> f : encodingPool.invokeAll(tasks)) {
+                result.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ParameterArchiveException("Interrupted while encoding segments", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ParameterArchiveException("Error encoding segments", cause);
+        }
+        return result;
     }
 
-    private void writeToBatch(WriteBatch writeBatch, Partition p, PGSegment pgs) throws RocksDBException {
-        // write the time segment
+    /**
+     * encodes the time segment and the consolidated value and status segments
+     * <p>
+     * Can be called concurrently for different segments.
+     */
+    EncodedSegment encodeSegment(PGSegment pgs) {
+        EncodedSegment es = new EncodedSegment();
+        // the time segment
         SortedTimeSegment timeSegment = pgs.getTimeSegment();
         byte[] timeKey = new SegmentKey(parameterIdMap.timeParameterId, pgs.getParameterGroupId(),
                 pgs.getSegmentStart(), SegmentKey.TYPE_ENG_VALUE).encode();
-        byte[] timeValue = vsEncoder.encode(timeSegment);
-        writeBatch.put(timeKey, timeValue);
+        es.add(timeKey, vsEncoder.encode(timeSegment));
 
         // and then the consolidated value segments
         List<BaseSegment> consolidated = pgs.getConsolidatedValueSegments();
         List<BaseSegment> consolidatedRawValues = pgs.getConsolidatedRawValueSegments();
         List<ParameterStatusSegment> satusSegments = pgs.getConsolidatedParameterStatusSegments();
+        long[] timestamps = null;
 
         for (int i = 0; i < consolidated.size(); i++) {
             BaseSegment vs = consolidated.get(i);
@@ -249,8 +351,14 @@ public class ParameterArchive extends AbstractYamcsService {
             }
             byte[] engKey = new SegmentKey(parameterId, pgs.getParameterGroupId(), pgs.getSegmentStart(),
                     SegmentKey.TYPE_ENG_VALUE).encode();
-            byte[] engValue = vsEncoder.encode(vs);
-            writeBatch.put(engKey, engValue);
+            es.add(engKey, vsEncoder.encode(vs));
+
+            if (rollupsEnabled && (vs instanceof ValueSegment)) {
+                if (timestamps == null) {
+                    timestamps = timeSegment.getRange(0, timeSegment.size(), true);
+                }
+                encodeRollups(es, pgs, parameterId, timestamps, (ValueSegment) vs);
+            }
 
             if (STORE_RAW_VALUES && consolidatedRawValues != null) {
                 BaseSegment rvs = consolidatedRawValues.get(i);
@@ -265,9 +373,7 @@ public class ParameterArchive extends AbstractYamcsService {
                     }
                     byte[] rawKey = new SegmentKey(parameterId, pgs.getParameterGroupId(), pgs.getSegmentStart(),
                             SegmentKey.TYPE_RAW_VALUE).encode();
-                    byte[] rawValue = vsEncoder.encode(rvs);
-                    writeBatch.put(rawKey, rawValue);
-
+                    es.add(rawKey, vsEncoder.encode(rvs));
                 }
             }
             ParameterStatusSegment pss = satusSegments.get(i);
@@ -280,8 +386,28 @@ public class ParameterArchive extends AbstractYamcsService {
             }
             byte[] pssKey = new SegmentKey(parameterId, pgs.getParameterGroupId(), pgs.getSegmentStart(),
                     SegmentKey.TYPE_PARAMETER_STATUS).encode();
-            byte[] pssValue = vsEncoder.encode(pss);
-            writeBatch.put(pssKey, pssValue);
+            es.add(pssKey, vsEncoder.encode(pss));
+        }
+        return es;
+    }
+
+    private void encodeRollups(EncodedSegment es, PGSegment pgs, int parameterId, long[] timestamps,
+            ValueSegment vs) {
+        ValueArray va = vs.getRange(0, timestamps.length, true);
+        if (!RollupSegment.isNumeric(va.getType())) {
+            return;
+        }
+        for (int level = 0; level < RollupSegment.RESOLUTIONS.length; level++) {
+            RollupSegment rs = RollupSegment.build(RollupSegment.RESOLUTIONS[level], timestamps, va);
+            byte[] rollupKey = new SegmentKey(parameterId, pgs.getParameterGroupId(), pgs.getSegmentStart(),
+                    (byte) (SegmentKey.TYPE_ROLLUP + level)).encode();
+            if (rs.size() * RollupSegment.MIN_REDUCTION_FACTOR > timestamps.length) {
+                // not worth storing, the retrieval will use the values.
+                // The delete is for the case when the segment is overwritten by a back filling.
+                es.delete(rollupKey);
+            } else {
+                es.add(rollupKey, vsEncoder.encode(rs));
+            }
         }
     }
 
@@ -366,6 +492,9 @@ public class ParameterArchive extends AbstractYamcsService {
             realtimeFiller.stopAsync();
             realtimeFiller.awaitTerminated();
         }
+        if (encodingPool != null) {
+            encodingPool.shutdown();
+        }
         notifyStopped();
     }
 
@@ -484,4 +613,31 @@ public class ParameterArchive extends AbstractYamcsService {
         }
     }
 
+
+    /**
+     * key/value pairs resulted from encoding one {@link PGSegment}
+     */
+    static class EncodedSegment {
+        final List<byte[]> keys = new ArrayList<>();
+        final List<byte[]> values = new ArrayList<>();
+        final List<byte[]> deletedKeys = new ArrayList<>();
+
+        void add(byte[] key, byte[] value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        void delete(byte[] key) {
+            deletedKeys.add(key);
+        }
+
+        void addTo(WriteBatch writeBatch) throws RocksDBException {
+            for (byte[] key : deletedKeys) {
+                writeBatch.delete(key);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                writeBatch.put(keys.get(i), values.get(i));
+            }
+        }
+    }
 }
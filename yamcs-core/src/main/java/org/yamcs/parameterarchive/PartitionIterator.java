@@ -23,14 +23,30 @@ public class PartitionIterator {
     private byte[] currentEngValueSegment;
     private byte[] currentRawValueSegment;
     private byte[] currentStatusSegment;
+    private byte[] currentRollupSegment;
     final boolean retrieveEngValue;
     final boolean retrieveRawValue;
     final boolean retrieveParameterStatus;
+    // the rollup level to retrieve or -1 if no rollup is retrieved
+    final int rollupLevel;
     DbIterator dbIterator;
     boolean valid;
 
     public PartitionIterator(RocksIterator iterator, int parameterId, int parameterGroupId, long start, long stop,
             boolean ascending, boolean retrieveEngValue, boolean retrieveRawValue, boolean retrieveParameterStatus) {
+        this(iterator, parameterId, parameterGroupId, start, stop, ascending, retrieveEngValue, retrieveRawValue,
+                retrieveParameterStatus, -1);
+    }
+
+    /**
+     * 
+     * @param rollupLevel
+     *            - if not negative, the rollup segment of this level is also loaded (see {@link RollupSegment})
+     */
+    public PartitionIterator(RocksIterator iterator, int parameterId, int parameterGroupId, long start, long stop,
+            boolean ascending, boolean retrieveEngValue, boolean retrieveRawValue, boolean retrieveParameterStatus,
+            int rollupLevel) {
+        this.rollupLevel = rollupLevel;
         this.parameterId = parameterId;
         this.parameterGroupId = parameterGroupId;
         this.start = start;
@@ -66,6 +82,7 @@ public class PartitionIterator {
     void nextAscending() {
         currentKey = SegmentKey.decode(dbIterator.key());
         valid = true;
+        currentRollupSegment = null;
 
         SegmentKey key = currentKey;
         while (key.segmentStart == currentKey.segmentStart) {
@@ -82,6 +99,7 @@ public class PartitionIterator {
     void nextDescending() {
         currentKey = SegmentKey.decode(dbIterator.key());
         valid = true;
+        currentRollupSegment = null;
         SegmentKey key = currentKey;
 
         while (key.segmentStart == currentKey.segmentStart) {
@@ -105,6 +123,9 @@ public class PartitionIterator {
         if ((type == SegmentKey.TYPE_PARAMETER_STATUS) && retrieveParameterStatus) {
             currentStatusSegment = dbIterator.value();
         }
+        if ((rollupLevel >= 0) && (type == SegmentKey.TYPE_ROLLUP + rollupLevel)) {
+            currentRollupSegment = dbIterator.value();
+        }
     }
 
     SegmentKey key() {
@@ -144,6 +165,22 @@ public class PartitionIterator {
         }
     }
 
+    /**
+     * 
+     * @return the rollup segment of the requested level or null if it has not been requested or it is not stored for
+     *         the current segment
+     */
+    RollupSegment rollup() {
+        if (currentRollupSegment == null) {
+            return null;
+        }
+        try {
+            return (RollupSegment) segmentEncoder.decode(currentRollupSegment, currentKey.segmentStart);
+        } catch (DecodingException e) {
+            throw new DatabaseCorruptionException(e);
+        }
+    }
+
     boolean isValid() {
         return valid;
     }
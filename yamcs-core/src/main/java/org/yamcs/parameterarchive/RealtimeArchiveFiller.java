@@ -2,6 +2,7 @@ package org.yamcs.parameterarchive;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -9,6 +10,7 @@ import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.rocksdb.RocksDBException;
 import org.yamcs.ConfigurationException;
@@ -18,6 +20,8 @@ import org.yamcs.YamcsServer;
 import org.yamcs.logging.Log;
 import org.yamcs.parameter.ParameterConsumer;
 import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.parameter.SystemParametersProducer;
 
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 
@@ -34,14 +38,39 @@ import com.google.common.util.concurrent.AbstractExecutionThreadService;
  * We keep open max two segments for each group, one in each interval.
  * 
  * If the group reaches its max size, we archive it and open another one.
+ * <p>
+ * The deliveries are passed from the processor thread to the archiving thread through a bounded queue. What happens
+ * when the queue is full (for example because the RocksDB compaction stalls the writes) is determined by the
+ * {@link QueueFullPolicy}. With the default {@link QueueFullPolicy#BLOCK} the processor thread waits; the other
+ * policies guarantee that the processor thread is never blocked by the archive.
  * 
  * @author nm
  *
  */
-public class RealtimeArchiveFiller extends AbstractExecutionThreadService implements ParameterConsumer {
+public class RealtimeArchiveFiller extends AbstractExecutionThreadService
+        implements ParameterConsumer, SystemParametersProducer {
 
     private static final List<ParameterValue> POISON = new ArrayList<>(0);
 
+    /**
+     * What to do with a delivery when the queue towards the archiving thread is full
+     */
+    public enum QueueFullPolicy {
+        /**
+         * block the processor thread until there is space in the queue
+         */
+        BLOCK,
+        /**
+         * merge the delivery with the other pending ones into one large batch; if the batch exceeds
+         * maxCoalescedParameters, the delivery is dropped
+         */
+        COALESCE,
+        /**
+         * drop the delivery
+         */
+        DROP
+    }
+
     int flushInterval; // seconds
     String processorName = "realtime";
     final String yamcsInstance;
@@ -51,7 +80,21 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
     protected final ParameterGroupIdDb parameterGroupIdMap;
     final ParameterArchive parameterArchive;
     final private Log log;
-    final BlockingQueue<List<ParameterValue>> queue = new ArrayBlockingQueue<>(10);
+    BlockingQueue<List<ParameterValue>> queue;
+    int queueSize = 10;
+    QueueFullPolicy queueFullPolicy = QueueFullPolicy.BLOCK;
+    int maxCoalescedParameters = 100000;
+
+    // used in the COALESCE mode to accumulate the deliveries which do not fit in the queue
+    final Object overflowLock = new Object();
+    List<ParameterValue> overflow = new ArrayList<>();
+
+    // statistics
+    final AtomicLong numDroppedParams = new AtomicLong();
+    final AtomicLong numCoalescedParams = new AtomicLong();
+    final AtomicLong stallTimeNanos = new AtomicLong();
+
+    String spQueueDepth, spOverflowSize, spDroppedParams, spCoalescedParams, spStallTime;
 
     // max allowed time for old data
     long threshold;
@@ -70,6 +113,7 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
         if (config != null) {
             parseConfig(config);
         }
+        queue = new ArrayBlockingQueue<>(queueSize);
     }
 
     private void parseConfig(YConfiguration config) {
@@ -77,12 +121,32 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
         processorName = config.getString("processorName", processorName);
         maxSegmentSize = config.getInt("maxSegmentSize", ArchiveFillerTask.DEFAULT_MAX_SEGMENT_SIZE);
         threshold = config.getInt("orderingThreshold", 20000);
+        queueSize = config.getInt("queueSize", queueSize);
+        if (queueSize < 1) {
+            throw new ConfigurationException("Invalid queueSize " + queueSize + "; it has to be greater than 0");
+        }
+        if (config.containsKey("queueFullPolicy")) {
+            String s = config.getString("queueFullPolicy");
+            try {
+                queueFullPolicy = QueueFullPolicy.valueOf(s.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ConfigurationException("Invalid queueFullPolicy '" + s + "'; valid values are: "
+                        + Arrays.toString(QueueFullPolicy.values()));
+            }
+        }
+        maxCoalescedParameters = config.getInt("maxCoalescedParameters", maxCoalescedParameters);
     }
 
     @Override
     protected void run() throws Exception {
         while (isRunning()) {
-            List<ParameterValue> items = queue.poll(flushInterval, TimeUnit.SECONDS);
+            List<ParameterValue> items = null;
+            if (queueFullPolicy == QueueFullPolicy.COALESCE) {
+                items = drainOverflow();
+            }
+            if (items == null) {
+                items = queue.poll(flushInterval, TimeUnit.SECONDS);
+            }
             if (items == POISON) { // Service wants to stop
                 break;
             }
@@ -113,10 +177,69 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
     // send the parameters to the processing thread
     @Override
     public void updateItems(int subscriptionId, List<ParameterValue> items) {
+        switch (queueFullPolicy) {
+        case BLOCK:
+            putBlocking(items);
+            break;
+        case DROP:
+            if (!queue.offer(items)) {
+                drop(items);
+            }
+            break;
+        case COALESCE:
+            synchronized (overflowLock) {
+                // once we started coalescing, all the new data goes into the overflow to preserve the ordering
+                if (!overflow.isEmpty() || !queue.offer(items)) {
+                    if (overflow.size() + items.size() > maxCoalescedParameters) {
+                        drop(items);
+                    } else {
+                        overflow.addAll(items);
+                        numCoalescedParams.addAndGet(items.size());
+                    }
+                }
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown policy " + queueFullPolicy);
+        }
+    }
+
+    private void putBlocking(List<ParameterValue> items) {
+        if (queue.offer(items)) {
+            return;
+        }
+        long t0 = System.nanoTime();
         try {
             queue.put(items);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+        } finally {
+            stallTimeNanos.addAndGet(System.nanoTime() - t0);
+        }
+    }
+
+    private void drop(List<ParameterValue> items) {
+        long n = numDroppedParams.getAndAdd(items.size());
+        if (n == 0) {
+            log.warn("Parameter archive queue full, dropping {} parameters; further drops are only counted",
+                    items.size());
+        }
+    }
+
+    /**
+     * Called from the archiving thread when the queue is empty to retrieve the parameters accumulated in the COALESCE
+     * mode.
+     * 
+     * @return the accumulated parameters or null if there is nothing accumulated or the queue is not yet empty
+     */
+    private List<ParameterValue> drainOverflow() {
+        synchronized (overflowLock) {
+            if (overflow.isEmpty() || !queue.isEmpty()) {
+                return null;
+            }
+            List<ParameterValue> l = overflow;
+            overflow = new ArrayList<>();
+            return l;
         }
     }
 
@@ -141,6 +264,37 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
             throw new ConfigurationException("No processor named '" + processorName + "' in instance " + yamcsInstance);
         }
         subscriptionId = realtimeProcessor.getParameterRequestManager().subscribeAll(this);
+        setupSystemParameters();
+    }
+
+    private void setupSystemParameters() {
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            String prefix = collector.getNamespace() + "/parameterArchive/realtimeFiller/";
+            spQueueDepth = prefix + "queueDepth";
+            spOverflowSize = prefix + "overflowSize";
+            spDroppedParams = prefix + "droppedParameters";
+            spCoalescedParams = prefix + "coalescedParameters";
+            spStallTime = prefix + "stallTimeMillis";
+            collector.registerProducer(this);
+        }
+    }
+
+    @Override
+    public Collection<ParameterValue> getSystemParameters() {
+        long time = realtimeProcessor.getCurrentTime();
+        int overflowSize;
+        synchronized (overflowLock) {
+            overflowSize = overflow.size();
+        }
+        List<ParameterValue> pvlist = new ArrayList<>();
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spQueueDepth, time, queue.size()));
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spOverflowSize, time, overflowSize));
+        pvlist.add(SystemParametersCollector.getPV(spDroppedParams, time, numDroppedParams.get()));
+        pvlist.add(SystemParametersCollector.getPV(spCoalescedParams, time, numCoalescedParams.get()));
+        pvlist.add(SystemParametersCollector.getPV(spStallTime, time,
+                TimeUnit.NANOSECONDS.toMillis(stallTimeNanos.get())));
+        return pvlist;
     }
 
     @Override
@@ -154,6 +308,10 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
 
     @Override
     protected void shutDown() {
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            collector.unregisterProducer(this);
+        }
         realtimeProcessor.getParameterRequestManager().unsubscribeAll(subscriptionId);
     }
 
@@ -220,4 +378,20 @@ public class RealtimeArchiveFiller extends AbstractExecutionThreadService implem
     public long getNumProcessedParameters() {
         return numParams;
     }
+
+    /**
+     * 
+     * @return the number of parameters dropped because the queue towards the archiving thread was full
+     */
+    public long getNumDroppedParameters() {
+        return numDroppedParams.get();
+    }
+
+    /**
+     * 
+     * @return the total time in milliseconds the processor thread has been blocked waiting for space in the queue
+     */
+    public long getStallTime() {
+        return TimeUnit.NANOSECONDS.toMillis(stallTimeNanos.get());
+    }
 }
@@ -0,0 +1,181 @@
+package org.yamcs.parameterarchive;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.yamcs.logging.Log;
+import org.yamcs.parameter.ValueArray;
+import org.yamcs.parameterarchive.ParameterArchive.Partition;
+import org.yamcs.utils.DatabaseCorruptionException;
+
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalEnd;
+import static org.yamcs.parameterarchive.ParameterArchive.getIntervalStart;
+
+/**
+ * Retrieves the pre-aggregated values (see {@link RollupSegment}) of one parameter.
+ * <p>
+ * The segments for which the rollup of the requested level is not available (because they have been written before
+ * the rollups have been enabled or because they contain too few values) are sent as values.
+ * <p>
+ * The data is sent in ascending order for each parameter group, but the groups are not merged; the consumers have to
+ * be insensitive to the order of the data (as the downsamplers are).
+ */
+public class RollupRetrieval {
+    private static final Log log = new Log(RollupRetrieval.class);
+
+    final ParameterArchive parchive;
+    final ParameterId[] pids;
+    final int level;
+    final long start, stop;
+    long lastTime = Long.MIN_VALUE;
+
+    public interface RollupConsumer {
+        /**
+         * Called for each bucket of the rollup
+         *
+         * @param bucketStart
+         *            - the start of the bucket
+         * @param resolution
+         *            - the bucket duration
+         */
+        void acceptBucket(long bucketStart, long resolution, int count, double min, double max, double sum,
+                double first, double last);
+    }
+
+    /**
+     *
+     * @param level
+     *            - the index in the {@link RollupSegment#RESOLUTIONS} array
+     */
+    public RollupRetrieval(ParameterArchive parchive, String parameterFqn, int level, long start, long stop) {
+        if (level < 0 || level >= RollupSegment.RESOLUTIONS.length) {
+            throw new IllegalArgumentException("Invalid rollup level " + level);
+        }
+        this.parchive = parchive;
+        this.level = level;
+        this.start = start;
+        this.stop = stop;
+        this.pids = parchive.getParameterIdDb().get(parameterFqn);
+    }
+
+    /**
+     * Returns the level of the coarsest rollup whose resolution is not larger than the given step.
+     *
+     * @param step
+     *            - the desired time resolution in milliseconds
+     * @return the rollup level or -1 if the step is smaller than the finest rollup resolution
+     */
+    public static int getLevel(long step) {
+        int level = -1;
+        for (int i = 0; i < RollupSegment.RESOLUTIONS.length; i++) {
+            if (RollupSegment.RESOLUTIONS[i] <= step) {
+                level = i;
+            }
+        }
+        return level;
+    }
+
+    /**
+     *
+     * @param rollupConsumer
+     *            - receives the pre-aggregated buckets
+     * @param valueConsumer
+     *            - receives the values of the segments without rollup
+     */
+    public void retrieve(RollupConsumer rollupConsumer, Consumer<ParameterValueArray> valueConsumer)
+            throws RocksDBException, IOException {
+        if (pids == null) {
+            return;
+        }
+        List<Partition> parts = parchive.getPartitions(getIntervalStart(start), getIntervalEnd(stop), true);
+        for (ParameterId pid : pids) {
+            for (int pgid : parchive.getParameterGroupIdDb().getAllGroups(pid.pid)) {
+                for (Partition p : parts) {
+                    retrieveFromPartition(pid, pgid, p, rollupConsumer, valueConsumer);
+                }
+            }
+        }
+    }
+
+    private void retrieveFromPartition(ParameterId pid, int pgid, Partition p, RollupConsumer rollupConsumer,
+            Consumer<ParameterValueArray> valueConsumer) throws RocksDBException, IOException {
+        try (RocksIterator it = parchive.getIterator(p)) {
+            PartitionIterator pit = new PartitionIterator(it, pid.pid, pgid, start, stop, true, true, false, false,
+                    level);
+            while (pit.isValid()) {
+                RollupSegment rs = pit.rollup();
+                if (rs != null) {
+                    sendBuckets(rs, rollupConsumer);
+                } else {
+                    ValueSegment vs = pit.engValue();
+                    if (vs != null) {
+                        sendValues(p, pgid, pit.key(), vs, valueConsumer);
+                    }
+                }
+                pit.next();
+            }
+        }
+    }
+
+    private void sendBuckets(RollupSegment rs, RollupConsumer consumer) {
+        long resolution = rs.getResolution();
+        for (int i = 0; i < rs.size(); i++) {
+            long t = rs.getBucketStart(i);
+            if (t + resolution <= start || t >= stop) {
+                continue;
+            }
+            consumer.acceptBucket(t, resolution, rs.getCount(i), rs.getMin(i), rs.getMax(i), rs.getSum(i),
+                    rs.getFirst(i), rs.getLast(i));
+        }
+        if (rs.getSegmentEnd() > lastTime) {
+            lastTime = Math.min(rs.getSegmentEnd(), stop);
+        }
+    }
+
+    private void sendValues(Partition p, int pgid, SegmentKey key, ValueSegment vs,
+            Consumer<ParameterValueArray> consumer) throws RocksDBException, IOException {
+        SortedTimeSegment timeSegment = parchive.getTimeSegment(p, key.segmentStart, pgid);
+        if (timeSegment == null) {
+            String msg = "Cannot find a time segment for parameterGroupId=" + pgid + " segmentStart = "
+                    + key.segmentStart + " despite having a value segment";
+            log.error(msg);
+            throw new DatabaseCorruptionException(msg);
+        }
+        int posStart = 0;
+        if (start >= timeSegment.getSegmentStart()) {
+            posStart = timeSegment.search(start);
+            if (posStart < 0) {
+                posStart = -posStart - 1;
+            }
+        }
+        int posStop = timeSegment.size();
+        if (stop <= timeSegment.getSegmentEnd()) {
+            posStop = timeSegment.search(stop);
+            if (posStop < 0) {
+                posStop = -posStop - 1;
+            }
+        }
+        if (posStart >= posStop) {
+            return;
+        }
+        long[] timestamps = timeSegment.getRange(posStart, posStop, true);
+        ValueArray engValues = vs.getRange(posStart, posStop, true);
+        consumer.accept(new ParameterValueArray(timestamps, engValues, null, null));
+        long t = timestamps[timestamps.length - 1];
+        if (t > lastTime) {
+            lastTime = t;
+        }
+    }
+
+    /**
+     *
+     * @return the timestamp of the last value covered by the data sent to the consumers or {@link Long#MIN_VALUE} if
+     *         no data has been sent.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+}
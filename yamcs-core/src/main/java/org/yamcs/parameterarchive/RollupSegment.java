@@ -0,0 +1,244 @@
+package org.yamcs.parameterarchive;
+
+import java.nio.ByteBuffer;
+
+import org.yamcs.parameter.ValueArray;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.DoubleArray;
+import org.yamcs.utils.IntArray;
+import org.yamcs.utils.LongArray;
+import org.yamcs.utils.UnsignedLong;
+import org.yamcs.utils.VarIntUtil;
+
+/**
+ * Pre-aggregated values of one numeric parameter for one segment.
+ * <p>
+ * The segment time range is divided in buckets of fixed duration (the resolution), aligned to multiples of the
+ * resolution. For each non-empty bucket it stores the number of values, the min, max, sum, first and last value.
+ * <p>
+ * The rollups are stored next to the value segments with the key type {@link SegmentKey#TYPE_ROLLUP} + level, where
+ * level is the index in the {@link #RESOLUTIONS} array.
+ *
+ */
+public class RollupSegment extends BaseSegment {
+    /**
+     * the resolutions of the rollup levels (1 second, 1 minute and 1 hour)
+     */
+    public static final long[] RESOLUTIONS = { 1000, 60_000, 3_600_000 };
+    /**
+     * a level is stored only if the number of buckets is smaller than the number of values by at least this factor
+     */
+    static final int MIN_REDUCTION_FACTOR = 4;
+
+    final static byte SUBFORMAT_ID_RAW = 0;
+
+    long resolution;
+    long segmentEnd;
+    LongArray bucketStarts;
+    IntArray counts;
+    DoubleArray min, max, sum, first, last;
+
+    RollupSegment(long resolution) {
+        super(FORMAT_ID_RollupSegment);
+        this.resolution = resolution;
+        bucketStarts = new LongArray();
+        counts = new IntArray();
+        min = new DoubleArray();
+        max = new DoubleArray();
+        sum = new DoubleArray();
+        first = new DoubleArray();
+        last = new DoubleArray();
+    }
+
+    /**
+     * Returns true if values of this type can be aggregated
+     */
+    static boolean isNumeric(Type type) {
+        switch (type) {
+        case DOUBLE:
+        case FLOAT:
+        case SINT32:
+        case UINT32:
+        case SINT64:
+        case UINT64:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Builds the rollup for the given timestamps and values.
+     *
+     * @param resolution
+     *            - the bucket duration in milliseconds
+     * @param timestamps
+     *            - sorted timestamps
+     * @param values
+     *            - values corresponding to the timestamps; the type has to be numeric
+     */
+    static RollupSegment build(long resolution, long[] timestamps, ValueArray values) {
+        RollupSegment rs = new RollupSegment(resolution);
+        int n = timestamps.length;
+        if (n > 0) {
+            rs.segmentEnd = timestamps[n - 1];
+        }
+        for (int i = 0; i < n; i++) {
+            rs.add(timestamps[i], toDouble(values, i));
+        }
+        return rs;
+    }
+
+    static double toDouble(ValueArray va, int i) {
+        switch (va.getType()) {
+        case FLOAT:
+            return va.getFloatArray()[i];
+        case DOUBLE:
+            return va.getDoubleArray()[i];
+        case UINT32:
+            return va.getIntArray()[i] & 0xFFFFFFFFL;
+        case SINT32:
+            return va.getIntArray()[i];
+        case UINT64:
+            return UnsignedLong.toDouble(va.getLongArray()[i]);
+        case SINT64:
+            return va.getLongArray()[i];
+        default:
+            throw new IllegalArgumentException("Cannot aggregate values of type " + va.getType());
+        }
+    }
+
+    private void add(long t, double v) {
+        long bs = t - Math.floorMod(t, resolution);
+        int k = bucketStarts.size() - 1;
+        if (k >= 0 && bucketStarts.get(k) == bs) {
+            counts.set(k, counts.get(k) + 1);
+            if (v < min.get(k)) {
+                min.set(k, v);
+            }
+            if (v > max.get(k)) {
+                max.set(k, v);
+            }
+            sum.set(k, sum.get(k) + v);
+            last.set(k, v);
+        } else {
+            bucketStarts.add(bs);
+            counts.add(1);
+            min.add(v);
+            max.add(v);
+            sum.add(v);
+            first.add(v);
+            last.add(v);
+        }
+    }
+
+    public long getResolution() {
+        return resolution;
+    }
+
+    /**
+     *
+     * @return the timestamp of the last value aggregated in this segment
+     */
+    public long getSegmentEnd() {
+        return segmentEnd;
+    }
+
+    public long getBucketStart(int idx) {
+        return bucketStarts.get(idx);
+    }
+
+    public int getCount(int idx) {
+        return counts.get(idx);
+    }
+
+    public double getMin(int idx) {
+        return min.get(idx);
+    }
+
+    public double getMax(int idx) {
+        return max.get(idx);
+    }
+
+    public double getSum(int idx) {
+        return sum.get(idx);
+    }
+
+    public double getFirst(int idx) {
+        return first.get(idx);
+    }
+
+    public double getLast(int idx) {
+        return last.get(idx);
+    }
+
+    /**
+     * the number of buckets
+     */
+    @Override
+    public int size() {
+        return bucketStarts.size();
+    }
+
+    @Override
+    public void writeTo(ByteBuffer bb) {
+        bb.put(SUBFORMAT_ID_RAW);
+        VarIntUtil.writeVarInt64(bb, resolution);
+        bb.putLong(segmentEnd);
+        int n = bucketStarts.size();
+        VarIntUtil.writeVarInt32(bb, n);
+        long prev = n > 0 ? bucketStarts.get(0) : 0;
+        bb.putLong(prev);
+        for (int i = 0; i < n; i++) {
+            long bs = bucketStarts.get(i);
+            // the bucket starts are stored as number of buckets since the previous one (all within one interval)
+            VarIntUtil.writeVarInt32(bb, (int) ((bs - prev) / resolution));
+            prev = bs;
+            VarIntUtil.writeVarInt32(bb, counts.get(i));
+            bb.putDouble(min.get(i));
+            bb.putDouble(max.get(i));
+            bb.putDouble(sum.get(i));
+            bb.putDouble(first.get(i));
+            bb.putDouble(last.get(i));
+        }
+    }
+
+    private void parse(ByteBuffer bb) throws DecodingException {
+        byte fid = bb.get();
+        if (fid != SUBFORMAT_ID_RAW) {
+            throw new DecodingException("Uknown sub format id: " + fid);
+        }
+        resolution = VarIntUtil.readVarInt64(bb);
+        segmentEnd = bb.getLong();
+        int n = VarIntUtil.readVarInt32(bb);
+        long prev = bb.getLong();
+        for (int i = 0; i < n; i++) {
+            long bs = prev + VarIntUtil.readVarInt32(bb) * resolution;
+            prev = bs;
+            bucketStarts.add(bs);
+            counts.add(VarIntUtil.readVarInt32(bb));
+            min.add(bb.getDouble());
+            max.add(bb.getDouble());
+            sum.add(bb.getDouble());
+            first.add(bb.getDouble());
+            last.add(bb.getDouble());
+        }
+    }
+
+    public static RollupSegment parseFrom(ByteBuffer bb) throws DecodingException {
+        RollupSegment r = new RollupSegment(0);
+        r.parse(bb);
+        return r;
+    }
+
+    @Override
+    public int getMaxSerializedSize() {
+        return 40 + 50 * bucketStarts.size();
+    }
+
+    @Override
+    public String toString() {
+        return "RollupSegment[resolution: " + resolution + ", numBuckets: " + bucketStarts.size() + "]";
+    }
+}
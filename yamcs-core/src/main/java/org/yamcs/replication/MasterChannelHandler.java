@@ -31,10 +31,12 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
     Request req;
     ChannelFuture dataHandlingFuture;
     ReplicationFile currentFile;
-    long nextTxToSend;
+    volatile long nextTxToSend;
     ReplicationTail fileTail;
     final Log log;
     SlaveServer slaveServer;
+    // not null if the slave requested compression
+    MessageCompressor compressor;
 
     // called when we are TCP client, we first send a wakeup message and then we receive the request
     public MasterChannelHandler(ReplicationMaster master, SlaveServer slaveServer) {
@@ -113,6 +115,12 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
             log.info("The slave did not provide a startTxId, starting from 0");
             nextTxToSend = 0;
         }
+        closeCompressor();
+        if (req.getCompression()) {
+            log.debug("Sending compressed data, compression level {}", replMaster.compressionLevel);
+            compressor = new MessageCompressor(replMaster.compressionLevel);
+        }
+        replMaster.channelHandlers.add(this);
         goToNextFile();
 
     }
@@ -126,6 +134,9 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
             return;
         }
         log.trace("Found file with firstTxId={} nextTxId={}", currentFile.getFirstId(), currentFile.getNextTxId());
+        if (currentFile.isFull()) { // catching up; load the file and the following ones while sending the data
+            replMaster.prefetch(Math.max(nextTxToSend, currentFile.getFirstId()));
+        }
         if (nextTxToSend < currentFile.getFirstId()) {
             log.warn("Requested start from {} but the first available transaction is {}. Replaying from there",
                     nextTxToSend, currentFile.getFirstId());
@@ -140,8 +151,7 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
                     break;
                 }
                 log.debug("Sending metadata TX{} length: {} ", txId, buf.remaining());
-                ByteBuf bb = Unpooled.wrappedBuffer(buf);
-                channelHandlerContext.writeAndFlush(bb);
+                send(buf);
             }
         }
         fileTail = null;
@@ -166,8 +176,7 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
                 workerGroup.schedule(() -> sendMoreData(), 200, TimeUnit.MILLISECONDS);
             }
         } else {// got some data, send it and check back for more once the data has been sent
-            ByteBuf buf = Unpooled.wrappedBuffer(fileTail.buf);
-            dataHandlingFuture = channelHandlerContext.writeAndFlush(buf).addListener(a -> {
+            dataHandlingFuture = send(fileTail.buf).addListener(a -> {
                 fileTail.buf.position(fileTail.buf.limit());
                 nextTxToSend = fileTail.nextTxId;
                 sendMoreData();
@@ -175,6 +184,36 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
         }
     }
 
+    /**
+     * Sends the messages contained in the buffer, compressing them if the slave requested so. The buffer position is
+     * not modified.
+     * <p>
+     * Synchronized because the compressed messages have to be written in the order in which they are produced.
+     */
+    private synchronized ChannelFuture send(ByteBuffer buf) {
+        replMaster.dataBytes.addAndGet(buf.remaining());
+        if (compressor == null) {
+            replMaster.wireBytes.addAndGet(buf.remaining());
+            return channelHandlerContext.writeAndFlush(Unpooled.wrappedBuffer(buf));
+        }
+        ChannelFuture future = null;
+        for (ByteBuffer cbuf : compressor.compress(buf)) {
+            replMaster.wireBytes.addAndGet(cbuf.remaining());
+            future = channelHandlerContext.write(Unpooled.wrappedBuffer(cbuf));
+        }
+        channelHandlerContext.flush();
+        return future;
+    }
+
+    /**
+     * 
+     * @return the number of transactions written by the master but not yet sent to the slave
+     */
+    long getPendingTxCount() {
+        ReplicationFile cf = replMaster.currentFile;
+        return cf == null ? 0 : Math.max(0, cf.getNextTxId() - nextTxToSend);
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
         cause.printStackTrace();
@@ -200,8 +239,21 @@ public class MasterChannelHandler extends ChannelInboundHandlerAdapter {
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         log.debug("Connection {} closed", ctx.channel().remoteAddress());
         super.channelInactive(ctx);
+        replMaster.channelHandlers.remove(this);
         if (dataHandlingFuture != null) {
             dataHandlingFuture.cancel(true);
         }
+        closeCompressor();
+    }
+
+    /**
+     * Releases the native memory of the compressor; synchronized with {@link #send(ByteBuffer)} such that it is not
+     * done while compressing.
+     */
+    private synchronized void closeCompressor() {
+        if (compressor != null) {
+            compressor.close();
+            compressor = null;
+        }
     }
 }
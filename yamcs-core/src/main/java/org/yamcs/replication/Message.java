@@ -28,6 +28,9 @@ import com.google.protobuf.MessageLite;
  * This is the same structure used in the replication file to be able to play it directly over the network.
  * <p>
  * The replication file contains only STREAM_INFO and DATA messages (and we call them transactions)
+ * <p>
+ * The COMPRESSED messages are sent by the master instead of the STREAM_INFO and DATA messages if the slave requested
+ * compression; their data is part of a deflate stream (see {@link MessageCompressor}).
  */
 public class Message {
     public final static byte WAKEUP = 1;
@@ -35,6 +38,7 @@ public class Message {
     public final static byte RESPONSE = 3;
     public final static byte STREAM_INFO = 4;
     public final static byte DATA = 5;
+    public final static byte COMPRESSED = 6;
 
     final byte type;
     MessageLite protoMsg;
@@ -79,6 +83,9 @@ public class Message {
                 buf.getInt();//pointer to next metadata
                 msg.protoMsg = decodeProto(buf, StreamInfo.newBuilder()).build();
                 break;
+            case COMPRESSED:
+                msg = new CompressedMessage(buf);
+                break;
             default:
                 throw new DecodingException("unknown message type " + type);
 
@@ -175,3 +182,17 @@ class TransactionMessage extends Message {
         throw new UnsupportedOperationException();
     }
 }
+
+//this is a message containing a part of the compressed data stream
+class CompressedMessage extends Message {
+    ByteBuffer buf;
+
+    CompressedMessage(ByteBuffer buf) {
+        super(COMPRESSED);
+        this.buf = buf;
+    }
+
+    public ByteBuffer encode() {
+        throw new UnsupportedOperationException();
+    }
+}
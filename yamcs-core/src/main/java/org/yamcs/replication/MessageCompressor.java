@@ -0,0 +1,95 @@
+package org.yamcs.replication;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Used by the master to compress the messages sent to one slave.
+ * <p>
+ * The messages are compressed as one continuous deflate stream for the whole connection, each call to
+ * {@link #compress(ByteBuffer)} flushing the stream such that the slave can decode all the messages passed in that
+ * call. Since the stream info metadata is sent before the data, the column names and types are part of the
+ * compression context when the data is compressed.
+ * <p>
+ * The compressed data is split into {@link Message#COMPRESSED} messages of maximum {@link #MAX_MESSAGE_SIZE} bytes
+ * (the maximum accepted by the frame decoder on the slave side). These messages do not have a meaning on their own,
+ * the slave has to decompress them in order with a {@link MessageDecompressor}.
+ * <p>
+ * Not thread safe.
+ */
+class MessageCompressor {
+    static final int MAX_MESSAGE_SIZE = 8192;
+    // 4 bytes for the type and length and 4 bytes for the CRC
+    static final int MAX_DATA_SIZE = MAX_MESSAGE_SIZE - 8;
+
+    final Deflater deflater;
+    private byte[] in = new byte[MAX_MESSAGE_SIZE];
+    private final byte[] out = new byte[MAX_DATA_SIZE];
+
+    MessageCompressor(int level) {
+        deflater = new Deflater(level);
+    }
+
+    /**
+     * Compresses the messages between the position and the limit of the buffer. The buffer position is not modified.
+     *
+     * @return the list of compressed messages to be sent in order to the slave
+     */
+    List<ByteBuffer> compress(ByteBuffer buf) {
+        int n = buf.remaining();
+        if (in.length < n) {
+            in = new byte[Math.max(n, 2 * in.length)];
+        }
+        buf.duplicate().get(in, 0, n);
+        deflater.setInput(in, 0, n);
+
+        List<ByteBuffer> result = new ArrayList<>();
+        while (true) {
+            int m = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+            if (m > 0) {
+                result.add(encode(out, m));
+            }
+            if (m < out.length) { // all the input has been compressed and flushed
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 
+     * @return the total number of bytes passed to the compressor
+     */
+    long getBytesRead() {
+        return deflater.getBytesRead();
+    }
+
+    /**
+     * Releases the native resources of the deflater; the compressor cannot be used anymore afterwards.
+     */
+    void close() {
+        deflater.end();
+    }
+
+    /**
+     * 
+     * @return the total number of compressed bytes output by the compressor (without the message headers)
+     */
+    long getBytesWritten() {
+        return deflater.getBytesWritten();
+    }
+
+    static ByteBuffer encode(byte[] data, int length) {
+        ByteBuffer buf = ByteBuffer.allocate(length + 8);
+        buf.putInt((Message.COMPRESSED << 24) | (length + 4));
+        buf.put(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, length + 4);
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+        return buf;
+    }
+}
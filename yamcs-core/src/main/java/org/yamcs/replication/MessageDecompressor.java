@@ -0,0 +1,92 @@
+package org.yamcs.replication;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.yamcs.utils.DecodingException;
+
+/**
+ * Used by the slave to decompress the {@link Message#COMPRESSED} messages produced by a {@link MessageCompressor}.
+ * <p>
+ * The messages have to be passed in the order in which they have been received. The decompressed data is split into
+ * the original messages; an original message may span multiple compressed messages, in which case it is returned
+ * once its last part has been decompressed.
+ * <p>
+ * Not thread safe.
+ */
+class MessageDecompressor {
+    final Inflater inflater = new Inflater();
+    private byte[] in = new byte[MessageCompressor.MAX_MESSAGE_SIZE];
+    // decompressed data not yet returned
+    private byte[] pending = new byte[4 * MessageCompressor.MAX_MESSAGE_SIZE];
+    private int pendingLength;
+
+    /**
+     * Decompresses the data between the position and the limit of the buffer
+     *
+     * @return the list of complete messages, each in a buffer of its own
+     * @throws DecodingException
+     *             if the data cannot be decompressed or does not contain valid messages
+     */
+    List<ByteBuffer> decompress(ByteBuffer buf) throws DecodingException {
+        int n = buf.remaining();
+        if (in.length < n) {
+            in = new byte[n];
+        }
+        buf.get(in, 0, n);
+        inflater.setInput(in, 0, n);
+        try {
+            while (true) {
+                if (pendingLength == pending.length) {
+                    pending = Arrays.copyOf(pending, 2 * pending.length);
+                }
+                int available = pending.length - pendingLength;
+                int m = inflater.inflate(pending, pendingLength, available);
+                pendingLength += m;
+                if (m < available) { // all the input has been decompressed
+                    if (m == 0 && inflater.needsDictionary()) {
+                        throw new DecodingException("Unexpected compressed data requiring a dictionary");
+                    }
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new DecodingException("Failed to decompress data: " + e.getMessage());
+        }
+
+        List<ByteBuffer> result = new ArrayList<>();
+        int offset = 0;
+        while (pendingLength - offset >= 4) {
+            int length = ((pending[offset + 1] & 0xFF) << 16) | ((pending[offset + 2] & 0xFF) << 8)
+                    | (pending[offset + 3] & 0xFF);
+            if (pendingLength - offset < length + 4) {
+                break;
+            }
+            result.add(ByteBuffer.wrap(Arrays.copyOfRange(pending, offset, offset + length + 4)));
+            offset += length + 4;
+        }
+        System.arraycopy(pending, offset, pending, 0, pendingLength - offset);
+        pendingLength -= offset;
+
+        return result;
+    }
+
+    /**
+     * 
+     * @return the total number of compressed bytes passed to the decompressor
+     */
+    long getBytesRead() {
+        return inflater.getBytesRead();
+    }
+
+    /**
+     * Releases the native resources of the inflater; the decompressor cannot be used anymore afterwards.
+     */
+    void close() {
+        inflater.end();
+    }
+}
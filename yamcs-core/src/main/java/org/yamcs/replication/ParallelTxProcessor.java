@@ -0,0 +1,110 @@
+package org.yamcs.replication;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Used by the slave to process the transactions of different streams in parallel.
+ * <p>
+ * The transactions of one stream are processed in order by the executor returned by
+ * {@link #newSequentialExecutor()}. Since the transactions of different streams are processed independently, the
+ * processor keeps track of the transactions in progress such that the slave knows up to which transaction the data
+ * has been completely processed (see {@link #getProcessedTxId()}).
+ */
+class ParallelTxProcessor {
+    final ExecutorService executor;
+    // transactions submitted and not yet processed
+    private final ConcurrentSkipListSet<Long> inProgress = new ConcurrentSkipListSet<>();
+    private final AtomicInteger numInProgress = new AtomicInteger();
+    // the last transaction received, either submitted or not requiring processing
+    private volatile long lastReceivedTxId = Long.MIN_VALUE;
+
+    ParallelTxProcessor(int numThreads, String name) {
+        executor = Executors.newFixedThreadPool(numThreads,
+                new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+    }
+
+    /**
+     * 
+     * @return an executor running the tasks one after the other in the order in which they have been submitted
+     */
+    Executor newSequentialExecutor() {
+        return MoreExecutors.newSequentialExecutor(executor);
+    }
+
+    /**
+     * Runs the task processing the transaction on the sequential executor. The transaction is in progress until the
+     * task finishes.
+     * 
+     * @param sequentialExecutor
+     *            - executor obtained from {@link #newSequentialExecutor()}
+     * @param txId
+     *            - the id of the transaction processed by the task
+     * @param task
+     *            - the task processing the transaction
+     * @param onCompletion
+     *            - called after the task finished (even if it threw an exception)
+     */
+    void submit(Executor sequentialExecutor, long txId, Runnable task, Runnable onCompletion) {
+        inProgress.add(txId);
+        numInProgress.incrementAndGet();
+        // only after the transaction is in progress, otherwise it could be considered processed
+        received(txId);
+        sequentialExecutor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                inProgress.remove(txId);
+                numInProgress.decrementAndGet();
+                onCompletion.run();
+            }
+        });
+    }
+
+    /**
+     * Records that the transactions up to txId have been received; those which have not been submitted do not require
+     * processing.
+     * <p>
+     * Called from the thread submitting the transactions.
+     */
+    void received(long txId) {
+        if (txId > lastReceivedTxId) {
+            lastReceivedTxId = txId;
+        }
+    }
+
+    /**
+     * 
+     * @return the id of the last transaction such that it and all the transactions before it have been processed
+     */
+    long getProcessedTxId() {
+        // read before the transactions in progress such that all the transactions up to it are either processed or
+        // in progress
+        long last = lastReceivedTxId;
+        Long first = inProgress.ceiling(Long.MIN_VALUE);
+        return first == null ? last : Math.min(last, first - 1);
+    }
+
+    /**
+     * 
+     * @return the number of transactions submitted and not yet processed
+     */
+    int getNumInProgress() {
+        return numInProgress.get();
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+}
@@ -101,6 +101,7 @@ public class ReplicationFile implements Closeable {
     final private Header1 hdr1;
     final private Header2 hdr2;
     private boolean fileFull = false;
+    private volatile boolean prefetched = false;
     final Path path;
     int syncNumTx = 500;
     int syncCount = syncNumTx;
@@ -630,6 +631,21 @@ public class ReplicationFile implements Closeable {
         return fileFull;
     }
 
+    /**
+     * Loads the content of the file in memory (this is the equivalent of madvise(WILLNEED) followed by reading the
+     * pages).
+     * <p>
+     * Used to read ahead the files which are about to be sent to a slave which is catching up. The call blocks until
+     * the whole file has been loaded; it does nothing if the file has already been loaded.
+     */
+    public void prefetch() {
+        if (prefetched) {
+            return;
+        }
+        prefetched = true;
+        buf.load();
+    }
+
     /**
      * Iterate through the metadata
      * 
@@ -11,10 +11,14 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -26,9 +30,13 @@ import org.yamcs.ConfigurationException;
 import org.yamcs.InitException;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsServer;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.parameter.SystemParametersProducer;
 import org.yamcs.replication.protobuf.ColumnInfo;
 import org.yamcs.replication.protobuf.Request;
 import org.yamcs.replication.protobuf.StreamInfo;
+import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.ColumnSerializer;
 import org.yamcs.yarch.ColumnSerializerFactory;
@@ -56,7 +64,7 @@ import io.netty.handler.ssl.SslContextBuilder;
  * @author nm
  *
  */
-public class ReplicationMaster extends AbstractYamcsService {
+public class ReplicationMaster extends AbstractYamcsService implements SystemParametersProducer {
     private static final Pattern FILE_PATTERN = Pattern.compile("RPL_([0-9A-Fa-f]{16})\\.dat");
 
     ConcurrentSkipListMap<Long, ReplFileAccess> replFiles = new ConcurrentSkipListMap<>();
@@ -79,6 +87,17 @@ public class ReplicationMaster extends AbstractYamcsService {
     SslContext sslCtx = null;
     // files not accessed longer than this will be closed
     private long fileCloseTime;
+    // deflate level used for the slaves requesting compression
+    int compressionLevel;
+    // how many files to read ahead when a slave is catching up
+    int prefetchFiles;
+
+    // the handlers of the connected slaves
+    final Set<MasterChannelHandler> channelHandlers = ConcurrentHashMap.newKeySet();
+    // bytes sent to the slaves before and after compression
+    final AtomicLong dataBytes = new AtomicLong();
+    final AtomicLong wireBytes = new AtomicLong();
+    private String spDataBytes, spWireBytes, spPendingTx, spNumSlaves;
 
     @Override
     public void init(String yamcsInstance, String serviceName, YConfiguration config) throws InitException {
@@ -97,6 +116,11 @@ public class ReplicationMaster extends AbstractYamcsService {
                     "maxFileSize has to be higher than header size which for maxPages=" + maxPages + " is " + hdrSize);
         }
 
+        compressionLevel = config.getInt("compressionLevel", 6);
+        if (compressionLevel < 1 || compressionLevel > 9) {
+            throw new InitException("Invalid compressionLevel " + compressionLevel + "; should be between 1 and 9");
+        }
+        prefetchFiles = config.getInt("prefetchFiles", 2);
         fileCloseTime = config.getLong("fileCloseTimeSec", 300) * 1000;
         YamcsServer.getServer().getThreadPoolExecutor().scheduleAtFixedRate(() -> closeUnusedFiles(), fileCloseTime,
                 fileCloseTime, TimeUnit.MILLISECONDS);
@@ -201,11 +225,39 @@ public class ReplicationMaster extends AbstractYamcsService {
                 sa.client.start();
             }
         }
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            String prefix = collector.getNamespace() + "/" + serviceName + "/";
+            spDataBytes = prefix + "dataBytes";
+            spWireBytes = prefix + "wireBytes";
+            spPendingTx = prefix + "pendingTx";
+            spNumSlaves = prefix + "numSlaves";
+            collector.registerProducer(this);
+        }
         notifyStarted();
     }
 
+    @Override
+    public Collection<ParameterValue> getSystemParameters() {
+        long time = TimeEncoding.getWallclockTime();
+        long pendingTx = 0;
+        for (MasterChannelHandler mch : channelHandlers) {
+            pendingTx = Math.max(pendingTx, mch.getPendingTxCount());
+        }
+        List<ParameterValue> pvlist = new ArrayList<>();
+        pvlist.add(SystemParametersCollector.getPV(spDataBytes, time, dataBytes.get()));
+        pvlist.add(SystemParametersCollector.getPV(spWireBytes, time, wireBytes.get()));
+        pvlist.add(SystemParametersCollector.getPV(spPendingTx, time, pendingTx));
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spNumSlaves, time, channelHandlers.size()));
+        return pvlist;
+    }
+
     @Override
     protected void doStop() {
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            collector.unregisterProducer(this);
+        }
         for (StreamToFile stf : translators) {
             stf.quit();
         }
@@ -465,6 +517,34 @@ public class ReplicationMaster extends AbstractYamcsService {
         return rf;
     }
 
+    /**
+     * Loads in memory in the background the files containing the transactions starting with txId, up to prefetchFiles
+     * files, such that the data is already in memory when it is sent to a slave which is catching up.
+     * <p>
+     * The current file (where the data is written) is not loaded.
+     */
+    void prefetch(long txId) {
+        if (prefetchFiles <= 0) {
+            return;
+        }
+        YamcsServer.getServer().getThreadPoolExecutor().execute(() -> {
+            long t = txId;
+            for (int i = 0; i < prefetchFiles; i++) {
+                ReplicationFile rf = getFile(t);
+                if (rf == null || rf == currentFile) {
+                    break;
+                }
+                try {
+                    rf.prefetch();
+                } catch (Exception e) {
+                    log.warn("Failed to prefetch {}", rf.path, e);
+                    break;
+                }
+                t = rf.getNextTxId();
+            }
+        });
+    }
+
     Path getPath(long firstTxId) {
         return replicationDir.resolve(String.format("RPL_%016x.dat", firstTxId));
     }
@@ -8,9 +8,14 @@ import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.net.ssl.SSLException;
 
@@ -19,11 +24,15 @@ import org.yamcs.InitException;
 import org.yamcs.YConfiguration;
 import org.yamcs.YamcsException;
 import org.yamcs.YamcsServer;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.parameter.SystemParametersProducer;
 import org.yamcs.replication.protobuf.ColumnInfo;
 import org.yamcs.replication.protobuf.Request;
 import org.yamcs.replication.protobuf.Response;
 import org.yamcs.replication.protobuf.StreamInfo;
 import org.yamcs.utils.DecodingException;
+import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.ColumnSerializer;
 import org.yamcs.yarch.ColumnSerializerFactory;
@@ -45,7 +54,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 
-public class ReplicationSlave extends AbstractYamcsService {
+public class ReplicationSlave extends AbstractYamcsService implements SystemParametersProducer {
     private TcpRole tcpRole;
     int port;
     String host;
@@ -61,11 +70,27 @@ public class ReplicationSlave extends AbstractYamcsService {
     Path txtfilePath;
     int localInstanceId;
     SslContext sslCtx = null;
+    // if true, request the master to send the data compressed
+    boolean compression;
+    // bytes received from the master
+    final AtomicLong wireBytes = new AtomicLong();
+
+    // if greater than 0, the data of different streams is processed in parallel by this number of threads
+    int processingThreads;
+    ParallelTxProcessor txProcessor;
+    // one sequential executor for each stream, such that the data of each stream is processed in order
+    final Map<String, Executor> streamExecutors = new ConcurrentHashMap<>();
+    private long lastWrittenTxId = Long.MIN_VALUE;
+    // stop reading from the network when there are more than this number of transactions waiting to be processed
+    static final int MAX_TX_IN_PROGRESS = 10000;
+    private String spWireBytes, spLastTxId;
 
     public void init(String yamcsInstance, String serviceName, YConfiguration config) throws InitException {
         super.init(yamcsInstance, serviceName, config);
         this.localInstanceId = YamcsServer.getServer().getInstance(yamcsInstance).getInstanceId();
         streamNames = config.getList("streams");
+        compression = config.getBoolean("compression", false);
+        processingThreads = config.getInt("processingThreads", 0);
         tcpRole = config.getEnum("tcpRole", TcpRole.class, TcpRole.CLIENT);
         if (tcpRole == TcpRole.CLIENT) {
             host = config.getString("masterHost");
@@ -123,20 +148,53 @@ public class ReplicationSlave extends AbstractYamcsService {
 
     @Override
     protected void doStart() {
+        if (processingThreads > 0) {
+            txProcessor = new ParallelTxProcessor(processingThreads, "ReplicationSlave-" + yamcsInstance);
+        }
         if (tcpRole == TcpRole.CLIENT) {
             tcpClient = new ReplicationClient(yamcsInstance, host, port, sslCtx, reconnectionInterval, () -> {
                 return new SlaveChannelHandler(this);
             });
             tcpClient.start();
         }
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            String prefix = collector.getNamespace() + "/" + serviceName + "/";
+            spWireBytes = prefix + "wireBytes";
+            spLastTxId = prefix + "lastTxId";
+            collector.registerProducer(this);
+        }
         notifyStarted();
     }
 
+    @Override
+    public Collection<ParameterValue> getSystemParameters() {
+        long time = TimeEncoding.getWallclockTime();
+        List<ParameterValue> pvlist = new ArrayList<>();
+        pvlist.add(SystemParametersCollector.getPV(spWireBytes, time, wireBytes.get()));
+        pvlist.add(SystemParametersCollector.getPV(spLastTxId, time, lastTxId));
+        return pvlist;
+    }
+
     @Override
     protected void doStop() {
+        SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+        if (collector != null) {
+            collector.unregisterProducer(this);
+        }
         if (tcpClient != null) {
             tcpClient.stop();
         }
+        if (txProcessor != null) {
+            txProcessor.shutdown();
+            try {
+                if (!txProcessor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Replication data processing threads still running after 10 seconds");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
         try {
             lastTxFileLock.close();
@@ -158,9 +216,20 @@ public class ReplicationSlave extends AbstractYamcsService {
     }
 
     private void updateLastTxFile() {
+        updateLastTxFile(lastTxId);
+    }
+
+    /**
+     * Writes the txId to the last tx file, unless a higher one has already been written
+     */
+    private synchronized void updateLastTxFile(long txId) {
+        if (txId <= lastWrittenTxId) {
+            return;
+        }
         try {
             lastTxFile.seek(0);
-            lastTxFile.writeBytes(Long.toString(lastTxId) + "\n");
+            lastTxFile.writeBytes(Long.toString(txId) + "\n");
+            lastWrittenTxId = txId;
         } catch (IOException e) {
             log.warn("Failed to update the last tx file " + txtfilePath, e);
         }
@@ -184,6 +253,8 @@ public class ReplicationSlave extends AbstractYamcsService {
         ReplicationSlave replSlave;
         private ChannelHandlerContext channelHandlerContext;
         Map<Integer, ByteBufToStream> streamWriters = new HashMap<>();
+        // not null if compression has been requested
+        MessageDecompressor decompressor;
 
         public SlaveChannelHandler(ReplicationSlave slave) {
             this.replSlave = slave;
@@ -192,6 +263,7 @@ public class ReplicationSlave extends AbstractYamcsService {
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object o) {
             ByteBuf nettybuf = (ByteBuf) o;
+            wireBytes.addAndGet(nettybuf.readableBytes());
             try {
                 doChannelRead(ctx, nettybuf);
             } finally {
@@ -215,7 +287,30 @@ public class ReplicationSlave extends AbstractYamcsService {
                 ctx.close();
                 return;
             }
+            if (msg.type == Message.COMPRESSED) {
+                if (decompressor == null) {
+                    failService("Received compressed data without having requested it");
+                    return;
+                }
+                try {
+                    for (ByteBuffer mbuf : decompressor.decompress(((CompressedMessage) msg).buf)) {
+                        if (state() != State.RUNNING) {
+                            return;
+                        }
+                        processMessage(ctx, Message.decode(mbuf));
+                        txReceived();
+                    }
+                } catch (DecodingException e) {
+                    log.warn("TX{} Failed to decode compressed message; closing connection", lastTxId, e);
+                    ctx.close();
+                }
+            } else {
+                processMessage(ctx, msg);
+                txReceived();
+            }
+        }
 
+        private void processMessage(ChannelHandlerContext ctx, Message msg) {
             if (msg.type == Message.DATA) {
                 TransactionMessage tmsg = (TransactionMessage) msg;
 
@@ -241,7 +336,13 @@ public class ReplicationSlave extends AbstractYamcsService {
                             tmsg.buf.remaining());
                 }
 
-                bbs.processData(tmsg.txId, tmsg.buf);
+                if (txProcessor == null) {
+                    if (bbs.processData(tmsg.txId, tmsg.buf)) {
+                        updateLastTxFile();
+                    }
+                } else {
+                    submitData(ctx, bbs, tmsg);
+                }
             } else if (msg.type == Message.STREAM_INFO) {
                 TransactionMessage tmsg = (TransactionMessage) msg;
                 if (tmsg.txId > lastTxId) { // we expect to receive previous stream info transactions
@@ -280,6 +381,40 @@ public class ReplicationSlave extends AbstractYamcsService {
             }
         }
 
+        // processes the data in the thread pool; the buffer is copied because it is released after channelRead
+        private void submitData(ChannelHandlerContext ctx, ByteBufToStream bbs, TransactionMessage tmsg) {
+            ByteBuffer data = ByteBuffer.allocate(tmsg.buf.remaining());
+            data.put(tmsg.buf);
+            data.flip();
+            long txId = tmsg.txId;
+            Executor executor = streamExecutors.computeIfAbsent(bbs.stream.getName(),
+                    k -> txProcessor.newSequentialExecutor());
+            txProcessor.submit(executor, txId, () -> bbs.processData(txId, data), () -> txProcessed());
+
+            if (txProcessor.getNumInProgress() > MAX_TX_IN_PROGRESS && ctx.channel().config().isAutoRead()) {
+                log.debug("{} transactions waiting to be processed, suspending reading from the network",
+                        txProcessor.getNumInProgress());
+                ctx.channel().config().setAutoRead(false);
+            }
+        }
+
+        // the data transactions are recorded as received when submitted; the others do not require processing
+        private void txReceived() {
+            if (txProcessor != null) {
+                txProcessor.received(lastTxId);
+            }
+        }
+
+        // called from the thread pool when a transaction has been processed
+        private void txProcessed() {
+            updateLastTxFile(txProcessor.getProcessedTxId());
+            ChannelHandlerContext ctx = channelHandlerContext;
+            if (ctx != null && txProcessor.getNumInProgress() < MAX_TX_IN_PROGRESS / 2
+                    && !ctx.channel().config().isAutoRead()) {
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+
         private void checkMissing(TransactionMessage tmsg) {
             if (tmsg.txId != lastTxId + 1) {
                 log.warn("Transactions {} to {} are missing", lastTxId + 1, tmsg.txId - 1);
@@ -310,6 +445,10 @@ public class ReplicationSlave extends AbstractYamcsService {
             if (lastTxId >= 0) {
                 reqb.setStartTxId(lastTxId + 1);
             }
+            if (compression) {
+                reqb.setCompression(true);
+                decompressor = new MessageDecompressor();
+            }
             Request req = reqb.build();
             log.debug("Connection {} opened, sending request {}", channelHandlerContext.channel().remoteAddress(),
                     TextFormat.shortDebugString(req));
@@ -337,6 +476,10 @@ public class ReplicationSlave extends AbstractYamcsService {
             log.debug("Connection {} closed", ctx.channel().remoteAddress());
             super.channelInactive(ctx);
             slaveChannelHandler = null;
+            if (decompressor != null) {
+                decompressor.close();
+                decompressor = null;
+            }
         }
 
         class ByteBufToStream {
@@ -364,8 +507,13 @@ public class ReplicationSlave extends AbstractYamcsService {
                 }
             }
 
+            /**
+             * Deserializes the tuple and emits it on the stream
+             * 
+             * @return true if the tuple has been emitted
+             */
             @SuppressWarnings("rawtypes")
-            public void processData(long txId, ByteBuffer niobuf) {
+            public boolean processData(long txId, ByteBuffer niobuf) {
                 TupleDefinition tdef = new TupleDefinition();
                 ArrayList<Object> cols = new ArrayList<>();
                 // deserialize the value
@@ -382,7 +530,7 @@ public class ReplicationSlave extends AbstractYamcsService {
                                     txId,
                                     stream.getName(),
                                     cidx);
-                            return;
+                            return false;
                         }
                         int typeId = id >>> 24;
                         ColumnDefinition cd = completeTuple.getColumn(cidx);
@@ -391,7 +539,7 @@ public class ReplicationSlave extends AbstractYamcsService {
                             log.warn(
                                     "TX{}: when deserializing data for stream {}: type id for index {} (column {}) is {}; expected {}",
                                     txId, stream.getName(), cidx, cd.getName(), typeId, cd.getType().getTypeId());
-                            return;
+                            return false;
                         }
                         Object o = cs.deserialize(niobuf, cd);
                         tdef.addColumn(cd);
@@ -399,10 +547,10 @@ public class ReplicationSlave extends AbstractYamcsService {
                     }
                     Tuple t = new Tuple(tdef, cols);
                     stream.emitTuple(t);
-                    updateLastTxFile();
-
+                    return true;
                 } catch (Exception e) {
                     log.warn("Cannot deserialize data for stream {}", stream.getName(), e);
+                    return false;
                 }
             }
         }
@@ -18,7 +18,13 @@ import org.yamcs.time.TimeService;
 import com.google.common.util.concurrent.AbstractService;
 import com.google.common.util.concurrent.Service;
 
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
 
 /**
  * Abstract link implementation as a {@link Service} handling the basic enable/disable getConfig operations
@@ -84,6 +90,38 @@ public abstract class AbstractLink extends AbstractService implements Link, Syst
         return nelg;
     }
 
+    /**
+     * Creates a bootstrap for receiving datagrams on the shared event loop group.
+     * <p>
+     * The datagrams are read into pooled buffers of maxDatagramLength+1 bytes such that the handler can detect (and
+     * drop) the datagrams longer than the maximum. Each time the socket becomes readable, up to
+     * {@code maxDatagramsPerRead} (default 16) datagrams are read in one go. If {@code receiveBufferSize} is
+     * configured, it is used as the socket receive buffer size (subject to the operating system limits).
+     * 
+     * @param maxDatagramLength
+     *            maximum length of the datagrams
+     * @param handler
+     *            handler receiving the datagrams
+     */
+    protected Bootstrap createUdpBootstrap(int maxDatagramLength, ChannelHandler handler) {
+        int maxDatagramsPerRead = config.getInt("maxDatagramsPerRead", 16);
+        FixedRecvByteBufAllocator recvAllocator = new FixedRecvByteBufAllocator(maxDatagramLength + 1);
+        // continue reading even if the last datagram did not fill the buffer
+        recvAllocator.respectMaybeMoreData(false);
+        recvAllocator.maxMessagesPerRead(maxDatagramsPerRead);
+
+        Bootstrap bootstrap = new Bootstrap()
+                .group(getEventLoop())
+                .channel(NioDatagramChannel.class)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.RCVBUF_ALLOCATOR, recvAllocator)
+                .handler(handler);
+        if (config.containsKey("receiveBufferSize")) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, config.getInt("receiveBufferSize"));
+        }
+        return bootstrap;
+    }
+
     /**
      * Sets the disabled to false such that getNextPacket does not ignore the received datagrams
      */
@@ -0,0 +1,241 @@
+package org.yamcs.tctm;
+
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.TooLongFrameException;
+
+/**
+ * Receives telemetry packets from a TCP server.
+ * <p>
+ * Same as {@link TcpTmDataLink} but the socket is handled by the event loop group shared by all the links instead of a
+ * dedicated thread. Because the reading is not blocking, the packets cannot be read with a {@link PacketInputStream};
+ * they are split from the stream based on a length field, similarly to the {@link GenericPacketInputStream}. The
+ * default settings are for CCSDS packets.
+ * <p>
+ * The packets longer than maxPacketLength are skipped (the connection is kept); their number is available in the
+ * detailed status and as the droppedPackets system parameter.
+ * <p>
+ * In case the connection cannot be established or is broken, it retries to connect each 10 seconds.
+ */
+public class NettyTcpTmDataLink extends AbstractTmDataLink {
+    static final int RECONNECT_DELAY_SEC = 10;
+
+    private final AtomicLong droppedPacketCount = new AtomicLong();
+
+    protected String host;
+    protected int port;
+    protected long initialDelay;
+
+    int maxPacketLength;
+    int lengthFieldOffset;
+    int lengthFieldLength;
+    int lengthAdjustment;
+    int initialBytesToStrip;
+    ByteOrder byteOrder;
+
+    private volatile Channel channel;
+    private String spDroppedPackets;
+
+    @Override
+    public void init(String instance, String name, YConfiguration config) throws ConfigurationException {
+        super.init(instance, name, config);
+        host = config.getString("host");
+        port = config.getInt("port");
+        initialDelay = config.getLong("initialDelay", -1);
+
+        maxPacketLength = config.getInt("maxPacketLength", 1500);
+        lengthFieldOffset = config.getInt("lengthFieldOffset", 4);
+        lengthFieldLength = config.getInt("lengthFieldLength", 2);
+        lengthAdjustment = config.getInt("lengthAdjustment", 7);
+        initialBytesToStrip = config.getInt("initialBytesToStrip", 0);
+        byteOrder = AbstractPacketPreprocessor.getByteOrder(config);
+        if (lengthFieldLength != 1 && lengthFieldLength != 2 && lengthFieldLength != 3 && lengthFieldLength != 4) {
+            throw new ConfigurationException("Unsupported lengthFieldLength, supported values are 1,2,3 or 4");
+        }
+    }
+
+    @Override
+    public void doStart() {
+        if (!isDisabled()) {
+            scheduleConnect(Math.max(0, initialDelay), TimeUnit.MILLISECONDS);
+        }
+        notifyStarted();
+    }
+
+    @Override
+    public void doStop() {
+        closeChannel();
+        notifyStopped();
+    }
+
+    private void scheduleConnect(long delay, TimeUnit unit) {
+        getEventLoop().schedule(this::connect, delay, unit);
+    }
+
+    private void connect() {
+        if (!isRunningAndEnabled() || channel != null) {
+            return;
+        }
+        Bootstrap bootstrap = new Bootstrap()
+                .group(getEventLoop())
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 1000)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        // the netty decoder adds the lengthAdjustment to the length of the data following the length
+                        // field whereas here it is added to the length of the entire packet
+                        int lengthFieldEndOffset = lengthFieldOffset + lengthFieldLength;
+                        ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(byteOrder, maxPacketLength,
+                                lengthFieldOffset, lengthFieldLength, lengthAdjustment - lengthFieldEndOffset,
+                                initialBytesToStrip, true));
+                        ch.pipeline().addLast(new PacketHandler());
+                    }
+                });
+        if (config.containsKey("receiveBufferSize")) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, config.getInt("receiveBufferSize"));
+        }
+
+        bootstrap.connect(host, port).addListener((ChannelFuture f) -> {
+            if (f.isSuccess()) {
+                if (isRunningAndEnabled()) {
+                    log.info("Link established to {}:{}", host, port);
+                    channel = f.channel();
+                } else {
+                    f.channel().close();
+                }
+            } else {
+                if (isRunningAndEnabled()) {
+                    log.info("Cannot open TM socket {}:{} {}. Retrying in {}s", host, port, f.cause().toString(),
+                            RECONNECT_DELAY_SEC);
+                    scheduleConnect(RECONNECT_DELAY_SEC, TimeUnit.SECONDS);
+                }
+            }
+        });
+    }
+
+    private void closeChannel() {
+        Channel ch = channel;
+        if (ch != null) {
+            channel = null;
+            ch.close().awaitUninterruptibly();
+        }
+    }
+
+    /**
+     * Called from the event loop for each packet received.
+     */
+    void packetReceived(ByteBuf buf) {
+        int length = buf.readableBytes();
+        updateStats(length);
+        byte[] packet = new byte[length];
+        buf.readBytes(packet);
+
+        TmPacket pkt = new TmPacket(timeService.getMissionTime(), packet);
+        pkt.setEarthRceptionTime(timeService.getHresMissionTime());
+        TmPacket pwt = packetPreprocessor.process(pkt);
+        if (pwt != null) {
+            processPacket(pwt);
+        }
+    }
+
+    @Override
+    public void doDisable() {
+        closeChannel();
+    }
+
+    @Override
+    public void doEnable() {
+        scheduleConnect(0, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void resetCounters() {
+        super.resetCounters();
+        droppedPacketCount.set(0);
+    }
+
+    @Override
+    public String getDetailedStatus() {
+        if (isDisabled()) {
+            return String.format("DISABLED (should connect to %s:%d)", host, port);
+        }
+        if (channel == null) {
+            return String.format("Not connected to %s:%d", host, port);
+        } else {
+            return String.format("OK, connected to %s:%d, received %d packets, dropped %d packets", host, port,
+                    packetCount.get(), droppedPacketCount.get());
+        }
+    }
+
+    @Override
+    public void setupSystemParameters(SystemParametersCollector sysParamCollector) {
+        super.setupSystemParameters(sysParamCollector);
+        spDroppedPackets = sysParamCollector.getNamespace() + "/" + linkName + "/droppedPackets";
+    }
+
+    @Override
+    protected void collectSystemParameters(long time, List<ParameterValue> list) {
+        super.collectSystemParameters(time, list);
+        list.add(SystemParametersCollector.getPV(spDroppedPackets, time, droppedPacketCount.get()));
+    }
+
+    @Override
+    protected Status connectionStatus() {
+        return (channel == null) ? Status.UNAVAIL : Status.OK;
+    }
+
+    class PacketHandler extends SimpleChannelInboundHandler<ByteBuf> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf buf) {
+            packetReceived(buf);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (channel == ctx.channel()) {
+                channel = null;
+                if (isRunningAndEnabled()) {
+                    log.warn("TM Connection closed. Reconnecting in {}s", RECONNECT_DELAY_SEC);
+                    scheduleConnect(RECONNECT_DELAY_SEC, TimeUnit.SECONDS);
+                }
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (cause instanceof TooLongFrameException) {
+                // the decoder skips the packet and continues with the next one
+                droppedPacketCount.incrementAndGet();
+                log.warn("Dropping packet: {}", cause.getMessage());
+            } else {
+                log.warn("Exception caught when reading from the TM socket {}:{}, closing the connection", host, port,
+                        cause);
+                ctx.close();
+            }
+        }
+    }
+}
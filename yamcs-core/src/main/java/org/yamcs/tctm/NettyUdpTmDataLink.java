@@ -0,0 +1,164 @@
+package org.yamcs.tctm;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * Receives telemetry packets via UDP. One UDP datagram = one TM packet.
+ * <p>
+ * Same as {@link UdpTmDataLink} but instead of using a dedicated thread blocked in reading from the socket, the socket
+ * is handled by the event loop group shared by all the links. The datagrams are read in batches into pooled buffers.
+ * <p>
+ * The datagrams longer than maxLength are dropped; their number is available in the detailed status and as the
+ * droppedDatagrams system parameter.
+ */
+public class NettyUdpTmDataLink extends AbstractTmDataLink {
+    private final AtomicLong droppedDatagramCount = new AtomicLong();
+
+    private volatile Channel channel;
+    private int port;
+    private int maxLength;
+    private String spDroppedDatagrams;
+
+    /**
+     * Creates a new UDP TM Data Link
+     * 
+     * @throws ConfigurationException
+     *             if port is not defined in the configuration
+     */
+    @Override
+    public void init(String instance, String name, YConfiguration config) throws ConfigurationException {
+        super.init(instance, name, config);
+        port = config.getInt("port");
+        maxLength = config.getInt("maxLength", UdpTmDataLink.MAX_LENGTH);
+    }
+
+    @Override
+    public void doStart() {
+        if (!isDisabled()) {
+            try {
+                bind();
+            } catch (Exception e) {
+                notifyFailed(e);
+                return;
+            }
+        }
+        notifyStarted();
+    }
+
+    @Override
+    public void doStop() {
+        closeChannel();
+        notifyStopped();
+    }
+
+    private void bind() throws Exception {
+        ChannelFuture f = createUdpBootstrap(maxLength, new DatagramHandler()).bind(port).awaitUninterruptibly();
+        if (!f.isSuccess()) {
+            throw new Exception("Cannot bind to UDP port " + port, f.cause());
+        }
+        channel = f.channel();
+    }
+
+    private void closeChannel() {
+        Channel ch = channel;
+        if (ch != null) {
+            ch.close().awaitUninterruptibly();
+            channel = null;
+        }
+    }
+
+    /**
+     * Called from the event loop for each datagram received.
+     */
+    void datagramReceived(ByteBuf buf) {
+        int length = buf.readableBytes();
+        if (length > maxLength) {
+            droppedDatagramCount.incrementAndGet();
+            log.warn("Dropping datagram longer than the maximum allowed length {}", maxLength);
+            return;
+        }
+        updateStats(length);
+        byte[] packet = new byte[length];
+        buf.readBytes(packet);
+
+        TmPacket tmPacket = new TmPacket(timeService.getMissionTime(), packet);
+        tmPacket.setEarthRceptionTime(timeService.getHresMissionTime());
+        TmPacket pwt = packetPreprocessor.process(tmPacket);
+        if (pwt != null) {
+            processPacket(pwt);
+        }
+    }
+
+    /**
+     * returns statistics with the number of datagram received and the number of dropped datagrams
+     */
+    @Override
+    public String getDetailedStatus() {
+        if (isDisabled()) {
+            return "DISABLED";
+        } else {
+            return String.format("OK (%s) %nValid datagrams received: %d%nDropped datagrams: %d",
+                    port, packetCount.get(), droppedDatagramCount.get());
+        }
+    }
+
+    @Override
+    public void doDisable() {
+        closeChannel();
+    }
+
+    @Override
+    public void doEnable() throws Exception {
+        bind();
+    }
+
+    @Override
+    public void resetCounters() {
+        super.resetCounters();
+        droppedDatagramCount.set(0);
+    }
+
+    @Override
+    public void setupSystemParameters(SystemParametersCollector sysParamCollector) {
+        super.setupSystemParameters(sysParamCollector);
+        spDroppedDatagrams = sysParamCollector.getNamespace() + "/" + linkName + "/droppedDatagrams";
+    }
+
+    @Override
+    protected void collectSystemParameters(long time, List<ParameterValue> list) {
+        super.collectSystemParameters(time, list);
+        list.add(SystemParametersCollector.getPV(spDroppedDatagrams, time, droppedDatagramCount.get()));
+    }
+
+    @Override
+    protected Status connectionStatus() {
+        Channel ch = channel;
+        return (ch != null && ch.isActive()) ? Status.OK : Status.UNAVAIL;
+    }
+
+    class DatagramHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket datagram) {
+            datagramReceived(datagram.content());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("Exception caught when reading from the UDP socket at port {}", port, cause);
+        }
+    }
+}
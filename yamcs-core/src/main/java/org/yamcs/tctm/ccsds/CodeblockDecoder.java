@@ -0,0 +1,122 @@
+package org.yamcs.tctm.ccsds;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.YConfiguration;
+import org.yamcs.rs.ReedSolomonException;
+import org.yamcs.tctm.ccsds.error.CcsdsReedSolomon;
+
+/**
+ * Optional stage in front of the {@link TransferFrameDecoder} which extracts the transfer frame from a channel access
+ * data unit (CADU) as per CCSDS 131.0-B-3:
+ * <ul>
+ * <li>skips the attached sync marker (if asmLength &gt; 0)</li>
+ * <li>de-randomizes the rest of the data (if derandomize is true)</li>
+ * <li>corrects the errors using the Reed-Solomon check symbols (if the reedSolomon section is present)</li>
+ * </ul>
+ * The data is modified in place.
+ * <p>
+ * Not thread safe, one object is used by one {@link MasterChannelFrameHandler}.
+ */
+public class CodeblockDecoder {
+    final int asmLength;
+    final boolean derandomize;
+    final CcsdsReedSolomon reedSolomon;
+
+    private long correctedSymbolCount;
+    private long uncorrectableCount;
+
+    public CodeblockDecoder(int asmLength, boolean derandomize, CcsdsReedSolomon reedSolomon) {
+        this.asmLength = asmLength;
+        this.derandomize = derandomize;
+        this.reedSolomon = reedSolomon;
+    }
+
+    /**
+     * Creates a decoder based on the link configuration, or returns null if the configuration does not specify any
+     * decoding.
+     *
+     * @param config
+     *            - the frame link configuration
+     * @param frameLength
+     *            - the frame length or -1 if the frames have variable length
+     */
+    static CodeblockDecoder fromConfig(YConfiguration config, int frameLength) {
+        int asmLength = config.getInt("asmLength", 0);
+        boolean derandomize = config.getBoolean("derandomize", false);
+        CcsdsReedSolomon rs = null;
+        if (config.containsKey("reedSolomon")) {
+            YConfiguration rsConfig = config.getConfig("reedSolomon");
+            int e = rsConfig.getInt("errorCorrectionCapability", 16);
+            int depth = rsConfig.getInt("interleavingDepth", 1);
+            int virtualFill = rsConfig.getInt("virtualFill", 0);
+            try {
+                rs = new CcsdsReedSolomon(e, depth, virtualFill);
+            } catch (IllegalArgumentException ex) {
+                throw new ConfigurationException(ex.getMessage());
+            }
+            if (frameLength != rs.getDataLength()) {
+                throw new ConfigurationException("Invalid frame length " + frameLength
+                        + "; the Reed-Solomon code with E=" + e + ", I=" + depth + " and virtual fill " + virtualFill
+                        + " requires frames of fixed length " + rs.getDataLength());
+            }
+        }
+        if (asmLength < 0) {
+            throw new ConfigurationException("Invalid asmLength " + asmLength);
+        }
+        if (asmLength == 0 && !derandomize && rs == null) {
+            return null;
+        }
+        return new CodeblockDecoder(asmLength, derandomize, rs);
+    }
+
+    /**
+     * Decodes in place the data and returns the offset of the transfer frame. The frame length is
+     * {@link #getFrameLength(int)}.
+     *
+     * @throws CorruptedFrameException
+     *             if the Reed-Solomon decoding fails
+     */
+    int decode(byte[] data, int offset, int length) throws CorruptedFrameException {
+        int cbOffset = offset + asmLength;
+        int cbLength = length - asmLength;
+        if (derandomize) {
+            Randomizer.randomizeTm(data, cbOffset, cbLength);
+        }
+        if (reedSolomon != null) {
+            try {
+                correctedSymbolCount += reedSolomon.decode(data, cbOffset);
+            } catch (ReedSolomonException e) {
+                uncorrectableCount++;
+                throw new CorruptedFrameException("Reed-Solomon decoding failed: " + e.getMessage());
+            }
+        }
+        return cbOffset;
+    }
+
+    /**
+     *
+     * @param length
+     *            - the length of the data received
+     * @return the length of the transfer frame contained in the data
+     */
+    int getFrameLength(int length) {
+        return reedSolomon == null ? length - asmLength : reedSolomon.getDataLength();
+    }
+
+    /**
+     *
+     * @param frameLength
+     * @return the length of the data containing a frame of the given length
+     */
+    int getEncodedLength(int frameLength) {
+        return asmLength + (reedSolomon == null ? frameLength : reedSolomon.getCodeblockLength());
+    }
+
+    public long getCorrectedSymbolCount() {
+        return correctedSymbolCount;
+    }
+
+    public long getUncorrectableCount() {
+        return uncorrectableCount;
+    }
+}
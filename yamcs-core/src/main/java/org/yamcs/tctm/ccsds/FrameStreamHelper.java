@@ -78,7 +78,8 @@ public class FrameStreamHelper {
     }
 
     public void sendGoodFrame(int seq, DownlinkTransferFrame frame, byte[] data, int offset, int length) {
-        if (goodFrameStream == null) {
+        // avoid copying the frame data if nobody is interested in it
+        if (goodFrameStream == null || goodFrameStream.getSubscriberCount() == 0) {
             return;
         }
         long rectime = TimeEncoding.getWallclockTime();
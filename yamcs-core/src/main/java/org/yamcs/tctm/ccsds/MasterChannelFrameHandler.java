@@ -20,6 +20,7 @@ import org.yamcs.time.Instant;
 public class MasterChannelFrameHandler {
     CcsdsFrameType frameType;
     TransferFrameDecoder frameDecoder;
+    CodeblockDecoder codeblockDecoder;
     Map<Integer, VcDownlinkHandler> handlers = new HashMap<>();
     int idleFrameCount;
     int frameCount;
@@ -71,11 +72,19 @@ public class MasterChannelFrameHandler {
             throw new ConfigurationException("Unsupported frame type '" + frameType + "'");
         }
         handlers = params.createVcHandlers(yamcsInstance, linkName);
+
+        int frameLength = params.getMaxFrameLength() == params.getMinFrameLength() ? params.getMaxFrameLength() : -1;
+        codeblockDecoder = CodeblockDecoder.fromConfig(config, frameLength);
     }
 
     public void handleFrame(Instant ertime, byte[] data, int offset, int length) throws TcTmException {
         DownlinkTransferFrame frame = null;
         try {
+            if (codeblockDecoder != null) {
+                int frameOffset = codeblockDecoder.decode(data, offset, length);
+                length = codeblockDecoder.getFrameLength(length);
+                offset = frameOffset;
+            }
             frame = frameDecoder.decode(data, offset, length);
         } catch (TcTmException e) {
             badframeCount++;
@@ -114,12 +123,27 @@ public class MasterChannelFrameHandler {
         vch.handle(frame);
     }
 
+    /**
+     * 
+     * @return the maximum size of the data passed to {@link #handleFrame(Instant, byte[], int, int)}. If a
+     *         Reed-Solomon decoding or attached sync marker is configured, this is the size of the encoded frame.
+     */
     public int getMaxFrameSize() {
-        return params.getMaxFrameLength();
+        return codeblockDecoder == null ? params.getMaxFrameLength()
+                : codeblockDecoder.getEncodedLength(params.getMaxFrameLength());
     }
 
     public int getMinFrameSize() {
-        return params.getMinFrameLength();
+        return codeblockDecoder == null ? params.getMinFrameLength()
+                : codeblockDecoder.getEncodedLength(params.getMinFrameLength());
+    }
+
+    /**
+     * 
+     * @return the decoder applied to the data before the frame decoding or null if no such decoding is configured
+     */
+    public CodeblockDecoder getCodeblockDecoder() {
+        return codeblockDecoder;
     }
 
     public Collection<VcDownlinkHandler> getVcHandlers() {
@@ -0,0 +1,178 @@
+package org.yamcs.tctm.ccsds;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.yamcs.ConfigurationException;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.tctm.TcTmException;
+import org.yamcs.utils.StringConverter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * Receives telemetry fames via UDP. One UDP datagram = one TM frame.
+ * <p>
+ * Same as {@link UdpTmFrameLink} but the socket is handled by the event loop group shared by all the links instead of a
+ * dedicated thread. The datagrams are read in batches into pooled buffers.
+ * <p>
+ * The datagrams shorter than the minimum or longer than the maximum frame size are dropped; their number is available
+ * in the detailed status and as the droppedDatagrams system parameter.
+ */
+public class NettyUdpTmFrameLink extends AbstractTmFrameLink {
+    private final AtomicLong droppedDatagramCount = new AtomicLong();
+
+    private volatile Channel channel;
+    private int port;
+    private String spDroppedDatagrams;
+
+    // the frame handler does not keep references to the frame data, so the array can be reused for all the frames
+    private byte[] frameData;
+
+    /**
+     * Creates a new UDP Frame Data Link
+     * 
+     * @throws ConfigurationException
+     *             if port is not defined in the configuration
+     */
+    @Override
+    public void init(String instance, String name, YConfiguration config) throws ConfigurationException {
+        super.init(instance, name, config);
+        port = config.getInt("port");
+        frameData = new byte[frameHandler.getMaxFrameSize()];
+    }
+
+    @Override
+    public void doStart() {
+        if (!isDisabled()) {
+            try {
+                bind();
+            } catch (Exception e) {
+                notifyFailed(e);
+                return;
+            }
+        }
+        notifyStarted();
+    }
+
+    @Override
+    public void doStop() {
+        closeChannel();
+        notifyStopped();
+    }
+
+    private void bind() throws Exception {
+        ChannelFuture f = createUdpBootstrap(frameHandler.getMaxFrameSize(), new DatagramHandler()).bind(port)
+                .awaitUninterruptibly();
+        if (!f.isSuccess()) {
+            throw new Exception("Cannot bind to UDP port " + port, f.cause());
+        }
+        channel = f.channel();
+    }
+
+    private void closeChannel() {
+        Channel ch = channel;
+        if (ch != null) {
+            ch.close().awaitUninterruptibly();
+            channel = null;
+        }
+    }
+
+    /**
+     * Called from the event loop for each datagram received.
+     */
+    void datagramReceived(ByteBuf buf) {
+        int length = buf.readableBytes();
+        if (length < frameHandler.getMinFrameSize()) {
+            droppedDatagramCount.incrementAndGet();
+            eventProducer.sendWarning("Error processing frame: size " + length
+                    + " shorter than minimum allowed " + frameHandler.getMinFrameSize());
+            return;
+        }
+        if (length > frameHandler.getMaxFrameSize()) {
+            droppedDatagramCount.incrementAndGet();
+            eventProducer.sendWarning("Error processing frame: size " + length + " longer than maximum allowed "
+                    + frameHandler.getMaxFrameSize());
+            return;
+        }
+        buf.readBytes(frameData, 0, length);
+        if (log.isTraceEnabled()) {
+            log.trace("Received datagram of length {}: {}", length,
+                    StringConverter.arrayToHexString(frameData, 0, length, true));
+        }
+        frameCount.getAndIncrement();
+        try {
+            frameHandler.handleFrame(timeService.getHresMissionTime(), frameData, 0, length);
+        } catch (TcTmException e) {
+            eventProducer.sendWarning("Error processing frame: " + e.toString());
+        } catch (Exception e) {
+            log.error("Error processing frame", e);
+        }
+    }
+
+    /**
+     * returns statistics with the number of datagram received and the number of dropped datagrams
+     */
+    @Override
+    public String getDetailedStatus() {
+        if (isDisabled()) {
+            return "DISABLED";
+        } else {
+            return String.format("OK (%s) %nValid datagrams received: %d%nDropped datagrams: %d",
+                    port, frameCount.get(), droppedDatagramCount.get());
+        }
+    }
+
+    @Override
+    protected void doDisable() {
+        closeChannel();
+    }
+
+    @Override
+    protected void doEnable() throws Exception {
+        bind();
+    }
+
+    @Override
+    public void resetCounters() {
+        super.resetCounters();
+        droppedDatagramCount.set(0);
+    }
+
+    @Override
+    public void setupSystemParameters(SystemParametersCollector sysParamCollector) {
+        super.setupSystemParameters(sysParamCollector);
+        spDroppedDatagrams = sysParamCollector.getNamespace() + "/" + linkName + "/droppedDatagrams";
+    }
+
+    @Override
+    protected void collectSystemParameters(long time, List<ParameterValue> list) {
+        super.collectSystemParameters(time, list);
+        list.add(SystemParametersCollector.getPV(spDroppedDatagrams, time, droppedDatagramCount.get()));
+    }
+
+    @Override
+    protected Status connectionStatus() {
+        Channel ch = channel;
+        return (ch != null && ch.isActive()) ? Status.OK : Status.UNAVAIL;
+    }
+
+    class DatagramHandler extends SimpleChannelInboundHandler<DatagramPacket> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket datagram) {
+            datagramReceived(datagram.content());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            log.warn("Exception caught when reading from the UDP socket at port {}", port, cause);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.yamcs.tctm.ccsds;
 
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 import org.slf4j.Logger;
@@ -34,6 +35,11 @@ import org.yamcs.utils.ByteArrayUtils;
  * The two types can be both present on the same stream.
  * 
  * <p>
+ * The packets can be delivered either as byte arrays or, with a {@link PacketConsumer}, as slices of a buffer. In the
+ * second case, the packets completely contained in the data passed to {@link #process(byte[], int, int)} are delivered
+ * without copying them; only the packets spanning multiple calls are copied (assembled) into a new array.
+ * 
+ * <p>
  * The objects of this class can processes one "stream" at a time and they are not thread safe!
  * 
  * @author nm
@@ -61,6 +67,7 @@ public class PacketDecoder {
     private byte[] packet;
 
     final Consumer<byte[]> consumer;
+    final PacketConsumer sliceConsumer;
 
     private boolean skipIdlePackets = true;
     private boolean stripEncapsulationHeader = false;
@@ -68,31 +75,55 @@ public class PacketDecoder {
     final static byte[] ZERO_BYTES = new byte[0];
     static Logger log = LoggerFactory.getLogger(PacketDecoder.class.getName());
 
+    /**
+     * Receives the packets as slices of a buffer. The buffer is only valid during the call; a consumer which needs the
+     * packet afterwards has to copy it.
+     */
+    @FunctionalInterface
+    public interface PacketConsumer {
+        void accept(byte[] buf, int offset, int length);
+    }
+
+    /**
+     * Creates a decoder delivering each packet into its own array.
+     */
     public PacketDecoder(int maxPacketLength, Consumer<byte[]> consumer) {
         this.maxPacketLength = maxPacketLength;
         this.consumer = consumer;
+        this.sliceConsumer = null;
+    }
+
+    /**
+     * Creates a decoder delivering the packets as slices of the data processed (if the packets are completely
+     * contained in it) or of an assembly array (if the packets span multiple chunks of data).
+     */
+    public PacketDecoder(int maxPacketLength, PacketConsumer sliceConsumer) {
+        this.maxPacketLength = maxPacketLength;
+        this.consumer = null;
+        this.sliceConsumer = sliceConsumer;
     }
 
     public void process(byte[] data, int offset, int length) throws TcTmException {
         while (length > 0) {
             if (headerOffset == 0) { // read the first byte of the header to know what kind of packet it is as well as
                 byte d0 = data[offset];
-                offset++;
-                length--;
                 headerLength = getHeaderLength(d0);
-                header[0] = d0;
-                if (headerLength == 1) {
-                    // special case, encapsulation packet of size 1, send the packet and reset the header
-                    if (stripEncapsulationHeader) {
-                        packet = ZERO_BYTES;
-                    } else {
-                        packet = new byte[] { d0 };
+                if (headerLength <= length) {
+                    int packetLength = getPacketLength(data, offset);
+                    checkPacketLength(packetLength);
+                    if (packetLength <= length) {
+                        // the packet is completely contained in the data, no need to assemble it
+                        sendSlice(data, offset, packetLength);
+                        offset += packetLength;
+                        length -= packetLength;
+                        continue;
                     }
-                    sendToConsumer();
-                    headerOffset = 0;
-                } else {
-                    headerOffset++;
                 }
+                // the packet continues in the next chunk(s); note that the one byte packets are always sent above
+                offset++;
+                length--;
+                header[0] = d0;
+                headerOffset++;
             } else if (headerOffset < headerLength) { // reading the header
                 int n = Math.min(length, headerLength - headerOffset);
                 System.arraycopy(data, offset, header, headerOffset, n);
@@ -117,25 +148,46 @@ public class PacketDecoder {
         }
     }
 
-    private static boolean isIdle(byte[] header) {
-        int b0 = header[0] & 0xFF;
+    private static boolean isIdle(byte[] header, int offset) {
+        int b0 = header[offset] & 0xFF;
         int pv = b0 >>> 5;
 
         if (pv == PACKET_VERSION_CCSDS) {
-            return ((ByteArrayUtils.decodeUnsignedShort(header, 0) & 0x7FF) == 0x7FF);
+            return ((ByteArrayUtils.decodeUnsignedShort(header, offset) & 0x7FF) == 0x7FF);
         } else {
             return ((b0 & 0x1C) == 0);
         }
     }
 
     private void sendToConsumer() {
-        if (!skipIdlePackets || !isIdle(header)) {
-            consumer.accept(packet);
+        if (!skipIdlePackets || !isIdle(header, 0)) {
+            if (sliceConsumer != null) {
+                sliceConsumer.accept(packet, 0, packet.length);
+            } else {
+                consumer.accept(packet);
+            }
         } else {
             log.trace("skiping idle packet of size {}", packet.length);
         }
     }
 
+    // sends a packet which is completely contained in the data
+    private void sendSlice(byte[] data, int offset, int packetLength) {
+        if (skipIdlePackets && isIdle(data, offset)) {
+            log.trace("skiping idle packet of size {}", packetLength);
+            return;
+        }
+        if (stripEncapsulationHeader && isEncapsulation(data[offset])) {
+            offset += headerLength;
+            packetLength -= headerLength;
+        }
+        if (sliceConsumer != null) {
+            sliceConsumer.accept(data, offset, packetLength);
+        } else {
+            consumer.accept(packetLength == 0 ? ZERO_BYTES : Arrays.copyOfRange(data, offset, offset + packetLength));
+        }
+    }
+
     // get headerLength based on the first byte of the packet
     private static int getHeaderLength(byte b0) throws UnsupportedPacketVersionException {
         int pv = (b0 & 0xFF) >>> 5;
@@ -148,15 +200,19 @@ public class PacketDecoder {
         }
     }
 
-    private void allocatePacket() throws TcTmException {
-        int packetLength = getPacketLength(header);
+    private void checkPacketLength(int packetLength) throws TcTmException {
         if (packetLength > maxPacketLength) {
             throw new PacketTooLongException(maxPacketLength, packetLength);
         } else if (packetLength < headerLength) {
             throw new TcTmException(
                     "Invalid packet length " + packetLength + " (it is smaller than the header length)");
         }
-        if (stripEncapsulationHeader && isEncapsulation(header)) {
+    }
+
+    private void allocatePacket() throws TcTmException {
+        int packetLength = getPacketLength(header, 0);
+        checkPacketLength(packetLength);
+        if (stripEncapsulationHeader && isEncapsulation(header[0])) {
             if (packetLength == headerLength) {
                 packet = ZERO_BYTES;
                 sendToConsumer();
@@ -177,27 +233,27 @@ public class PacketDecoder {
         }
     }
 
-    private static boolean isEncapsulation(byte[] header) {
-        int pv = (header[0] & 0xFF) >>> 5;
+    private static boolean isEncapsulation(byte b0) {
+        int pv = (b0 & 0xFF) >>> 5;
         return (pv == PACKET_VERSION_ENCAPSULATION);
     }
 
-    // decodes the packet length from the header
-    private static int getPacketLength(byte[] header) throws UnsupportedPacketVersionException {
-        int h0 = header[0] & 0xFF;
+    // decodes the packet length from the header starting at offset
+    private static int getPacketLength(byte[] header, int offset) throws UnsupportedPacketVersionException {
+        int h0 = header[offset] & 0xFF;
         int pv = h0 >>> 5;
         if (pv == PACKET_VERSION_CCSDS) {
-            return 7 + ByteArrayUtils.decodeUnsignedShort(header, 4);
+            return 7 + ByteArrayUtils.decodeUnsignedShort(header, offset + 4);
         } else if (pv == PACKET_VERSION_ENCAPSULATION) {
             int l = h0 & 3;
             if (l == 0) {
                 return 1;
             } else if (l == 1) {
-                return header[1] & 0xFF;
+                return header[offset + 1] & 0xFF;
             } else if (l == 2) {
-                return ByteArrayUtils.decodeUnsignedShort(header, 2);
+                return ByteArrayUtils.decodeUnsignedShort(header, offset + 2);
             } else {
-                return ByteArrayUtils.decodeInt(header, 4);
+                return ByteArrayUtils.decodeInt(header, offset + 4);
             }
         } else {
             throw new UnsupportedPacketVersionException(pv);
@@ -1,10 +1,19 @@
 package org.yamcs.tctm.ccsds;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * CCSDS randomizer as per CCSDS 131.0-B-3(TM) and CCSDS 231.0-B-3 (TC)
  */
 public class Randomizer {
     static byte[] tmseq = new byte[255];
     static byte[] tcseq = new byte[255];
+
+    // the TM sequence repeated 8 times; its length being a multiple of both 255 and 8 allows to xor it 8 bytes at a
+    // time over buffers of any length
+    static final int TMSEQ_X_LENGTH = 8 * 255;
+    static final ByteBuffer tmseqx = ByteBuffer.allocate(TMSEQ_X_LENGTH).order(ByteOrder.nativeOrder());
     static {
         int lfsr = 0xFF;
         int bit;
@@ -28,6 +37,9 @@ public class Randomizer {
                 lfsr =  (lfsr >> 1) | (bit << 7);
             }
         }
+        for (int i = 0; i < 8; i++) {
+            tmseqx.put(tmseq);
+        }
     }
     
    static void xor(byte[] buf, byte[] seq) {
@@ -46,6 +58,36 @@ public class Randomizer {
     public static void randomizeTm(byte[] buf) {
         xor(buf, tmseq);
     }
+
+    /**
+     * Randomize or de-randomize (the operation is its own inverse) length bytes of the buffer starting at offset
+     * according to CCSDS 131.0-B-3 pseudo-randomizer.
+     * <p>
+     * The sequence is applied 8 bytes at a time.
+     * 
+     * @param buf
+     * @param offset
+     * @param length
+     */
+    public static void randomizeTm(byte[] buf, int offset, int length) {
+        ByteBuffer bb = ByteBuffer.wrap(buf).order(ByteOrder.nativeOrder());
+        int end = offset + length;
+        int i = offset;
+        int j = 0;
+        while (i + 8 <= end) {
+            bb.putLong(i, bb.getLong(i) ^ tmseqx.getLong(j));
+            i += 8;
+            j += 8;
+            if (j == TMSEQ_X_LENGTH) {
+                j = 0;
+            }
+        }
+        while (i < end) {
+            buf[i] = (byte) (buf[i] ^ tmseqx.get(j));
+            i++;
+            j++;
+        }
+    }
     
     /**
      * Randomize the buffer according to CCSDS 231.0-B-3 pseudo-randomizer
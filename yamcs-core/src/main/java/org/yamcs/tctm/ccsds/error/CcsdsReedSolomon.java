@@ -0,0 +1,362 @@
+package org.yamcs.tctm.ccsds.error;
+
+import java.util.Arrays;
+
+import org.yamcs.rs.ReedSolomonException;
+
+/**
+ * Reed-Solomon RS(255,223) (E=16) and RS(255,239) (E=8) encoding/decoding as specified in
+ * CCSDS RECOMMENDED STANDARD FOR TM SYNCHRONIZATION AND CHANNEL CODING
+ *
+ * CCSDS 131.0-B-3 September 2017
+ * 4 Reed-Solomon Coding
+ * <p>
+ * The symbols are in the dual basis (Berlekamp) representation, the codewords can be interleaved (depth 1 to 8) and
+ * shortened (virtual fill).
+ * <p>
+ * Compared with the generic {@link org.yamcs.rs.ReedSolomon}, this implementation uses per root multiplication
+ * tables for computing the syndromes (which is most of the work when the codewords have no error) and does not
+ * allocate memory when decoding. For this reason the objects of this class are not thread safe.
+ *
+ */
+public class CcsdsReedSolomon {
+    static final int NN = 255;
+    static final int A0 = NN;
+    static final int GFPOLY = 0x187;
+    static final int PRIM = 11;
+    static final int IPRIM = 116;
+
+    static final int[] ALPHA_TO = new int[NN + 1];
+    static final int[] INDEX_OF = new int[NN + 1];
+
+    // dual basis <-> conventional conversion
+    static final int[] TALTAB = new int[256];
+    static final int[] TAL1TAB = new int[256];
+
+    static {
+        INDEX_OF[0] = A0;
+        ALPHA_TO[A0] = 0;
+        int sr = 1;
+        for (int i = 0; i < NN; i++) {
+            INDEX_OF[sr] = i;
+            ALPHA_TO[i] = sr;
+            sr <<= 1;
+            if ((sr & 0x100) != 0) {
+                sr ^= GFPOLY;
+            }
+            sr &= NN;
+        }
+
+        int[] tal = { 0x8d, 0xef, 0xec, 0x86, 0xfa, 0x99, 0xaf, 0x7b };
+        for (int i = 0; i < 256; i++) {
+            int x = 0;
+            for (int j = 0; j < 8; j++) {
+                for (int k = 0; k < 8; k++) {
+                    if ((i & (1 << k)) != 0) {
+                        x ^= tal[7 - k] & (1 << j);
+                    }
+                }
+            }
+            TALTAB[i] = x;
+            TAL1TAB[x] = i;
+        }
+    }
+
+    final int nroots;
+    final int fcr;
+    final int interleavingDepth;
+    final int pad;
+    final int[] genpoly;
+
+    // synTable[i][x] = x * alpha^((fcr+i)*prim) in conventional basis
+    final int[][] synTable;
+
+    // work arrays used by decode
+    private final int[] s;
+    private final int[] lambda, b, t, omega, reg, root, loc;
+    private final int[][] syndromes;
+
+    /**
+     *
+     * @param errorCorrectionCapability
+     *            E - 8 or 16
+     * @param interleavingDepth
+     *            I - between 1 and 8
+     * @param virtualFill
+     *            the number of leading zero symbols not transmitted in each codeword
+     */
+    public CcsdsReedSolomon(int errorCorrectionCapability, int interleavingDepth, int virtualFill) {
+        if (errorCorrectionCapability != 8 && errorCorrectionCapability != 16) {
+            throw new IllegalArgumentException("Invalid error correction capability "
+                    + errorCorrectionCapability + "; supported values are 8 and 16");
+        }
+        if (interleavingDepth < 1 || interleavingDepth > 8) {
+            throw new IllegalArgumentException("Invalid interleaving depth " + interleavingDepth
+                    + "; it should be between 1 and 8");
+        }
+        this.nroots = 2 * errorCorrectionCapability;
+        if (virtualFill < 0 || virtualFill >= NN - nroots) {
+            throw new IllegalArgumentException("Invalid virtual fill " + virtualFill);
+        }
+        this.fcr = 128 - errorCorrectionCapability;
+        this.interleavingDepth = interleavingDepth;
+        this.pad = virtualFill;
+
+        genpoly = new int[nroots + 1];
+        genpoly[0] = 1;
+        for (int i = 0, root = fcr * PRIM; i < nroots; i++, root += PRIM) {
+            genpoly[i + 1] = 1;
+            for (int j = i; j > 0; j--) {
+                if (genpoly[j] != 0) {
+                    genpoly[j] = genpoly[j - 1] ^ ALPHA_TO[modnn(INDEX_OF[genpoly[j]] + root)];
+                } else {
+                    genpoly[j] = genpoly[j - 1];
+                }
+            }
+            genpoly[0] = ALPHA_TO[modnn(INDEX_OF[genpoly[0]] + root)];
+        }
+        for (int i = 0; i <= nroots; i++) {
+            genpoly[i] = INDEX_OF[genpoly[i]];
+        }
+
+        synTable = new int[nroots][256];
+        for (int i = 0; i < nroots; i++) {
+            int r = modnn((fcr + i) * PRIM);
+            for (int x = 1; x < 256; x++) {
+                synTable[i][x] = ALPHA_TO[modnn(INDEX_OF[x] + r)];
+            }
+        }
+
+        s = new int[nroots];
+        syndromes = new int[interleavingDepth][nroots];
+        lambda = new int[nroots + 1];
+        b = new int[nroots + 1];
+        t = new int[nroots + 1];
+        omega = new int[nroots + 1];
+        reg = new int[nroots + 1];
+        root = new int[nroots];
+        loc = new int[nroots];
+    }
+
+    /**
+     *
+     * @return the length in bytes of the codeblock (data + parity of all the interleaved codewords)
+     */
+    public int getCodeblockLength() {
+        return interleavingDepth * (NN - pad);
+    }
+
+    /**
+     *
+     * @return the length in bytes of the data part of the codeblock (i.e. the transfer frame length)
+     */
+    public int getDataLength() {
+        return interleavingDepth * (NN - nroots - pad);
+    }
+
+    /**
+     * Computes and writes the parity symbols of the codeblock starting at offset. The data is read from the first
+     * {@link #getDataLength()} bytes.
+     */
+    public void encode(byte[] buf, int offset) {
+        int k = NN - nroots - pad;
+        int[] parity = t;
+        for (int c = 0; c < interleavingDepth; c++) {
+            Arrays.fill(parity, 0, nroots, 0);
+            for (int i = 0; i < k; i++) {
+                int d = TAL1TAB[buf[offset + i * interleavingDepth + c] & 0xFF];
+                int feedback = INDEX_OF[d ^ parity[0]];
+                if (feedback != A0) {
+                    for (int j = 1; j < nroots; j++) {
+                        parity[j] ^= ALPHA_TO[modnn(feedback + genpoly[nroots - j])];
+                    }
+                }
+                System.arraycopy(parity, 1, parity, 0, nroots - 1);
+                parity[nroots - 1] = (feedback != A0) ? ALPHA_TO[modnn(feedback + genpoly[0])] : 0;
+            }
+            for (int j = 0; j < nroots; j++) {
+                buf[offset + (k + j) * interleavingDepth + c] = (byte) TALTAB[parity[j]];
+            }
+        }
+    }
+
+    /**
+     * Corrects in place the codeblock starting at offset and returns the number of symbols corrected.
+     *
+     * @param buf
+     * @param offset
+     * @return the number of symbols corrected in all the interleaved codewords
+     * @throws ReedSolomonException
+     *             if any of the codewords cannot be corrected
+     */
+    public int decode(byte[] buf, int offset) throws ReedSolomonException {
+        int depth = interleavingDepth;
+        int n = NN - pad;
+        // compute the syndromes of all the interleaved codewords in one pass over the data
+        for (int c = 0; c < depth; c++) {
+            int[] sc = syndromes[c];
+            int x = TAL1TAB[buf[offset + c] & 0xFF];
+            for (int i = 0; i < nroots; i++) {
+                sc[i] = x;
+            }
+        }
+        for (int j = 1; j < n; j++) {
+            int p = offset + j * depth;
+            for (int c = 0; c < depth; c++) {
+                int x = TAL1TAB[buf[p + c] & 0xFF];
+                int[] sc = syndromes[c];
+                for (int i = 0; i < nroots; i++) {
+                    sc[i] = synTable[i][sc[i]] ^ x;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int c = 0; c < depth; c++) {
+            int[] sc = syndromes[c];
+            int synError = 0;
+            for (int i = 0; i < nroots; i++) {
+                synError |= sc[i];
+            }
+            if (synError != 0) {
+                count += correct(buf, offset + c, sc);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Berlekamp-Massey, Chien search and Forney algorithm applied on one codeword with non zero syndromes.
+     * <p>
+     * Adapted from the decoder of Phil Karn.
+     */
+    private int correct(byte[] buf, int offset, int[] syn) throws ReedSolomonException {
+        for (int i = 0; i < nroots; i++) {
+            s[i] = INDEX_OF[syn[i]];
+        }
+        Arrays.fill(lambda, 0);
+        lambda[0] = 1;
+        for (int i = 0; i < nroots + 1; i++) {
+            b[i] = INDEX_OF[lambda[i]];
+        }
+
+        int r = 0;
+        int el = 0;
+        while (++r <= nroots) {
+            int discr = 0;
+            for (int i = 0; i < r; i++) {
+                if ((lambda[i] != 0) && (s[r - i - 1] != A0)) {
+                    discr ^= ALPHA_TO[modnn(INDEX_OF[lambda[i]] + s[r - i - 1])];
+                }
+            }
+            discr = INDEX_OF[discr];
+            if (discr == A0) {
+                System.arraycopy(b, 0, b, 1, nroots);
+                b[0] = A0;
+            } else {
+                t[0] = lambda[0];
+                for (int i = 0; i < nroots; i++) {
+                    if (b[i] != A0) {
+                        t[i + 1] = lambda[i + 1] ^ ALPHA_TO[modnn(discr + b[i])];
+                    } else {
+                        t[i + 1] = lambda[i + 1];
+                    }
+                }
+                if (2 * el <= r - 1) {
+                    el = r - el;
+                    for (int i = 0; i <= nroots; i++) {
+                        b[i] = (lambda[i] == 0) ? A0 : modnn(INDEX_OF[lambda[i]] - discr + NN);
+                    }
+                } else {
+                    System.arraycopy(b, 0, b, 1, nroots);
+                    b[0] = A0;
+                }
+                System.arraycopy(t, 0, lambda, 0, nroots + 1);
+            }
+        }
+
+        int degLambda = 0;
+        for (int i = 0; i < nroots + 1; i++) {
+            lambda[i] = INDEX_OF[lambda[i]];
+            if (lambda[i] != A0) {
+                degLambda = i;
+            }
+        }
+        if (degLambda == 0) {
+            throw new ReedSolomonException("Uncorrectable");
+        }
+
+        // Chien search
+        System.arraycopy(lambda, 1, reg, 1, nroots);
+        int count = 0;
+        for (int i = 1, k = IPRIM - 1; i <= NN; i++, k = modnn(k + IPRIM)) {
+            int q = 1;
+            for (int j = degLambda; j > 0; j--) {
+                if (reg[j] != A0) {
+                    reg[j] = modnn(reg[j] + j);
+                    q ^= ALPHA_TO[reg[j]];
+                }
+            }
+            if (q != 0) {
+                continue;
+            }
+            root[count] = i;
+            loc[count] = k;
+            if (++count == degLambda) {
+                break;
+            }
+        }
+        if (degLambda != count) {
+            throw new ReedSolomonException("Uncorrectable");
+        }
+
+        // Forney
+        int degOmega = degLambda - 1;
+        for (int i = 0; i <= degOmega; i++) {
+            int tmp = 0;
+            for (int j = i; j >= 0; j--) {
+                if ((s[i - j] != A0) && (lambda[j] != A0)) {
+                    tmp ^= ALPHA_TO[modnn(s[i - j] + lambda[j])];
+                }
+            }
+            omega[i] = INDEX_OF[tmp];
+        }
+
+        for (int j = count - 1; j >= 0; j--) {
+            if (loc[j] < pad) {
+                // error in the virtual fill
+                throw new ReedSolomonException("Uncorrectable");
+            }
+        }
+        for (int j = count - 1; j >= 0; j--) {
+            int num1 = 0;
+            for (int i = degOmega; i >= 0; i--) {
+                if (omega[i] != A0) {
+                    num1 ^= ALPHA_TO[modnn(omega[i] + i * root[j])];
+                }
+            }
+            int num2 = ALPHA_TO[modnn(root[j] * (fcr - 1) + NN)];
+            int den = 0;
+            for (int i = Math.min(degLambda, nroots - 1) & ~1; i >= 0; i -= 2) {
+                if (lambda[i + 1] != A0) {
+                    den ^= ALPHA_TO[modnn(lambda[i + 1] + i * root[j])];
+                }
+            }
+            if (num1 != 0) {
+                int e = ALPHA_TO[modnn(INDEX_OF[num1] + INDEX_OF[num2] + NN - INDEX_OF[den])];
+                // the conversion to the dual basis is linear so the error can be converted and applied directly
+                int p = offset + (loc[j] - pad) * interleavingDepth;
+                buf[p] ^= TALTAB[e];
+            }
+        }
+        return count;
+    }
+
+    static int modnn(int x) {
+        while (x >= NN) {
+            x -= NN;
+            x = (x >> 8) + (x & NN);
+        }
+        return x;
+    }
+}
@@ -55,10 +55,10 @@ import java.nio.ByteOrder;
  *
  */
 public class BitBuffer {
-    final byte[] b;
+    byte[] b;
     int position;
     ByteOrder byteOrder;
-    final int offset;
+    int offset;
 
     /**
      * Creates a new bit buffer that wraps array b starting at offset 0
@@ -77,6 +77,19 @@ public class BitBuffer {
         this.offset = offset;
     }
 
+    /**
+     * Makes this buffer wrap the array b starting at offset (in bytes). The position is set to 0 and the byte order to
+     * big endian, as for a newly created buffer.
+     * <p>
+     * Can be used to avoid creating a new buffer for each array.
+     */
+    public void wrap(byte[] b, int offset) {
+        this.b = b;
+        this.position = 0;
+        this.byteOrder = ByteOrder.BIG_ENDIAN;
+        this.offset = offset;
+    }
+
     /**
      * reads numBits from the buffer and returns them into a long on the rightmost position.
      * 
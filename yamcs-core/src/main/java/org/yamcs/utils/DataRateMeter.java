@@ -8,6 +8,9 @@ import com.codahale.metrics.EWMA;
 
 /**
  * Like the {@link com.codahale.metrics.Meter} but gives the data rates at 5 seconds mean rates
+ * <p>
+ * Like the Meter, it can be marked concurrently from several threads: the EWMA accumulates the updates in a LongAdder
+ * and the ticks are done by only one thread, the one succeeding to advance the last tick.
  * 
  * @author nm
  *
@@ -29,11 +29,34 @@ import org.yamcs.yarch.DataType;
 import com.google.protobuf.ByteString;
 
 public class ValueUtility {
+    // the values are immutable so the frequent ones (small integers and booleans) are shared instead of being
+    // allocated each time
+    static final int CACHE_LOW = -128;
+    static final int CACHE_HIGH = 1023;
+    static final Value[] UINT32_CACHE = new Value[CACHE_HIGH + 1];
+    static final Value[] SINT32_CACHE = new Value[CACHE_HIGH - CACHE_LOW + 1];
+    static final Value TRUE = new BooleanValue(true);
+    static final Value FALSE = new BooleanValue(false);
+    static {
+        for (int i = 0; i < UINT32_CACHE.length; i++) {
+            UINT32_CACHE[i] = new UInt32Value(i);
+        }
+        for (int i = 0; i < SINT32_CACHE.length; i++) {
+            SINT32_CACHE[i] = new SInt32Value(i + CACHE_LOW);
+        }
+    }
+
     public static Value getUint32Value(int x) {
+        if (x >= 0 && x <= CACHE_HIGH) {
+            return UINT32_CACHE[x];
+        }
         return new UInt32Value(x);
     }
 
     public static Value getSint32Value(int x) {
+        if (x >= CACHE_LOW && x <= CACHE_HIGH) {
+            return SINT32_CACHE[x - CACHE_LOW];
+        }
         return new SInt32Value(x);
     }
 
@@ -58,7 +81,7 @@ public class ValueUtility {
     }
 
     public static Value getBooleanValue(boolean b) {
-        return new BooleanValue(b);
+        return b ? TRUE : FALSE;
     }
 
     public static Value getFloatValue(float f) {
@@ -0,0 +1,252 @@
+package org.yamcs.xtceproc;
+
+import java.nio.ByteOrder;
+import java.util.Collection;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.BitBuffer;
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.BooleanDataEncoding;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.FloatDataEncoding;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.ParameterType;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.SequenceEntry;
+
+/**
+ * Extracts the subscribed entries of one container using a class generated (with Janino) specifically for these
+ * entries.
+ * <p>
+ * The generated code reads each entry at its bit position computed when generating the code: the entries located
+ * relative to the container start are read at constant positions (with the byte aligned integers and floats read
+ * directly from the byte array) and those located relative to the previous entry are read at a constant distance from
+ * the position where the extraction starts.
+ * <p>
+ * Only the containers whose subscribed entries all have a fixed layout can be compiled: parameter entries without
+ * include condition and without repeat, of a base type encoded as unsigned or two's complement integer, IEEE754 float
+ * or boolean, without custom decoding algorithm. For the other containers {@link #compile} returns null and the
+ * entries are extracted by the {@link SequenceContainerProcessor}.
+ * <p>
+ * The decoder has no state of its own, it can be used by multiple threads.
+ */
+public abstract class CompiledContainerDecoder {
+    static final Logger log = LoggerFactory.getLogger(CompiledContainerDecoder.class);
+    static final String PACKAGE = "org.yamcs.xtceproc.ccd";
+
+    private ParameterEntry[] entries;
+    // the maximum end bit position of the entries with absolute position, -1 if there is no such entry
+    private int maxAbsoluteEnd;
+    // the maximum end bit position of the entries with position relative to the start of extraction
+    private int maxRelativeEnd;
+
+    /**
+     * Generates and compiles a decoder for the given entries of the container.
+     *
+     * @param container
+     *            - the container whose entries are extracted
+     * @param entries
+     *            - the subscribed entries in the order in which they appear in the container
+     * @return the compiled decoder or null if the entries cannot be compiled
+     * @throws IllegalArgumentException
+     *             if the generated code cannot be compiled
+     */
+    public static CompiledContainerDecoder compile(SequenceContainer container, Collection<SequenceEntry> entries) {
+        ParameterEntry[] pentries = new ParameterEntry[entries.size()];
+        int k = 0;
+        for (SequenceEntry se : entries) {
+            if (!isCompilable(se)) {
+                return null;
+            }
+            pentries[k++] = (ParameterEntry) se;
+        }
+
+        String className = "Decoder" + Integer.toHexString(System.identityHashCode(container)) + "_"
+                + entries.size();
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n")
+                .append("public class ").append(className)
+                .append(" extends org.yamcs.xtceproc.CompiledContainerDecoder {\n")
+                .append("    protected void decode(org.yamcs.utils.BitBuffer buf, ")
+                .append("org.yamcs.xtceproc.ContainerProcessingContext ctx) {\n")
+                .append("        byte[] b = buf.array();\n")
+                .append("        int o = buf.offset();\n")
+                .append("        int p0 = buf.getPosition();\n")
+                .append("        long v;\n");
+
+        boolean absolute = false;
+        int pos = 0;
+        int maxAbsoluteEnd = -1;
+        int maxRelativeEnd = 0;
+        for (int i = 0; i < pentries.length; i++) {
+            ParameterEntry pe = pentries[i];
+            if (pe.getReferenceLocation() == SequenceEntry.ReferenceLocationType.CONTAINER_START) {
+                absolute = true;
+                pos = pe.getLocationInContainerInBits();
+            } else {
+                pos += pe.getLocationInContainerInBits();
+            }
+            DataEncoding de = ((BaseDataType) pe.getParameter().getParameterType()).getEncoding();
+            int n = (de instanceof BooleanDataEncoding) ? 1 : de.getSizeInBits();
+            String posExpr = absolute ? Integer.toString(pos) : "p0 + " + pos;
+
+            sb.append("        // ").append(pe.getParameter().getQualifiedName()).append("\n");
+            if (absolute && (pos & 7) == 0 && (n & 7) == 0) {
+                sb.append("        v = ").append(readBytes(pos >> 3, n >> 3, de.getByteOrder())).append(";\n");
+            } else {
+                sb.append("        buf.setPosition(").append(posExpr).append(");\n")
+                        .append("        buf.setByteOrder(java.nio.ByteOrder.")
+                        .append(de.getByteOrder() == ByteOrder.LITTLE_ENDIAN ? "LITTLE_ENDIAN" : "BIG_ENDIAN")
+                        .append(");\n")
+                        .append("        v = buf.getBits(").append(n).append(");\n");
+            }
+            sb.append("        addValue(ctx, ").append(i).append(", ").append(toValue(de, n)).append(", ")
+                    .append(posExpr).append(", ").append(n).append(");\n");
+            pos += n;
+            if (absolute) {
+                maxAbsoluteEnd = Math.max(maxAbsoluteEnd, pos);
+            } else {
+                maxRelativeEnd = Math.max(maxRelativeEnd, pos);
+            }
+        }
+        sb.append("        buf.setPosition(").append(absolute ? Integer.toString(pos) : "p0 + " + pos).append(");\n")
+                .append("    }\n")
+                .append("}\n");
+
+        String code = sb.toString();
+        log.debug("Compiling decoder for container {}:\n{}", container.getQualifiedName(), code);
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.setParentClassLoader(CompiledContainerDecoder.class.getClassLoader());
+            compiler.cook(code);
+            Class<?> clazz = compiler.getClassLoader().loadClass(PACKAGE + "." + className);
+            CompiledContainerDecoder decoder = (CompiledContainerDecoder) clazz.newInstance();
+            decoder.entries = pentries;
+            decoder.maxAbsoluteEnd = maxAbsoluteEnd;
+            decoder.maxRelativeEnd = maxRelativeEnd;
+            return decoder;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot compile the decoder for container "
+                    + container.getQualifiedName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    static boolean isCompilable(SequenceEntry se) {
+        if (se.getClass() != ParameterEntry.class || se.getIncludeCondition() != null
+                || se.getRepeatEntry() != null) {
+            return false;
+        }
+        ParameterType ptype = ((ParameterEntry) se).getParameter().getParameterType();
+        if (!(ptype instanceof BaseDataType)) {
+            return false;
+        }
+        DataEncoding de = ((BaseDataType) ptype).getEncoding();
+        if (de == null || de.getFromBinaryTransformAlgorithm() != null) {
+            return false;
+        }
+        if (de instanceof IntegerDataEncoding) {
+            IntegerDataEncoding ide = (IntegerDataEncoding) de;
+            return (ide.getEncoding() == IntegerDataEncoding.Encoding.UNSIGNED
+                    || ide.getEncoding() == IntegerDataEncoding.Encoding.TWOS_COMPLEMENT)
+                    && ide.getSizeInBits() > 0 && ide.getSizeInBits() <= 64;
+        } else if (de instanceof FloatDataEncoding) {
+            FloatDataEncoding fde = (FloatDataEncoding) de;
+            return fde.getEncoding() == FloatDataEncoding.Encoding.IEEE754_1985
+                    && (fde.getSizeInBits() == 32 || fde.getSizeInBits() == 64);
+        } else {
+            return de instanceof BooleanDataEncoding;
+        }
+    }
+
+    // expression reading numBytes bytes starting at byte position bytePos
+    private static String readBytes(int bytePos, int numBytes, ByteOrder byteOrder) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numBytes; i++) {
+            int idx = byteOrder == ByteOrder.LITTLE_ENDIAN ? bytePos + numBytes - 1 - i : bytePos + i;
+            int shift = 8 * (numBytes - 1 - i);
+            if (i > 0) {
+                sb.append(" | ");
+            }
+            sb.append("((b[o + ").append(idx).append("] & 0xFFL)");
+            if (shift > 0) {
+                sb.append(" << ").append(shift);
+            }
+            sb.append(")");
+        }
+        return sb.toString();
+    }
+
+    // expression converting the long v into the raw value, the same way as the DataEncodingDecoder
+    private static String toValue(DataEncoding de, int n) {
+        String vu = "org.yamcs.utils.ValueUtility.";
+        if (de instanceof IntegerDataEncoding) {
+            boolean signed = ((IntegerDataEncoding) de).getEncoding() == IntegerDataEncoding.Encoding.TWOS_COMPLEMENT;
+            String x = (signed && n < 64) ? "((v << " + (64 - n) + ") >> " + (64 - n) + ")" : "v";
+            if (n <= 32) {
+                return vu + (signed ? "getSint32Value" : "getUint32Value") + "((int) " + x + ")";
+            } else {
+                return vu + (signed ? "getSint64Value" : "getUint64Value") + "(" + x + ")";
+            }
+        } else if (de instanceof FloatDataEncoding) {
+            if (n == 32) {
+                return vu + "getFloatValue(Float.intBitsToFloat((int) v))";
+            } else {
+                return vu + "getDoubleValue(Double.longBitsToDouble(v))";
+            }
+        } else {
+            return vu + "getBooleanValue(v != 0)";
+        }
+    }
+
+    /**
+     *
+     * @return true if all the entries fit in the buffer when the extraction starts at the current buffer position
+     */
+    boolean fits(BitBuffer buf) {
+        int size = buf.sizeInBits();
+        return maxAbsoluteEnd <= size && buf.getPosition() + maxRelativeEnd <= size;
+    }
+
+    /**
+     * Extracts the entries from the context buffer starting at the current position and adds the parameter values to
+     * the context result. The buffer is left positioned at the end of the last entry.
+     *
+     * @return the maximum position reached in the buffer
+     */
+    int extract(ContainerProcessingContext pcontext) {
+        BitBuffer buf = pcontext.buffer;
+        int p0 = buf.getPosition();
+        decode(buf, pcontext);
+        return Math.max(Math.max(p0, maxAbsoluteEnd), p0 + maxRelativeEnd);
+    }
+
+    /**
+     * Implemented by the generated code
+     */
+    protected abstract void decode(BitBuffer buf, ContainerProcessingContext ctx);
+
+    /**
+     * Called by the generated code for each entry
+     */
+    protected final void addValue(ContainerProcessingContext pcontext, int idx, Value rawValue, int bitOffset,
+            int bitSize) {
+        ParameterEntry pe = entries[idx];
+        ContainerParameterValue pv = new ContainerParameterValue(pe.getParameter());
+        pv.setAbsoluteBitOffset(pcontext.containerAbsoluteByteOffset + bitOffset);
+        pv.setRawValue(rawValue);
+        pv.setBitSize(bitSize);
+
+        pcontext.pdata.parameterTypeProcessor.calibrate(pcontext, pv);
+
+        pv.setAcquisitionTime(pcontext.result.acquisitionTime);
+        pv.setGenerationTime(pcontext.result.generationTime);
+        pv.setExpireMillis(pcontext.result.expireMillis);
+        pv.setSequenceEntry(pe);
+        pcontext.result.params.add(pv);
+    }
+}
@@ -9,7 +9,6 @@ import org.yamcs.parameter.ParameterValueList;
 import org.yamcs.parameter.Value;
 import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
 import org.yamcs.utils.BitBuffer;
-import org.yamcs.xtce.CriteriaEvaluator;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.ParameterInstanceRef;
 import org.yamcs.xtce.SequenceContainer;
@@ -23,7 +22,7 @@ import org.yamcs.xtce.XtceDb;
  */
 public class ContainerProcessingContext {
     final ProcessorData pdata;
-    final BitBuffer buffer;
+    BitBuffer buffer;
 
     // Keeps track of the absolute offset of the container where the processing takes place.
     // Normally 0, but if the processing takes place inside a subcontainer, it reflects the offset of that container
@@ -40,7 +39,10 @@ public class ContainerProcessingContext {
     public final SequenceEntryProcessor sequenceEntryProcessor;
     public final DataEncodingDecoder dataEncodingProcessor;
     public final ValueProcessor valueProcessor;
-    public final CriteriaEvaluator criteriaEvaluator;
+    public final CriteriaEvaluatorImpl criteriaEvaluator;
+
+    // context used for the container entries; only kept if the options allow reusing the context
+    private ContainerProcessingContext childContext;
 
     public ContainerProcessingContext(ProcessorData pdata, BitBuffer buffer, ContainerProcessingResult result,
             Subscription subscription, ContainerProcessingOptions options) {
@@ -57,6 +59,36 @@ public class ContainerProcessingContext {
         valueProcessor = new ValueProcessor(this);
     }
 
+    /**
+     * Prepares this context for processing a new packet. Used instead of creating a new context when the
+     * {@link ContainerProcessingOptions#reuseProcessingContext()} is set.
+     */
+    void reset(BitBuffer buffer, ContainerProcessingResult result) {
+        this.buffer = buffer;
+        // the decoder keeps its own reference to the buffer
+        dataEncodingProcessor.buffer = buffer;
+        this.result = result;
+        this.containerAbsoluteByteOffset = 0;
+        criteriaEvaluator.currentDelivery = result.params;
+    }
+
+    /**
+     * Returns a context for processing a container entry starting at the beginning of the given buffer.
+     * <p>
+     * The returned context shares the result with this one.
+     */
+    ContainerProcessingContext getChildContext(BitBuffer buf) {
+        if (!options.reuseProcessingContext()) {
+            return new ContainerProcessingContext(pdata, buf, result, subscription, options);
+        }
+        if (childContext == null) {
+            childContext = new ContainerProcessingContext(pdata, buf, result, subscription, options);
+        } else {
+            childContext.reset(buf, result);
+        }
+        return childContext;
+    }
+
     static class ContainerProcessingResult {
         ParameterValueList params = new ParameterValueList();
         List<ContainerExtractionResult> containers = new ArrayList<>();
@@ -71,6 +103,20 @@ public class ContainerProcessingContext {
             this.stats = stats;
         }
 
+        /**
+         * Prepares the result for a new packet.
+         * <p>
+         * The parameter and container lists are passed on to the consumers which may keep them, so they are replaced
+         * rather than cleared.
+         */
+        void reset(long aquisitionTime, long generationTime) {
+            this.acquisitionTime = aquisitionTime;
+            this.generationTime = generationTime;
+            this.expireMillis = -1;
+            params = new ParameterValueList();
+            containers = new ArrayList<>();
+        }
+
         public String getPacketName() {
             // Derives the archive partition based on a list of matched containers. The first container is the root
             // container. Usually we have just two elements in the list.
@@ -1,10 +1,15 @@
 package org.yamcs.xtceproc;
 
+import org.yamcs.ConfigurationException;
 import org.yamcs.YConfiguration;
 
 public class ContainerProcessingOptions {
     private static final String CONFIG_KEY_ignoreOutOfContainerEntries = "ignoreOutOfContainerEntries";
     private static final String CONFIG_KEY_expirationTolerance = "expirationTolerance";
+    private static final String CONFIG_KEY_indexInheritingContainers = "indexInheritingContainers";
+    private static final String CONFIG_KEY_reuseProcessingContext = "reuseProcessingContext";
+    private static final String CONFIG_KEY_extractionThreads = "extractionThreads";
+    private static final String CONFIG_KEY_compileContainers = "compileContainers";
     /**
      * If set to true, the entries that fit outside the packet definition, will not be even logged.
      * If set to false, a log message at WARNING level will be printed for the first entry that fits outside the binary
@@ -21,10 +26,45 @@ public class ContainerProcessingOptions {
      */
     double expirationTolerance = 1.9;
 
+    /**
+     * If set to true, the inheriting containers having simple restriction criteria (equality comparisons of integer
+     * parameters) are found via a hash lookup instead of evaluating the criteria of each of them in turn.
+     */
+    boolean indexInheritingContainers = true;
+
+    /**
+     * If set to true, the extractor keeps the processing context (buffer, result and the entry/container processors)
+     * from one packet to the next instead of creating new ones for each packet.
+     */
+    boolean reuseProcessingContext = false;
+
+    /**
+     * If greater than 1, the packets are extracted in parallel by this number of threads. The packets are distributed
+     * to the threads based on their APID such that the packets with the same APID are processed in order; the results
+     * are delivered in the order in which the packets have been received.
+     */
+    int extractionThreads = 1;
+
+    /**
+     * If set to true, the subscribed entries of the containers having a fixed layout are extracted by code generated
+     * and compiled specifically for each container (see {@link CompiledContainerDecoder}).
+     */
+    boolean compileContainers = false;
+
     public ContainerProcessingOptions(YConfiguration config) {
         if (config != null) {
             ignoreOutOfContainerEntries = config.getBoolean(CONFIG_KEY_ignoreOutOfContainerEntries, false);
             expirationTolerance = config.getDouble(CONFIG_KEY_expirationTolerance, expirationTolerance);
+            indexInheritingContainers = config.getBoolean(CONFIG_KEY_indexInheritingContainers,
+                    indexInheritingContainers);
+            reuseProcessingContext = config.getBoolean(CONFIG_KEY_reuseProcessingContext, reuseProcessingContext);
+            extractionThreads = config.getInt(CONFIG_KEY_extractionThreads, extractionThreads);
+            compileContainers = config.getBoolean(CONFIG_KEY_compileContainers, compileContainers);
+            if (extractionThreads < 1) {
+                throw new ConfigurationException(
+                        "Invalid value " + extractionThreads + " for " + CONFIG_KEY_extractionThreads
+                                + "; it should be at least 1");
+            }
         }
     }
     /**
@@ -50,4 +90,36 @@ public class ContainerProcessingOptions {
         this.expirationTolerance = expirationTolerance;
     }
 
+    public boolean indexInheritingContainers() {
+        return indexInheritingContainers;
+    }
+
+    public void setIndexInheritingContainers(boolean indexInheritingContainers) {
+        this.indexInheritingContainers = indexInheritingContainers;
+    }
+
+    public boolean reuseProcessingContext() {
+        return reuseProcessingContext;
+    }
+
+    public void setReuseProcessingContext(boolean reuseProcessingContext) {
+        this.reuseProcessingContext = reuseProcessingContext;
+    }
+
+    public int getExtractionThreads() {
+        return extractionThreads;
+    }
+
+    public void setExtractionThreads(int extractionThreads) {
+        this.extractionThreads = extractionThreads;
+    }
+
+    public boolean compileContainers() {
+        return compileContainers;
+    }
+
+    public void setCompileContainers(boolean compileContainers) {
+        this.compileContainers = compileContainers;
+    }
+
 }
@@ -91,6 +91,19 @@ public class CriteriaEvaluatorImpl implements CriteriaEvaluator {
         }
     }
 
+    /**
+     * Resolves the value of the parameter reference as it would be resolved for a comparison.
+     * 
+     * @return the value as long if the parameter has an integer value or null otherwise
+     */
+    Long resolveIntegerValue(ParameterInstanceRef paramRef) {
+        ResolvedValue rv = resolveParameter(paramRef);
+        if (rv == null || rv.evaluator != intEvaluator) {
+            return null;
+        }
+        return (Long) rv.value;
+    }
+
     private ResolvedValue resolveParameter(ParameterInstanceRef paramRef) {
         ParameterValue pv = null;
         Parameter p = paramRef.getParameter();
@@ -0,0 +1,216 @@
+package org.yamcs.xtceproc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.yamcs.xtce.Comparison;
+import org.yamcs.xtce.ComparisonList;
+import org.yamcs.xtce.MatchCriteria;
+import org.yamcs.xtce.OperatorType;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.ParameterInstanceRef;
+import org.yamcs.xtce.SequenceContainer;
+
+/**
+ * Speeds up finding which of the inheriting containers of a container match the current packet.
+ * <p>
+ * The containers whose restriction criteria consist only of equality comparisons between integer parameters and
+ * constants (e.g. APID == 100 and PACKET_ID == 3) are grouped by the set of parameters compared; for each group a
+ * hash map from the parameter values to the containers is built. All the other containers are checked one by one as
+ * before.
+ * <p>
+ * The index is immutable; the {@link Subscription} rebuilds it when the inheriting containers change.
+ */
+public class InheritingContainerIndex {
+    /**
+     * the index is not built for less than this number of indexable containers, the linear scan being as fast
+     */
+    static final int MIN_INDEXED_CONTAINERS = 4;
+
+    final List<Group> groups = new ArrayList<>();
+    final List<SequenceContainer> unindexed = new ArrayList<>();
+
+    private InheritingContainerIndex() {
+    }
+
+    /**
+     * Builds the index for the given containers.
+     *
+     * @return the index or null if there are not enough containers with simple restriction criteria to be worth
+     *         indexing
+     */
+    static InheritingContainerIndex build(Collection<SequenceContainer> containers) {
+        InheritingContainerIndex index = new InheritingContainerIndex();
+        Map<RefSet, Group> groupMap = new HashMap<>();
+        int numIndexed = 0;
+        for (SequenceContainer sc : containers) {
+            List<Comparison> comparisons = getIndexableComparisons(sc.getRestrictionCriteria());
+            if (comparisons == null) {
+                index.unindexed.add(sc);
+                continue;
+            }
+            comparisons.sort((c1, c2) -> compareRefs(c1.getParameterRef(), c2.getParameterRef()));
+            ParameterInstanceRef[] refs = new ParameterInstanceRef[comparisons.size()];
+            long[] values = new long[comparisons.size()];
+            for (int i = 0; i < refs.length; i++) {
+                Comparison c = comparisons.get(i);
+                refs[i] = c.getParameterRef();
+                values[i] = ((Number) c.getValue()).longValue();
+            }
+            Group g = groupMap.computeIfAbsent(new RefSet(refs), k -> new Group(refs));
+            g.map.computeIfAbsent(new Key(values), k -> new ArrayList<>(1)).add(sc);
+            numIndexed++;
+        }
+        if (numIndexed < MIN_INDEXED_CONTAINERS) {
+            return null;
+        }
+        index.groups.addAll(groupMap.values());
+        return index;
+    }
+
+    /**
+     * Returns the containers whose restriction criteria are met.
+     */
+    List<SequenceContainer> getMatching(CriteriaEvaluatorImpl evaluator) {
+        List<SequenceContainer> result = new ArrayList<>(2);
+        for (Group g : groups) {
+            long[] values = new long[g.refs.length];
+            boolean resolved = true;
+            for (int i = 0; i < values.length; i++) {
+                Long v = evaluator.resolveIntegerValue(g.refs[i]);
+                if (v == null) {
+                    // same as the evaluator, a comparison with a missing value is false
+                    resolved = false;
+                    break;
+                }
+                values[i] = v;
+            }
+            if (resolved) {
+                List<SequenceContainer> l = g.map.get(new Key(values));
+                if (l != null) {
+                    result.addAll(l);
+                }
+            }
+        }
+        for (SequenceContainer sc : unindexed) {
+            MatchCriteria mc = sc.getRestrictionCriteria();
+            if (mc == null || mc.isMet(evaluator)) {
+                result.add(sc);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * returns the list of comparisons if the criteria can be indexed or null otherwise
+     */
+    private static List<Comparison> getIndexableComparisons(MatchCriteria mc) {
+        List<Comparison> comparisons = new ArrayList<>();
+        if (mc instanceof Comparison) {
+            comparisons.add((Comparison) mc);
+        } else if (mc instanceof ComparisonList) {
+            comparisons.addAll(((ComparisonList) mc).getComparisonList());
+        } else {
+            return null;
+        }
+        if (comparisons.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < comparisons.size(); i++) {
+            Comparison c = comparisons.get(i);
+            if (c.getComparisonOperator() != OperatorType.EQUALITY) {
+                return null;
+            }
+            Object v = c.getValue();
+            if (!(v instanceof Long || v instanceof Integer)) {
+                return null;
+            }
+            ParameterInstanceRef ref = c.getParameterRef();
+            if (ref.getMemberPath() != null || ref.getParameter() == null) {
+                return null;
+            }
+            for (int j = 0; j < i; j++) {
+                if (compareRefs(ref, comparisons.get(j).getParameterRef()) == 0) {
+                    // the same parameter compared twice
+                    return null;
+                }
+            }
+        }
+        return comparisons;
+    }
+
+    private static int compareRefs(ParameterInstanceRef r1, ParameterInstanceRef r2) {
+        int c = r1.getParameter().getQualifiedName().compareTo(r2.getParameter().getQualifiedName());
+        if (c != 0) {
+            return c;
+        }
+        return Boolean.compare(r1.useCalibratedValue(), r2.useCalibratedValue());
+    }
+
+    static class Group {
+        final ParameterInstanceRef[] refs;
+        final Map<Key, List<SequenceContainer>> map = new HashMap<>();
+
+        Group(ParameterInstanceRef[] refs) {
+            this.refs = refs;
+        }
+    }
+
+    /**
+     * the set of (parameter, calibrated) references of a group
+     */
+    static class RefSet {
+        final Parameter[] params;
+        final boolean[] calibrated;
+
+        RefSet(ParameterInstanceRef[] refs) {
+            params = new Parameter[refs.length];
+            calibrated = new boolean[refs.length];
+            for (int i = 0; i < refs.length; i++) {
+                params[i] = refs[i].getParameter();
+                calibrated[i] = refs[i].useCalibratedValue();
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(params) + Arrays.hashCode(calibrated);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RefSet)) {
+                return false;
+            }
+            RefSet other = (RefSet) obj;
+            return Arrays.equals(params, other.params) && Arrays.equals(calibrated, other.calibrated);
+        }
+    }
+
+    static class Key {
+        final long[] values;
+        final int hash;
+
+        Key(long[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            return Arrays.equals(values, ((Key) obj).values);
+        }
+    }
+}
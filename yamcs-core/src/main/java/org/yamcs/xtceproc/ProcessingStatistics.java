@@ -2,22 +2,28 @@ package org.yamcs.xtceproc;
 
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.yamcs.protobuf.TmStatistics;
 import org.yamcs.utils.DataRateMeter;
 import org.yamcs.utils.TimeEncoding;
 
+/**
+ * Statistics of the processed packets.
+ * <p>
+ * Can be updated concurrently by several threads when the packets are extracted in parallel (see
+ * {@link XtceTmProcessor}).
+ */
 public class ProcessingStatistics {
 
-    long lastUpdated; // local java time of the last update
+    volatile long lastUpdated; // local java time of the last update
     public ConcurrentHashMap<String, TmStats> stats = new ConcurrentHashMap<>();
 
     public void newPacket(String pname, int subscribedParameterCount, long acquisitionTime,
             long generationTime, int sizeInBits) {
-        TmStats s = stats.computeIfAbsent(pname, p -> new TmStats());
-        s.pname = pname;
-        s.receivedPackets++;
+        TmStats s = stats.computeIfAbsent(pname, TmStats::new);
+        s.receivedPackets.incrementAndGet();
         s.subscribedParameterCount = subscribedParameterCount;
         s.lastReceived = acquisitionTime;
         s.lastPacketTime = generationTime;
@@ -39,7 +45,7 @@ public class ProcessingStatistics {
                 .map(t -> TmStatistics.newBuilder()
                         .setPacketName(t.pname)
                         .setQualifiedName(t.pname)
-                        .setReceivedPackets(t.receivedPackets)
+                        .setReceivedPackets(t.receivedPackets.get())
                         .setSubscribedParameterCount(t.subscribedParameterCount)
                         .setLastPacketTime(TimeEncoding.toProtobufTimestamp(t.lastPacketTime))
                         .setLastReceived(TimeEncoding.toProtobufTimestamp(t.lastReceived))
@@ -50,12 +56,18 @@ public class ProcessingStatistics {
     }
 
     private static class TmStats {
-        String pname;
-        int receivedPackets;
-        int subscribedParameterCount;
-        long lastReceived;
-        long lastPacketTime;
-        DataRateMeter packetRateMeter = new DataRateMeter();
-        DataRateMeter dataRateMeter = new DataRateMeter();
+        final String pname;
+        final AtomicInteger receivedPackets = new AtomicInteger();
+        // the last values, in case of concurrent updates one of them wins
+        volatile int subscribedParameterCount;
+        volatile long lastReceived;
+        volatile long lastPacketTime;
+        // thread safe
+        final DataRateMeter packetRateMeter = new DataRateMeter();
+        final DataRateMeter dataRateMeter = new DataRateMeter();
+
+        TmStats(String pname) {
+            this.pname = pname;
+        }
     }
 }
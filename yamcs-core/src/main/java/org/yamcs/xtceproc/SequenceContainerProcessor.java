@@ -39,7 +39,13 @@ public class SequenceContainerProcessor {
 
         // then extract the entries
         SortedSet<SequenceEntry> entries = pcontext.subscription.getEntries(seq);
-        if (entries != null) {
+        CompiledContainerDecoder decoder = (entries != null && pcontext.options.compileContainers())
+                ? pcontext.subscription.getCompiledDecoder(seq)
+                : null;
+        if (decoder != null && decoder.fits(buf)) {
+            // fixed layout entries extracted by the generated code
+            maxposition = decoder.extract(pcontext);
+        } else if (entries != null) {
             for (SequenceEntry se : entries) {
                 try {
 
@@ -105,9 +111,11 @@ public class SequenceContainerProcessor {
         if (inheritingContainers != null) {
             // And then any derived containers
             int bitp = buf.getPosition();
-            for (SequenceContainer sc : inheritingContainers) {
-                MatchCriteria mc = sc.getRestrictionCriteria();
-                if (mc == null || mc.isMet(pcontext.criteriaEvaluator)) {
+            InheritingContainerIndex index = pcontext.options.indexInheritingContainers()
+                    ? pcontext.subscription.getInheritingContainerIndex(seq)
+                    : null;
+            if (index != null) {
+                for (SequenceContainer sc : index.getMatching(pcontext.criteriaEvaluator)) {
                     hasDerived = true;
                     buf.setPosition(bitp);
                     extract(sc);
@@ -115,6 +123,18 @@ public class SequenceContainerProcessor {
                         maxposition = buf.getPosition();
                     }
                 }
+            } else {
+                for (SequenceContainer sc : inheritingContainers) {
+                    MatchCriteria mc = sc.getRestrictionCriteria();
+                    if (mc == null || mc.isMet(pcontext.criteriaEvaluator)) {
+                        hasDerived = true;
+                        buf.setPosition(bitp);
+                        extract(sc);
+                        if (buf.getPosition() > maxposition) {
+                            maxposition = buf.getPosition();
+                        }
+                    }
+                }
             }
         }
         buf.setPosition(maxposition);
@@ -63,8 +63,7 @@ public class SequenceEntryProcessor {
             return;
         }
         BitBuffer buf1 = buf.slice();
-        ContainerProcessingContext cpc1 = new ContainerProcessingContext(pcontext.pdata, buf1, pcontext.result,
-                pcontext.subscription, pcontext.options);
+        ContainerProcessingContext cpc1 = pcontext.getChildContext(buf1);
         cpc1.sequenceContainerProcessor.extract(ce.getRefContainer());
         if (ce.getRefContainer().getSizeInBits() < 0)
             buf.setPosition(buf.getPosition() + buf1.getPosition());
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -34,6 +35,13 @@ public class Subscription {
 
     // For each container list the derived containers which have to be processed also
     private final Map<SequenceContainer, HashSet<SequenceContainer>> container2InheritingContainerMap = new HashMap<>();
+
+    // lazily built indexes of the inheriting containers; invalidated when the inheriting containers change
+    private final Map<SequenceContainer, Optional<InheritingContainerIndex>> inheritingContainerIndexMap =
+            new HashMap<>();
+
+    // lazily compiled decoders of the subscribed entries; invalidated when the entries change
+    private final Map<SequenceContainer, Optional<CompiledContainerDecoder>> compiledDecoderMap = new HashMap<>();
     Logger log = LoggerFactory.getLogger(Subscription.class);
 
     XtceDb xtcedb;
@@ -148,13 +156,17 @@ public class Subscription {
 
     private void addContainer2Entry(SequenceContainer sc, SequenceEntry se) {
         TreeSet<SequenceEntry> ts = container2EntryMap.computeIfAbsent(sc, k -> new TreeSet<SequenceEntry>());
-        ts.add(se);
+        if (ts.add(se)) {
+            compiledDecoderMap.remove(sc);
+        }
     }
 
     private void addContainer2InheritingContainer(SequenceContainer container, SequenceContainer inheritedContainer) {
         HashSet<SequenceContainer> hs = container2InheritingContainerMap.computeIfAbsent(container,
                 k -> new HashSet<>());
-        hs.add(inheritedContainer);
+        if (hs.add(inheritedContainer)) {
+            inheritingContainerIndexMap.remove(container);
+        }
     }
 
     public SortedSet<SequenceEntry> getEntries(SequenceContainer container) {
@@ -165,6 +177,38 @@ public class Subscription {
         return container2InheritingContainerMap.get(container);
     }
 
+    /**
+     * Returns the index of the inheriting containers of the given container, building it if necessary.
+     * 
+     * @return the index or null if the container has no inheriting containers or they are not suitable for indexing
+     */
+    public InheritingContainerIndex getInheritingContainerIndex(SequenceContainer container) {
+        return inheritingContainerIndexMap.computeIfAbsent(container, k -> {
+            HashSet<SequenceContainer> hs = container2InheritingContainerMap.get(container);
+            return Optional.ofNullable(hs == null ? null : InheritingContainerIndex.build(hs));
+        }).orElse(null);
+    }
+
+    /**
+     * Returns the compiled decoder of the subscribed entries of the given container, compiling it if necessary.
+     * 
+     * @return the decoder or null if the container has no subscribed entries or they cannot be compiled
+     */
+    public CompiledContainerDecoder getCompiledDecoder(SequenceContainer container) {
+        return compiledDecoderMap.computeIfAbsent(container, k -> {
+            TreeSet<SequenceEntry> entries = container2EntryMap.get(container);
+            if (entries == null) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.ofNullable(CompiledContainerDecoder.compile(container, entries));
+            } catch (IllegalArgumentException e) {
+                log.warn("Failed to compile the decoder for container {}", container.getQualifiedName(), e);
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
     /**
      * Get the set of all containers subscribed
      * 
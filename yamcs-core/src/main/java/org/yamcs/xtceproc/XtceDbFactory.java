@@ -1,8 +1,9 @@
 package org.yamcs.xtceproc;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -10,8 +11,11 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -20,6 +24,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.YConfiguration;
@@ -376,10 +383,12 @@ public class XtceDbFactory {
         }
     }
 
-    private static XtceDb loadSerializedInstance(File serializedFile) throws IOException, ClassNotFoundException {
+    static XtceDb loadSerializedInstance(File serializedFile) throws IOException, ClassNotFoundException {
         log.debug("Loading serialized XTCE DB from: {}", serializedFile);
 
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(serializedFile))) {
+        // buffered since the ObjectInputStream performs many small reads
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(serializedFile), 65536))) {
             XtceDb db = (XtceDb) in.readObject();
             log.info("Loaded XTCE DB from {} with {} containers, {} parameters and {} commands",
                     serializedFile, db.getSequenceContainers().size(), db.getParameterNames().size(),
@@ -404,13 +413,27 @@ public class XtceDbFactory {
         return cacheDir.resolve(filename + ".consistency_date").toFile();
     }
 
-    private static void saveSerializedInstance(LoaderTree loaderTree, XtceDb db, File serializedFile,
+    static void saveSerializedInstance(LoaderTree loaderTree, XtceDb db, File serializedFile,
             File consistencyFile) throws IOException {
         serializedFile.getParentFile().mkdirs();
-        try (OutputStream os = new FileOutputStream(serializedFile);
-                ObjectOutputStream out = new ObjectOutputStream(os);
-                FileWriter fw = new FileWriter(consistencyFile)) {
-            out.writeObject(db);
+        // write first to a temporary file and rename it such that another server sharing the cache directory never
+        // sees a partially written database
+        // (unique name such that two servers saving the same database at the same time do not write to the same file;
+        // not created with Files.createTempFile which would restrict the permissions to the owner instead of the umask)
+        Path tmpFile = serializedFile.toPath().resolveSibling(
+                serializedFile.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            try (OutputStream os = new BufferedOutputStream(
+                    Files.newOutputStream(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 65536);
+                    ObjectOutputStream out = new ObjectOutputStream(os)) {
+                out.writeObject(db);
+            }
+            Files.move(tmpFile, serializedFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        try (FileWriter fw = new FileWriter(consistencyFile)) {
             loaderTree.writeConsistencyDate(fw);
         }
     }
@@ -533,17 +556,70 @@ public class XtceDbFactory {
             return false;
         }
 
+        /**
+         * Loads the space systems of the tree in the common fork-join pool
+         */
         public List<SpaceSystem> load() throws ConfigurationException {
-            List<SpaceSystem> ssList = root.loadList();
+            return load(ForkJoinPool.commonPool());
+        }
+
+        /**
+         * Loads the space systems of the tree.
+         * <p>
+         * The subtrees are independent of each other (the references between them are resolved afterwards) so they
+         * are loaded in parallel in the given pool. The loaded space systems are added to their parent in the order
+         * of the configuration, independent of the order in which the loading finishes.
+         */
+        List<SpaceSystem> load(ForkJoinPool pool) throws ConfigurationException {
+            return pool.invoke(new LoadTask(this));
+        }
 
+        public void writeConsistencyDate(FileWriter fw) throws IOException {
+            root.writeConsistencyDate(fw);
             if (children != null) {
+                for (LoaderTree lt : children) {
+                    lt.writeConsistencyDate(fw);
+                }
+            }
+        }
+    }
+
+    static class LoadTask extends RecursiveTask<List<SpaceSystem>> {
+        private static final long serialVersionUID = 1L;
+        final LoaderTree tree;
+
+        LoadTask(LoaderTree tree) {
+            this.tree = tree;
+        }
+
+        @Override
+        protected List<SpaceSystem> compute() {
+            List<LoadTask> subtasks = new ArrayList<>();
+            if (tree.children != null) {
+                for (LoaderTree lt : tree.children) {
+                    LoadTask t = new LoadTask(lt);
+                    t.fork();
+                    subtasks.add(t);
+                }
+            }
+            List<SpaceSystem> ssList;
+            try {
+                ssList = tree.root.loadList();
+            } catch (RuntimeException e) {
+                for (LoadTask t : subtasks) {
+                    t.cancel(false);
+                }
+                throw e;
+            }
+
+            if (tree.children != null) {
                 if (ssList.size() != 1) {
                     throw new ConfigurationException("Cannot load multiple space systems and have sub loaders");
                 }
                 SpaceSystem rss = ssList.get(0);
 
-                for (LoaderTree lt : children) {
-                    List<SpaceSystem> clist = lt.load();
+                for (LoadTask t : subtasks) {
+                    List<SpaceSystem> clist = t.join();
                     for (SpaceSystem ss : clist) {
                         rss.addSpaceSystem(ss);
                         ss.setParent(rss);
@@ -552,15 +628,6 @@ public class XtceDbFactory {
             }
             return ssList;
         }
-
-        public void writeConsistencyDate(FileWriter fw) throws IOException {
-            root.writeConsistencyDate(fw);
-            if (children != null) {
-                for (LoaderTree lt : children) {
-                    lt.writeConsistencyDate(fw);
-                }
-            }
-        }
     }
 
     // fake loader for the root (empty) space system
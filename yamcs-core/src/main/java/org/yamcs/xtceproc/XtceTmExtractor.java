@@ -25,10 +25,14 @@ import org.yamcs.xtceproc.ContainerProcessingContext.ContainerProcessingResult;
 public class XtceTmExtractor {
     private static final Logger log = LoggerFactory.getLogger(XtceTmExtractor.class);
     protected final Subscription subscription;
-    private ProcessingStatistics stats = new ProcessingStatistics();
+    private final ProcessingStatistics stats;
 
     private ContainerProcessingResult result;
 
+    // kept from one packet to the next if the reuseProcessingContext option is set
+    private ContainerProcessingContext reusableContext;
+    private final BitBuffer reusableBuffer = new BitBuffer(new byte[0]);
+
     public final XtceDb xtcedb;
     final SequenceContainer rootContainer;
     ContainerProcessingOptions options = new ContainerProcessingOptions(null);
@@ -49,6 +53,16 @@ public class XtceTmExtractor {
      * @param pdata
      */
     public XtceTmExtractor(XtceDb xtcedb, ProcessorData pdata) {
+        this(xtcedb, pdata, new ProcessingStatistics());
+    }
+
+    /**
+     * Create a new TM extractor with the given context, updating the given statistics.
+     * <p>
+     * Used when several extractors process in parallel the packets of the same processor.
+     */
+    XtceTmExtractor(XtceDb xtcedb, ProcessorData pdata, ProcessingStatistics stats) {
+        this.stats = stats;
         this.xtcedb = xtcedb;
         this.subscription = new Subscription(xtcedb);
         rootContainer = xtcedb.getRootSequenceContainer();
@@ -104,7 +118,7 @@ public class XtceTmExtractor {
      * Extract one packet, starting at the root sequence container
      */
     public void processPacket(byte[] b, long generationTime, long acquisitionTime) {
-        processPacket(new BitBuffer(b), generationTime, acquisitionTime, rootContainer);
+        processPacket(b, generationTime, acquisitionTime, rootContainer);
     }
 
     /**
@@ -118,7 +132,14 @@ public class XtceTmExtractor {
      * Extract one packet, starting at the specified container.
      */
     public void processPacket(byte[] b, long generationTime, long acquisitionTime, SequenceContainer startContainer) {
-        processPacket(new BitBuffer(b), generationTime, acquisitionTime, startContainer);
+        if (pdata.getProcessorConfig().getContainerProcessingOptions().reuseProcessingContext()) {
+            synchronized (subscription) {
+                reusableBuffer.wrap(b, 0);
+                processPacket(reusableBuffer, generationTime, acquisitionTime, startContainer);
+            }
+        } else {
+            processPacket(new BitBuffer(b), generationTime, acquisitionTime, startContainer);
+        }
     }
 
     /**
@@ -126,11 +147,15 @@ public class XtceTmExtractor {
      */
     public void processPacket(BitBuffer buf, long generationTime, long acquisitionTime,
             SequenceContainer startContainer) {
-        result = new ContainerProcessingResult(acquisitionTime, generationTime, stats);
         try {
             synchronized (subscription) {
-                ContainerProcessingContext cpc = new ContainerProcessingContext(pdata, buf, result, subscription,
-                        options);
+                ContainerProcessingContext cpc;
+                if (pdata.getProcessorConfig().getContainerProcessingOptions().reuseProcessingContext()) {
+                    cpc = getReusableContext(buf, acquisitionTime, generationTime);
+                } else {
+                    result = new ContainerProcessingResult(acquisitionTime, generationTime, stats);
+                    cpc = new ContainerProcessingContext(pdata, buf, result, subscription, options);
+                }
                 cpc.sequenceContainerProcessor.extract(startContainer);
             }
         } catch (Exception e) {
@@ -140,6 +165,17 @@ public class XtceTmExtractor {
         }
     }
 
+    private ContainerProcessingContext getReusableContext(BitBuffer buf, long acquisitionTime, long generationTime) {
+        if (reusableContext == null) {
+            result = new ContainerProcessingResult(acquisitionTime, generationTime, stats);
+            reusableContext = new ContainerProcessingContext(pdata, buf, result, subscription, options);
+        } else {
+            result.reset(acquisitionTime, generationTime);
+            reusableContext.reset(buf, result);
+        }
+        return reusableContext;
+    }
+
     public void resetStatistics() {
         stats.reset();
     }
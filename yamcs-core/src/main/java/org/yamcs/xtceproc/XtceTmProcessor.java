@@ -1,6 +1,13 @@
 package org.yamcs.xtceproc;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.yamcs.AbstractProcessorService;
 import org.yamcs.ConfigurationException;
@@ -23,12 +30,26 @@ import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.XtceDb;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * 
  * Does the job of getting containers and transforming them into parameters which are then sent to the parameter request
  * manager for the distribution to the requesters.
  * 
  * Relies on {@link XtceTmExtractor} for extracting the parameters out of containers
+ * <p>
+ * If the {@link ContainerProcessingOptions#getExtractionThreads()} is greater than 1, the packets are processed in a
+ * pipeline: the extraction is done in parallel by a number of threads each with its own extractor, and the results
+ * are passed to the parameter and container request managers by one delivery thread in the order in which the packets
+ * have been received. The packets with the same APID are always extracted by the same thread.
+ * <p>
+ * In this mode, the restriction criteria and the dynamic values (e.g. sizes, repeat counts) referring to parameters
+ * from other packets are evaluated using the processor's last value cache, which is updated by the delivery thread.
+ * Therefore they may see the values delivered with some packets received after or not yet see those of some packets
+ * received before the packet being extracted, whereas in the serial mode they always see the values of all the
+ * previous packets. The extraction is parallelized only if this is acceptable or if the criteria and dynamic values only
+ * refer to parameters of the same packet (or of packets with the same APID delivered well before).
  * 
  * @author nm
  * 
@@ -41,12 +62,26 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
     public final XtceDb xtcedb;
     final XtceTmExtractor tmExtractor;
 
+    // all the extractors (including tmExtractor); more than one if the packets are extracted in parallel
+    final XtceTmExtractor[] extractors;
+
+    /**
+     * maximum number of packets extracted or waiting to be delivered when running in parallel; if reached, the
+     * caller of {@link #processPacket(TmPacket, SequenceContainer)} is blocked
+     */
+    static final int MAX_PACKETS_IN_FLIGHT = 1024;
+    private ExecutorService[] extractionExecutors;
+    private ExecutorService deliveryExecutor;
+    private final Semaphore inFlight = new Semaphore(MAX_PACKETS_IN_FLIGHT);
+    private final Object submitLock = new Object();
+
     public XtceTmProcessor(Processor processor) {
         this.processor = processor;
         this.xtcedb = processor.getXtceDb();
         log = new Log(getClass(), processor.getInstance());
         log.setContext(processor.getName());
-        tmExtractor = new XtceTmExtractor(xtcedb, processor.getProcessorData());
+        extractors = createExtractors(processor.getProcessorData());
+        tmExtractor = extractors[0];
     }
 
     /**
@@ -58,7 +93,18 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
         this.processor = null;
         this.xtcedb = xtcedb;
         log = new Log(getClass());
-        tmExtractor = new XtceTmExtractor(xtcedb, new ProcessorData(null, "XTCEPROC", xtcedb, pconfig));
+        extractors = createExtractors(new ProcessorData(null, "XTCEPROC", xtcedb, pconfig));
+        tmExtractor = extractors[0];
+    }
+
+    private XtceTmExtractor[] createExtractors(ProcessorData pdata) {
+        int n = pdata.getProcessorConfig().getContainerProcessingOptions().getExtractionThreads();
+        ProcessingStatistics stats = new ProcessingStatistics();
+        XtceTmExtractor[] a = new XtceTmExtractor[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = new XtceTmExtractor(xtcedb, pdata, stats);
+        }
+        return a;
     }
 
     @Override
@@ -86,7 +132,9 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
      */
     @Override
     public void startProviding(Parameter param) {
-        tmExtractor.startProviding(param);
+        for (XtceTmExtractor extractor : extractors) {
+            extractor.startProviding(param);
+        }
     }
 
     /**
@@ -94,12 +142,16 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
      */
     @Override
     public void startProvidingAll() {
-        tmExtractor.provideAll();
+        for (XtceTmExtractor extractor : extractors) {
+            extractor.provideAll();
+        }
     }
 
     @Override
     public void stopProviding(Parameter param) {
-        tmExtractor.stopProviding(param);
+        for (XtceTmExtractor extractor : extractors) {
+            extractor.stopProviding(param);
+        }
     }
 
     @Override
@@ -133,26 +185,84 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
    
     @Override
     public void processPacket(TmPacket pwrt, SequenceContainer sc) {
+        if (extractionExecutors != null) {
+            submitPacket(pwrt, sc);
+            return;
+        }
         try {
-            long rectime = pwrt.getReceptionTime();
-            if (rectime == TimeEncoding.INVALID_INSTANT) {
-                rectime = TimeEncoding.getWallclockTime();
-            }
-            tmExtractor.processPacket(pwrt.getPacket(), pwrt.getGenerationTime(), rectime, sc);
-
-            ParameterValueList paramResult = tmExtractor.getParameterResult();
-            List<ContainerExtractionResult> containerResult = tmExtractor.getContainerResult();
+            ExtractionResult r = extract(tmExtractor, pwrt, sc);
+            deliver(r);
+        } catch (Exception e) {
+            log.error("got exception in tmprocessor ", e);
+        }
+    }
 
-            if ((parameterRequestManager != null) && (paramResult.size() > 0)) {
-                parameterRequestManager.update(paramResult);
+    /**
+     * Passes the packet to the extraction thread corresponding to its APID and schedules the delivery of the result
+     */
+    private void submitPacket(TmPacket pwrt, SequenceContainer sc) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        int k = getExtractorIndex(pwrt.getPacket());
+        XtceTmExtractor extractor = extractors[k];
+        try {
+            // the lock makes sure the packets are delivered in the same order as they are extracted
+            synchronized (submitLock) {
+                Future<ExtractionResult> f = extractionExecutors[k].submit(() -> extract(extractor, pwrt, sc));
+                deliveryExecutor.execute(() -> deliver(f));
             }
+        } catch (RejectedExecutionException e) {
+            inFlight.release();
+            log.warn("TM processor stopped, packet discarded");
+        }
+    }
 
-            if ((containerRequestManager != null) && (containerResult.size() > 0)) {
-                containerRequestManager.update(containerResult);
-            }
+    /**
+     * Returns the index of the extractor used for the packet. The packets are distributed based on the CCSDS APID (the
+     * 11 least significant bits of the first two bytes).
+     */
+    int getExtractorIndex(byte[] packet) {
+        if (packet.length < 2) {
+            return 0;
+        }
+        int apid = ((packet[0] & 0x07) << 8) | (packet[1] & 0xFF);
+        return apid % extractors.length;
+    }
+
+    private ExtractionResult extract(XtceTmExtractor extractor, TmPacket pwrt, SequenceContainer sc) {
+        long rectime = pwrt.getReceptionTime();
+        if (rectime == TimeEncoding.INVALID_INSTANT) {
+            rectime = TimeEncoding.getWallclockTime();
+        }
+        extractor.processPacket(pwrt.getPacket(), pwrt.getGenerationTime(), rectime, sc);
+        return new ExtractionResult(extractor.getParameterResult(), extractor.getContainerResult());
+    }
 
+    private void deliver(Future<ExtractionResult> f) {
+        try {
+            deliver(f.get());
+        } catch (ExecutionException e) {
+            log.error("got exception in tmprocessor ", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             log.error("got exception in tmprocessor ", e);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void deliver(ExtractionResult r) {
+        if ((parameterRequestManager != null) && (r.params.size() > 0)) {
+            parameterRequestManager.update(r.params);
+        }
+
+        if ((containerRequestManager != null) && (r.containers.size() > 0)) {
+            containerRequestManager.update(r.containers);
         }
     }
 
@@ -176,17 +286,23 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
 
     @Override
     public void startProviding(SequenceContainer container) {
-        tmExtractor.startProviding(container);
+        for (XtceTmExtractor extractor : extractors) {
+            extractor.startProviding(container);
+        }
     }
 
     @Override
     public void stopProviding(SequenceContainer container) {
-        tmExtractor.stopProviding(container);
+        for (XtceTmExtractor extractor : extractors) {
+            extractor.stopProviding(container);
+        }
     }
 
     @Override
     public void startProvidingAllContainers() {
-        tmExtractor.provideAll();
+        for (XtceTmExtractor extractor : extractors) {
+            extractor.provideAll();
+        }
     }
 
     @Override
@@ -204,14 +320,58 @@ public class XtceTmProcessor extends AbstractProcessorService implements TmProce
 
     @Override
     protected void doStart() {
+        if (extractors.length > 1) {
+            String name = (processor == null) ? "XtceTmProcessor"
+                    : "XtceTmProcessor-" + processor.getInstance() + "." + processor.getName();
+            ExecutorService[] executors = new ExecutorService[extractors.length];
+            for (int i = 0; i < extractors.length; i++) {
+                executors[i] = Executors.newSingleThreadExecutor(
+                        new ThreadFactoryBuilder().setNameFormat(name + "-extractor-" + i).build());
+            }
+            deliveryExecutor = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat(name + "-delivery").build());
+            extractionExecutors = executors;
+        }
         notifyStarted();
     }
 
     @Override
     protected void doStop() {
+        if (extractionExecutors != null) {
+            // no packet can be half submitted (extraction accepted but delivery rejected) while shutting down
+            synchronized (submitLock) {
+                for (ExecutorService e : extractionExecutors) {
+                    e.shutdown();
+                }
+                deliveryExecutor.shutdown();
+            }
+            // the packets already submitted are still extracted and delivered
+            try {
+                if (!deliveryExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Delivery of the extracted packets still running 10 seconds after stop");
+                }
+                for (int i = 0; i < extractionExecutors.length; i++) {
+                    if (!extractionExecutors[i].awaitTermination(1, TimeUnit.SECONDS)) {
+                        log.warn("Extraction thread {} still running after stop", i);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         notifyStopped();
     }
 
+    static class ExtractionResult {
+        final ParameterValueList params;
+        final List<ContainerExtractionResult> containers;
+
+        ExtractionResult(ParameterValueList params, List<ContainerExtractionResult> containers) {
+            this.params = params;
+            this.containers = containers;
+        }
+    }
+
     public XtceDb getXtceDb() {
         return xtcedb;
     }
@@ -0,0 +1,186 @@
+package org.yamcs.yarch;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.yamcs.logging.Log;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Decouples a subscriber from the stream: the tuples are put in a bounded queue and passed to the subscriber from
+ * another thread, such that a slow subscriber does not delay the stream and the other subscribers.
+ * <p>
+ * The queue is lock free; the tuples are delivered by a task running in an executor (by default a pool shared by all
+ * the asynchronous subscribers) which is started when the queue becomes non empty and terminates when the queue is
+ * empty. The tuples are delivered in order and never concurrently.
+ * <p>
+ * When the queue is full the tuples are either dropped or the stream is blocked until there is room in the queue,
+ * depending on the {@link OverflowPolicy}.
+ */
+public class AsyncStreamSubscriber implements StreamSubscriber {
+    private static final Log log = new Log(AsyncStreamSubscriber.class);
+
+    static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("yarch-async-subscriber-%d").setDaemon(true).build());
+
+    public enum OverflowPolicy {
+        /**
+         * discard the new tuples when the queue is full
+         */
+        DROP,
+        /**
+         * block the stream until there is room in the queue
+         */
+        BLOCK
+    }
+
+    // put in the queue to signal the closing of the stream after all the tuples have been delivered
+    static final Tuple CLOSE_MARK = new Tuple(new TupleDefinition(), new Object[0]);
+
+    final StreamSubscriber subscriber;
+    final int capacity;
+    final OverflowPolicy overflowPolicy;
+    final Executor executor;
+
+    private final Queue<Tuple> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile Stream stream;
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile int highWaterMark;
+
+    public AsyncStreamSubscriber(StreamSubscriber subscriber, int capacity, OverflowPolicy overflowPolicy) {
+        this(subscriber, capacity, overflowPolicy, DEFAULT_EXECUTOR);
+    }
+
+    public AsyncStreamSubscriber(StreamSubscriber subscriber, int capacity, OverflowPolicy overflowPolicy,
+            Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity has to be at least 1");
+        }
+        this.subscriber = subscriber;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onTuple(Stream s, Tuple tuple) {
+        this.stream = s;
+        int n = queueSize.incrementAndGet();
+        while (n > capacity) {
+            if (overflowPolicy == OverflowPolicy.DROP) {
+                queueSize.decrementAndGet();
+                droppedCount.incrementAndGet();
+                return;
+            }
+            queueSize.decrementAndGet();
+            LockSupport.parkNanos(100_000);
+            if (Thread.currentThread().isInterrupted()) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            n = queueSize.incrementAndGet();
+        }
+        if (n > highWaterMark) {
+            highWaterMark = n;
+        }
+        queue.add(tuple);
+        scheduleDrain();
+    }
+
+    @Override
+    public void streamClosed(Stream s) {
+        this.stream = s;
+        queueSize.incrementAndGet();
+        queue.add(CLOSE_MARK);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Tuple t;
+            while ((t = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                deliver(t);
+            }
+            draining.set(false);
+            // a tuple could have been added after the last poll but before resetting the flag
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(Tuple t) {
+        try {
+            if (t == CLOSE_MARK) {
+                subscriber.streamClosed(stream);
+            } else {
+                subscriber.onTuple(stream, t);
+                deliveredCount.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.warn("Exception received when delivering tuple to subscriber {}", subscriber, e);
+        }
+    }
+
+    /**
+     *
+     * @return the subscriber receiving the tuples
+     */
+    public StreamSubscriber getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * @return the number of tuples waiting to be delivered
+     */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the maximum number of tuples that have been waiting in the queue
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "async(" + subscriber + ")";
+    }
+}
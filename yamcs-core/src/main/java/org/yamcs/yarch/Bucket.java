@@ -1,6 +1,7 @@
 package org.yamcs.yarch;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -8,6 +9,8 @@ import java.util.function.Predicate;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectPropertiesOrBuilder;
 
+import com.google.common.io.ByteStreams;
+
 public interface Bucket {
 
     /**
@@ -43,6 +46,23 @@ public interface Bucket {
 
     void putObject(String objectName, String contentType, Map<String, String> metadata, byte[] objectData)
             throws IOException;
+
+    /**
+     * Store the object with the data read from the input stream until its end. The stream is not closed.
+     * <p>
+     * The default implementation reads the whole stream in memory, the implementations which can store the data as it
+     * is read should override it.
+     * 
+     * @param objectName
+     * @param contentType
+     * @param metadata
+     * @param objectData
+     * @throws IOException
+     */
+    default void putObject(String objectName, String contentType, Map<String, String> metadata,
+            InputStream objectData) throws IOException {
+        putObject(objectName, contentType, metadata, ByteStreams.toByteArray(objectData));
+    }
     
     /**
      * Retrieve object from the bucket. Returns null if object does not exist. 
@@ -53,6 +73,52 @@ public interface Bucket {
      */
     byte[] getObject(String objectName) throws IOException;
 
+    /**
+     * Retrieve part of the object from the bucket. Returns null if object does not exist.
+     * <p>
+     * The returned array contains the data starting at offset and is shorter than length if the object ends before
+     * offset + length (it is empty if offset is beyond the end of the object).
+     * <p>
+     * The default implementation retrieves the whole object, the implementations which can read part of the object
+     * should override it.
+     * 
+     * @param objectName
+     * @param offset
+     *            - offset in the object of the first byte to retrieve
+     * @param length
+     *            - maximum number of bytes to retrieve
+     * @return
+     * @throws IOException
+     */
+    default byte[] getObject(String objectName, long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid offset " + offset + " or length " + length);
+        }
+        byte[] data = getObject(objectName);
+        if (data == null) {
+            return null;
+        }
+        int n = (int) Math.max(0, Math.min(length, data.length - offset));
+        byte[] r = new byte[n];
+        if (n > 0) {
+            System.arraycopy(data, (int) offset, r, 0, n);
+        }
+        return r;
+    }
+
+    /**
+     * Used by the callers retrieving an object in several parts to decide if they should rather retrieve it at once.
+     * <p>
+     * The default implementation returns false since {@link #getObject(String, long, int)} retrieves each time the
+     * whole object.
+     * 
+     * @return true if {@link #getObject(String, long, int)} retrieves only the requested part of the object
+     * @throws IOException
+     */
+    default boolean supportsPartialRetrieval(String objectName) throws IOException {
+        return false;
+    }
+
     void deleteObject(String objectName) throws IOException;
 
     /**
@@ -1,13 +1,17 @@
 package org.yamcs.yarch;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
@@ -119,6 +123,29 @@ public class FileSystemBucket implements Bucket {
         return Files.readAllBytes(path);
     }
 
+    @Override
+    public boolean supportsPartialRetrieval(String objectName) {
+        return true;
+    }
+
+    @Override
+    public byte[] getObject(String objectName, long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid offset " + offset + " or length " + length);
+        }
+        Path path = root.resolve(objectName);
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            int n = (int) Math.max(0, Math.min(length, fc.size() - offset));
+            ByteBuffer bb = ByteBuffer.allocate(n);
+            while (bb.hasRemaining()) {
+                if (fc.read(bb, offset + bb.position()) < 0) {
+                    break; // file truncated in the meanwhile
+                }
+            }
+            return bb.position() == n ? bb.array() : Arrays.copyOf(bb.array(), bb.position());
+        }
+    }
+
     @Override
     public void deleteObject(String objectName) throws IOException {
         Path path = root.resolve(objectName);
@@ -1,7 +1,9 @@
 package org.yamcs.yarch;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -78,8 +80,30 @@ public abstract class Stream {
         subscriberCount.incrementAndGet();
     }
 
+    /**
+     * Adds a subscriber which receives the tuples asynchronously, from another thread.
+     * <p>
+     * The subscriber can be removed with {@link #removeSubscriber(StreamSubscriber)} called with the same object.
+     * 
+     * @param s
+     *            - the subscriber
+     * @param queueSize
+     *            - maximum number of tuples waiting to be delivered to the subscriber
+     * @param policy
+     *            - what to do when the queue is full
+     * @return the object wrapping the subscriber, it can be used to get statistics about the queue
+     * @see AsyncStreamSubscriber
+     */
+    public AsyncStreamSubscriber addSubscriber(StreamSubscriber s, int queueSize,
+            AsyncStreamSubscriber.OverflowPolicy policy) {
+        AsyncStreamSubscriber async = new AsyncStreamSubscriber(s, queueSize, policy);
+        addSubscriber(async);
+        return async;
+    }
+
     public void removeSubscriber(StreamSubscriber s) {
-        subscribers.remove(s);
+        subscribers.removeIf(x -> x == s
+                || (x instanceof AsyncStreamSubscriber && ((AsyncStreamSubscriber) x).getSubscriber() == s));
         subscriberCount.decrementAndGet();
     }
 
@@ -148,6 +172,20 @@ public abstract class Stream {
         return Collections.unmodifiableCollection(subscribers);
     }
 
+    /**
+     * 
+     * @return the subscribers receiving the tuples asynchronously
+     */
+    public List<AsyncStreamSubscriber> getAsyncSubscribers() {
+        List<AsyncStreamSubscriber> l = new ArrayList<>();
+        for (StreamSubscriber s : subscribers) {
+            if (s instanceof AsyncStreamSubscriber) {
+                l.add((AsyncStreamSubscriber) s);
+            }
+        }
+        return l;
+    }
+
     public void exceptionHandler(ExceptionHandler h) {
         this.handler = h;
     }
@@ -48,6 +48,16 @@ public abstract class TableWriter implements StreamSubscriber {
         return closeFuture;
     }
 
+    /**
+     * If greater than 0, the writer receives the tuples asynchronously from the stream via a queue of this size (see
+     * {@link AsyncStreamSubscriber}); the stream is blocked when the queue is full.
+     * 
+     * @return the size of the queue or 0 if the writer receives the tuples synchronously
+     */
+    public int getAsyncQueueSize() {
+        return 0;
+    }
+
     /**
      * close writer and any open resources
      * <p> call the close future after closing has been completed
@@ -24,23 +24,26 @@ public class DescendingPrefixIterator implements DbIterator {
     }
     
     private void init() {
+        boolean last;
         try {
             byte[] k = ByteArrayUtils.plusOne(prefix);
             iterator.seek(k);
+            // if there is no key after the prefix, the prefix may match the last key
+            last = !iterator.isValid();
         } catch (IllegalArgumentException e) {
             //special case the prefix is all 0xFF
+            last = true;
+        }
+        if (last) {
             iterator.seekToLast();
+        } else {
+            iterator.prev();
         }
         if(!iterator.isValid()) {
             valid = false;
         } else {
-            iterator.prev();
-            if(!iterator.isValid()) {
-                valid = false;
-            } else {
-                curKey = iterator.key();
-                valid = ByteArrayUtils.compare(prefix, curKey) == 0;
-            }
+            curKey = iterator.key();
+            valid = ByteArrayUtils.compare(prefix, curKey) == 0;
         }
     }
     
@@ -1,15 +1,21 @@
 package org.yamcs.yarch.rocksdb;
 
+import static org.yamcs.utils.ByteArrayUtils.decodeInt;
 import static org.yamcs.utils.ByteArrayUtils.encodeInt;
+import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.CHUNK_SIZE;
 import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.TYPE_OBJ_DATA;
+import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.TYPE_OBJ_DATA_CHUNK;
 import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.TYPE_OBJ_METADATA;
 import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import org.rocksdb.RocksDBException;
@@ -27,13 +33,16 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectPropertiesOrBuilder;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
 
+import com.google.common.io.ByteStreams;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 public class RdbBucket implements Bucket {
     final int tbsIndex;
-    BucketProperties bucketProps;
+    volatile BucketProperties bucketProps;
     final Tablespace tablespace;
     final String yamcsInstance;
+    // the objectIds are allocated incrementally, the last one is found from the data chunk keys at startup
+    private final AtomicInteger lastObjectId;
     private static final Logger log = LoggerFactory.getLogger(RdbBucket.class);
 
     public RdbBucket(String yamcsInstance, Tablespace tablespace, int tbsIndex, BucketProperties bucketProps)
@@ -42,6 +51,14 @@ public class RdbBucket implements Bucket {
         this.tbsIndex = tbsIndex;
         this.bucketProps = bucketProps;
         this.tablespace = tablespace;
+
+        // each object has at least one chunk so the last key gives the last objectId used
+        byte[] prefix = new byte[TBS_INDEX_SIZE + 1];
+        encodeInt(tbsIndex, prefix, 0);
+        prefix[TBS_INDEX_SIZE] = TYPE_OBJ_DATA_CHUNK;
+        try (DbIterator it = tablespace.getRdb().newDescendingPrefixIterator(prefix)) {
+            lastObjectId = new AtomicInteger(it.isValid() ? decodeInt(it.key(), TBS_INDEX_SIZE + 1) : 0);
+        }
     }
 
     @Override
@@ -75,18 +92,98 @@ public class RdbBucket implements Bucket {
     }
 
     @Override
-    public synchronized void putObject(String objectName, String contentType,
+    public void putObject(String objectName, String contentType,
             Map<String, String> metadata, byte[] objectData) throws IOException {
         if (objectName.isEmpty()) {
             throw new IllegalArgumentException("object name cannot be empty");
         }
         log.debug("Uploading object {} to bucket {}; contentType: {}", objectName, bucketProps.getName(), contentType);
+        int objectId = lastObjectId.incrementAndGet();
+        int numChunks = 0;
+        boolean committed = false;
+        try {
+            YRDB rdb = tablespace.getRdb();
+            // at least one chunk is written even for empty objects, see the constructor
+            int offset = 0;
+            do {
+                int n = Math.min(CHUNK_SIZE, objectData.length - offset);
+                byte[] chunk = n == objectData.length ? objectData
+                        : Arrays.copyOfRange(objectData, offset, offset + n);
+                rdb.put(getChunkKey(objectId, numChunks++), chunk);
+                offset += n;
+            } while (offset < objectData.length);
+
+            commitObject(objectName, contentType, metadata, objectId, objectData.length);
+            committed = true;
+        } catch (RocksDBException e) {
+            throw new IOException("Error writing object data: " + e.getMessage(), e);
+        } finally {
+            if (!committed) {
+                deleteChunks(objectId, numChunks);
+            }
+        }
+    }
+
+    /**
+     * Stores the object chunk by chunk as the data is read from the stream, such that the memory used does not
+     * depend on the object size.
+     * <p>
+     * The object becomes visible (replacing the previous object with the same name) only after all the data has been
+     * read.
+     */
+    @Override
+    public void putObject(String objectName, String contentType, Map<String, String> metadata,
+            InputStream objectData) throws IOException {
+        if (objectName.isEmpty()) {
+            throw new IllegalArgumentException("object name cannot be empty");
+        }
+        log.debug("Uploading object {} to bucket {}; contentType: {}", objectName, bucketProps.getName(), contentType);
+        int objectId = lastObjectId.incrementAndGet();
+        int numChunks = 0;
+        boolean committed = false;
+        try {
+            YRDB rdb = tablespace.getRdb();
+            byte[] buf = new byte[CHUNK_SIZE];
+            long size = 0;
+            int n;
+            do {
+                n = ByteStreams.read(objectData, buf, 0, CHUNK_SIZE);
+                if (n == 0 && numChunks > 0) {
+                    break;
+                }
+                size += n;
+                // do not wait until the end of the stream to find out that the object does not fit
+                if (size > bucketProps.getMaxSize()) {
+                    throw new IOException("Maximum bucket size " + bucketProps.getMaxSize() + " exceeded");
+                }
+                // the value is copied by RocksDB so the buffer can be reused
+                rdb.put(getChunkKey(objectId, numChunks++), n == CHUNK_SIZE ? buf : Arrays.copyOf(buf, n));
+            } while (n == CHUNK_SIZE);
+
+            commitObject(objectName, contentType, metadata, objectId, size);
+            committed = true;
+        } catch (RocksDBException e) {
+            throw new IOException("Error writing object data: " + e.getMessage(), e);
+        } finally {
+            if (!committed) {
+                deleteChunks(objectId, numChunks);
+            }
+        }
+    }
+
+    /**
+     * Writes the metadata of the object whose data chunks have been written, removes the data of the previous object
+     * with the same name and updates the bucket properties.
+     */
+    private synchronized void commitObject(String objectName, String contentType, Map<String, String> metadata,
+            int objectId, long size) throws IOException, RocksDBException {
         ObjectProperties.Builder props = ObjectProperties.newBuilder();
         if (metadata != null) {
             props.putAllMetadata(metadata);
         }
+        props.setObjectId(objectId);
         props.setCreated(TimeEncoding.getWallclockTime());
-        props.setSize(objectData.length);
+        props.setSize(size);
         if (contentType != null) {
             props.setContentType(contentType);
         }
@@ -96,9 +193,10 @@ public class RdbBucket implements Bucket {
             ObjectProperties oldProps = findObject(objectName);
 
             byte[] mk = getKey(TYPE_OBJ_METADATA, objectName);
-            byte[] dk = getKey(TYPE_OBJ_DATA, objectName);
             writeBatch.put(mk, props.build().toByteArray());
-            writeBatch.put(dk, objectData);
+            if (oldProps != null) {
+                deleteData(writeBatch, objectName, oldProps);
+            }
             long bsize = bucketProps.getSize() + props.getSize() - ((oldProps == null) ? 0 : oldProps.getSize());
             if (bsize > bucketProps.getMaxSize()) {
                 throw new IOException("Maximum bucket size " + bucketProps.getMaxSize() + " exceeded");
@@ -116,8 +214,6 @@ public class RdbBucket implements Bucket {
 
             tablespace.getRdb().getDb().write(writeOpts, writeBatch);
             bucketProps = bucketProps1;
-        } catch (RocksDBException e) {
-            throw new IOException("Error writing object data: " + e.getMessage(), e);
         }
     }
 
@@ -139,11 +235,83 @@ public class RdbBucket implements Bucket {
 
     @Override
     public byte[] getObject(String objectName) throws IOException {
+        ObjectProperties props = findObject(objectName);
+        if (props == null) {
+            return null;
+        }
+        if (!props.hasObjectId()) {
+            return getLegacyData(objectName);
+        }
+        if (props.getSize() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object " + objectName + " of size " + props.getSize()
+                    + " is too large to be retrieved at once");
+        }
+        return readChunks(objectName, props.getObjectId(), 0, (int) props.getSize());
+    }
+
+    @Override
+    public byte[] getObject(String objectName, long offset, int length) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid offset " + offset + " or length " + length);
+        }
+        ObjectProperties props = findObject(objectName);
+        if (props == null) {
+            return null;
+        }
+        int n = (int) Math.max(0, Math.min(length, props.getSize() - offset));
+        if (!props.hasObjectId()) {
+            byte[] data = getLegacyData(objectName);
+            return data == null ? null : Arrays.copyOfRange(data, (int) offset, (int) offset + n);
+        }
+        return readChunks(objectName, props.getObjectId(), offset, n);
+    }
+
+    /**
+     * The objects stored before the chunked storage was introduced are kept in one record, reading a part of them
+     * means reading the whole record.
+     */
+    @Override
+    public boolean supportsPartialRetrieval(String objectName) throws IOException {
+        ObjectProperties props = findObject(objectName);
+        return props != null && props.hasObjectId();
+    }
+
+    private byte[] readChunks(String objectName, int objectId, long offset, int length) throws IOException {
+        if (length == 0) {
+            return new byte[0];
+        }
+        YRDB rdb = tablespace.getRdb();
+        byte[] r = null;
+        int pos = 0;
         try {
-            byte[] k = getKey(TYPE_OBJ_DATA, objectName);
-            YRDB rdb = tablespace.getRdb();
+            do {
+                long o = offset + pos;
+                int chunkOffset = (int) (o % CHUNK_SIZE);
+                byte[] chunk = rdb.get(getChunkKey(objectId, (int) (o / CHUNK_SIZE)));
+                if (chunk == null || chunk.length <= chunkOffset) {
+                    throw new IOException("Cannot find the data of object " + objectName + " at offset " + o
+                            + "; object replaced or deleted during retrieval?");
+                }
+                if (pos == 0 && chunkOffset == 0 && chunk.length == length) {
+                    return chunk; // the object (or the requested part) is the full chunk, no need to copy it
+                }
+                if (r == null) {
+                    r = new byte[length];
+                }
+                int n = Math.min(length - pos, chunk.length - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, r, pos, n);
+                pos += n;
+            } while (pos < length);
+        } catch (RocksDBException e) {
+            throw new IOException("Failed to retrieve object: " + e.getMessage(), e);
+        }
+        return r;
+    }
 
-            return rdb.get(k);
+    // objects written before the chunked layout
+    private byte[] getLegacyData(String objectName) throws IOException {
+        try {
+            return tablespace.getRdb().get(getKey(TYPE_OBJ_DATA, objectName));
         } catch (RocksDBException e) {
             throw new IOException("Failed to retrieve object: " + e.getMessage(), e);
         }
@@ -160,15 +328,14 @@ public class RdbBucket implements Bucket {
             try (WriteBatch writeBatch = new WriteBatch();
                     WriteOptions writeOpts = new WriteOptions()) {
                 byte[] mk = getKey(TYPE_OBJ_METADATA, objectName);
-                byte[] dk = getKey(TYPE_OBJ_DATA, objectName);
                 writeBatch.delete(mk);
-                writeBatch.delete(dk);
+                deleteData(writeBatch, objectName, props);
                 BucketProperties bucketProps1 = BucketProperties.newBuilder().mergeFrom(bucketProps)
                         .setNumObjects(bucketProps.getNumObjects() - 1).setSize(bucketProps.getSize() - props.getSize())
                         .build();
                 TablespaceRecord.Builder trb = TablespaceRecord.newBuilder().setType(Type.BUCKET)
                         .setBucketProperties(bucketProps1).setTbsIndex(tbsIndex);
-                tablespace.writeToBatch(objectName, writeBatch, trb);
+                tablespace.writeToBatch(yamcsInstance, writeBatch, trb);
                 tablespace.getRdb().getDb().write(writeOpts, writeBatch);
                 bucketProps = bucketProps1;
             }
@@ -177,6 +344,32 @@ public class RdbBucket implements Bucket {
         }
     }
 
+    private void deleteData(WriteBatch writeBatch, String objectName, ObjectProperties props)
+            throws RocksDBException {
+        if (props.hasObjectId()) {
+            int numChunks = (int) Math.max(1, (props.getSize() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            for (int i = 0; i < numChunks; i++) {
+                writeBatch.delete(getChunkKey(props.getObjectId(), i));
+            }
+        } else {
+            writeBatch.delete(getKey(TYPE_OBJ_DATA, objectName));
+        }
+    }
+
+    // removes the chunks of an object which could not be stored
+    private void deleteChunks(int objectId, int numChunks) {
+        try (WriteBatch writeBatch = new WriteBatch();
+                WriteOptions writeOpts = new WriteOptions()) {
+            for (int i = 0; i < numChunks; i++) {
+                writeBatch.delete(getChunkKey(objectId, i));
+            }
+            tablespace.getRdb().getDb().write(writeOpts, writeBatch);
+        } catch (RocksDBException e) {
+            log.warn("Failed to remove the data chunks of object {} from bucket {}", objectId, bucketProps.getName(),
+                    e);
+        }
+    }
+
     @Override
     public String getName() {
         return bucketProps.getName();
@@ -196,4 +389,13 @@ public class RdbBucket implements Bucket {
 
         return k;
     }
+
+    private byte[] getChunkKey(int objectId, int chunkIdx) {
+        byte[] k = new byte[TBS_INDEX_SIZE + 9];
+        encodeInt(tbsIndex, k, 0);
+        k[TBS_INDEX_SIZE] = TYPE_OBJ_DATA_CHUNK;
+        encodeInt(objectId, k, TBS_INDEX_SIZE + 1);
+        encodeInt(chunkIdx, k, TBS_INDEX_SIZE + 5);
+        return k;
+    }
 }
@@ -28,20 +28,23 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
  * 4 bytes    1 byte             variable size
  * tbsIndex   0 = bucket info
  * tbsIndex   1 = metadata       objectName (up to 1000 bytes)
- * tbsIndex   2 = data           objectId (4 bytes)
+ * tbsIndex   2 = data           objectName
+ * tbsIndex   3 = data chunk     objectId (4 bytes) chunkIndex (4 bytes)
  * </pre>
  * 
  * The rocksdb value is formed by:
  * <ul>
  * <li>in case of metadata: protobuf representation of ObjectProperties (contains the objectId and key,value metadata)
- * <li>in case of user object: binary user object
+ * <li>in case of data chunk: the part of the user object starting at chunkIndex * {@link #CHUNK_SIZE}; all chunks
+ * except the last one have the size {@link #CHUNK_SIZE}.
+ * <li>in case of data: binary user object (objects written by the old versions, which do not have an objectId)
  * </ul>
  * 
  * To retrieve an object based on the bucket name and object name,
  * <ol>
  * <li>retrieve the tbsIndex based on the bucket name
  * <li>retrieve the ObjectProperties based on the tbsIndex and object name
- * <li>retrieve the object data based on the tbsIndex and objectId
+ * <li>retrieve the object data chunks based on the tbsIndex and objectId
  * </ol>
  * 
  * @author nm
@@ -55,8 +58,12 @@ public class RdbBucketDatabase implements BucketDatabase {
     final static byte TYPE_BUCKET_INFO = 0;
     final static byte TYPE_OBJ_METADATA = 1;
     final static byte TYPE_OBJ_DATA = 2;
+    final static byte TYPE_OBJ_DATA_CHUNK = 3;
 
-    final static long MAX_BUCKET_SIZE = 100l * 1024 * 1024; // 100MB
+    // part of the storage format, cannot be changed without converting the existing objects
+    final static int CHUNK_SIZE = 1024 * 1024;
+
+    final static long MAX_BUCKET_SIZE = 10l * 1024 * 1024 * 1024; // 10GB
     final static int MAX_NUM_OBJECTS_PER_BUCKET = 1000; //
     private static final Logger log = LoggerFactory.getLogger(RdbBucketDatabase.class);
 
@@ -76,6 +83,10 @@ public class RdbBucketDatabase implements BucketDatabase {
 
     @Override
     public RdbBucket createBucket(String bucketName) throws IOException {
+        return createBucket(bucketName, MAX_BUCKET_SIZE, MAX_NUM_OBJECTS_PER_BUCKET);
+    }
+
+    RdbBucket createBucket(String bucketName, long maxSize, int maxNumObjects) throws IOException {
         log.debug("Creating new bucket {}", bucketName);
         try {
             synchronized (buckets) {
@@ -83,7 +94,7 @@ public class RdbBucketDatabase implements BucketDatabase {
                     throw new IllegalArgumentException("Bucket already exists");
                 }
                 BucketProperties bucketProps = BucketProperties.newBuilder().setCreated(TimeEncoding.getWallclockTime())
-                        .setMaxNumObjects(MAX_NUM_OBJECTS_PER_BUCKET).setMaxSize(MAX_BUCKET_SIZE).setName(bucketName)
+                        .setMaxNumObjects(maxNumObjects).setMaxSize(maxSize).setName(bucketName)
                         .build();
                 TablespaceRecord.Builder trb = TablespaceRecord.newBuilder().setType(Type.BUCKET)
                         .setBucketProperties(bucketProps);
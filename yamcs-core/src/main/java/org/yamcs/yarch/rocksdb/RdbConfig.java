@@ -33,6 +33,8 @@ public class RdbConfig {
     public static final String KEY_OPTIONS = "options";
     public static final String KEY_TABLESPACE_NAME_PATTERN = "tablespaceNamePattern";
     public static final String KEY_TF_CONFIG = "tableFormatConfig";
+    public static final String KEY_TABLE_WRITER_CONFIG = "tableWriterConfig";
+    public static final String KEY_TABLE_NAME_PATTERN = "tableNamePattern";
     public static final int DEFAULT_MAX_OPEN_FILES = 1000;
 
     static final Map<String, CompressionType> COMP_TYPES = new HashMap<>();
@@ -50,6 +52,7 @@ public class RdbConfig {
     static final private RdbConfig INSTANTCE = new RdbConfig();
 
     private List<TablespaceConfig> tblConfigList = new ArrayList<>();
+    private List<TableWriterConfig> twConfigList = new ArrayList<>();
     final Env env;
     final ColumnFamilyOptions defaultColumnFamilyOptions;
     final Options defaultOptions;
@@ -75,6 +78,11 @@ public class RdbConfig {
                     tblConfigList.add(tblConf);
                 }
             }
+            if (rdbOptions.containsKey(KEY_TABLE_WRITER_CONFIG)) {
+                for (YConfiguration twConfig : rdbOptions.getConfigList(KEY_TABLE_WRITER_CONFIG)) {
+                    twConfigList.add(new TableWriterConfig(twConfig));
+                }
+            }
         }
 
         env = Env.getDefault();
@@ -150,6 +158,71 @@ public class RdbConfig {
         return null;
     }
 
+    /**
+     * 
+     * @param tableName
+     * @return the first table writer config that matches the table name or null if no config matches
+     */
+    public TableWriterConfig getTableWriterConfig(String tableName) {
+        for (TableWriterConfig twc : twConfigList) {
+            if (twc.tableNamePattern.matcher(tableName).matches()) {
+                return twc;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Configures the group commit of the table writers: the tuples are accumulated in a write batch which is written
+     * to the database when it reaches maxBatchSize tuples or when the oldest tuple is older than maxBatchDelay
+     * milliseconds.
+     */
+    public static class TableWriterConfig {
+        Pattern tableNamePattern;
+        int maxBatchSize;
+        long maxBatchDelay;
+        boolean syncOnCommit;
+        int asyncQueueSize;
+
+        TableWriterConfig(YConfiguration twConfig) throws ConfigurationException {
+            String s = twConfig.getString(KEY_TABLE_NAME_PATTERN);
+            try {
+                tableNamePattern = Pattern.compile(s);
+            } catch (PatternSyntaxException e) {
+                throw new ConfigurationException("Cannot parse regexp " + e);
+            }
+            maxBatchSize = twConfig.getInt("maxBatchSize", 1000);
+            maxBatchDelay = twConfig.getLong("maxBatchDelay", 100);
+            syncOnCommit = twConfig.getBoolean("syncOnCommit", false);
+            asyncQueueSize = twConfig.getInt("asyncQueueSize", 0);
+            if (maxBatchSize < 1 || maxBatchDelay < 1) {
+                throw new ConfigurationException("Exception when reading table writer configuration for '"
+                        + tableNamePattern + "': maxBatchSize and maxBatchDelay have to be at least 1");
+            }
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public long getMaxBatchDelay() {
+            return maxBatchDelay;
+        }
+
+        public boolean isSyncOnCommit() {
+            return syncOnCommit;
+        }
+
+        /**
+         * 
+         * @return the size of the queue used by the table writers to receive the tuples asynchronously or 0 if they
+         *         receive the tuples synchronously
+         */
+        public int getAsyncQueueSize() {
+            return asyncQueueSize;
+        }
+    }
+
     public static class TablespaceConfig {
         Pattern tablespaceNamePattern;
         ColumnFamilyOptions cfOptions = new ColumnFamilyOptions();
@@ -24,6 +24,7 @@ public class RdbTable extends Table {
     final RdbPartitionManager partitionManager;
     final HistogramWriter histoWriter;
     SecondaryIndexWriter indexWriter;
+    private TableWriterStats writerStats;
 
     public RdbTable(String yamcsInstance, Tablespace tablespace, TableDefinition tblDef, int tbsIndex) {
         super(tblDef);
@@ -70,6 +71,17 @@ public class RdbTable extends Table {
         return indexWriter;
     }
 
+    /**
+     * 
+     * @return the statistics shared by the table writers running in group commit mode
+     */
+    synchronized TableWriterStats getWriterStats() {
+        if (writerStats == null) {
+            writerStats = new TableWriterStats(yamcsInstance, getName());
+        }
+        return writerStats;
+    }
+
     public RdbHistogramInfo createAndGetHistogram(long instant, String columnName) {
         return (RdbHistogramInfo) partitionManager.createAndGetHistogram(instant, columnName);
     }
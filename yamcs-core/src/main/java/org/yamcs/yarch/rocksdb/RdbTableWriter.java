@@ -5,6 +5,13 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.dbKey;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.WriteBatch;
@@ -12,6 +19,7 @@ import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.YamcsServer;
+import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.DataType;
@@ -24,6 +32,7 @@ import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.TupleDefinition;
 import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.YarchException;
+import org.yamcs.yarch.rocksdb.RdbConfig.TableWriterConfig;
 
 import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;;
 
@@ -38,6 +47,13 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;;
  * 
  * <p>
  * The histograms are written by the {@link HistogramWriter}.
+ * 
+ * <p>
+ * If a {@link TableWriterConfig} matches the table name and the insert mode is INSERT, UPSERT or LOAD, the writer works
+ * in group commit mode: the records and the secondary index entries are accumulated in write batches (one per
+ * database) which are written when they reach the configured size or age. The histograms are updated after the batch
+ * has been written; the {@link HistogramRebuilder} relies on the data being in the database before the histogram is
+ * updated.
  *
  * 
  * @author nm
@@ -55,6 +71,17 @@ public class RdbTableWriter extends TableWriter {
     final SecondaryIndexWriter indexWriter;
     TableDefinition tableDefinition;
 
+    // group commit; all the fields below are accessed under the lock of this object
+    final TableWriterConfig groupCommitConfig;
+    final int asyncQueueSize;
+    WriteOptions commitOpts;
+    TableWriterStats stats;
+    private final Map<YRDB, WriteBatch> batches = new LinkedHashMap<>();
+    private final Set<ByteArrayWrapper> batchKeys = new HashSet<>();
+    private final List<Row> batchHistoRows = new ArrayList<>();
+    private int batchSize;
+    private ScheduledFuture<?> flushFuture;
+
     public RdbTableWriter(YarchDatabaseInstance ydb, RdbTable table, InsertMode mode) {
         super(ydb, table, mode);
         this.tableDefinition = table.getDefinition();
@@ -69,6 +96,25 @@ public class RdbTableWriter extends TableWriter {
         }
         histoWriter = table.getHistogramWriter();
         indexWriter = table.getSecondaryIndexWriter();
+
+        TableWriterConfig twc = RdbConfig.getInstance().getTableWriterConfig(table.getName());
+        asyncQueueSize = twc == null ? 0 : twc.getAsyncQueueSize();
+        if (twc != null && (mode == InsertMode.INSERT || mode == InsertMode.UPSERT || mode == InsertMode.LOAD)) {
+            groupCommitConfig = twc;
+            commitOpts = new WriteOptions();
+            if (mode == InsertMode.LOAD) {
+                commitOpts.setDisableWAL(true);
+            } else {
+                commitOpts.setSync(twc.isSyncOnCommit());
+            }
+            stats = table.getWriterStats();
+        } else {
+            if (twc != null) {
+                log.info("Group commit not supported for insert mode {}, table {} will be written record by record",
+                        mode, table.getName());
+            }
+            groupCommitConfig = null;
+        }
     }
 
     @Override
@@ -87,6 +133,10 @@ public class RdbTableWriter extends TableWriter {
         if (closed) {
             return;
         }
+        if (groupCommitConfig != null) {
+            addToBatch(t);
+            return;
+        }
         try {
             RdbPartition partition = getDbPartition(t);
             YRDB rdb = tablespace.getRdb(partition.dir, false);
@@ -110,10 +160,117 @@ public class RdbTableWriter extends TableWriter {
 
             tablespace.dispose(rdb);
         } catch (IOException | RocksDBException | YarchException e) {
-            log.error("failed to insert a record: ", e);
-            YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
-                    "failed to insert a record in " + table.getName() + ": " + e);
+            handleWriteError(e);
+        }
+    }
+
+    @Override
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    private synchronized void addToBatch(Tuple t) {
+        if (closed) {
+            // the writer has been closed while this tuple was being delivered
+            return;
+        }
+        try {
+            RdbPartition partition = getDbPartition(t);
+            YRDB rdb = tablespace.getRdb(partition.dir, false);
+            WriteBatch writeBatch = batches.get(rdb);
+            if (writeBatch == null) {
+                // the rdb is disposed after the batch has been written
+                writeBatch = new WriteBatch();
+                batches.put(rdb, writeBatch);
+            } else {
+                tablespace.dispose(rdb);
+            }
+
+            Row row = tableDefinition.generateRow(t);
+            byte[] k = dbKey(partition.tbsIndex, row.getKey());
+            ByteArrayWrapper bk = new ByteArrayWrapper(k);
+            boolean exists = false;
+            if (mode != InsertMode.LOAD) {
+                exists = batchKeys.contains(bk) || rdb.get(k) != null;
+                if (exists && mode == InsertMode.INSERT) {
+                    return;
+                }
+            }
+            byte[] v = tableDefinition.serializeValue(t, row);
+            writeBatch.put(k, v);
+            batchKeys.add(bk);
+
+            if (indexWriter != null && mode != InsertMode.LOAD) {
+                YRDB indexRdb = tablespace.getRdb();
+                WriteBatch indexBatch = batches.computeIfAbsent(indexRdb, x -> new WriteBatch());
+                indexWriter.addTuple(indexBatch, row, partition);
+            }
+            if (histoWriter != null && !exists && mode != InsertMode.LOAD) {
+                batchHistoRows.add(row);
+            }
+
+            batchSize++;
+            if (batchSize >= groupCommitConfig.getMaxBatchSize()) {
+                commitBatch();
+            } else if (flushFuture == null) {
+                flushFuture = tablespace.getExecutor().schedule(this::timedCommit,
+                        groupCommitConfig.getMaxBatchDelay(), TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException | RocksDBException | YarchException e) {
+            handleWriteError(e);
+        }
+    }
+
+    private synchronized void timedCommit() {
+        flushFuture = null;
+        try {
+            commitBatch();
+        } catch (IOException | RocksDBException | YarchException e) {
+            handleWriteError(e);
+        }
+    }
+
+    /**
+     * writes the accumulated batches to the databases and then updates the histograms
+     */
+    private synchronized void commitBatch() throws RocksDBException, IOException {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        if (batches.isEmpty()) {
+            return;
+        }
+        long t0 = System.nanoTime();
+        try {
+            for (Map.Entry<YRDB, WriteBatch> me : batches.entrySet()) {
+                me.getKey().write(commitOpts, me.getValue());
+            }
+        } finally {
+            for (Map.Entry<YRDB, WriteBatch> me : batches.entrySet()) {
+                me.getValue().close();
+                tablespace.dispose(me.getKey());
+            }
+            batches.clear();
+            batchKeys.clear();
         }
+        stats.addBatch(batchSize, System.nanoTime() - t0);
+        stats.register();
+        batchSize = 0;
+
+        try {
+            for (Row row : batchHistoRows) {
+                histoWriter.addHistogram(row);
+            }
+        } finally {
+            batchHistoRows.clear();
+        }
+    }
+
+    private void handleWriteError(Exception e) {
+        log.error("failed to insert a record: ", e);
+        YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
+                "failed to insert a record in " + table.getName() + ": " + e);
     }
 
     private boolean load(YRDB db, RdbPartition partition, Tuple t) throws RocksDBException, YarchException {
@@ -310,6 +467,19 @@ public class RdbTableWriter extends TableWriter {
         if (closed) {
             return;
         }
+        if (groupCommitConfig != null) {
+            synchronized (this) {
+                try {
+                    commitBatch();
+                } catch (IOException | RocksDBException | YarchException e) {
+                    handleWriteError(e);
+                } finally {
+                    // no batch can be added after this, see addToBatch
+                    closed = true;
+                    commitOpts.close();
+                }
+            }
+        }
         closed = true;
     }
 
@@ -0,0 +1,96 @@
+package org.yamcs.yarch.rocksdb;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.SystemParametersCollector;
+import org.yamcs.parameter.SystemParametersProducer;
+import org.yamcs.utils.TimeEncoding;
+
+/**
+ * Statistics about the batches committed by the table writers of one table running in group commit mode.
+ * <p>
+ * The values are published as system parameters under /yarch/tableWriter/&lt;table&gt;/ and are reset each time they are
+ * collected, so they refer to the last collection interval.
+ */
+public class TableWriterStats implements SystemParametersProducer {
+    final String yamcsInstance;
+    final String tableName;
+    private volatile boolean registered = false;
+
+    private String spNumBatches, spAvgBatchSize, spMaxBatchSize, spAvgCommitLatency, spMaxCommitLatency;
+
+    private int numBatches;
+    private long totalTuples;
+    private int maxBatchSize;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+
+    TableWriterStats(String yamcsInstance, String tableName) {
+        this.yamcsInstance = yamcsInstance;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Registers to the system parameters collector if not already done. The collector might not exist yet when the
+     * table writers are created, this is why it is called at each commit.
+     */
+    void register() {
+        if (registered) {
+            return;
+        }
+        synchronized (this) {
+            if (registered) {
+                return;
+            }
+            SystemParametersCollector collector = SystemParametersCollector.getInstance(yamcsInstance);
+            if (collector != null) {
+                String prefix = collector.getNamespace() + "/yarch/tableWriter/" + tableName + "/";
+                spNumBatches = prefix + "numBatches";
+                spAvgBatchSize = prefix + "avgBatchSize";
+                spMaxBatchSize = prefix + "maxBatchSize";
+                spAvgCommitLatency = prefix + "avgCommitLatencyMicros";
+                spMaxCommitLatency = prefix + "maxCommitLatencyMicros";
+                collector.registerProducer(this);
+                registered = true;
+            }
+        }
+    }
+
+    synchronized void addBatch(int batchSize, long latencyNanos) {
+        numBatches++;
+        totalTuples += batchSize;
+        totalLatencyNanos += latencyNanos;
+        if (batchSize > maxBatchSize) {
+            maxBatchSize = batchSize;
+        }
+        if (latencyNanos > maxLatencyNanos) {
+            maxLatencyNanos = latencyNanos;
+        }
+    }
+
+    @Override
+    public synchronized Collection<ParameterValue> getSystemParameters() {
+        long time = TimeEncoding.getWallclockTime();
+        double avgBatchSize = numBatches == 0 ? 0 : (double) totalTuples / numBatches;
+        long avgLatency = numBatches == 0 ? 0 : totalLatencyNanos / numBatches;
+
+        List<ParameterValue> pvlist = new ArrayList<>();
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spNumBatches, time, numBatches));
+        pvlist.add(SystemParametersCollector.getPV(spAvgBatchSize, time, avgBatchSize));
+        pvlist.add(SystemParametersCollector.getUnsignedIntPV(spMaxBatchSize, time, maxBatchSize));
+        pvlist.add(SystemParametersCollector.getPV(spAvgCommitLatency, time, TimeUnit.NANOSECONDS.toMicros(avgLatency)));
+        pvlist.add(SystemParametersCollector.getPV(spMaxCommitLatency, time,
+                TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos)));
+
+        numBatches = 0;
+        totalTuples = 0;
+        maxBatchSize = 0;
+        totalLatencyNanos = 0;
+        maxLatencyNanos = 0;
+        return pvlist;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yamcs.yarch.AsyncStreamSubscriber;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.TableDefinition;
@@ -45,7 +46,12 @@ public class InsertStatement extends SimpleStreamSqlStatement {
                 // writing into a table
                 TableWriter tableWriter = ydb.getStorageEngine(outputTableDef)
                         .newTableWriter(ydb, outputTableDef, insertMode);
-                inputStream.addSubscriber(tableWriter);
+                if (tableWriter.getAsyncQueueSize() > 0) {
+                    inputStream.addSubscriber(tableWriter, tableWriter.getAsyncQueueSize(),
+                            AsyncStreamSubscriber.OverflowPolicy.BLOCK);
+                } else {
+                    inputStream.addSubscriber(tableWriter);
+                }
                 tableWriter.closeFuture().thenAccept(v -> inputStream.removeSubscriber(tableWriter));
             } catch (YarchException e) {
                 log.warn("Exception while creating table", e);
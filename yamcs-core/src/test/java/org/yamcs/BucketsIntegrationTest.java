@@ -0,0 +1,60 @@
+package org.yamcs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+import org.yamcs.yarch.Bucket;
+import org.yamcs.yarch.YarchDatabase;
+
+import com.google.common.io.ByteStreams;
+
+public class BucketsIntegrationTest extends AbstractIntegrationTest {
+
+    @Test
+    public void testGetLargeObject() throws Exception {
+        // larger than the chunk size and not a multiple of it
+        byte[] data = new byte[3 * 1024 * 1024 + 1234];
+        new Random().nextBytes(data);
+        Bucket bucket = YarchDatabase.getInstance(yamcsInstance).createBucket("largeobj");
+        bucket.putObject("obj1", "application/octet-stream", Collections.emptyMap(), data);
+
+        String url = "http://" + yamcsHost + ":" + yamcsPort + "/api/buckets/" + yamcsInstance
+                + "/largeobj/objects/obj1";
+
+        // twice to check that the connection is still usable after the streamed response
+        for (int i = 0; i < 2; i++) {
+            HttpURLConnection conn = openConnection(url);
+            assertEquals(200, conn.getResponseCode());
+            assertEquals(data.length, conn.getContentLengthLong());
+            try (InputStream in = conn.getInputStream()) {
+                assertArrayEquals(data, ByteStreams.toByteArray(in));
+            }
+        }
+
+        HttpURLConnection conn = openConnection(url);
+        conn.setRequestProperty("Range", "bytes=1048570-1048589");
+        assertEquals(206, conn.getResponseCode());
+        try (InputStream in = conn.getInputStream()) {
+            assertArrayEquals(Arrays.copyOfRange(data, 1048570, 1048590), ByteStreams.toByteArray(in));
+        }
+    }
+
+    private HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        String credentials = adminUsername + ":" + new String(adminPassword);
+        conn.setRequestProperty("Authorization",
+                "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        return conn;
+    }
+}
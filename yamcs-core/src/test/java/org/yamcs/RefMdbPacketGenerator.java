@@ -2,7 +2,9 @@ package org.yamcs;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -142,6 +144,30 @@ public class RefMdbPacketGenerator extends AbstractService implements TmPacketPr
     }
 
 
+    /**
+     * @return one packet of most of the refmdb packet types, used to compare different ways of extracting the packets
+     */
+    public List<byte[]> getPacketMix() {
+        List<byte[]> l = new ArrayList<>();
+        l.add(generate_PKT1_1());
+        l.add(generate_PKT1_2());
+        l.add(generate_PKT1_3());
+        l.add(generate_PKT1_5());
+        l.add(generate_PKT1_6(1, 2));
+        l.add(generate_PKT1_7());
+        l.add(generate_PKT1_8(1, 2));
+        l.add(generate_PKT1_9());
+        l.add(generate_PKT1_10(3, 1, 3.14f));
+        l.add(generate_PKT1_11());
+        l.add(generate_PKT1_12());
+        l.add(generate_PKT4());
+        l.add(generate_PKT5());
+        l.add(generate_PKT6());
+        l.add(generate_PKT7());
+        l.add(generate_PKT8());
+        return l;
+    }
+
     public byte[] generate_PKT1_1() {
         ByteBuffer bb = ByteBuffer.allocate(pkt1_1Length);
         fill_PKT1_1(bb);
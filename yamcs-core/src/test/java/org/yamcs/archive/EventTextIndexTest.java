@@ -0,0 +1,127 @@
+package org.yamcs.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.YarchTestCase;
+import org.yamcs.yarch.rocksdb.RdbStorageEngine;
+import org.yamcs.yarch.rocksdb.Tablespace;
+
+public class EventTextIndexTest extends YarchTestCase {
+    static final long H = 3600_000L;
+
+    @BeforeClass
+    public static void oneTimeSetup() throws Exception {
+        YConfiguration.setupTest(null);
+    }
+
+    private EventTextIndex open(long start) throws Exception {
+        Tablespace tablespace = RdbStorageEngine.getInstance().getTablespace(ydb);
+        return EventTextIndex.open(ydb.getName(), tablespace, start, H);
+    }
+
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("battery", "voltage", "low", "12v"),
+                EventTextIndex.tokenize("Battery voltage: LOW (12V)"));
+    }
+
+    @Test
+    public void testParse() {
+        // the first word can be the end of a longer word, the last word can be the beginning of a longer word
+        assertEquals("[*ery, voltage, low*]", EventTextIndex.parse("ery voltage low").toString());
+        assertEquals("[voltage]", EventTextIndex.parse(" voltage ").toString());
+        // a single word can be any part of a longer word
+        assertEquals("[*error*]", EventTextIndex.parse("error").toString());
+        // too short to be looked up as prefix
+        assertEquals("[]", EventTextIndex.parse(" lo").toString());
+        // wildcards
+        assertEquals("[vol*, *age]", EventTextIndex.parse(" vol%age ").toString());
+        assertNull(EventTextIndex.parse("volt[a]ge"));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        EventTextIndex index = open(TimeEncoding.MIN_INSTANT);
+        index.addEvent(10 * H + 5, "Battery voltage low");
+        index.addEvent(12 * H + 5, "Battery voltage nominal");
+        index.addEvent(13 * H + 5, "Battery voltage low");
+        index.addEvent(14 * H + 5, "Battery voltage low");
+        // 3 words and 8 suffixes for each bucket, except 3 words and 12 suffixes for the one with "nominal"
+        assertEquals(48, index.getNumRecords());
+
+        List<TimeInterval> l = index.search(" voltage low ", new TimeInterval());
+        assertEquals(2, l.size());
+        assertInterval(10 * H, 11 * H, l.get(0));
+        assertInterval(13 * H, 15 * H, l.get(1));
+
+        l = index.search(" voltage nom", new TimeInterval(12 * H + 1, 12 * H + 10));
+        assertEquals(1, l.size());
+        assertInterval(12 * H + 1, 12 * H + 10, l.get(0));
+
+        l = index.search(" current ", new TimeInterval());
+        assertEquals(0, l.size());
+
+        // part of a word
+        l = index.search("ina", new TimeInterval());
+        assertEquals(1, l.size());
+        assertInterval(12 * H, 13 * H, l.get(0));
+
+        // not resolvable through the index
+        assertNull(index.search("lo", new TimeInterval()));
+
+        // reopening keeps the records
+        assertEquals(48, open(TimeEncoding.MIN_INSTANT).getNumRecords());
+    }
+
+    @Test
+    public void testSearchSingleWord() throws Exception {
+        // this is how the events API searches the text given by the user
+        EventTextIndex index = open(TimeEncoding.MIN_INSTANT);
+        index.addEvent(10 * H + 5, "Error while reading the file");
+        index.addEvent(11 * H + 5, "Terrors");
+        index.addEvent(12 * H + 5, "All nominal");
+
+        List<TimeInterval> l = index.search("error", new TimeInterval());
+        assertNotNull(l);
+        assertEquals(1, l.size());
+        assertInterval(10 * H, 12 * H, l.get(0));
+
+        l = index.search("ERROR", new TimeInterval());
+        assertEquals(1, l.size());
+
+        String longWord = "0123456789abcdefghijklmnopqrstuvwxyz0123456789abcdefghijklmnopqrstuvwxyz";
+        index.addEvent(13 * H + 5, "Checksum " + longWord);
+        l = index.search(longWord.substring(60, 70), new TimeInterval());
+        assertEquals(1, l.size());
+        assertInterval(13 * H, 14 * H, l.get(0));
+    }
+
+    @Test
+    public void testNotIndexedInterval() throws Exception {
+        EventTextIndex index = open(10 * H);
+        index.addEvent(12 * H + 5, "Battery voltage low");
+
+        List<TimeInterval> l = index.search(" low ", new TimeInterval(5 * H, 20 * H));
+        assertEquals(2, l.size());
+        assertInterval(5 * H, 10 * H, l.get(0));
+        assertInterval(12 * H, 13 * H, l.get(1));
+
+        // entirely before the index
+        assertNull(index.search(" low ", new TimeInterval(5 * H, 8 * H)));
+    }
+
+    private static void assertInterval(long start, long end, TimeInterval interval) {
+        assertEquals(start, interval.getStart());
+        assertEquals(end, interval.getEnd());
+    }
+}
@@ -0,0 +1,114 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.cfdp.pdu.CfdpPacket;
+import org.yamcs.cfdp.pdu.ConditionCode;
+import org.yamcs.cfdp.pdu.FinishedPacket;
+import org.yamcs.cfdp.pdu.MetadataPacket;
+import org.yamcs.events.EventProducer;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.Bucket;
+import org.yamcs.yarch.FileSystemBucket;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchTestCase;
+
+public class CfdpIncomingTransferTest extends YarchTestCase {
+    Stream cfdpOut;
+    Stream cfdpIn;
+    Bucket outgoingBucket;
+    ManualExecutor executor;
+    EventProducer eventProducer;
+    // sent by the sender and by the receiver respectively
+    List<CfdpPacket> sent = new ArrayList<>();
+    List<CfdpPacket> received = new ArrayList<>();
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(false);
+    }
+
+    @Before
+    public void before() throws Exception {
+        execute("create stream cfdp_out (gentime TIMESTAMP, entityId long, seqNum int, pdu binary)");
+        execute("create stream cfdp_in (gentime TIMESTAMP, entityId long, seqNum int, pdu binary)");
+        cfdpOut = ydb.getStream("cfdp_out");
+        cfdpIn = ydb.getStream("cfdp_in");
+        subscribe(cfdpOut, sent);
+        subscribe(cfdpIn, received);
+
+        Path dir = Paths.get("/tmp/CfdpIncomingTransferTest");
+        FileUtils.deleteRecursivelyIfExists(dir);
+        Files.createDirectories(dir.resolve("out"));
+        Files.createDirectories(dir.resolve("in"));
+        outgoingBucket = new FileSystemBucket("cfdp-out", dir.resolve("out"));
+        executor = new ManualExecutor();
+        eventProducer = EventProducerFactory.getEventProducer();
+        eventProducer.setSource("unit-test");
+    }
+
+    @Test
+    public void testSaveFailure() throws Exception {
+        byte[] data = new byte[10_000];
+        new Random().nextBytes(data);
+        outgoingBucket.putObject("file1", "bla", Collections.emptyMap(), data);
+        PutRequest request = new PutRequest(1, 2, "file1", "/tmp/file1", false, true, false, false,
+                outgoingBucket, outgoingBucket.findObject("file1"));
+        PduScheduler scheduler = new PduScheduler(executor, 1_000_000_000, CfdpOutgoingTransferTest.MAX_PDU_SIZE);
+        new CfdpOutgoingTransfer(instance, 1, executor, request, cfdpOut, CfdpOutgoingTransferTest.getConfig(),
+                eventProducer, x -> {
+                }, Collections.emptyMap(), scheduler).start();
+
+        Bucket incomingBucket = new FileSystemBucket("cfdp-in", Paths.get("/tmp/CfdpIncomingTransferTest/in")) {
+            @Override
+            public void putObject(String objectName, String contentType, Map<String, String> metadata,
+                    byte[] objectData) throws IOException {
+                throw new IOException("bucket full");
+            }
+        };
+        CfdpIncomingTransfer transfer = new CfdpIncomingTransfer(instance, 2, executor,
+                CfdpOutgoingTransferTest.getConfig(), (MetadataPacket) sent.get(0), cfdpIn, incomingBucket,
+                eventProducer, x -> {
+                }, Collections.emptyMap());
+        for (CfdpPacket packet : sent.subList(1, sent.size())) {
+            transfer.processPacket(packet);
+        }
+
+        // the failure is reported to the sender
+        assertTrue(received.get(received.size() - 1) instanceof FinishedPacket);
+        FinishedPacket fin = (FinishedPacket) received.get(received.size() - 1);
+        assertEquals(ConditionCode.FILESTORE_REJECTION, fin.getConditionCode());
+    }
+
+    private static void subscribe(Stream stream, List<CfdpPacket> list) {
+        stream.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                list.add(CfdpPacket.fromTuple(tuple));
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+            }
+        });
+    }
+}
@@ -0,0 +1,189 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.cfdp.pdu.CfdpPacket;
+import org.yamcs.cfdp.pdu.ConditionCode;
+import org.yamcs.cfdp.pdu.EofPacket;
+import org.yamcs.cfdp.pdu.FileDataPacket;
+import org.yamcs.cfdp.pdu.MetadataPacket;
+import org.yamcs.cfdp.pdu.NakPacket;
+import org.yamcs.cfdp.pdu.SegmentRequest;
+import org.yamcs.events.EventProducer;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.protobuf.TransferState;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.Bucket;
+import org.yamcs.yarch.FileSystemBucket;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchTestCase;
+
+public class CfdpOutgoingTransferTest extends YarchTestCase {
+    static final int MAX_PDU_SIZE = 100;
+    // maxPduSize - fixed header - 2 entity ids - sequence number - offset
+    static final int MAX_DATA_SIZE = MAX_PDU_SIZE - 4 - 2 * 2 - 2 - 4;
+
+    Stream cfdpOut;
+    Bucket bucket;
+    ManualExecutor executor;
+    EventProducer eventProducer;
+    List<CfdpPacket> sent = new ArrayList<>();
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(false);
+    }
+
+    @Before
+    public void before() throws Exception {
+        execute("create stream cfdp_out (gentime TIMESTAMP, entityId long, seqNum int, pdu binary)");
+        cfdpOut = ydb.getStream("cfdp_out");
+        cfdpOut.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                sent.add(CfdpPacket.fromTuple(tuple));
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+            }
+        });
+        Path dir = Paths.get("/tmp/CfdpOutgoingTransferTest");
+        FileUtils.deleteRecursivelyIfExists(dir);
+        Files.createDirectories(dir);
+        bucket = new FileSystemBucket("cfdp-out", dir);
+        executor = new ManualExecutor();
+        eventProducer = EventProducerFactory.getEventProducer();
+        eventProducer.setSource("unit-test");
+    }
+
+    @Test
+    public void testEofChecksum() throws Exception {
+        byte[] data = createObject("file1", 150_000);
+        CfdpOutgoingTransfer transfer = newTransfer("file1", false);
+        transfer.start();
+
+        assertTrue(sent.get(0) instanceof MetadataPacket);
+        assertArrayEquals(data, reassemble(data.length));
+
+        EofPacket eof = (EofPacket) sent.get(sent.size() - 1);
+        assertEquals(ConditionCode.NO_ERROR, eof.getConditionCode());
+        assertEquals(ChecksumCalculator.calculateChecksum(data) & 0xFFFFFFFFl, eof.getFileChecksum());
+        assertEquals(TransferState.COMPLETED, transfer.getTransferState());
+    }
+
+    @Test
+    public void testNakOutsideReadWindow() throws Exception {
+        byte[] data = createObject("file2", 150_000);
+        CfdpOutgoingTransfer transfer = newTransfer("file2", true);
+        transfer.start();
+
+        EofPacket eof = (EofPacket) sent.get(sent.size() - 1);
+        sent.clear();
+
+        // both segments are before the last window read from the bucket
+        List<SegmentRequest> segments = Arrays.asList(new SegmentRequest(100, 300),
+                new SegmentRequest(70_000, 70_100));
+        transfer.processPacket(new NakPacket(0, data.length, segments, eof.getHeader()));
+
+        List<Long> offsets = new ArrayList<>();
+        for (CfdpPacket packet : sent) {
+            FileDataPacket fdp = (FileDataPacket) packet;
+            int offset = (int) fdp.getOffset();
+            assertTrue(fdp.getData().length <= MAX_DATA_SIZE);
+            assertArrayEquals(Arrays.copyOfRange(data, offset, offset + fdp.getData().length), fdp.getData());
+            offsets.add(fdp.getOffset());
+        }
+        assertEquals(Arrays.asList(100l, 100l + MAX_DATA_SIZE, 100l + 2 * MAX_DATA_SIZE, 70_000l,
+                70_000l + MAX_DATA_SIZE), offsets);
+        assertEquals(TransferState.RUNNING, transfer.getTransferState());
+    }
+
+    @Test
+    public void testObjectReplaced() throws Exception {
+        byte[] data = createObject("file3", 150_000);
+        CfdpOutgoingTransfer transfer = newTransfer("file3", true);
+        transfer.start();
+
+        EofPacket eof = (EofPacket) sent.get(sent.size() - 1);
+        sent.clear();
+
+        // replaced by an object of the same size
+        createObject("file3", data.length);
+        Path file = Paths.get("/tmp/CfdpOutgoingTransferTest/file3");
+        Files.setLastModifiedTime(file,
+                FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+
+        // the resent data has to be read again from the bucket
+        List<SegmentRequest> segments = Arrays.asList(new SegmentRequest(100, 300));
+        transfer.processPacket(new NakPacket(0, data.length, segments, eof.getHeader()));
+
+        assertEquals(1, sent.size());
+        eof = (EofPacket) sent.get(0);
+        assertEquals(ConditionCode.FILESTORE_REJECTION, eof.getConditionCode());
+    }
+
+    // puts together the data of the file data PDUs sent
+    private byte[] reassemble(int length) {
+        byte[] result = new byte[length];
+        long expectedOffset = 0;
+        for (CfdpPacket packet : sent) {
+            if (packet instanceof FileDataPacket) {
+                FileDataPacket fdp = (FileDataPacket) packet;
+                assertEquals(expectedOffset, fdp.getOffset());
+                System.arraycopy(fdp.getData(), 0, result, (int) fdp.getOffset(), fdp.getData().length);
+                expectedOffset += fdp.getData().length;
+            }
+        }
+        assertEquals(length, expectedOffset);
+        return result;
+    }
+
+    private CfdpOutgoingTransfer newTransfer(String objName, boolean acknowledged) throws IOException {
+        PutRequest request = new PutRequest(1, 2, objName, "/tmp/" + objName, false, acknowledged, false, false,
+                bucket, bucket.findObject(objName));
+        // large enough rate to send the whole file at once
+        PduScheduler scheduler = new PduScheduler(executor, 1_000_000_000, MAX_PDU_SIZE);
+        return new CfdpOutgoingTransfer(instance, 1, executor, request, cfdpOut, getConfig(),
+                eventProducer, x -> {
+                }, Collections.emptyMap(), scheduler);
+    }
+
+    private byte[] createObject(String objName, int size) throws Exception {
+        byte[] data = new byte[size];
+        new Random().nextBytes(data);
+        bucket.putObject(objName, "bla", Collections.emptyMap(), data);
+        return data;
+    }
+
+    static YConfiguration getConfig() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("entityIdLength", 2);
+        m.put("sequenceNrLength", 2);
+        m.put("maxPduSize", MAX_PDU_SIZE);
+        return YConfiguration.wrap(m);
+    }
+}
@@ -40,4 +40,24 @@ public class ChecksumTest {
 
         assertEquals(checksum1, checksum2 & 0xFFFFFFFFl);
     }
+
+    @Test
+    public void test4() {
+        Random r = new Random();
+        byte[] data = new byte[r.nextInt(1000)];
+        r.nextBytes(data);
+
+        long checksum1 = ChecksumCalculator.calculateChecksum(data);
+
+        // same as test3 but passing the offset inside the array instead of copying
+        long checksum2 = 0;
+        int k = 0;
+        while (k < data.length) {
+            int l = 1 + r.nextInt(data.length - k);
+            checksum2 += ChecksumCalculator.calculateChecksum(data, k, k, l);
+            k += l;
+        }
+
+        assertEquals(checksum1, checksum2 & 0xFFFFFFFFl);
+    }
 }
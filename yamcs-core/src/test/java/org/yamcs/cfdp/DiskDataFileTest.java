@@ -0,0 +1,134 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.cfdp.pdu.SegmentRequest;
+
+import com.google.common.io.ByteStreams;
+
+public class DiskDataFileTest {
+    static int n = 1001;
+    static byte[] data = new byte[n];
+    Path dir;
+
+    @BeforeClass
+    static public void beforeClass() {
+        new Random(0).nextBytes(data);
+    }
+
+    @Before
+    public void before() throws IOException {
+        dir = Files.createTempDirectory("cfdp-test");
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testOutOfOrder() throws IOException {
+        DiskDataFile df = new DiskDataFile(dir, -1);
+        df.addSegment(getSegment(10, 10));
+        df.addSegment(getSegment(30, 5));
+        assertEquals(35, df.endOfFileOffset());
+        assertEquals(15, df.getReceivedSize());
+
+        List<SegmentRequest> lmissing = df.getMissingChunks(false);
+        assertEquals(2, lmissing.size());
+        verifyEquals(0, 10, lmissing.get(0));
+        verifyEquals(20, 30, lmissing.get(1));
+
+        df.setSize(n);
+        lmissing = df.getMissingChunks(true);
+        assertEquals(3, lmissing.size());
+        verifyEquals(35, n, lmissing.get(2));
+
+        df.addSegment(getSegment(35, n - 35));
+        df.addSegment(getSegment(0, 10));
+        df.addSegment(getSegment(20, 10));
+        assertTrue(df.isComplete());
+        assertEquals(0, df.getMissingChunks(true).size());
+        verify(df);
+        df.close();
+    }
+
+    @Test
+    public void testOverlapping() throws IOException {
+        DiskDataFile df = new DiskDataFile(dir, n);
+        df.addSegment(getSegment(0, 10));
+        df.addSegment(getSegment(20, 10));
+        df.addSegment(getSegment(5, 20));
+        df.addSegment(getSegment(0, 30));
+        assertEquals(30, df.getReceivedSize());
+        List<SegmentRequest> lmissing = df.getMissingChunks(true);
+        assertEquals(1, lmissing.size());
+        verifyEquals(30, n, lmissing.get(0));
+
+        df.addSegment(getSegment(29, n - 29));
+        assertTrue(df.isComplete());
+        verify(df);
+        df.close();
+    }
+
+    @Test
+    public void testRandom() throws IOException {
+        Random r = new Random(1);
+        DiskDataFile df = new DiskDataFile(dir, n);
+        while (!df.isComplete()) {
+            int offset = r.nextInt(n);
+            df.addSegment(getSegment(offset, 1 + r.nextInt(Math.min(50, n - offset))));
+        }
+        assertEquals(n, df.getReceivedSize());
+        verify(df);
+        df.close();
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        DiskDataFile df = new DiskDataFile(dir, n);
+        df.addSegment(getSegment(0, 10));
+        Path path = df.getPath();
+        assertTrue(Files.exists(path));
+        df.close();
+        assertFalse(Files.exists(path));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBeyondEnd() throws IOException {
+        DiskDataFile df = new DiskDataFile(dir, 10);
+        try {
+            df.addSegment(getSegment(5, 10));
+        } finally {
+            df.close();
+        }
+    }
+
+    private DataFileSegment getSegment(int offset, int length) {
+        return new DataFileSegment(offset, Arrays.copyOfRange(data, offset, offset + length));
+    }
+
+    private void verifyEquals(long expectedStart, long expectedEnd, SegmentRequest sr) {
+        assertEquals(expectedStart, sr.getSegmentStart());
+        assertEquals(expectedEnd, sr.getSegmentEnd());
+    }
+
+    private void verify(DiskDataFile df) throws IOException {
+        assertEquals(ChecksumCalculator.calculateChecksum(data), df.getChecksum());
+        try (InputStream in = df.newInputStream()) {
+            assertArrayEquals(data, ByteStreams.toByteArray(in));
+        }
+    }
+}
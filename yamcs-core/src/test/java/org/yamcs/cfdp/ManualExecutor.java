@@ -0,0 +1,99 @@
+package org.yamcs.cfdp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for unit tests: the tasks without delay are run immediately in the calling thread whereas the delayed and
+ * periodic tasks are only recorded; they run when the test calls {@link #runDelayed()}.
+ */
+class ManualExecutor extends ScheduledThreadPoolExecutor {
+    final List<ManualTask> delayed = new ArrayList<>();
+
+    ManualExecutor() {
+        super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        ManualTask task = new ManualTask(command, unit.toNanos(delay));
+        if (delay <= 0) {
+            command.run();
+        } else {
+            delayed.add(task);
+        }
+        return task;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        ManualTask task = new ManualTask(command, unit.toNanos(initialDelay));
+        delayed.add(task);
+        return task;
+    }
+
+    /**
+     * Runs the delayed tasks recorded so far (not those recorded while running them) and returns their number
+     */
+    int runDelayed() {
+        List<ManualTask> l = new ArrayList<>(delayed);
+        delayed.clear();
+        for (ManualTask task : l) {
+            if (!task.cancelled) {
+                task.command.run();
+            }
+        }
+        return l.size();
+    }
+
+    static class ManualTask implements ScheduledFuture<Object> {
+        final Runnable command;
+        final long delayNanos;
+        boolean cancelled;
+
+        ManualTask(Runnable command, long delayNanos) {
+            this.command = command;
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(delayNanos, o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
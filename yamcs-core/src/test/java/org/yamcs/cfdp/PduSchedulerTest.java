@@ -0,0 +1,151 @@
+package org.yamcs.cfdp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.cfdp.pdu.CfdpPacket;
+import org.yamcs.events.EventProducer;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.protobuf.TransferState;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.Bucket;
+import org.yamcs.yarch.FileSystemBucket;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchTestCase;
+
+public class PduSchedulerTest extends YarchTestCase {
+    static final int MAX_PDU_SIZE = 100;
+    static final long RATE = 1000;
+
+    Stream cfdpOut;
+    Bucket bucket;
+    ManualExecutor executor;
+    EventProducer eventProducer;
+    List<CfdpPacket> sent = new ArrayList<>();
+    long bytesSent;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(false);
+    }
+
+    @Before
+    public void before() throws Exception {
+        execute("create stream cfdp_out (gentime TIMESTAMP, entityId long, seqNum int, pdu binary)");
+        cfdpOut = ydb.getStream("cfdp_out");
+        cfdpOut.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                CfdpPacket packet = CfdpPacket.fromTuple(tuple);
+                sent.add(packet);
+                bytesSent += packet.toByteArray().length;
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+            }
+        });
+        Path dir = Paths.get("/tmp/PduSchedulerTest");
+        FileUtils.deleteRecursivelyIfExists(dir);
+        Files.createDirectories(dir);
+        bucket = new FileSystemBucket("cfdp-out", dir);
+        bucket.putObject("file1", "bla", Collections.emptyMap(), new byte[1000]);
+        bucket.putObject("file2", "bla", Collections.emptyMap(), new byte[1000]);
+        executor = new ManualExecutor();
+        eventProducer = EventProducerFactory.getEventProducer();
+        eventProducer.setSource("unit-test");
+    }
+
+    @Test
+    public void testRateAndRoundRobin() throws IOException {
+        MyPduScheduler scheduler = new MyPduScheduler(executor);
+        CfdpOutgoingTransfer t1 = newTransfer(1, "file1", scheduler);
+        CfdpOutgoingTransfer t2 = newTransfer(2, "file2", scheduler);
+
+        t1.start();
+        // the first burst is sent immediately
+        assertTrue(bytesSent >= scheduler.burst);
+        assertEquals(1, executor.delayed.size());
+        t2.start();
+
+        long start = scheduler.now;
+        int n = 0;
+        while (!executor.delayed.isEmpty()) {
+            scheduler.now += executor.delayed.get(0).getDelay(TimeUnit.NANOSECONDS);
+            executor.runDelayed();
+
+            // the last PDU of a burst may exceed the rate, the previous ones not
+            double elapsed = (scheduler.now - start) / 1e9;
+            assertTrue(bytesSent <= scheduler.burst + RATE * elapsed + MAX_PDU_SIZE);
+            assertTrue(n++ < 1000);
+        }
+        assertEquals(TransferState.COMPLETED, t1.getTransferState());
+        assertEquals(TransferState.COMPLETED, t2.getTransferState());
+
+        // on average the rate is reached
+        double elapsed = (scheduler.now - start) / 1e9;
+        assertTrue(bytesSent >= RATE * elapsed);
+
+        // once the second transfer started, the two alternate until the first one finished
+        List<Integer> seq = new ArrayList<>();
+        for (CfdpPacket packet : sent) {
+            seq.add(packet.getHeader().getTransactionId().getSequenceNumber());
+        }
+        int first2 = seq.indexOf(2);
+        int last1 = seq.lastIndexOf(1);
+        assertTrue(first2 < last1);
+        for (int i = first2 + 1; i <= last1; i++) {
+            assertNotEquals(seq.get(i - 1), seq.get(i));
+        }
+    }
+
+    private CfdpOutgoingTransfer newTransfer(long id, String objName, PduScheduler scheduler) throws IOException {
+        PutRequest request = new PutRequest(1, 2, objName, "/tmp/" + objName, false, false, false, false,
+                bucket, bucket.findObject(objName));
+        return new CfdpOutgoingTransfer(instance, id, executor, request, cfdpOut, getConfig(),
+                eventProducer, x -> {
+                }, Collections.emptyMap(), scheduler);
+    }
+
+    static YConfiguration getConfig() {
+        Map<String, Object> m = new HashMap<>();
+        m.put("entityIdLength", 2);
+        m.put("sequenceNrLength", 2);
+        m.put("maxPduSize", MAX_PDU_SIZE);
+        return YConfiguration.wrap(m);
+    }
+
+    // scheduler whose time only changes when the test advances it
+    static class MyPduScheduler extends PduScheduler {
+        long now;
+
+        MyPduScheduler(ManualExecutor executor) {
+            super(executor, RATE, MAX_PDU_SIZE);
+        }
+
+        @Override
+        long nanoTime() {
+            return now;
+        }
+    }
+}
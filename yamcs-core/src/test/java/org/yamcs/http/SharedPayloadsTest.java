@@ -0,0 +1,58 @@
+package org.yamcs.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.protobuf.ServerMessage;
+import org.yamcs.protobuf.Yamcs.Event;
+import org.yamcs.utils.TimeEncoding;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.JsonFormat.TypeRegistry;
+
+public class SharedPayloadsTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+    }
+
+    @Test
+    public void testSameEncodingAsServerMessage() throws Exception {
+        JsonFormat.Printer printer = JsonFormat.printer()
+                .usingTypeRegistry(TypeRegistry.newBuilder().add(Event.getDescriptor()).build());
+        SharedPayloads payloads = new SharedPayloads(printer);
+        Event event = Event.newBuilder().setSource("test").setMessage("hello").setSeqNumber(3)
+                .setGenerationTime(TimeEncoding.toProtobufTimestamp(TimeEncoding.parse("2020-01-01T00:00:00Z")))
+                .build();
+
+        byte[] data = payloads.getProtobufData(event);
+        assertSame(data, payloads.getProtobufData(event));
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(bout);
+        out.writeString(ServerMessage.TYPE_FIELD_NUMBER, "events");
+        out.writeInt32(ServerMessage.CALL_FIELD_NUMBER, 5);
+        out.writeInt32(ServerMessage.SEQ_FIELD_NUMBER, 7);
+        out.flush();
+        bout.write(data);
+
+        Any any = Any.pack(event, HttpServer.TYPE_URL_PREFIX);
+        ServerMessage expected = ServerMessage.newBuilder()
+                .setType("events")
+                .setCall(5)
+                .setSeq(7)
+                .setData(any)
+                .build();
+        assertArrayEquals(expected.toByteArray(), bout.toByteArray());
+
+        assertEquals(printer.print(any), payloads.getJsonData(event));
+    }
+}
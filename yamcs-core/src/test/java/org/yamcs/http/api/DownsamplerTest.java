@@ -67,4 +67,24 @@ public class DownsamplerTest {
     public void testSamplingInvalid() {
        new Downsampler(2, 1, 3);
     }
+
+    @Test
+    public void testBucketsAtTheEdges() {
+        Downsampler sampler = new Downsampler(1000, 2000, 10);
+        // starts before the range but overlaps it: clipped to the first interval
+        sampler.acceptBucket(950, 100, 2, 1, 3, 4, 1, 3);
+        // entirely before or after the range
+        sampler.acceptBucket(800, 100, 1, 5, 5, 5, 5, 5);
+        sampler.acceptBucket(2100, 100, 1, 5, 5, 5, 5, 5);
+        // partially after the range
+        sampler.acceptBucket(1950, 100, 1, 7, 7, 7, 7, 7);
+
+        List<Sample> samples = sampler.collect();
+        assertEquals(2, samples.size());
+        assertEquals(1000, samples.get(0).t);
+        assertEquals(2, samples.get(0).n);
+        assertEquals(2, samples.get(0).avg, 1e-10);
+        assertEquals(1900, samples.get(1).t);
+        assertEquals(7, samples.get(1).avg, 1e-10);
+    }
 }
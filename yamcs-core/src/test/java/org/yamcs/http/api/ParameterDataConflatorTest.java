@@ -0,0 +1,49 @@
+package org.yamcs.http.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.yamcs.protobuf.Pvalue.ParameterValue;
+import org.yamcs.protobuf.SubscribeParametersData;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.protobuf.Yamcs.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+
+public class ParameterDataConflatorTest {
+
+    @Test
+    public void testLatestValueKept() {
+        ParameterDataConflator conflator = new ParameterDataConflator();
+        assertTrue(conflator.isEmpty());
+
+        conflator.add(SubscribeParametersData.newBuilder()
+                .putMapping(1, NamedObjectId.newBuilder().setName("/a").build())
+                .putMapping(2, NamedObjectId.newBuilder().setName("/b").build())
+                .addValues(pv(1, 10))
+                .build());
+        conflator.add(SubscribeParametersData.newBuilder()
+                .addInvalid(NamedObjectId.newBuilder().setName("/c").build())
+                .addValues(pv(2, 20))
+                .addValues(pv(1, 11))
+                .build());
+
+        SubscribeParametersData data = (SubscribeParametersData) conflator.drain();
+        assertTrue(conflator.isEmpty());
+
+        assertEquals(2, data.getMappingCount());
+        assertEquals(1, data.getInvalidCount());
+        assertEquals(2, data.getValuesCount());
+        assertEquals(1, data.getValues(0).getNumericId());
+        assertEquals(11, data.getValues(0).getEngValue().getSint32Value());
+        assertEquals(2, data.getValues(1).getNumericId());
+        assertEquals(20, data.getValues(1).getEngValue().getSint32Value());
+    }
+
+    private static ParameterValue pv(int numericId, int v) {
+        return ParameterValue.newBuilder()
+                .setNumericId(numericId)
+                .setEngValue(Value.newBuilder().setType(Type.SINT32).setSint32Value(v))
+                .build();
+    }
+}
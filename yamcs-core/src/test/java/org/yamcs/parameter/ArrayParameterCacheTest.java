@@ -208,6 +208,37 @@ public class ArrayParameterCacheTest {
         return pv;
     }
 
+    @Test
+    public void testMaxMemory() {
+        Parameter p3 = new Parameter("p3");
+        ArrayParameterCache pcache = new ArrayParameterCache("test", new ParameterCacheConfig(true, true, 1000, 4096));
+        pcache.update(Arrays.asList(getFloatParameterValue(p1, 10)));
+        long tableSize = pcache.getUsedBytes();
+        assertTrue(tableSize > 0);
+
+        // room for two and a half tables
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, 5 * tableSize / 2);
+        pcache = new ArrayParameterCache("test", pcc);
+        pcache.update(Arrays.asList(getFloatParameterValue(p1, 10)));
+        pcache.update(Arrays.asList(getFloatParameterValue(p2, 10)));
+        assertEquals(2 * tableSize, pcache.getUsedBytes());
+
+        assertNotNull(pcache.getLastValue(p1));
+        pcache.update(Arrays.asList(getFloatParameterValue(p3, 10)));
+
+        // p2 is the least recently requested
+        assertEquals(1, pcache.getEvictionCount());
+        assertEquals(2 * tableSize, pcache.getUsedBytes());
+        assertNull(pcache.getLastValue(p2));
+        assertNotNull(pcache.getLastValue(p1));
+        assertNotNull(pcache.getLastValue(p3));
+        assertEquals(3, pcache.getHitCount());
+        assertEquals(1, pcache.getMissCount());
+
+        pcache.clear();
+        assertEquals(0, pcache.getUsedBytes());
+    }
+
     ParameterValue getFloatParameterValue(Parameter p, long t) {
         ParameterValue pv = new ParameterValue(p);
         pv.setGenerationTime(t);
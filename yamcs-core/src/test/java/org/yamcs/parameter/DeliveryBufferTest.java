@@ -0,0 +1,107 @@
+package org.yamcs.parameter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class DeliveryBufferTest {
+
+    @Test
+    public void testAddAndClear() {
+        DeliveryBuffer db = new DeliveryBuffer(4);
+        ParameterValue pv1 = new ParameterValue("/a/p1");
+        ParameterValue pv2 = new ParameterValue("/a/p2");
+
+        // enough subscriptions to make the table grow a few times
+        for (int i = 0; i < 100; i++) {
+            db.add(1000 - i, pv1);
+        }
+        db.addAll(1000, Arrays.asList(pv2, pv2));
+        assertEquals(100, db.size());
+        for (int slot = 0; slot < 100; slot++) {
+            assertEquals(1000 - slot, db.getSubscriptionId(slot));
+        }
+        assertEquals(Arrays.asList(pv1, pv2, pv2), db.get(1000));
+        assertEquals(Arrays.asList(pv1), db.get(901));
+        assertNull(db.get(900));
+        assertFalse(db.contains(900));
+
+        List<ParameterValue> copy = db.copyList(0);
+        db.clear();
+        assertEquals(0, db.size());
+        assertNull(db.get(1000));
+        assertEquals(3, copy.size());
+
+        db.add(5, pv2);
+        assertTrue(db.contains(5));
+        assertEquals(1, db.size());
+        assertEquals(Arrays.asList(pv2), db.get(5));
+        assertFalse(db.contains(1000));
+    }
+
+    /**
+     * Compares the building of the deliveries with a HashMap (as previously done in the ParameterRequestManager) and
+     * with the DeliveryBuffer, for different numbers of subscribers and parameters per update.
+     * <p>
+     * Each subscriber is subscribed to one in ten parameters.
+     */
+    @Ignore
+    @Test
+    public void benchmark() {
+        for (int numSubscribers : new int[] { 10, 100, 2000 }) {
+            for (int numParams : new int[] { 10, 100, 1000 }) {
+                List<ParameterValue> params = new ArrayList<>();
+                int[][] subscriptions = new int[numParams][];
+                for (int i = 0; i < numParams; i++) {
+                    params.add(new ParameterValue("/a/p" + i));
+                    subscriptions[i] = new int[numSubscribers / 10];
+                    for (int j = 0; j < subscriptions[i].length; j++) {
+                        subscriptions[i][j] = 1 + (i + 10 * j) % numSubscribers;
+                    }
+                }
+                int n = Math.max(100, 10_000_000 / (numParams * Math.max(1, numSubscribers / 10)));
+                for (int k = 0; k < 2; k++) {
+                    long t0 = System.nanoTime();
+                    long count = 0;
+                    for (int r = 0; r < n; r++) {
+                        HashMap<Integer, ArrayList<ParameterValue>> delivery = new HashMap<>();
+                        for (int i = 0; i < numParams; i++) {
+                            for (int s : subscriptions[i]) {
+                                delivery.computeIfAbsent(s, x -> new ArrayList<>()).add(params.get(i));
+                            }
+                        }
+                        for (ArrayList<ParameterValue> l : delivery.values()) {
+                            count += l.size();
+                        }
+                    }
+                    long t1 = System.nanoTime();
+                    DeliveryBuffer db = new DeliveryBuffer();
+                    for (int r = 0; r < n; r++) {
+                        for (int i = 0; i < numParams; i++) {
+                            for (int s : subscriptions[i]) {
+                                db.add(s, params.get(i));
+                            }
+                        }
+                        for (int slot = 0; slot < db.size(); slot++) {
+                            count += db.copyList(slot).size();
+                        }
+                        db.clear();
+                    }
+                    long t2 = System.nanoTime();
+                    System.out.printf("subscribers: %5d params/update: %5d HashMap: %8.2f us/update "
+                            + "DeliveryBuffer: %8.2f us/update (%d)%n", numSubscribers, numParams,
+                            (t1 - t0) / 1e3 / n, (t2 - t1) / 1e3 / n, count);
+                }
+            }
+        }
+    }
+}
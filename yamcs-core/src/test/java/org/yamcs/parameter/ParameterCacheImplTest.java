@@ -191,6 +191,104 @@ public class ParameterCacheImplTest {
         
     }
     
+    @Test
+    public void testDeliveryIds() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096);
+        ParameterCache pcache = new ParameterCacheImpl(pcc, false);
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getParameterValue(p1, 10);
+        ParameterValue p2v1 = getParameterValue(p2, 10);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+
+        ParameterValue p1v2 = getParameterValue(p1, 20);
+        pcache.update(Arrays.asList(p1v2));
+
+        assertEquals(p1v2, pcache.getLastValue(p1));
+        assertEquals(p2v1, pcache.getLastValue(p2));
+
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1, p2));
+        checkEquals(pvlist, p1v2, p2v1);
+
+        pvlist = pcache.getValues(Arrays.asList(p2, p1));
+        checkEquals(pvlist, p2v1, p1v1);
+
+        for (int i = 3; i < 300; i++) {
+            pcache.update(Arrays.asList(getParameterValue(p1, 10L * i)));
+        }
+        // the value of p1 from the same delivery as p2 has been overwritten
+        pvlist = pcache.getValues(Arrays.asList(p2, p1));
+        assertEquals(2, pvlist.size());
+        assertEquals(p2v1, pvlist.get(0));
+        assertEquals(2990, pvlist.get(1).getGenerationTime());
+        assertEquals(128, pcache.getAllValues(p1).size());
+    }
+
+    @Test
+    public void testDeliveryIdsNoCacheAll() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, false, 1000, 4096);
+        ParameterCache pcache = new ParameterCacheImpl(pcc, false);
+        assertNull(pcache.getLastValue(p1));
+
+        ParameterValue p1v1 = getParameterValue(p1, 10);
+        ParameterValue p2v1 = getParameterValue(p2, 10);
+        pcache.update(Arrays.asList(p1v1, p2v1));
+        assertEquals(p1v1, pcache.getLastValue(p1));
+        assertNull(pcache.getLastValue(p2));
+
+        ParameterValue p2v2 = getParameterValue(p2, 20);
+        pcache.update(Arrays.asList(p2v2));
+
+        // unlike when keeping the deliveries, p2v1 has not been retained
+        List<ParameterValue> pvlist = pcache.getValues(Arrays.asList(p1, p2));
+        checkEquals(pvlist, p1v1, p2v2);
+    }
+
+    /**
+     * Prints the memory retained by the cache with and without keeping the deliveries, for a replay of 10 minutes of
+     * data at 10 deliveries per second, each delivery containing 200 parameters, out of which 20 are requested from the
+     * cache.
+     */
+    @Test
+    @Ignore
+    public void testMemory() {
+        int numDeliveries = 6000;
+        int numParams = 200;
+        int numRequested = 20;
+        List<Parameter> params = new ArrayList<>();
+        for (int i = 0; i < numParams; i++) {
+            params.add(new Parameter("p" + i));
+        }
+        for (boolean cacheAll : new boolean[] { false, true }) {
+            for (boolean keepDeliveries : new boolean[] { true, false }) {
+                ParameterCacheConfig pcc = new ParameterCacheConfig(true, cacheAll, 600_000, 4096);
+                ParameterCache pcache = new ParameterCacheImpl(pcc, keepDeliveries);
+                for (int i = 0; i < numRequested; i++) {
+                    pcache.getLastValue(params.get(i * numParams / numRequested));
+                }
+                long m0 = usedMemory();
+                for (int k = 0; k < numDeliveries; k++) {
+                    List<ParameterValue> delivery = new ArrayList<>(numParams);
+                    for (Parameter p : params) {
+                        delivery.add(getUint64ParameterValue(p, 100L * k));
+                    }
+                    pcache.update(delivery);
+                }
+                long m1 = usedMemory();
+                System.out.printf("cacheAll: %5s keepDeliveries: %5s retained memory: %6d KB (%s)%n", cacheAll,
+                        keepDeliveries, (m1 - m0) / 1024, pcache.getLastValue(params.get(0)) != null);
+            }
+        }
+    }
+
+    static long usedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
     /**
      * 
      * Performance tests for different syncrhonization strategies in ParameterCache.CacheEntry
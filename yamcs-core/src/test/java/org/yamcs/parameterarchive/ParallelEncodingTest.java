@@ -0,0 +1,157 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.YamcsServer;
+import org.yamcs.parameter.BasicParameterValue;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameterarchive.ParameterArchive.EncodedSegment;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.IntArray;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.rocksdb.RdbStorageEngine;
+
+/**
+ * Checks that the parallel encoding of the segments produces the same result as the serial one and measures the
+ * encoding throughput.
+ */
+public class ParallelEncodingTest {
+    static final int NUM_GROUPS = 200;
+    static final int PARAMS_PER_GROUP = 20;
+    static final int SEGMENT_SIZE = 1000;
+
+    @Test
+    public void testSameOutput() throws Exception {
+        ParameterArchive serial = openArchive("ParallelEncodingTest1", 1);
+        ParameterArchive parallel = openArchive("ParallelEncodingTest2", 4);
+        try {
+            List<EncodedSegment> l1 = serial.consolidateAndEncode(createSegments(serial, 20, 5, 100));
+            List<EncodedSegment> l2 = parallel.consolidateAndEncode(createSegments(parallel, 20, 5, 100));
+            assertEquals(l1.size(), l2.size());
+            for (int i = 0; i < l1.size(); i++) {
+                EncodedSegment es1 = l1.get(i);
+                EncodedSegment es2 = l2.get(i);
+                assertEquals(es1.keys.size(), es2.keys.size());
+                for (int j = 0; j < es1.keys.size(); j++) {
+                    assertArrayEquals(es1.keys.get(j), es2.keys.get(j));
+                    assertArrayEquals(es1.values.get(j), es2.values.get(j));
+                }
+            }
+        } finally {
+            closeArchive(serial);
+            closeArchive(parallel);
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmark() throws Exception {
+        int nproc = Runtime.getRuntime().availableProcessors();
+        for (int numThreads : new int[] { 1, 2, nproc }) {
+            String instance = "ParallelEncodingBenchmark" + numThreads;
+            ParameterArchive parchive = openArchive(instance, numThreads);
+            try {
+                // warmup
+                for (int i = 0; i < 3; i++) {
+                    parchive.consolidateAndEncode(createSegments(parchive, NUM_GROUPS, PARAMS_PER_GROUP,
+                            SEGMENT_SIZE));
+                }
+                long total = 0;
+                int n = 10;
+                for (int i = 0; i < n; i++) {
+                    List<PGSegment> l = createSegments(parchive, NUM_GROUPS, PARAMS_PER_GROUP, SEGMENT_SIZE);
+                    long t0 = System.nanoTime();
+                    parchive.consolidateAndEncode(l);
+                    total += System.nanoTime() - t0;
+                }
+                double numValues = (double) n * NUM_GROUPS * PARAMS_PER_GROUP * SEGMENT_SIZE;
+                System.out.printf("encodingThreads: %2d, %8.1f ms/batch, %10.0f values/s%n", numThreads,
+                        total / 1e6 / n, numValues * 1e9 / total);
+            } finally {
+                closeArchive(parchive);
+            }
+        }
+    }
+
+    static ParameterArchive openArchive(String instance, int encodingThreads) throws Exception {
+        TimeEncoding.setUp();
+        YamcsServer.setMockupTimeService(new MockupTimeService());
+        String dbroot = YarchDatabase.getInstance(instance).getRoot();
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot));
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot + ".rdb"));
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot + ".tbs"));
+        RdbStorageEngine rse = RdbStorageEngine.getInstance();
+        if (rse.getTablespace(instance) != null) {
+            rse.dropTablespace(instance);
+        }
+        rse.createTablespace(instance);
+
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("encodingThreads", encodingThreads);
+        ParameterArchive parchive = new ParameterArchive();
+        YConfiguration config = parchive.getSpec().validate(YConfiguration.wrap(conf));
+        parchive.init(instance, "test", config);
+        return parchive;
+    }
+
+    static void closeArchive(ParameterArchive parchive) throws Exception {
+        if (parchive.encodingPool != null) {
+            parchive.encodingPool.shutdown();
+        }
+        RdbStorageEngine.getInstance().dropTablespace(parchive.getYamcsInstance());
+    }
+
+    static List<PGSegment> createSegments(ParameterArchive parchive, int numGroups, int paramsPerGroup,
+            int segmentSize) throws Exception {
+        Random random = new Random(0);
+        ParameterIdDb pidDb = parchive.getParameterIdDb();
+        ParameterGroupIdDb pgidDb = parchive.getParameterGroupIdDb();
+        List<PGSegment> result = new ArrayList<>(numGroups);
+
+        for (int g = 0; g < numGroups; g++) {
+            int[] pids = new int[paramsPerGroup];
+            for (int i = 0; i < paramsPerGroup; i++) {
+                Type type = (i % 2 == 0) ? Type.UINT32 : Type.FLOAT;
+                pids[i] = pidDb.createAndGet("/bench/g" + g + "/p" + i, type, Type.UINT32);
+            }
+            // the ids are allocated in increasing order so the array is sorted
+            IntArray pidArray = IntArray.wrap(pids);
+            int pgid = pgidDb.createAndGet(pidArray);
+            PGSegment pgs = new PGSegment(pgid, 0, pidArray);
+
+            for (int k = 0; k < segmentSize; k++) {
+                long t = 1000L * k;
+                List<BasicParameterValue> values = new ArrayList<>(paramsPerGroup);
+                for (int i = 0; i < paramsPerGroup; i++) {
+                    ParameterValue pv = new ParameterValue("/bench/g" + g + "/p" + i);
+                    pv.setGenerationTime(t);
+                    int raw = random.nextInt(4096);
+                    pv.setRawValue(ValueUtility.getUint32Value(raw));
+                    if (i % 2 == 0) {
+                        pv.setEngValue(ValueUtility.getUint32Value(raw));
+                    } else {
+                        pv.setEngValue(ValueUtility.getFloatValue(raw * 0.01f));
+                    }
+                    values.add(pv);
+                }
+                pgs.addRecord(t, values);
+            }
+            result.add(pgs);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.YConfiguration;
+import org.yamcs.YamcsServer;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.rocksdb.RdbStorageEngine;
+
+public class RealtimeArchiveFillerTest {
+    String instance = "RealtimeArchiveFillerTest";
+    ParameterArchive parchive;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+        YamcsServer.setMockupTimeService(new MockupTimeService());
+    }
+
+    @Before
+    public void openDb() throws Exception {
+        String dbroot = YarchDatabase.getInstance(instance).getRoot();
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot));
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot + ".rdb"));
+        FileUtils.deleteRecursivelyIfExists(Paths.get(dbroot + ".tbs"));
+        RdbStorageEngine rse = RdbStorageEngine.getInstance();
+        if (rse.getTablespace(instance) != null) {
+            rse.dropTablespace(instance);
+        }
+        rse.createTablespace(instance);
+        parchive = new ParameterArchive();
+        YConfiguration config = parchive.getSpec().validate(YConfiguration.wrap(new HashMap<>()));
+        parchive.init(instance, "test", config);
+    }
+
+    @After
+    public void closeDb() throws Exception {
+        RdbStorageEngine.getInstance().dropTablespace(instance);
+    }
+
+    @Test
+    public void testDrop() {
+        RealtimeArchiveFiller filler = new RealtimeArchiveFiller(parchive, config("DROP"));
+
+        filler.updateItems(0, delivery(1000, 3));
+        filler.updateItems(0, delivery(2000, 2));
+        filler.updateItems(0, delivery(3000, 4));
+
+        assertEquals(1, filler.queue.size());
+        assertEquals(6, filler.getNumDroppedParameters());
+    }
+
+    @Test
+    public void testCoalesce() {
+        RealtimeArchiveFiller filler = new RealtimeArchiveFiller(parchive, config("COALESCE"));
+
+        filler.updateItems(0, delivery(1000, 3));
+        filler.updateItems(0, delivery(2000, 2));
+        filler.updateItems(0, delivery(3000, 4));
+        // does not fit in maxCoalescedParameters
+        filler.updateItems(0, delivery(4000, 5));
+
+        assertEquals(1, filler.queue.size());
+        assertEquals(6, filler.overflow.size());
+        assertEquals(6, filler.numCoalescedParams.get());
+        assertEquals(5, filler.getNumDroppedParameters());
+    }
+
+    private YConfiguration config(String policy) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("queueSize", 1);
+        m.put("queueFullPolicy", policy);
+        m.put("maxCoalescedParameters", 8);
+        return YConfiguration.wrap(m);
+    }
+
+    private List<ParameterValue> delivery(long t, int n) {
+        ParameterValue[] pvs = new ParameterValue[n];
+        for (int i = 0; i < n; i++) {
+            ParameterValue pv = new ParameterValue("/test/p" + i);
+            pv.setGenerationTime(t);
+            pv.setEngValue(ValueUtility.getUint32Value(i));
+            pvs[i] = pv;
+        }
+        return Arrays.asList(pvs);
+    }
+}
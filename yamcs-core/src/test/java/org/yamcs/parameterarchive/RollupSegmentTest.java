@@ -0,0 +1,77 @@
+package org.yamcs.parameterarchive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.yamcs.parameter.ValueArray;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.DecodingException;
+
+public class RollupSegmentTest {
+    static final long T0 = 1_600_000_000_000L;
+
+    @Test
+    public void testBuild() {
+        long[] timestamps = new long[] { T0 + 100, T0 + 500, T0 + 900, T0 + 1200, T0 + 3100 };
+        ValueArray va = new ValueArray(Type.SINT32, new int[] { 3, -1, 7, 10, 4 });
+
+        RollupSegment rs = RollupSegment.build(1000, timestamps, va);
+        assertEquals(3, rs.size());
+        assertEquals(T0 + 3100, rs.getSegmentEnd());
+
+        assertEquals(T0, rs.getBucketStart(0));
+        assertEquals(3, rs.getCount(0));
+        assertEquals(-1, rs.getMin(0), 0);
+        assertEquals(7, rs.getMax(0), 0);
+        assertEquals(9, rs.getSum(0), 0);
+        assertEquals(3, rs.getFirst(0), 0);
+        assertEquals(7, rs.getLast(0), 0);
+
+        assertEquals(T0 + 1000, rs.getBucketStart(1));
+        assertEquals(1, rs.getCount(1));
+
+        assertEquals(T0 + 3000, rs.getBucketStart(2));
+        assertEquals(4, rs.getLast(2), 0);
+    }
+
+    @Test
+    public void testEncodeDecode() throws DecodingException {
+        int n = 1000;
+        long[] timestamps = new long[n];
+        float[] values = new float[n];
+        for (int i = 0; i < n; i++) {
+            timestamps[i] = T0 + i * 100;
+            values[i] = i * 0.5f;
+        }
+        RollupSegment rs = RollupSegment.build(1000, timestamps, new ValueArray(values));
+        assertEquals(100, rs.size());
+
+        SegmentEncoderDecoder sed = new SegmentEncoderDecoder();
+        byte[] encoded = sed.encode(rs);
+        assertTrue(encoded.length <= rs.getMaxSerializedSize() + 1);
+
+        RollupSegment rs1 = (RollupSegment) sed.decode(encoded, T0);
+        assertEquals(1000, rs1.getResolution());
+        assertEquals(rs.getSegmentEnd(), rs1.getSegmentEnd());
+        assertEquals(rs.size(), rs1.size());
+        for (int i = 0; i < rs.size(); i++) {
+            assertEquals(rs.getBucketStart(i), rs1.getBucketStart(i));
+            assertEquals(rs.getCount(i), rs1.getCount(i));
+            assertEquals(rs.getMin(i), rs1.getMin(i), 0);
+            assertEquals(rs.getMax(i), rs1.getMax(i), 0);
+            assertEquals(rs.getSum(i), rs1.getSum(i), 0);
+            assertEquals(rs.getFirst(i), rs1.getFirst(i), 0);
+            assertEquals(rs.getLast(i), rs1.getLast(i), 0);
+        }
+    }
+
+    @Test
+    public void testLevel() {
+        assertEquals(-1, RollupRetrieval.getLevel(500));
+        assertEquals(0, RollupRetrieval.getLevel(1000));
+        assertEquals(0, RollupRetrieval.getLevel(59_999));
+        assertEquals(1, RollupRetrieval.getLevel(60_000));
+        assertEquals(2, RollupRetrieval.getLevel(365L * 24 * 3600 * 1000 / 500));
+    }
+}
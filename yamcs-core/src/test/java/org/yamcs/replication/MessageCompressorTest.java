@@ -0,0 +1,79 @@
+package org.yamcs.replication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class MessageCompressorTest {
+    Random random = new Random(1);
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(Deflater.DEFAULT_COMPRESSION);
+        MessageDecompressor decompressor = new MessageDecompressor();
+        int wireBytes = 0;
+        int dataBytes = 0;
+        for (int k = 0; k < 20; k++) {
+            // a batch of messages, the last one larger than one compressed message
+            List<byte[]> sent = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                sent.add(getMessage(i == 49 ? 40000 : 100 + random.nextInt(200)));
+            }
+            ByteBuffer buf = concat(sent);
+            dataBytes += buf.remaining();
+
+            List<ByteBuffer> frames = compressor.compress(buf);
+            assertEquals(0, buf.position());
+            List<byte[]> received = new ArrayList<>();
+            for (ByteBuffer frame : frames) {
+                assertTrue(frame.remaining() <= MessageCompressor.MAX_MESSAGE_SIZE);
+                wireBytes += frame.remaining();
+                assertEquals(Message.COMPRESSED, frame.get(0));
+                frame.position(4);
+                frame.limit(frame.limit() - 4);
+                for (ByteBuffer mbuf : decompressor.decompress(frame)) {
+                    byte[] b = new byte[mbuf.remaining()];
+                    mbuf.get(b);
+                    received.add(b);
+                }
+            }
+            // all the messages of the batch are available after the last frame
+            assertEquals(sent.size(), received.size());
+            for (int i = 0; i < sent.size(); i++) {
+                assertArrayEquals(sent.get(i), received.get(i));
+            }
+        }
+        assertEquals(dataBytes, compressor.getBytesRead());
+        assertTrue(wireBytes < dataBytes / 2);
+    }
+
+    // a message with a valid header and repetitive content
+    private byte[] getMessage(int length) {
+        byte[] b = new byte[length + 4];
+        b[0] = Message.DATA;
+        b[1] = (byte) (length >> 16);
+        b[2] = (byte) (length >> 8);
+        b[3] = (byte) length;
+        for (int i = 4; i < b.length; i++) {
+            b[i] = (byte) (i % 17 == 0 ? random.nextInt() : i % 7);
+        }
+        return b;
+    }
+
+    private static ByteBuffer concat(List<byte[]> list) {
+        ByteBuffer buf = ByteBuffer.allocate(list.stream().mapToInt(b -> b.length).sum());
+        for (byte[] b : list) {
+            buf.put(b);
+        }
+        buf.flip();
+        return buf;
+    }
+}
@@ -0,0 +1,146 @@
+package org.yamcs.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+public class ParallelTxProcessorTest {
+
+    @Test
+    public void testStreamOrder() throws Exception {
+        ParallelTxProcessor txp = new ParallelTxProcessor(4, "test");
+        int numStreams = 5;
+        int numTx = 20000;
+        List<List<Long>> processed = new ArrayList<>();
+        Executor[] executors = new Executor[numStreams];
+        for (int i = 0; i < numStreams; i++) {
+            processed.add(new ArrayList<>());
+            executors[i] = txp.newSequentialExecutor();
+        }
+        CountDownLatch latch = new CountDownLatch(numTx);
+        for (long txId = 0; txId < numTx; txId++) {
+            long t = txId;
+            List<Long> l = processed.get((int) (txId * 7 % numStreams));
+            txp.submit(executors[(int) (txId * 7 % numStreams)], txId, () -> l.add(t), () -> latch.countDown());
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (List<Long> l : processed) {
+            assertEquals(numTx / numStreams, l.size());
+            for (int i = 1; i < l.size(); i++) {
+                assertTrue(l.get(i - 1) < l.get(i));
+            }
+        }
+        assertEquals(numTx - 1, txp.getProcessedTxId());
+        assertEquals(0, txp.getNumInProgress());
+        txp.shutdown();
+    }
+
+    @Test
+    public void testProcessedTxId() throws Exception {
+        ParallelTxProcessor txp = new ParallelTxProcessor(2, "test");
+        Executor e1 = txp.newSequentialExecutor();
+        Executor e2 = txp.newSequentialExecutor();
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        txp.submit(e1, 10, () -> {
+        }, () -> done.countDown());
+        txp.submit(e1, 11, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> done.countDown());
+        txp.submit(e2, 12, () -> {
+        }, () -> done.countDown());
+        txp.submit(e2, 13, () -> {
+        }, () -> done.countDown());
+
+        // the transactions of the second stream are processed while the first stream is blocked
+        while (done.getCount() > 1) {
+            Thread.sleep(1);
+        }
+        assertEquals(10, txp.getProcessedTxId());
+        assertEquals(1, txp.getNumInProgress());
+
+        blocker.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(13, txp.getProcessedTxId());
+
+        // a received transaction which does not require processing
+        txp.received(14);
+        assertEquals(14, txp.getProcessedTxId());
+        txp.shutdown();
+    }
+
+    /**
+     * Prints the number of transactions per second processed by a slave catching up, with the data of all the streams
+     * processed sequentially (as in the network thread) and in parallel.
+     * <p>
+     * The processing of one transaction is simulated by decoding 200 columns and computing a checksum 20 times, as a
+     * replacement for deserializing the tuple and inserting it in the archive.
+     */
+    @Ignore
+    @Test
+    public void benchmarkCatchUp() throws Exception {
+        int numStreams = 4;
+        int numTx = 100_000;
+        ByteBuffer data = ByteBuffer.allocate(200 * 12);
+        for (int i = 0; i < 200; i++) {
+            data.putInt(i).putLong(i * 1000L);
+        }
+        data.flip();
+
+        for (int numThreads : new int[] { 0, 1, 2, 4, 0, 1, 2, 4 }) {
+            ParallelTxProcessor txp = numThreads == 0 ? null : new ParallelTxProcessor(numThreads, "bench");
+            Executor[] executors = new Executor[numStreams];
+            for (int i = 0; i < numStreams; i++) {
+                executors[i] = txp == null ? null : txp.newSequentialExecutor();
+            }
+            CountDownLatch latch = new CountDownLatch(numTx);
+            long t0 = System.nanoTime();
+            for (long txId = 0; txId < numTx; txId++) {
+                ByteBuffer buf = data.duplicate();
+                if (txp == null) {
+                    decode(buf);
+                    latch.countDown();
+                } else {
+                    txp.submit(executors[(int) (txId % numStreams)], txId, () -> decode(buf), () -> latch.countDown());
+                }
+            }
+            latch.await();
+            long d = System.nanoTime() - t0;
+            System.out.printf("processing threads: %d: %8.0f tx/s%n", numThreads, numTx * 1e9 / d);
+            if (txp != null) {
+                txp.shutdown();
+            }
+        }
+    }
+
+    static long decode(ByteBuffer buf) {
+        long x = 0;
+        for (int k = 0; k < 20; k++) {
+            ByteBuffer buf1 = buf.duplicate();
+            List<Object> cols = new ArrayList<>();
+            CRC32 crc = new CRC32();
+            while (buf1.hasRemaining()) {
+                int idx = buf1.getInt();
+                long v = buf1.getLong();
+                cols.add(Long.valueOf(v + idx));
+                crc.update((int) v);
+            }
+            x += crc.getValue() + cols.size();
+        }
+        return x;
+    }
+}
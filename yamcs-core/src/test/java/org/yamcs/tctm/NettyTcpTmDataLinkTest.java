@@ -0,0 +1,81 @@
+package org.yamcs.tctm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.utils.TimeEncoding;
+
+public class NettyTcpTmDataLinkTest {
+
+    @BeforeClass
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+        EventProducerFactory.setMockup(false);
+    }
+
+    @Test
+    public void testSplitAndDropLongPackets() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Map<String, Object> config = new HashMap<>();
+            config.put("host", "localhost");
+            config.put("port", serverSocket.getLocalPort());
+            config.put("maxPacketLength", 100);
+
+            NettyTcpTmDataLink link = new NettyTcpTmDataLink();
+            link.init("testinst", "tm1", YConfiguration.wrap(config));
+            List<TmPacket> received = new CopyOnWriteArrayList<>();
+            Semaphore semaphore = new Semaphore(0);
+            link.setTmSink(pkt -> {
+                received.add(pkt);
+                semaphore.release();
+            });
+            link.startAsync().awaitRunning();
+
+            try (Socket socket = serverSocket.accept()) {
+                OutputStream out = socket.getOutputStream();
+                byte[] data = new byte[20 + 200 + 30];
+                packet(data, 0, 20, 1);
+                packet(data, 20, 200, 2);
+                packet(data, 220, 30, 3);
+                // send in small pieces to check the reassembling of the packets
+                for (int i = 0; i < data.length; i += 7) {
+                    out.write(data, i, Math.min(7, data.length - i));
+                    out.flush();
+                }
+                assertTrue(semaphore.tryAcquire(2, 10, TimeUnit.SECONDS));
+            }
+            link.stopAsync().awaitTerminated();
+
+            assertEquals(2, received.size());
+            assertEquals(20, received.get(0).getPacket().length);
+            assertEquals(1, received.get(0).getPacket()[6]);
+            assertEquals(30, received.get(1).getPacket().length);
+            assertEquals(3, received.get(1).getPacket()[6]);
+            assertEquals(2, link.getDataInCount());
+        }
+    }
+
+    // CCSDS packet of the given length, with the byte following the primary header set to marker
+    static void packet(byte[] data, int offset, int length, int marker) {
+        data[offset] = 0x08;
+        data[offset + 4] = (byte) ((length - 7) >> 8);
+        data[offset + 5] = (byte) (length - 7);
+        data[offset + 6] = (byte) marker;
+    }
+}
@@ -0,0 +1,96 @@
+package org.yamcs.tctm.ccsds;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.tctm.ccsds.error.CcsdsReedSolomon;
+
+public class CodeblockDecoderTest {
+    static final byte[] ASM = { 0x1A, (byte) 0xCF, (byte) 0xFC, 0x1D };
+    Random rand = new Random(1);
+
+    @Test
+    public void testRandomizeWordAtATime() {
+        for (int length : new int[] { 1, 7, 8, 255, 256, 2040, 2041, 5000 }) {
+            byte[] buf1 = new byte[length + 3];
+            rand.nextBytes(buf1);
+            byte[] buf2 = Arrays.copyOf(buf1, buf1.length);
+
+            byte[] x = Arrays.copyOfRange(buf1, 3, buf1.length);
+            Randomizer.randomizeTm(x);
+            System.arraycopy(x, 0, buf1, 3, length);
+
+            Randomizer.randomizeTm(buf2, 3, length);
+            assertArrayEquals(buf1, buf2);
+        }
+    }
+
+    @Test
+    public void testDecodeCadu() throws Exception {
+        CcsdsReedSolomon rs = new CcsdsReedSolomon(16, 5, 0);
+        CodeblockDecoder decoder = new CodeblockDecoder(4, true, new CcsdsReedSolomon(16, 5, 0));
+        byte[] frame = new byte[rs.getDataLength()];
+        rand.nextBytes(frame);
+        byte[] cadu = cadu(rs, frame);
+
+        cadu[10] ^= 0x01;
+        cadu[500] ^= 0xFF;
+        int offset = decoder.decode(cadu, 0, cadu.length);
+        assertEquals(4, offset);
+        assertEquals(frame.length, decoder.getFrameLength(cadu.length));
+        assertArrayEquals(frame, Arrays.copyOfRange(cadu, offset, offset + frame.length));
+        assertEquals(2, decoder.getCorrectedSymbolCount());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testUncorrectable() throws Exception {
+        CcsdsReedSolomon rs = new CcsdsReedSolomon(16, 1, 0);
+        CodeblockDecoder decoder = new CodeblockDecoder(4, true, new CcsdsReedSolomon(16, 1, 0));
+        byte[] cadu = cadu(rs, new byte[rs.getDataLength()]);
+        for (int i = 4; i < 40; i++) {
+            cadu[i] ^= 0xFF;
+        }
+        decoder.decode(cadu, 0, cadu.length);
+    }
+
+    @Ignore
+    @Test
+    public void benchmark() throws Exception {
+        int n = 100_000;
+        for (int depth : new int[] { 1, 5, 8 }) {
+            CcsdsReedSolomon rs = new CcsdsReedSolomon(16, depth, 0);
+            CodeblockDecoder decoder = new CodeblockDecoder(4, true, new CcsdsReedSolomon(16, depth, 0));
+            byte[] frame = new byte[rs.getDataLength()];
+            rand.nextBytes(frame);
+            byte[] cadu = cadu(rs, frame);
+            byte[] buf = new byte[cadu.length];
+            for (int k = 0; k < 3; k++) {
+                long t0 = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    System.arraycopy(cadu, 0, buf, 0, cadu.length);
+                    buf[i % cadu.length] ^= 0x01; // one error to be corrected in each frame
+                    decoder.decode(buf, 0, buf.length);
+                }
+                long d = System.nanoTime() - t0;
+                System.out.printf("I=%d: %.0f frames/s, %.1f Mbit/s%n", depth, n * 1e9 / d,
+                        8e3 * n * cadu.length / d);
+            }
+        }
+    }
+
+    private byte[] cadu(CcsdsReedSolomon rs, byte[] frame) {
+        byte[] cadu = new byte[4 + rs.getCodeblockLength()];
+        System.arraycopy(ASM, 0, cadu, 0, 4);
+        System.arraycopy(frame, 0, cadu, 4, frame.length);
+        byte[] cb = Arrays.copyOfRange(cadu, 4, cadu.length);
+        rs.encode(cb, 0);
+        Randomizer.randomizeTm(cb);
+        System.arraycopy(cb, 0, cadu, 4, cb.length);
+        return cadu;
+    }
+}
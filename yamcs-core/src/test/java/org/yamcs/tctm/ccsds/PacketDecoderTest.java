@@ -123,4 +123,43 @@ public class PacketDecoderTest {
         assertFalse(pd.hasIncompletePacket());
         
     }
+
+    @Test
+    public void testSlices() throws TcTmException {
+        List<byte[]> bufs = new ArrayList<>();
+        List<int[]> slices = new ArrayList<>();
+        PacketDecoder spd = new PacketDecoder(1000, (buf, offset, length) -> {
+            bufs.add(buf);
+            slices.add(new int[] { offset, length });
+        });
+        // two packets in the first chunk, the third one continues in the second chunk
+        byte[] data1 = new byte[] { (byte) 0xE5, 2, 0, 0, 0, 0, 0, 1, 5, 6, (byte) 0xE6, 0 };
+        byte[] data2 = new byte[] { 0, 5, 7 };
+        spd.process(data1, 0, data1.length);
+        assertTrue(spd.hasIncompletePacket());
+        assertEquals(2, slices.size());
+        // the packets contained in the chunk are not copied
+        assertTrue(bufs.get(0) == data1);
+        assertArrayEquals(new int[] { 0, 2 }, slices.get(0));
+        assertTrue(bufs.get(1) == data1);
+        assertArrayEquals(new int[] { 2, 8 }, slices.get(1));
+
+        spd.process(data2, 0, data2.length);
+        assertFalse(spd.hasIncompletePacket());
+        assertEquals(3, slices.size());
+        assertArrayEquals(new byte[] { (byte) 0xE6, 0, 0, 5, 7 }, bufs.get(2));
+        assertArrayEquals(new int[] { 0, 5 }, slices.get(2));
+    }
+
+    @Test
+    public void testSlicesStripEncapsulationHeader() throws TcTmException {
+        List<int[]> slices = new ArrayList<>();
+        PacketDecoder spd = new PacketDecoder(1000, (buf, offset, length) -> slices.add(new int[] { offset, length }));
+        spd.stripEncapsulationHeader(true);
+        byte[] data = new byte[] { 0, (byte) 0xE4, (byte) 0xE5, 3, 9 };
+        spd.process(data, 1, 4);
+        assertEquals(2, slices.size());
+        assertArrayEquals(new int[] { 2, 0 }, slices.get(0));
+        assertArrayEquals(new int[] { 4, 1 }, slices.get(1));
+    }
 }
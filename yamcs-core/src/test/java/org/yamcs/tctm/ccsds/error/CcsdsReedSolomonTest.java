@@ -0,0 +1,94 @@
+package org.yamcs.tctm.ccsds.error;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.yamcs.rs.ReedSolomon;
+import org.yamcs.rs.ReedSolomonException;
+
+public class CcsdsReedSolomonTest {
+    Random rand = new Random(1);
+
+    @Test
+    public void testCorrectMaxErrors() throws ReedSolomonException {
+        for (int e : new int[] { 8, 16 }) {
+            for (int depth = 1; depth <= 8; depth++) {
+                for (int virtualFill : new int[] { 0, 33 }) {
+                    CcsdsReedSolomon rs = new CcsdsReedSolomon(e, depth, virtualFill);
+                    byte[] orig = codeblock(rs);
+                    byte[] buf = Arrays.copyOf(orig, orig.length);
+                    assertEquals(0, rs.decode(buf, 0));
+
+                    // corrupt e symbols in each codeword
+                    for (int c = 0; c < depth; c++) {
+                        int n = buf.length / depth;
+                        int[] pos = rand.ints(0, n).distinct().limit(e).toArray();
+                        for (int p : pos) {
+                            buf[p * depth + c] ^= 1 + rand.nextInt(255);
+                        }
+                    }
+                    assertEquals(e * depth, rs.decode(buf, 0));
+                    assertArrayEquals(orig, buf);
+                }
+            }
+        }
+    }
+
+    @Test(expected = ReedSolomonException.class)
+    public void testUncorrectable() throws ReedSolomonException {
+        CcsdsReedSolomon rs = new CcsdsReedSolomon(16, 1, 0);
+        byte[] buf = codeblock(rs);
+        for (int i = 0; i < 40; i++) {
+            buf[i] ^= 0x55;
+        }
+        rs.decode(buf, 0);
+    }
+
+    @Test
+    public void testDecodeAtOffset() throws ReedSolomonException {
+        CcsdsReedSolomon rs = new CcsdsReedSolomon(16, 2, 0);
+        byte[] cb = codeblock(rs);
+        byte[] buf = new byte[cb.length + 10];
+        System.arraycopy(cb, 0, buf, 4, cb.length);
+        buf[100] ^= 0xFF;
+        assertEquals(1, rs.decode(buf, 4));
+        assertArrayEquals(cb, Arrays.copyOfRange(buf, 4, 4 + cb.length));
+    }
+
+    @Test
+    public void testSameAsConventionalCode() throws ReedSolomonException {
+        // the generic implementation works in the conventional basis; converted to the dual basis, its codewords have
+        // to be valid CCSDS codewords
+        ReedSolomon generic = new ReedSolomon(32, 8, 112, 11, 0x187, 0);
+        byte[] data = new byte[223];
+        rand.nextBytes(data);
+        byte[] parity = new byte[32];
+        generic.encode(data, parity);
+
+        byte[] cb = new byte[255];
+        for (int i = 0; i < 223; i++) {
+            cb[i] = (byte) CcsdsReedSolomon.TALTAB[data[i] & 0xFF];
+        }
+        for (int i = 0; i < 32; i++) {
+            cb[223 + i] = (byte) CcsdsReedSolomon.TALTAB[parity[i] & 0xFF];
+        }
+        byte[] cb1 = Arrays.copyOf(cb, cb.length);
+        CcsdsReedSolomon rs = new CcsdsReedSolomon(16, 1, 0);
+        assertEquals(0, rs.decode(cb, 0));
+        rs.encode(cb1, 0);
+        assertArrayEquals(cb, cb1);
+    }
+
+    private byte[] codeblock(CcsdsReedSolomon rs) {
+        byte[] buf = new byte[rs.getCodeblockLength()];
+        byte[] data = new byte[rs.getDataLength()];
+        rand.nextBytes(data);
+        System.arraycopy(data, 0, buf, 0, data.length);
+        rs.encode(buf, 0);
+        return buf;
+    }
+}
@@ -0,0 +1,108 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueList;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.XtceDb;
+
+public class CompiledContainerDecoderTest {
+    private static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testSameResult() {
+        XtceTmExtractor compiled = getExtractor(true);
+        XtceTmExtractor regular = getExtractor(false);
+        long t = 1000;
+        for (byte[] packet : new RefMdbPacketGenerator().getPacketMix()) {
+            t++;
+            compiled.processPacket(packet, t, t);
+            regular.processPacket(packet, t, t);
+
+            assertEquals(regular.getPacketName(), compiled.getPacketName());
+            assertEquals(regular.getContainerResult().size(), compiled.getContainerResult().size());
+            assertEquals(toString(regular.getParameterResult()), toString(compiled.getParameterResult()));
+        }
+
+        int n = 0;
+        for (SequenceContainer sc : xtcedb.getSequenceContainers()) {
+            if (compiled.getSubscription().getCompiledDecoder(sc) != null) {
+                n++;
+            }
+        }
+        assertTrue(n > 0);
+    }
+
+    @Test
+    public void testShortPacket() {
+        XtceTmExtractor compiled = getExtractor(true);
+        XtceTmExtractor regular = getExtractor(false);
+        byte[] packet = new RefMdbPacketGenerator().generate_PKT1_1();
+        // the entries which do not fit are extracted (and reported) by the interpreter
+        byte[] shortPacket = new byte[packet.length - 4];
+        System.arraycopy(packet, 0, shortPacket, 0, shortPacket.length);
+        compiled.processPacket(shortPacket, 1, 1);
+        regular.processPacket(shortPacket, 1, 1);
+        assertEquals(toString(regular.getParameterResult()), toString(compiled.getParameterResult()));
+    }
+
+    /**
+     * Prints the number of packets per second extracted with and without the compiled decoders
+     */
+    @Ignore
+    @Test
+    public void benchmark() {
+        List<byte[]> packets = new RefMdbPacketGenerator().getPacketMix();
+        for (boolean compile : new boolean[] { false, true, false, true }) {
+            XtceTmExtractor extractor = getExtractor(compile);
+            int n = 500_000;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                extractor.processPacket(packets.get(i % packets.size()), i, i);
+            }
+            long d = System.nanoTime() - t0;
+            System.out.printf("compile: %5s %8.0f packets/s%n", compile, n * 1e9 / d);
+        }
+    }
+
+    private XtceTmExtractor getExtractor(boolean compile) {
+        ProcessorConfig config = new ProcessorConfig();
+        config.getContainerProcessingOptions().setCompileContainers(compile);
+        XtceTmExtractor extractor = new XtceTmExtractor(xtcedb,
+                new ProcessorData(null, "XTCEPROC", xtcedb, config));
+        extractor.provideAll();
+        return extractor;
+    }
+
+    private static String toString(ParameterValueList pvl) {
+        StringBuilder sb = new StringBuilder();
+        for (ParameterValue pv : pvl) {
+            sb.append(pv.getParameterQualifiedNamed()).append("=").append(pv.getEngValue())
+                    .append("/").append(pv.getRawValue()).append(" ").append(pv.getGenerationTime());
+            if (pv instanceof ContainerParameterValue) {
+                ContainerParameterValue cpv = (ContainerParameterValue) pv;
+                sb.append(" @").append(cpv.getAbsoluteBitOffset()).append(":").append(cpv.getBitSize());
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
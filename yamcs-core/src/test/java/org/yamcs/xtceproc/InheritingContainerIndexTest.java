@@ -0,0 +1,85 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.ContainerExtractionResult;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.XtceDb;
+
+public class InheritingContainerIndexTest {
+    private static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testSameResultAsLinearScan() {
+        XtceTmExtractor indexed = getExtractor(true);
+        XtceTmExtractor linear = getExtractor(false);
+        for (byte[] packet : new RefMdbPacketGenerator().getPacketMix()) {
+            long now = TimeEncoding.getWallclockTime();
+            indexed.processPacket(packet, now, now);
+            linear.processPacket(packet, now, now);
+
+            assertEquals(containerNames(linear.getContainerResult()), containerNames(indexed.getContainerResult()));
+            assertEquals(parameterNames(linear), parameterNames(indexed));
+        }
+    }
+
+    @Ignore
+    @Test
+    public void benchmark() {
+        List<byte[]> packets = new RefMdbPacketGenerator().getPacketMix();
+        for (boolean useIndex : new boolean[] { false, true, false, true }) {
+            XtceTmExtractor extractor = getExtractor(useIndex);
+            int n = 200_000;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                byte[] packet = packets.get(i % packets.size());
+                extractor.processPacket(packet, i, i);
+            }
+            long d = System.nanoTime() - t0;
+            System.out.printf("index: %5s %8.0f packets/s%n", useIndex, n * 1e9 / d);
+        }
+    }
+
+    private XtceTmExtractor getExtractor(boolean useIndex) {
+        ProcessorConfig config = new ProcessorConfig();
+        config.getContainerProcessingOptions().setIndexInheritingContainers(useIndex);
+        XtceTmExtractor extractor = new XtceTmExtractor(xtcedb,
+                new ProcessorData(null, "XTCEPROC", xtcedb, config));
+        extractor.provideAll();
+        return extractor;
+    }
+
+    private static Set<String> containerNames(List<ContainerExtractionResult> l) {
+        Set<String> s = new HashSet<>();
+        for (ContainerExtractionResult cer : l) {
+            s.add(cer.getContainer().getQualifiedName());
+        }
+        return s;
+    }
+
+    private static Set<String> parameterNames(XtceTmExtractor extractor) {
+        Set<String> s = new HashSet<>();
+        for (ParameterValue pv : extractor.getParameterResult()) {
+            s.add(pv.getParameterQualifiedNamed());
+        }
+        return s;
+    }
+}
@@ -0,0 +1,75 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.TmPacket;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.protobuf.TmStatistics;
+import org.yamcs.xtce.XtceDb;
+
+public class ParallelTmProcessingTest {
+    private static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testSameOrderAsSerial() {
+        List<String> serial = process(1);
+        List<String> parallel = process(4);
+        assertEquals(serial.size(), parallel.size());
+        assertEquals(serial, parallel);
+    }
+
+    private List<String> process(int numThreads) {
+        ProcessorConfig config = new ProcessorConfig();
+        config.getContainerProcessingOptions().setExtractionThreads(numThreads);
+        XtceTmProcessor tmproc = new XtceTmProcessor(xtcedb, config);
+        List<String> delivered = new ArrayList<>();
+        tmproc.setParameterListener(params -> {
+            for (ParameterValue pv : params) {
+                delivered.add(pv.getGenerationTime() + " " + pv.getParameterQualifiedNamed() + " " + pv.getEngValue());
+            }
+        });
+        tmproc.startProvidingAll();
+        tmproc.startAsync().awaitRunning();
+
+        RefMdbPacketGenerator gen = new RefMdbPacketGenerator();
+        for (int i = 0; i < 2000; i++) {
+            byte[] p;
+            switch (i % 4) {
+            case 0:
+                p = gen.generate_PKT1_1();
+                break;
+            case 1:
+                p = gen.generate_PKT1_3();
+                break;
+            case 2:
+                p = gen.generate_PKT1_9();
+                break;
+            default:
+                p = gen.generate_PKT1_10(i, 1, i);
+            }
+            tmproc.processPacket(new TmPacket(i, i, i, p), xtcedb.getRootSequenceContainer());
+        }
+        // stopping waits for the packets submitted to be delivered
+        tmproc.stopAsync().awaitTerminated();
+
+        // the statistics are shared by the extraction threads
+        long received = tmproc.getStatistics().snapshot().stream().mapToLong(TmStatistics::getReceivedPackets).sum();
+        assertEquals(2000, received);
+        return delivered;
+    }
+}
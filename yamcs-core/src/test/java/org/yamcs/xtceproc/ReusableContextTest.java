@@ -0,0 +1,124 @@
+package org.yamcs.xtceproc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.yamcs.ProcessorConfig;
+import org.yamcs.RefMdbPacketGenerator;
+import org.yamcs.YConfiguration;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.ParameterValueList;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.XtceDb;
+
+public class ReusableContextTest {
+    private static XtceDb xtcedb;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDbFactory.reset();
+        xtcedb = XtceDbFactory.createInstanceByConfig("refmdb");
+    }
+
+    @Test
+    public void testSameResult() {
+        XtceTmExtractor reusing = getExtractor(true);
+        XtceTmExtractor regular = getExtractor(false);
+        long t = 1000;
+        for (byte[] packet : new RefMdbPacketGenerator().getPacketMix()) {
+            t++;
+            reusing.processPacket(packet, t, t);
+            regular.processPacket(packet, t, t);
+
+            assertEquals(regular.getPacketName(), reusing.getPacketName());
+            assertEquals(regular.getContainerResult().size(), reusing.getContainerResult().size());
+            assertEquals(toString(regular.getParameterResult()), toString(reusing.getParameterResult()));
+        }
+    }
+
+    @Test
+    public void testResultNotOverwritten() {
+        XtceTmExtractor extractor = getExtractor(true);
+        RefMdbPacketGenerator gen = new RefMdbPacketGenerator();
+        extractor.processPacket(gen.generate_PKT1_1(), 1, 1);
+        ParameterValueList pvl1 = extractor.getParameterResult();
+        String s1 = toString(pvl1);
+
+        extractor.processPacket(gen.generate_PKT1_3(), 2, 2);
+        ParameterValueList pvl2 = extractor.getParameterResult();
+
+        // the lists are passed to the parameter consumers which may keep them
+        assertNotSame(pvl1, pvl2);
+        assertEquals(s1, toString(pvl1));
+    }
+
+    @Test
+    public void testChildContext() {
+        // the secondary header is a container entry, extracted with a child context
+        XtceDb db = XtceDbFactory.createInstanceByConfig("ccsds-green-book");
+        ProcessorConfig config = new ProcessorConfig();
+        config.getContainerProcessingOptions().setReuseProcessingContext(true);
+        XtceTmExtractor extractor = new XtceTmExtractor(db, new ProcessorData(null, "XTCEPROC", db, config));
+        extractor.provideAll();
+        Parameter millis = db.getParameter("/SpaceVehicle/MilliSeconds");
+
+        for (int ms : new int[] { 50, 70 }) {
+            byte[] buf = new byte[] { 24, (byte) 0x81, 0, 12, // Header1
+                    0x16, (byte) 0x92, 0x5E, (byte) 0x80, // Seconds
+                    0, (byte) ms, // Milliseconds
+                    0, 0, // PBATMTEMP
+                    0, 0 }; // PSWHLTIMFLG
+            extractor.processPacket(buf, ms, ms);
+            ParameterValue pv = extractor.getParameterResult().getFirstInserted(millis);
+            assertEquals(ms, pv.getRawValue().getUint32Value());
+        }
+    }
+
+    /**
+     * Prints the number of bytes allocated per packet with and without reusing the context
+     */
+    @Ignore
+    @Test
+    public void benchmark() {
+        com.sun.management.ThreadMXBean tmx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        List<byte[]> packets = new RefMdbPacketGenerator().getPacketMix();
+        for (boolean reuse : new boolean[] { false, true, false, true }) {
+            XtceTmExtractor extractor = getExtractor(reuse);
+            int n = 500_000;
+            long a0 = tmx.getThreadAllocatedBytes(tid);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                extractor.processPacket(packets.get(i % packets.size()), i, i);
+            }
+            long d = System.nanoTime() - t0;
+            long a = tmx.getThreadAllocatedBytes(tid) - a0;
+            System.out.printf("reuse: %5s %8.0f packets/s %6d bytes/packet%n", reuse, n * 1e9 / d, a / n);
+        }
+    }
+
+    private XtceTmExtractor getExtractor(boolean reuse) {
+        ProcessorConfig config = new ProcessorConfig();
+        config.getContainerProcessingOptions().setReuseProcessingContext(reuse);
+        XtceTmExtractor extractor = new XtceTmExtractor(xtcedb,
+                new ProcessorData(null, "XTCEPROC", xtcedb, config));
+        extractor.provideAll();
+        return extractor;
+    }
+
+    private static String toString(ParameterValueList pvl) {
+        StringBuilder sb = new StringBuilder();
+        for (ParameterValue pv : pvl) {
+            sb.append(pv.getParameterQualifiedNamed()).append("=").append(pv.getEngValue())
+                    .append("/").append(pv.getRawValue()).append(" ").append(pv.getGenerationTime()).append("\n");
+        }
+        return sb.toString();
+    }
+}
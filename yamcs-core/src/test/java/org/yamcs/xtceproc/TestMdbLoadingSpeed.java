@@ -1,8 +1,22 @@
 package org.yamcs.xtceproc;
 
+import java.io.FileWriter;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Ignore;
 import org.junit.Test;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.IntegerParameterType;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.SequenceContainer;
+import org.yamcs.xtce.SequenceEntry.ReferenceLocationType;
+import org.yamcs.xtce.SpaceSystem;
+import org.yamcs.xtce.SpaceSystemLoader;
 import org.yamcs.xtce.SpreadsheetLoader;
+import org.yamcs.xtceproc.XtceDbFactory.LoaderTree;
+import org.yamcs.xtceproc.XtceDbFactory.RootSpaceSystemLoader;
 
 public class TestMdbLoadingSpeed {
 
@@ -19,4 +33,80 @@ public class TestMdbLoadingSpeed {
             System.out.println("took " + (t1 - t0) + " ms");
         }
     }
+
+    /**
+     * compares the sequential and parallel loading of a tree of 32 subsystems with 10000 parameters each
+     */
+    @Test
+    @Ignore
+    public void testParallelLoading() {
+        LoaderTree tree = new LoaderTree(new RootSpaceSystemLoader());
+        for (int i = 0; i < 32; i++) {
+            tree.addChild(new LoaderTree(new SyntheticLoader("ss" + i, 100, 100)));
+        }
+        ForkJoinPool sequential = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool();
+        for (int i = 0; i < 10; i++) {
+            long t0 = System.currentTimeMillis();
+            tree.load(sequential);
+            long t1 = System.currentTimeMillis();
+            tree.load(parallel);
+            long t2 = System.currentTimeMillis();
+            System.out.println("sequential: " + (t1 - t0) + " ms, parallel (" + parallel.getParallelism()
+                    + " threads): " + (t2 - t1) + " ms");
+        }
+        sequential.shutdown();
+        parallel.shutdown();
+    }
+
+    /**
+     * Generates a subsystem with a number of containers each containing a number of 32 bit integer parameters (similar
+     * to the simulator PerfMdbLoader)
+     */
+    static class SyntheticLoader implements SpaceSystemLoader {
+        final String name;
+        final int numContainers;
+        final int numParams;
+
+        SyntheticLoader(String name, int numContainers, int numParams) {
+            this.name = name;
+            this.numContainers = numContainers;
+            this.numParams = numParams;
+        }
+
+        @Override
+        public SpaceSystem load() {
+            SpaceSystem ss = new SpaceSystem(name);
+            IntegerParameterType.Builder ptypeb = new IntegerParameterType.Builder().setName("uint32");
+            ptypeb.setSizeInBits(32);
+            ptypeb.setEncoding(new IntegerDataEncoding.Builder().setSizeInBits(32));
+            IntegerParameterType ptype = ptypeb.build();
+            ss.addParameterType(ptype);
+            for (int j = 0; j < numContainers; j++) {
+                SequenceContainer sc = new SequenceContainer("pkt_" + j);
+                for (int i = 0; i < numParams; i++) {
+                    Parameter p = new Parameter("p_" + j + "_" + i);
+                    p.setParameterType(ptype);
+                    sc.addEntry(new ParameterEntry(32 * i, ReferenceLocationType.CONTAINER_START, p));
+                    ss.addParameter(p);
+                }
+                ss.addSequenceContainer(sc);
+            }
+            return ss;
+        }
+
+        @Override
+        public boolean needsUpdate(RandomAccessFile consistencyDateFile) {
+            return true;
+        }
+
+        @Override
+        public String getConfigName() {
+            return name;
+        }
+
+        @Override
+        public void writeConsistencyDate(FileWriter consistencyDateFile) {
+        }
+    }
 }
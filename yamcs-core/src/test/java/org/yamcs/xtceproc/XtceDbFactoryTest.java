@@ -2,13 +2,22 @@ package org.yamcs.xtceproc;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 import org.yamcs.YConfiguration;
+import org.yamcs.utils.FileUtils;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.SpaceSystem;
@@ -17,6 +26,9 @@ import org.yamcs.xtce.util.NameReference.Type;
 import org.yamcs.xtce.util.ReferenceFinder;
 import org.yamcs.xtce.util.ReferenceFinder.FoundReference;
 import org.yamcs.xtce.util.UnresolvedNameReference;
+import org.yamcs.xtceproc.TestMdbLoadingSpeed.SyntheticLoader;
+import org.yamcs.xtceproc.XtceDbFactory.LoaderTree;
+import org.yamcs.xtceproc.XtceDbFactory.RootSpaceSystemLoader;
 
 public class XtceDbFactoryTest {
 
@@ -66,5 +78,59 @@ public class XtceDbFactoryTest {
         assertEquals("/REFMDB/SUBSYS1/IntegerPara1_1", rr.getNameDescription().getQualifiedName());
     }
 
+    @Test
+    public void testParallelLoadingOrder() {
+        LoaderTree tree = new LoaderTree(new RootSpaceSystemLoader());
+        for (int i = 0; i < 10; i++) {
+            LoaderTree child = new LoaderTree(new SyntheticLoader("ss" + i, 10 - i, 10));
+            child.addChild(new LoaderTree(new SyntheticLoader("sub" + i, 1, 1)));
+            tree.addChild(child);
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<SpaceSystem> sslist;
+        try {
+            sslist = tree.load(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, sslist.size());
+        List<SpaceSystem> subsystems = new ArrayList<>(sslist.get(0).getSubSystems());
+        assertEquals(10, subsystems.size());
+        for (int i = 0; i < 10; i++) {
+            SpaceSystem ss = subsystems.get(i);
+            assertEquals("ss" + i, ss.getName());
+            assertEquals(10 * (10 - i), ss.getParameters().size());
+            assertEquals("sub" + i, ss.getSubSystems().iterator().next().getName());
+        }
+    }
+
+    @Test
+    public void testSerializedInstance() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        XtceDb db = XtceDbFactory.createInstanceByConfig("refmdb");
+
+        Path dir = Paths.get("/tmp/XtceDbFactoryTest");
+        FileUtils.deleteRecursivelyIfExists(dir);
+        Files.createDirectories(dir);
+        File serializedFile = dir.resolve("refmdb.serialized").toFile();
+        LoaderTree tree = new LoaderTree(new SyntheticLoader("a", 1, 1));
+        XtceDbFactory.saveSerializedInstance(tree, db, serializedFile, dir.resolve("refmdb.consistency").toFile());
+        // the temporary file has been renamed
+        try (Stream<Path> s = Files.list(dir)) {
+            assertEquals(2, s.count());
+        }
+
+        XtceDb db1 = XtceDbFactory.loadSerializedInstance(serializedFile);
+        assertEquals(db.getParameterNames(), db1.getParameterNames());
+
+        // the permissions are those of any new file in the directory (given by the umask) such that the cache can be
+        // shared between users
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Path probe = Files.write(dir.resolve("probe"), new byte[0]);
+            assertEquals(Files.getPosixFilePermissions(probe),
+                    Files.getPosixFilePermissions(serializedFile.toPath()));
+        }
+    }
+
    
 }
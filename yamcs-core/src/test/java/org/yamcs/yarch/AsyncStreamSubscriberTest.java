@@ -0,0 +1,84 @@
+package org.yamcs.yarch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.yamcs.yarch.AsyncStreamSubscriber.OverflowPolicy;
+
+public class AsyncStreamSubscriberTest extends YarchTestCase {
+
+    private Stream createStream(String name) {
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn("x", DataType.INT);
+        return new InternalStream(ydb, name, tdef);
+    }
+
+    private Tuple tuple(Stream s, int x) {
+        return new Tuple(s.getDefinition(), new Object[] { x });
+    }
+
+    @Test
+    public void testOrderAndClose() throws Exception {
+        Stream s = createStream("async1");
+        List<Integer> received = new ArrayList<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        s.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                received.add(tuple.getIntColumn("x"));
+            }
+
+            @Override
+            public void streamClosed(Stream stream) {
+                closed.countDown();
+            }
+        }, 100, OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 1000; i++) {
+            s.emitTuple(tuple(s, i));
+        }
+        s.close();
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+        assertEquals(1000, received.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, received.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        Stream s = createStream("async2");
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StreamSubscriber slow = (stream, tuple) -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        AsyncStreamSubscriber async = s.addSubscriber(slow, 10, OverflowPolicy.DROP);
+
+        s.emitTuple(tuple(s, 0));
+        assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+        // the first tuple is in the subscriber, 10 can wait in the queue, the rest are dropped
+        for (int i = 1; i <= 20; i++) {
+            s.emitTuple(tuple(s, i));
+        }
+        assertEquals(10, async.getQueueSize());
+        assertEquals(10, async.getDroppedCount());
+        assertEquals(10, async.getHighWaterMark());
+
+        release.countDown();
+        s.removeSubscriber(slow);
+        assertEquals(0, s.getAsyncSubscribers().size());
+    }
+}
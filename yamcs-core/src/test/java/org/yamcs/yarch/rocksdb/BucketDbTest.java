@@ -2,11 +2,15 @@ package org.yamcs.yarch.rocksdb;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -15,6 +19,7 @@ import java.util.Random;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.FileUtils;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.Bucket;
@@ -161,10 +166,11 @@ public class BucketDbTest {
     @Test
     public void test4() throws Exception {
         RdbBucketDatabase bucketDb = createDb(4);
-        Bucket b = bucketDb.createBucket("bucket1");
+        long maxSize = 10 * 1024 * 1024;
+        Bucket b = bucketDb.createBucket("bucket1", maxSize, RdbBucketDatabase.MAX_NUM_OBJECTS_PER_BUCKET);
         Exception e = null;
         try {
-            for (int i = 0; i < RdbBucketDatabase.MAX_BUCKET_SIZE / (1024 * 1024) + 1; i++) {
+            for (int i = 0; i < maxSize / (1024 * 1024) + 1; i++) {
                 b.putObject("obj" + i, null, null, new byte[1024 * 1024]);
             }
         } catch (Exception e1) {
@@ -176,6 +182,90 @@ public class BucketDbTest {
         b.putObject("newobj", null, null, new byte[1024 * 1024]);
     }
 
+    @Test
+    public void testChunks() throws Exception {
+        String dir = testDir + "/tablespace5";
+        Tablespace tablespace = new Tablespace("tablespace5");
+        tablespace.setCustomDataDir(dir);
+        tablespace.loadDb(false);
+        RdbBucketDatabase bucketDb = new RdbBucketDatabase("test", tablespace);
+        Bucket b = bucketDb.createBucket("bucket1");
+        int chunkSize = RdbBucketDatabase.CHUNK_SIZE;
+        byte[] objectData = new byte[2 * chunkSize + 1000];
+        random.nextBytes(objectData);
+
+        b.putObject("obj1", null, null, objectData);
+        assertArrayEquals(objectData, b.getObject("obj1"));
+
+        b.putObject("obj2", null, null, new ByteArrayInputStream(objectData));
+        assertArrayEquals(objectData, b.getObject("obj2"));
+        assertEquals(objectData.length, b.findObject("obj2").getSize());
+
+        // range across the chunk boundary
+        byte[] part = b.getObject("obj2", chunkSize - 10, 20);
+        assertArrayEquals(Arrays.copyOfRange(objectData, chunkSize - 10, chunkSize + 10), part);
+        // range exceeding the end of the object
+        part = b.getObject("obj2", 2 * chunkSize, 2000);
+        assertArrayEquals(Arrays.copyOfRange(objectData, 2 * chunkSize, objectData.length), part);
+        assertEquals(0, b.getObject("obj2", objectData.length, 10).length);
+        assertNull(b.getObject("obj3", 0, 10));
+
+        // empty object and object of exactly one chunk
+        b.putObject("empty", null, null, new ByteArrayInputStream(new byte[0]));
+        assertEquals(0, b.getObject("empty").length);
+        b.putObject("obj3", null, null, new ByteArrayInputStream(Arrays.copyOf(objectData, chunkSize)));
+        assertArrayEquals(Arrays.copyOf(objectData, chunkSize), b.getObject("obj3"));
+
+        // overwriting with a smaller object removes the old chunks
+        b.putObject("obj1", null, null, new byte[10]);
+        assertArrayEquals(new byte[10], b.getObject("obj1"));
+        assertEquals(10 + objectData.length + chunkSize, bucketDb.getBucket("bucket1").bucketProps.getSize());
+
+        // the object ids continue after reopening
+        tablespace.close();
+        tablespace = new Tablespace("tablespace5bis");
+        tablespace.setCustomDataDir(dir);
+        tablespace.loadDb(false);
+        bucketDb = new RdbBucketDatabase("test", tablespace);
+        b = bucketDb.getBucket("bucket1");
+        b.putObject("obj4", null, null, new byte[100]);
+        assertArrayEquals(objectData, b.getObject("obj2"));
+        assertArrayEquals(Arrays.copyOf(objectData, chunkSize), b.getObject("obj3"));
+        assertEquals(0, b.getObject("empty").length);
+
+        b.deleteObject("obj2");
+        assertNull(b.getObject("obj2"));
+        assertEquals(4, b.listObjects().size());
+        tablespace.close();
+    }
+
+    @Test
+    public void testMaxSizeStreaming() throws Exception {
+        String dir = testDir + "/tablespace6";
+        Tablespace tablespace = new Tablespace("tablespace6");
+        tablespace.setCustomDataDir(dir);
+        tablespace.loadDb(false);
+        RdbBucketDatabase bucketDb = new RdbBucketDatabase("test", tablespace);
+        RdbBucket b = bucketDb.createBucket("bucket1", 3 * RdbBucketDatabase.CHUNK_SIZE, 10);
+        Exception e = null;
+        try {
+            b.putObject("obj1", null, null, new ByteArrayInputStream(new byte[4 * RdbBucketDatabase.CHUNK_SIZE]));
+        } catch (IOException e1) {
+            e = e1;
+        }
+        assertNotNull(e);
+        assertNull(b.findObject("obj1"));
+
+        // the chunks written before exceeding the maximum size have been removed
+        byte[] prefix = new byte[5];
+        ByteArrayUtils.encodeInt(b.getTbsIndex(), prefix, 0);
+        prefix[4] = RdbBucketDatabase.TYPE_OBJ_DATA_CHUNK;
+        try (DbIterator it = tablespace.getRdb().newPrefixIterator(prefix)) {
+            assertFalse(it.isValid());
+        }
+        tablespace.close();
+    }
+
     private RdbBucketDatabase createDb(int n) throws Exception {
         String dir = testDir + "/tablespace" + n;
         Tablespace tablespace = new Tablespace("tablespace" + n);
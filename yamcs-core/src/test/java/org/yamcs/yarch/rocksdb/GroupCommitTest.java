@@ -0,0 +1,80 @@
+package org.yamcs.yarch.rocksdb;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.yamcs.yarch.ColumnDefinition;
+import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.TableWriter;
+import org.yamcs.yarch.TableWriter.InsertMode;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.TupleDefinition;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchTestCase;
+
+/**
+ * The test yamcs.yaml configures group commit with batches of 3 tuples for the tables named GroupCommit*
+ */
+public class GroupCommitTest extends YarchTestCase {
+
+    private TableWriter createTable(String name, InsertMode mode) throws Exception {
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn(new ColumnDefinition("gentime", DataType.TIMESTAMP));
+        tdef.addColumn(new ColumnDefinition("col2", DataType.INT));
+        TableDefinition tblDef = new TableDefinition(name, tdef, Arrays.asList("gentime"));
+        tblDef.setStorageEngineName(YarchDatabase.RDB_ENGINE_NAME);
+        ydb.createTable(tblDef);
+        RdbStorageEngine rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
+        return rse.newTableWriter(ydb, tblDef, mode);
+    }
+
+    private Tuple tuple(long t, int v) {
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn(new ColumnDefinition("gentime", DataType.TIMESTAMP));
+        tdef.addColumn(new ColumnDefinition("col2", DataType.INT));
+        return new Tuple(tdef, new Object[] { t, v });
+    }
+
+    @Test
+    public void testBatchAndTimedCommit() throws Exception {
+        TableWriter tw = createTable("GroupCommit1", InsertMode.INSERT);
+        for (int i = 0; i < 4; i++) {
+            tw.onTuple(null, tuple(1000 + i, i));
+        }
+        // the first 3 have been committed because the batch was full
+        assertEquals(3, fetchAllFromTable("GroupCommit1").size());
+
+        // the last one is committed after maxBatchDelay
+        Thread.sleep(500);
+        assertEquals(4, fetchAllFromTable("GroupCommit1").size());
+    }
+
+    @Test
+    public void testDuplicatesInBatch() throws Exception {
+        TableWriter tw = createTable("GroupCommit2", InsertMode.INSERT);
+        tw.onTuple(null, tuple(1000, 1));
+        tw.onTuple(null, tuple(1000, 2));
+        tw.close();
+
+        List<Tuple> l = fetchAllFromTable("GroupCommit2");
+        assertEquals(1, l.size());
+        // insert does not overwrite
+        assertEquals(1, l.get(0).getIntColumn("col2"));
+    }
+
+    @Test
+    public void testUpsertInBatch() throws Exception {
+        TableWriter tw = createTable("GroupCommit3", InsertMode.UPSERT);
+        tw.onTuple(null, tuple(1000, 1));
+        tw.onTuple(null, tuple(1000, 2));
+        tw.close();
+
+        List<Tuple> l = fetchAllFromTable("GroupCommit3");
+        assertEquals(1, l.size());
+        assertEquals(2, l.get(0).getIntColumn("col2"));
+    }
+}
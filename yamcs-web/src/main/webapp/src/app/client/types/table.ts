@@ -8,6 +8,7 @@ export interface SubscribeStreamStatisticsRequest {
 export interface SubscribeStreamRequest {
   instance: string;
   stream: string;
+  dropIfSlow?: boolean;
 }
 
 export interface StreamEvent {